@@ -0,0 +1,267 @@
+package com.atakmap.android.chat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.database.CursorIface;
+import com.atakmap.database.DatabaseIface;
+import com.atakmap.database.Databases;
+import com.atakmap.database.StatementIface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ChatDatabaseTest extends ATAKInstrumentedTest {
+
+    private FileUtils.AutoDeleteFile file;
+    private DatabaseIface db;
+
+    @Before
+    public void openDatabase() {
+        file = FileUtils.AutoDeleteFile.createTempFile(
+                ApplicationProvider.getApplicationContext(), ".sqlite");
+        db = Databases.openOrCreateDatabase(file.getPath());
+    }
+
+    @After
+    public void closeDatabase() {
+        db.close();
+        file.close();
+    }
+
+    @Test
+    public void upgrade_from_v10_backfills_sort_time_and_indexes() {
+        // the chat table as of v10, without the sort time
+        db.execute("CREATE TABLE " + ChatDatabase.TABLE_CHAT
+                + " (id INTEGER PRIMARY KEY, conversationId TEXT,"
+                + " messageId TEXT, protocol TEXT, type TEXT,"
+                + " receiveTime INTEGER, sentTime INTEGER, readTime INTEGER,"
+                + " senderUid TEXT, message TEXT, senderCallsign TEXT,"
+                + " status TEXT, rawCotEvent TEXT, cotEventUid TEXT)",
+                null);
+        db.execute("CREATE TABLE " + ChatDatabase.TABLE_GROUPS
+                + " (id INTEGER PRIMARY KEY, conversationId TEXT)", null);
+        insertV10("convo", "received", 200L, 100L);
+        insertV10("convo", "sent", null, 150L);
+        insertV10("convo", "untimed", null, null);
+        db.setVersion(10);
+
+        ChatDatabase.onUpgrade(db, 10, ChatDatabase.VERSION);
+
+        assertEquals(ChatDatabase.VERSION, db.getVersion());
+        assertEquals(200L, getSortTime("received"));
+        assertEquals(150L, getSortTime("sent"));
+        assertEquals(0L, getSortTime("untimed"));
+
+        final Set<String> indices = new HashSet<>();
+        CursorIface result = db.query(
+                "SELECT name FROM sqlite_master WHERE type = 'index'", null);
+        try {
+            while (result.moveToNext())
+                indices.add(result.getString(0));
+        } finally {
+            result.close();
+        }
+        assertTrue(indices.contains(
+                ChatDatabase.TABLE_CHAT + "_conversation_sort_idx"));
+        assertTrue(indices.contains(ChatDatabase.TABLE_CHAT + "_message_idx"));
+
+        // the backfilled history is served oldest first
+        ChatDatabase.HistoryPage page = ChatDatabase.getHistoryPage(db,
+                "convo", null, 10);
+        assertEquals(Arrays.asList("untimed", "sent", "received"),
+                messageIds(page.lines));
+        assertFalse(page.hasMore);
+    }
+
+    @Test
+    public void history_pages_cover_ties_in_sort_time() {
+        createSchema();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+            expected.add(insert("convo", "early" + i, 500L));
+        for (int i = 0; i < 7; i++)
+            expected.add(insert("convo", "tied" + i, 1000L));
+        insert("other", "other", 750L);
+
+        final List<String> paged = new ArrayList<>();
+        ChatDatabase.HistoryPage page = ChatDatabase.getHistoryPage(db,
+                "convo", null, 3);
+        paged.addAll(0, messageIds(page.lines));
+        while (page.hasMore) {
+            page = ChatDatabase.getHistoryPage(db, "convo", page, 3);
+            paged.addAll(0, messageIds(page.lines));
+        }
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    public void pages_around_message_extend_both_ways() {
+        createSchema();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            expected.add(insert("convo", "tied" + i, 1000L));
+
+        assertNull(ChatDatabase.getHistoryPageAround(db, "convo", "missing",
+                4));
+        assertNull(ChatDatabase.getHistoryPageAround(db, "other", "tied5",
+                4));
+
+        final ChatDatabase.HistoryPage around = ChatDatabase
+                .getHistoryPageAround(db, "convo", "tied5", 4);
+        assertNotNull(around);
+        assertEquals(Arrays.asList("tied3", "tied4", "tied5", "tied6"),
+                messageIds(around.lines));
+        assertTrue(around.hasMore);
+        assertTrue(around.hasNewer);
+
+        final List<String> paged = new ArrayList<>(messageIds(around.lines));
+        ChatDatabase.HistoryPage older = around;
+        while (older.hasMore) {
+            older = ChatDatabase.getHistoryPage(db, "convo", older, 4);
+            paged.addAll(0, messageIds(older.lines));
+        }
+        ChatDatabase.HistoryPage newer = around;
+        while (newer.hasNewer) {
+            newer = ChatDatabase.getNewerHistoryPage(db, "convo", newer, 4);
+            paged.addAll(messageIds(newer.lines));
+        }
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    public void conversation_pages_are_stable_across_activity() {
+        createSchema();
+        for (int i = 0; i < 5; i++)
+            insert("tied" + i, "tied" + i, 1000L);
+        insert("older", "older", 500L);
+
+        final List<String> paged = new ArrayList<>();
+        ChatDatabase.ConversationPage page = ChatDatabase
+                .getConversationPage(db, null, 2);
+        paged.addAll(conversationIds(page.lines));
+        // conversations yet to be paged become the most recently active
+        insert("tied4", "recent", 2000L);
+        insert("older", "recent2", 3000L);
+        while (page.hasMore) {
+            page = ChatDatabase.getConversationPage(db, page, 2);
+            paged.addAll(conversationIds(page.lines));
+        }
+
+        assertEquals(Arrays.asList("tied0", "tied1", "tied2", "tied3",
+                "tied4", "older"), paged);
+    }
+
+    @Test
+    public void search_matches_latest_line_of_each_conversation() {
+        createSchema();
+        insert("a", "a0", 100L, "100% done");
+        insert("a", "a1", 200L, "later");
+        insert("b", "b0", 100L, "100% done");
+        insert("c", "c0", 100L, "100 done");
+
+        // only the latest line is searched and wildcards are literal
+        assertEquals(Collections.singletonList("b"), conversationIds(
+                ChatDatabase.searchConversations(db, "100%")));
+    }
+
+    private void createSchema() {
+        ChatDatabase.onUpgrade(db, db.getVersion(), ChatDatabase.VERSION);
+    }
+
+    private void insertV10(String conversationId, String messageId,
+            Long receiveTime, Long sentTime) {
+        StatementIface stmt = db.compileStatement("INSERT INTO "
+                + ChatDatabase.TABLE_CHAT
+                + " (conversationId, messageId, receiveTime, sentTime,"
+                + " message) VALUES (?, ?, ?, ?, ?)");
+        try {
+            stmt.bind(1, conversationId);
+            stmt.bind(2, messageId);
+            if (receiveTime != null)
+                stmt.bind(3, receiveTime);
+            else
+                stmt.bindNull(3);
+            if (sentTime != null)
+                stmt.bind(4, sentTime);
+            else
+                stmt.bindNull(4);
+            stmt.bind(5, messageId);
+            stmt.execute();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private String insert(String conversationId, String messageId,
+            long time) {
+        return insert(conversationId, messageId, time, messageId);
+    }
+
+    private String insert(String conversationId, String messageId,
+            long time, String message) {
+        StatementIface stmt = db.compileStatement("INSERT INTO "
+                + ChatDatabase.TABLE_CHAT
+                + " (conversationId, messageId, sentTime, message, sortTime)"
+                + " VALUES (?, ?, ?, ?, ?)");
+        try {
+            stmt.bind(1, conversationId);
+            stmt.bind(2, messageId);
+            stmt.bind(3, time);
+            stmt.bind(4, message);
+            stmt.bind(5, time);
+            stmt.execute();
+        } finally {
+            stmt.close();
+        }
+        return messageId;
+    }
+
+    private long getSortTime(String messageId) {
+        CursorIface result = db.query("SELECT sortTime FROM "
+                + ChatDatabase.TABLE_CHAT + " WHERE messageId = ?",
+                new String[] {
+                        messageId
+                });
+        try {
+            assertTrue(result.moveToNext());
+            return result.getLong(0);
+        } finally {
+            result.close();
+        }
+    }
+
+    private static List<String> messageIds(List<ChatLine> lines) {
+        final List<String> ids = new ArrayList<>();
+        for (ChatLine line : lines)
+            ids.add(line.messageId);
+        return ids;
+    }
+
+    private static List<String> conversationIds(List<ChatLine> lines) {
+        final List<String> ids = new ArrayList<>();
+        for (ChatLine line : lines)
+            ids.add(line.conversationId);
+        return ids;
+    }
+}
@@ -0,0 +1,87 @@
+package com.atakmap.android.maps;
+
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MapItemSpatialIndexTest {
+
+    @Test
+    public void radius_query_returns_nearby_points() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        Marker near = new Marker(new GeoPoint(38.8977, -77.0365), "near");
+        Marker far = new Marker(new GeoPoint(34.0522, -118.2437), "far");
+        index.add(near);
+        index.add(far);
+
+        List<MapItem> result = new ArrayList<>();
+        index.query(new GeoPoint(38.8980, -77.0360), 1000d, result);
+        Assert.assertTrue(result.contains(near));
+        Assert.assertFalse(result.contains(far));
+        Assert.assertEquals(2, index.size());
+    }
+
+    @Test
+    public void moved_point_is_refreshed() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        Marker marker = new Marker(new GeoPoint(38.8977, -77.0365), "marker");
+        index.add(marker);
+
+        marker.setPoint(new GeoPoint(34.0522, -118.2437));
+
+        List<MapItem> result = new ArrayList<>();
+        index.query(new GeoPoint(38.8977, -77.0365), 1000d, result);
+        Assert.assertFalse(result.contains(marker));
+
+        result.clear();
+        index.query(new GeoPoint(34.0522, -118.2437), 1000d, result);
+        Assert.assertTrue(result.contains(marker));
+    }
+
+    @Test
+    public void removed_point_is_not_returned() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        Marker marker = new Marker(new GeoPoint(38.8977, -77.0365), "marker");
+        index.add(marker);
+        index.remove(marker);
+
+        List<MapItem> result = new ArrayList<>();
+        index.query(new GeoPoint(38.8977, -77.0365), 1000d, result);
+        Assert.assertTrue(result.isEmpty());
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void radius_query_wraps_antimeridian() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        Marker east = new Marker(new GeoPoint(0d, 179.999), "east");
+        Marker west = new Marker(new GeoPoint(0d, -179.999), "west");
+        index.add(east);
+        index.add(west);
+
+        List<MapItem> result = new ArrayList<>();
+        index.query(new GeoPoint(0d, 179.9995), 1000d, result);
+        Assert.assertTrue(result.contains(east));
+        Assert.assertTrue(result.contains(west));
+    }
+
+    @Test
+    public void bounds_query_returns_contained_points() {
+        MapItemSpatialIndex index = new MapItemSpatialIndex();
+        Marker inside = new Marker(new GeoPoint(38.8977, -77.0365), "inside");
+        Marker outside = new Marker(new GeoPoint(34.0522, -118.2437),
+                "outside");
+        index.add(inside);
+        index.add(outside);
+
+        List<MapItem> result = new ArrayList<>();
+        index.query(new GeoBounds(39d, -78d, 38d, -76d), result);
+        Assert.assertTrue(result.contains(inside));
+        Assert.assertFalse(result.contains(outside));
+    }
+}
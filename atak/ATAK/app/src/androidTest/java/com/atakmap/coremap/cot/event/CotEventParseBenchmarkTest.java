@@ -0,0 +1,111 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.util.Diagnostic;
+
+import org.junit.Test;
+
+/**
+ * Compares parsing events from a <code>String</code> against parsing them
+ * from UTF-8 bytes over a corpus of typical SA, chat and shape messages.
+ */
+public class CotEventParseBenchmarkTest {
+
+    private static final String TAG = "CotEventParseBenchmarkTest";
+    private static final boolean ENABLED = false;
+
+    private static final String SA = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<event version=\"2.0\" uid=\"ANDROID-358f7a1e4b2d9c61\" type=\"a-f-G-U-C\" how=\"m-g\" "
+            + "time=\"2024-05-01T14:22:31.512Z\" start=\"2024-05-01T14:22:31.512Z\" stale=\"2024-05-01T14:28:46.512Z\">"
+            + "<point lat=\"38.8977123\" lon=\"-77.0365298\" hae=\"18.512\" ce=\"4.9\" le=\"9999999.0\"/>"
+            + "<detail><takv os=\"34\" version=\"5.5.0.0 (civ)\" device=\"SAMSUNG SM-G991U\" platform=\"ATAK-CIV\"/>"
+            + "<contact endpoint=\"*:-1:stcp\" callsign=\"WOLF 1\"/>"
+            + "<uid Droid=\"WOLF 1\"/><precisionlocation altsrc=\"GPS\" geopointsrc=\"GPS\"/>"
+            + "<__group role=\"Team Member\" name=\"Cyan\"/><status battery=\"87\"/>"
+            + "<track course=\"212.48\" speed=\"1.31\"/></detail></event>";
+
+    private static final String CHAT = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<event version=\"2.0\" uid=\"GeoChat.ANDROID-358f7a1e4b2d9c61.All Chat Rooms.1f6c7a0e\" "
+            + "type=\"b-t-f\" how=\"h-g-i-g-o\" time=\"2024-05-01T14:22:35.101Z\" "
+            + "start=\"2024-05-01T14:22:35.101Z\" stale=\"2024-05-02T14:22:35.101Z\">"
+            + "<point lat=\"38.8977123\" lon=\"-77.0365298\" hae=\"18.512\" ce=\"4.9\" le=\"9999999.0\"/>"
+            + "<detail><__chat parent=\"RootContactGroup\" groupOwner=\"false\" messageId=\"1f6c7a0e\" "
+            + "chatroom=\"All Chat Rooms\" id=\"All Chat Rooms\" senderCallsign=\"WOLF 1\">"
+            + "<chatgrp uid0=\"ANDROID-358f7a1e4b2d9c61\" uid1=\"All Chat Rooms\" id=\"All Chat Rooms\"/></__chat>"
+            + "<link uid=\"ANDROID-358f7a1e4b2d9c61\" type=\"a-f-G-U-C\" relation=\"p-p\"/>"
+            + "<remarks source=\"BAO.F.ATAK.ANDROID-358f7a1e4b2d9c61\" to=\"All Chat Rooms\" "
+            + "time=\"2024-05-01T14:22:35.101Z\">Moving to checkpoint bravo</remarks>"
+            + "<__serverdestination destinations=\"10.0.0.1:4242:tcp:ANDROID-358f7a1e4b2d9c61\"/>"
+            + "</detail></event>";
+
+    private static final String SHAPE = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<event version=\"2.0\" uid=\"7c0ab2ff-08d3-4c49-a3f4-1c2a0cfa1e5d\" type=\"u-d-f\" "
+            + "how=\"h-e\" time=\"2024-05-01T14:23:02.000Z\" start=\"2024-05-01T14:23:02.000Z\" "
+            + "stale=\"2024-05-02T14:23:02.000Z\">"
+            + "<point lat=\"38.8981\" lon=\"-77.0372\" hae=\"9999999.0\" ce=\"9999999.0\" le=\"9999999.0\"/>"
+            + "<detail><link point=\"38.8990,-77.0390\"/><link point=\"38.8995,-77.0360\"/>"
+            + "<link point=\"38.8975,-77.0350\"/><link point=\"38.8968,-77.0375\"/>"
+            + "<link point=\"38.8990,-77.0390\"/><strokeColor value=\"-1\"/>"
+            + "<strokeWeight value=\"4.0\"/><fillColor value=\"-1761607681\"/>"
+            + "<contact callsign=\"Shape 1\"/><remarks/><archive/>"
+            + "<labels_on value=\"false\"/><precisionlocation altsrc=\"???\"/>"
+            + "</detail></event>";
+
+    private static final String[] CORPUS = {
+            SA, CHAT, SHAPE
+    };
+
+    @Test
+    public void benchmark_parse_string() {
+        if (ENABLED) {
+            doBench("string", new Runnable() {
+                @Override
+                public void run() {
+                    for (String xml : CORPUS) {
+                        // messages arrive as bytes; include the decode
+                        CotEvent.parse(new String(
+                                xml.getBytes(FileSystemUtils.UTF8_CHARSET),
+                                FileSystemUtils.UTF8_CHARSET));
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    public void benchmark_parse_bytes() {
+        if (ENABLED) {
+            final byte[][] corpus = encode();
+            doBench("bytes", new Runnable() {
+                @Override
+                public void run() {
+                    for (byte[] xml : corpus)
+                        CotEvent.parse(xml, 0, xml.length);
+                }
+            });
+        }
+    }
+
+    private static byte[][] encode() {
+        byte[][] corpus = new byte[CORPUS.length][];
+        for (int i = 0; i < CORPUS.length; i++)
+            corpus[i] = CORPUS[i].getBytes(FileSystemUtils.UTF8_CHARSET);
+        return corpus;
+    }
+
+    private void doBench(String name, Runnable runnable) {
+        // warm up
+        for (int i = 0; i < 1000; ++i)
+            runnable.run();
+
+        Diagnostic diag = new Diagnostic();
+        for (int i = 0; i < 10000; ++i) {
+            diag.start();
+            runnable.run();
+            diag.stop();
+        }
+        long duration = (diag.getDuration() / diag.getCount());
+        Log.i(TAG, name + " duration= " + duration + "ns");
+    }
+}
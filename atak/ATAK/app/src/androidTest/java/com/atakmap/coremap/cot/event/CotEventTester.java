@@ -9,10 +9,13 @@ import static org.junit.Assert.assertTrue;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.atakmap.android.androidtest.ATAKInstrumentedTest;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.nio.ByteBuffer;
+
 @RunWith(AndroidJUnit4.class)
 public class CotEventTester extends ATAKInstrumentedTest {
 
@@ -85,6 +88,37 @@ public class CotEventTester extends ATAKInstrumentedTest {
         assertEquals("Affogatto-A", log.getAttribute("callsign"));
     }
 
+    @Test
+    public void validBytes() {
+        byte[] xml = getValid1().getBytes(FileSystemUtils.UTF8_CHARSET);
+        CotEvent expected = CotEvent.parse(getValid1());
+        CotEvent ce = CotEvent.parse(xml, 0, xml.length);
+        assertTrue(ce.isValid());
+        assertEquals(expected.toString(), ce.toString());
+
+        // parse from a slice of a larger buffer
+        byte[] padded = new byte[xml.length + 16];
+        System.arraycopy(xml, 0, padded, 8, xml.length);
+        ce = CotEvent.parse(padded, 8, xml.length);
+        assertEquals(expected.toString(), ce.toString());
+
+        // parse from a direct buffer
+        ByteBuffer direct = ByteBuffer.allocateDirect(xml.length);
+        direct.put(xml);
+        direct.flip();
+        ce = CotEvent.parse(direct);
+        assertEquals(expected.toString(), ce.toString());
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void validUTF8Bytes() {
+        byte[] xml = getValid4().getBytes(FileSystemUtils.UTF8_CHARSET);
+        CotEvent ce = CotEvent.parse(xml, 0, xml.length);
+        CotDetail testDetail = ce.getDetail().getChild("test");
+        assertEquals("Бі не по", testDetail.getInnerText());
+    }
+
     private String getInvalid1() {
         return "invalid";
     }
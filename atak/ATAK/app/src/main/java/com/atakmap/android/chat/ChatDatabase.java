@@ -35,6 +35,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -42,7 +43,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class ChatDatabase {
     public static final String TAG = "ChatDatabase";
-    public static final int VERSION = 10;
+    public static final int VERSION = 11;
 
     private static DatabaseIface chatDb;
 
@@ -76,6 +77,7 @@ public class ChatDatabase {
     private static final String READ_TIME_COL_NAME = "readTime";
     private static final String SENDER_UID_COL_NAME = "senderUid";
     private static final String MESSAGE_COL_NAME = "message";
+    private static final String SORT_TIME_COL_NAME = "sortTime";
 
     private static final String CREATED_LOCALLY = "createdLocally"; //Expressed as boolean
     private static final String RECIPIENTS = "destinations"; //Expressed as UIDs
@@ -85,6 +87,14 @@ public class ChatDatabase {
 
     private static final String CONTACT_CALLSIGN_COL_NAME = "senderCallsign";
 
+    /**
+     * The time a line is ordered by within its conversation. Materialized
+     * into {@link #SORT_TIME_COL_NAME} so that history may be served from
+     * the conversation/sort time index without sorting.
+     */
+    private static final String SORT_TIME_EXPRESSION = "COALESCE("
+            + RECEIVE_TIME_COL_NAME + ", " + SENT_TIME_COL_NAME + ", 0)";
+
     private static String getBundleNameForColumn(String columnName) {
         return columnName;
     }
@@ -108,9 +118,26 @@ public class ChatDatabase {
             new DBColumn(CONTACT_CALLSIGN_COL_NAME, TEXT_COL_TYPE),
             new DBColumn(STATUS_COL_NAME, TEXT_COL_TYPE),
             new DBColumn(RAW_COT_EVENT, TEXT_COL_TYPE),
-            new DBColumn(COT_EVENT_UID, TEXT_COL_TYPE)
+            new DBColumn(COT_EVENT_UID, TEXT_COL_TYPE),
+            new DBColumn(SORT_TIME_COL_NAME, INTEGER_COL_TYPE)
     };
 
+    // columns selected to build a `ChatLine`, see `cursorToChatLine`
+    private static final String CHAT_LINE_COLS = ID_COL_NAME + ", "
+            + CONVO_ID_COL_NAME + ", "
+            + MESSAGE_ID_COL_NAME + ", "
+            + PROTOCOL_COL_NAME + ", "
+            + TYPE_COL_NAME + ", "
+            + RECEIVE_TIME_COL_NAME + ", "
+            + SENT_TIME_COL_NAME + ", "
+            + READ_TIME_COL_NAME + ", "
+            + SENDER_UID_COL_NAME + ", "
+            + CONTACT_CALLSIGN_COL_NAME + ", "
+            + MESSAGE_COL_NAME + ", "
+            + STATUS_COL_NAME + ", "
+            + RAW_COT_EVENT + ", "
+            + SORT_TIME_COL_NAME;
+
     private static final DBColumn[] GROUP_COLS = {
             new DBColumn(ID_COL_NAME, PK_COL_TYPE),
             new DBColumn(CONVO_ID_COL_NAME, TEXT_COL_TYPE),
@@ -216,12 +243,27 @@ public class ChatDatabase {
         }
     }
 
-    private void onCreate(DatabaseIface db) {
+    private static void onCreate(DatabaseIface db) {
         createTable(db, TABLE_CHAT, CHAT_COLS);
         createTable(db, TABLE_GROUPS, GROUP_COLS);
+        createIndices(db);
+    }
+
+    private static void createIndices(DatabaseIface db) {
+        try {
+            db.execute("CREATE INDEX IF NOT EXISTS "
+                    + TABLE_CHAT + "_conversation_sort_idx ON "
+                    + TABLE_CHAT + "(" + CONVO_ID_COL_NAME + ", "
+                    + SORT_TIME_COL_NAME + ", " + ID_COL_NAME + ")", null);
+            db.execute("CREATE INDEX IF NOT EXISTS "
+                    + TABLE_CHAT + "_message_idx ON "
+                    + TABLE_CHAT + "(" + MESSAGE_ID_COL_NAME + ")", null);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to create indices", e);
+        }
     }
 
-    private void createTable(DatabaseIface db, String tableName,
+    private static void createTable(DatabaseIface db, String tableName,
             DBColumn[] columns) {
         StringBuilder createGroupTable = new StringBuilder("CREATE TABLE "
                 + tableName + " (");
@@ -235,7 +277,7 @@ public class ChatDatabase {
         db.execute(createGroupTable.toString(), null);
     }
 
-    private void onUpgrade(DatabaseIface db, int oldVersion, int newVersion) {
+    static void onUpgrade(DatabaseIface db, int oldVersion, int newVersion) {
         // Drop older table if existed
         switch (oldVersion) {
             //wasn't implemented before so just drop the tables and recreate
@@ -266,6 +308,14 @@ public class ChatDatabase {
                 // Add cot event column to chat
                 db.execute("ALTER TABLE " + TABLE_CHAT + " ADD COLUMN "
                         + COT_EVENT_UID + " " + TEXT_COL_TYPE, null);
+            case 10:
+                // Add materialized sort time column to chat and index
+                db.execute("ALTER TABLE " + TABLE_CHAT + " ADD COLUMN "
+                        + SORT_TIME_COL_NAME + " " + INTEGER_COL_TYPE, null);
+                db.execute("UPDATE " + TABLE_CHAT + " SET "
+                        + SORT_TIME_COL_NAME + " = " + SORT_TIME_EXPRESSION,
+                        null);
+                createIndices(db);
                 break;
             default:
                 db.execute("DROP TABLE IF EXISTS " + TABLE_CHAT, null);
@@ -363,9 +413,18 @@ public class ChatDatabase {
                     if (stmt != null)
                         stmt.close();
                 }
+                // the update may carry only some of the times; derive the
+                // sort time from the updated row
+                db.execute("UPDATE " + TABLE_CHAT + " SET "
+                        + SORT_TIME_COL_NAME + " = " + SORT_TIME_EXPRESSION
+                        + " WHERE " + MESSAGE_ID_COL_NAME + "=(?)",
+                        new String[] {
+                                msgId
+                        });
 
                 id = existingMsg.getLong(ID_COL_NAME);
             } else {
+                chatValues.put(SORT_TIME_COL_NAME, getSortTime(chatValues));
                 Pair<String, String[]> v = parseForInsert(chatValues);
                 StatementIface stmt = null;
                 try {
@@ -655,6 +714,16 @@ public class ChatDatabase {
         }
     }
 
+    /**
+     * Evaluates {@link #SORT_TIME_EXPRESSION} for a row about to be inserted
+     */
+    private static long getSortTime(ContentValues chatValues) {
+        Long time = chatValues.getAsLong(RECEIVE_TIME_COL_NAME);
+        if (time == null)
+            time = chatValues.getAsLong(SENT_TIME_COL_NAME);
+        return (time != null) ? time : 0L;
+    }
+
     private static String convertStringArrayToString(final String[] arr) {
         if (arr == null)
             return null;
@@ -689,6 +758,36 @@ public class ChatDatabase {
         return row;
     }
 
+    /**
+     * Builds a {@link ChatLine} from a row selected with
+     * {@link #CHAT_LINE_COLS}.
+     */
+    private static ChatLine cursorToChatLine(CursorIface cursor) {
+        final ChatLine line = new ChatLine();
+        line.conversationId = cursor.getString(1);
+        line.messageId = cursor.getString(2);
+        line.protocol = cursor.getString(3);
+        line.type = cursor.getString(4);
+        line.timeReceived = getTime(cursor, 5);
+        line.timeSent = getTime(cursor, 6);
+        line.timeRead = getTime(cursor, 7);
+        line.senderUid = cursor.getString(8);
+        line.senderName = cursor.getString(9);
+        line.message = cursor.getString(10);
+        line.status = ChatLine.getMessageStatus(cursor.getString(11));
+        // destinations are not persisted with the line
+        line.destinations = new String[0];
+        line.resolve(cursor.getString(12));
+        return line;
+    }
+
+    private static Long getTime(CursorIface cursor, int col) {
+        if (cursor.isNull(col))
+            return null;
+        final long time = cursor.getLong(col);
+        return (time < 0) ? null : time;
+    }
+
     private long getGroupIndex(String conversationId) {
         long ret = -1;
         DatabaseIface db;
@@ -870,7 +969,7 @@ public class ChatDatabase {
      */
     public List<Bundle> getHistory(final String conversationId, int limit,
             boolean legacy) {
-        List<Bundle> ret = new LinkedList<>();
+        List<Bundle> ret = new ArrayList<>();
         DatabaseIface db;
         CursorIface cursor = null;
         try {
@@ -878,20 +977,15 @@ public class ChatDatabase {
             cursor = db.query(
                     "SELECT * FROM " + TABLE_CHAT + " WHERE "
                             + CONVO_ID_COL_NAME + "= ?"
-                            + " ORDER BY CASE"
-                            + " WHEN " + RECEIVE_TIME_COL_NAME
-                            + " IS NULL THEN " + SENT_TIME_COL_NAME
-                            + " ELSE " + RECEIVE_TIME_COL_NAME
-                            + " END DESC"
+                            + " ORDER BY " + SORT_TIME_COL_NAME + " DESC, "
+                            + ID_COL_NAME + " DESC"
                             + (limit > 0 ? " LIMIT " + limit : ""),
                     new String[] {
                             conversationId
                     });
-            if (cursor.moveToNext()) {
-                do {
-                    ret.add(0, cursorToBundle(cursor));
-                } while (cursor.moveToNext());
-            }
+            while (cursor.moveToNext())
+                ret.add(cursorToBundle(cursor));
+            Collections.reverse(ret);
         } catch (IllegalStateException e) {
             Contact contact = Contacts.getInstance().getContactByUuid(
                     conversationId);
@@ -920,6 +1014,312 @@ public class ChatDatabase {
         return ret;
     }
 
+    /**
+     * Returns a page of the history of a given conversation. Pages are keyed
+     * on the position of the oldest line of the previous page, so each page
+     * is served directly from the conversation/sort time index regardless
+     * of the length of the conversation.
+     * @param conversationId the chat conversation identification
+     * @param previous the page most recently returned for the conversation,
+     *                 or <code>null</code> to obtain the most recent lines
+     * @param limit the maximum number of lines in the page, or -1 for all
+     *              remaining lines
+     * @return the lines preceding <code>previous</code>, oldest first
+     */
+    public HistoryPage getHistoryPage(final String conversationId,
+            final HistoryPage previous, int limit) {
+        return getHistoryPage(chatDb, conversationId, previous, limit);
+    }
+
+    static HistoryPage getHistoryPage(DatabaseIface db,
+            String conversationId, HistoryPage previous, int limit) {
+        if (previous == null)
+            return selectHistory(db, conversationId, false, 0L, 0L, true,
+                    limit);
+        if (!previous.hasMore)
+            return new HistoryPage(Collections.<ChatLine> emptyList(),
+                    false, true, previous.sortTime, previous.id,
+                    previous.sortTime, previous.id);
+        return selectHistory(db, conversationId, true, previous.sortTime,
+                previous.id, true, limit);
+    }
+
+    /**
+     * Returns the page of the history of a given conversation that follows
+     * a page returned by {@link #getHistoryPageAround(String, String, int)}.
+     * @param conversationId the chat conversation identification
+     * @param previous the page most recently returned for the conversation
+     * @param limit the maximum number of lines in the page, or -1 for all
+     *              remaining lines
+     * @return the lines following <code>previous</code>, oldest first
+     */
+    public HistoryPage getNewerHistoryPage(final String conversationId,
+            final HistoryPage previous, int limit) {
+        return getNewerHistoryPage(chatDb, conversationId, previous, limit);
+    }
+
+    static HistoryPage getNewerHistoryPage(DatabaseIface db,
+            String conversationId, HistoryPage previous, int limit) {
+        if (!previous.hasNewer)
+            return new HistoryPage(Collections.<ChatLine> emptyList(),
+                    true, false, previous.newestSortTime, previous.newestId,
+                    previous.newestSortTime, previous.newestId);
+        return selectHistory(db, conversationId, true,
+                previous.newestSortTime, previous.newestId, false, limit);
+    }
+
+    /**
+     * Returns a page of the history of a given conversation centered on a
+     * message. The position of the message is looked up first, so only the
+     * lines in the page are read, however far back the message lies.
+     * @param conversationId the chat conversation identification
+     * @param messageId the message identifier
+     * @param limit the maximum number of lines in the page
+     * @return the lines surrounding the message, oldest first, or
+     *         <code>null</code> if the message is not in the history of the
+     *         conversation
+     */
+    public HistoryPage getHistoryPageAround(final String conversationId,
+            final String messageId, int limit) {
+        return getHistoryPageAround(chatDb, conversationId, messageId, limit);
+    }
+
+    static HistoryPage getHistoryPageAround(DatabaseIface db,
+            String conversationId, String messageId, int limit) {
+        long sortTime;
+        long id;
+        QueryIface query = null;
+        try {
+            query = db.compileQuery("SELECT " + SORT_TIME_COL_NAME + ", "
+                    + ID_COL_NAME + " FROM " + TABLE_CHAT
+                    + " WHERE " + MESSAGE_ID_COL_NAME + " = ? AND "
+                    + CONVO_ID_COL_NAME + " = ? LIMIT 1");
+            query.bind(1, messageId);
+            query.bind(2, conversationId);
+            if (!query.moveToNext())
+                return null;
+            sortTime = query.getLong(0);
+            id = query.getLong(1);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Experienced an issue with the SQL Query.  " +
+                    "Clear your DB file if this continues", e);
+            return null;
+        } finally {
+            if (query != null)
+                query.close();
+        }
+
+        final HistoryPage older = selectHistory(db, conversationId, true,
+                sortTime, id, true, limit / 2);
+        // ids are integral, so following (sortTime, id - 1) includes the
+        // message itself
+        final HistoryPage newer = selectHistory(db, conversationId, true,
+                sortTime, id - 1, false, limit - limit / 2);
+        final List<ChatLine> lines = new ArrayList<>(older.lines.size()
+                + newer.lines.size());
+        lines.addAll(older.lines);
+        lines.addAll(newer.lines);
+        return new HistoryPage(lines, older.hasMore, newer.hasNewer,
+                older.sortTime, older.id,
+                newer.newestSortTime, newer.newestId);
+    }
+
+    /**
+     * Selects the lines of a conversation preceding or following a position
+     * in its history.
+     * @param bounded <code>false</code> to select from the newest line
+     * @param sortTime the sort time of the position
+     * @param id the id of the position
+     * @param older <code>true</code> to select the lines preceding the
+     *              position, <code>false</code> for those following it
+     * @param limit the maximum number of lines, or -1 for all
+     * @return the page of the lines nearest the position, oldest first
+     */
+    private static HistoryPage selectHistory(DatabaseIface db,
+            String conversationId, boolean bounded, long sortTime, long id,
+            boolean older, int limit) {
+        final String cmp = older ? " < " : " > ";
+        final String dir = older ? " DESC" : " ASC";
+
+        final List<ChatLine> lines = new ArrayList<>();
+        // positions of the nearest and the furthest lines selected
+        long nearSortTime = sortTime;
+        long nearId = id;
+        long farSortTime = sortTime;
+        long farId = id;
+        boolean more = false;
+        QueryIface query = null;
+        try {
+            query = db.compileQuery("SELECT " + CHAT_LINE_COLS
+                    + " FROM " + TABLE_CHAT
+                    + " WHERE " + CONVO_ID_COL_NAME + " = ?"
+                    + (bounded ? " AND (" + SORT_TIME_COL_NAME + cmp
+                            + "? OR (" + SORT_TIME_COL_NAME + " = ? AND "
+                            + ID_COL_NAME + cmp + "?))" : "")
+                    + " ORDER BY " + SORT_TIME_COL_NAME + dir + ", "
+                    + ID_COL_NAME + dir + " LIMIT ?");
+            int idx = 1;
+            query.bind(idx++, conversationId);
+            if (bounded) {
+                query.bind(idx++, sortTime);
+                query.bind(idx++, sortTime);
+                query.bind(idx++, id);
+            }
+            // fetch one extra line to determine if there are more pages
+            query.bind(idx, (limit > 0) ? limit + 1 : -1);
+            while (query.moveToNext()) {
+                if (limit > 0 && lines.size() == limit) {
+                    more = true;
+                    break;
+                }
+                lines.add(cursorToChatLine(query));
+                farId = query.getLong(0);
+                farSortTime = query.getLong(13);
+                if (lines.size() == 1) {
+                    nearId = farId;
+                    nearSortTime = farSortTime;
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Experienced an issue with the SQL Query.  " +
+                    "Clear your DB file if this continues", e);
+        } finally {
+            if (query != null)
+                query.close();
+        }
+        if (older) {
+            Collections.reverse(lines);
+            return new HistoryPage(lines, more, bounded, farSortTime, farId,
+                    nearSortTime, nearId);
+        } else {
+            return new HistoryPage(lines, true, more, nearSortTime, nearId,
+                    farSortTime, farId);
+        }
+    }
+
+    /**
+     * Returns a page of the conversations that have history, most recently
+     * active first. The order of the conversations is captured when the
+     * first page is requested and later pages follow that order, so a
+     * conversation that becomes active meanwhile is neither skipped nor
+     * repeated. Such conversations are reported through
+     * {@link ChatDatabaseListener#onConversationChanged(String, Bundle)}.
+     * @param previous the page most recently returned, or <code>null</code>
+     *                 to obtain the most recently active conversations
+     * @param limit the maximum number of conversations in the page, or -1
+     *              for all remaining conversations
+     * @return the most recent line of each conversation in the page
+     */
+    public ConversationPage getConversationPage(
+            final ConversationPage previous, int limit) {
+        return getConversationPage(chatDb, previous, limit);
+    }
+
+    static ConversationPage getConversationPage(DatabaseIface db,
+            ConversationPage previous, int limit) {
+        if (previous != null && !previous.hasMore)
+            return new ConversationPage(Collections.<ChatLine> emptyList(),
+                    false, previous.conversationIds, previous.next);
+
+        final List<ChatLine> lines = new ArrayList<>();
+        List<String> ids = (previous != null) ? previous.conversationIds
+                : Collections.<String> emptyList();
+        int next = (previous != null) ? previous.next : 0;
+        QueryIface conversations = null;
+        QueryIface latest = null;
+        try {
+            if (previous == null) {
+                // the conversations are grouped from the conversation/sort
+                // time index without reading any lines
+                conversations = db.compileQuery("SELECT "
+                        + CONVO_ID_COL_NAME + ", MAX(" + SORT_TIME_COL_NAME
+                        + ") AS lastTime FROM " + TABLE_CHAT
+                        + " WHERE " + CONVO_ID_COL_NAME + " IS NOT NULL"
+                        + " GROUP BY " + CONVO_ID_COL_NAME
+                        + " ORDER BY lastTime DESC, " + CONVO_ID_COL_NAME
+                        + " ASC");
+                ids = new ArrayList<>();
+                while (conversations.moveToNext())
+                    ids.add(conversations.getString(0));
+                ids = Collections.unmodifiableList(ids);
+            }
+
+            latest = db.compileQuery("SELECT " + CHAT_LINE_COLS
+                    + " FROM " + TABLE_CHAT
+                    + " WHERE " + CONVO_ID_COL_NAME + " = ?"
+                    + " ORDER BY " + SORT_TIME_COL_NAME + " DESC, "
+                    + ID_COL_NAME + " DESC LIMIT 1");
+            final int end = (limit > 0) ? Math.min(next + limit, ids.size())
+                    : ids.size();
+            for (; next < end; next++) {
+                latest.reset();
+                latest.clearBindings();
+                latest.bind(1, ids.get(next));
+                // the conversation may have been deleted since
+                if (latest.moveToNext())
+                    lines.add(cursorToChatLine(latest));
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Experienced an issue with the SQL Query.  " +
+                    "Clear your DB file if this continues", e);
+        } finally {
+            if (conversations != null)
+                conversations.close();
+            if (latest != null)
+                latest.close();
+        }
+        return new ConversationPage(lines, next < ids.size(), ids, next);
+    }
+
+    /**
+     * Searches the most recent line of each conversation for text. The
+     * search is narrowed in the database, so it does not require the
+     * conversations to have been paged in.
+     * @param text the text to search for
+     * @return the most recent line of each conversation whose message or
+     *         raw event contains the text, ignoring ASCII case, most
+     *         recently active first
+     */
+    public List<ChatLine> searchConversations(final String text) {
+        return searchConversations(chatDb, text);
+    }
+
+    static List<ChatLine> searchConversations(DatabaseIface db,
+            String text) {
+        final String pattern = "%" + text.replace("\\", "\\\\")
+                .replace("%", "\\%").replace("_", "\\_") + "%";
+
+        final List<ChatLine> lines = new ArrayList<>();
+        QueryIface query = null;
+        try {
+            query = db.compileQuery("SELECT " + CHAT_LINE_COLS
+                    + " FROM " + TABLE_CHAT
+                    + " WHERE " + ID_COL_NAME + " IN (SELECT (SELECT "
+                    + ID_COL_NAME + " FROM " + TABLE_CHAT + " AS latest"
+                    + " WHERE latest." + CONVO_ID_COL_NAME + " = c."
+                    + CONVO_ID_COL_NAME + " ORDER BY latest."
+                    + SORT_TIME_COL_NAME + " DESC, latest." + ID_COL_NAME
+                    + " DESC LIMIT 1) FROM (SELECT DISTINCT "
+                    + CONVO_ID_COL_NAME + " FROM " + TABLE_CHAT
+                    + " WHERE " + CONVO_ID_COL_NAME + " IS NOT NULL) AS c)"
+                    + " AND (" + MESSAGE_COL_NAME + " LIKE ? ESCAPE '\\'"
+                    + " OR " + RAW_COT_EVENT + " LIKE ? ESCAPE '\\')"
+                    + " ORDER BY " + SORT_TIME_COL_NAME + " DESC, "
+                    + ID_COL_NAME + " DESC");
+            query.bind(1, pattern);
+            query.bind(2, pattern);
+            while (query.moveToNext())
+                lines.add(cursorToChatLine(query));
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Experienced an issue with the SQL Query.  " +
+                    "Clear your DB file if this continues", e);
+        } finally {
+            if (query != null)
+                query.close();
+        }
+        return lines;
+    }
+
     /**
      * Returns a list of the persisted conversation identifiers.
      * @return the conversation identifiers for the system that have been persisted.
@@ -1211,6 +1611,61 @@ public class ChatDatabase {
         }
     }
 
+    /**
+     * A page of the history of a conversation.
+     * @see #getHistoryPage(String, HistoryPage, int)
+     * @see #getHistoryPageAround(String, String, int)
+     */
+    public static final class HistoryPage {
+        /** the lines in the page, oldest first */
+        public final List<ChatLine> lines;
+        /** <code>true</code> if older lines precede this page */
+        public final boolean hasMore;
+        /** <code>true</code> if newer lines follow this page */
+        public final boolean hasNewer;
+
+        // positions of the oldest and the newest lines in the page
+        final long sortTime;
+        final long id;
+        final long newestSortTime;
+        final long newestId;
+
+        HistoryPage(List<ChatLine> lines, boolean hasMore, boolean hasNewer,
+                long sortTime, long id, long newestSortTime, long newestId) {
+            this.lines = lines;
+            this.hasMore = hasMore;
+            this.hasNewer = hasNewer;
+            this.sortTime = sortTime;
+            this.id = id;
+            this.newestSortTime = newestSortTime;
+            this.newestId = newestId;
+        }
+    }
+
+    /**
+     * A page of the conversations that have history.
+     * @see #getConversationPage(ConversationPage, int)
+     */
+    public static final class ConversationPage {
+        /** the most recent line of each conversation, most recent first */
+        public final List<ChatLine> lines;
+        /** <code>true</code> if less recently active conversations follow */
+        public final boolean hasMore;
+
+        // the order of the conversations when the first page was requested
+        // and the index of the first conversation of the next page
+        final List<String> conversationIds;
+        final int next;
+
+        ConversationPage(List<ChatLine> lines, boolean hasMore,
+                List<String> conversationIds, int next) {
+            this.lines = lines;
+            this.hasMore = hasMore;
+            this.conversationIds = conversationIds;
+            this.next = next;
+        }
+    }
+
     /**
      * Registers a chat database change listener.
      * @param listener listener for the chat database changes
@@ -108,35 +108,48 @@ public class ChatLine {
         ret.timeReceived = getTime(chatBundle, "receiveTime");
         ret.timeSent = getTime(chatBundle, "sentTime");
         ret.timeRead = getTime(chatBundle, "readTime");
-        if (ret.timeSent == null && ret.timeReceived == null) //just in case
-            ret.timeReceived = new CoordinatedTime().getMilliseconds(); //set it to now just to be on the safe side.
         ret.senderUid = chatBundle.getString("senderUid");
         ret.senderName = chatBundle.getString("senderCallsign");
         ret.message = chatBundle.getString("message");
         ret.messageId = chatBundle.getString("messageId");
         ret.destinations = getDestinations(chatBundle);
-        ret.status = getMessageStatus(chatBundle);
-        ret.cotEvent = getCotEvent(chatBundle);
+        ret.status = getMessageStatus(chatBundle.getString("status"));
         ret.read = chatBundle.getBoolean("read", false);
+        ret.resolve(chatBundle.getString("rawCotEvent"));
+        return ret;
+    }
 
-        if (ret.cotEvent != null) {
-            CotDetail detail = ret.cotEvent.getDetail();
+    /**
+     * Completes a line whose fields have been populated, either from a chat
+     * bundle or directly from a chat database row, deriving the values that
+     * depend on the other fields.
+     * @param rawCotEvent the raw CoT event the line was received in, may be
+     *                    <code>null</code>
+     */
+    void resolve(String rawCotEvent) {
+        if (timeSent == null && timeReceived == null) //just in case
+            timeReceived = new CoordinatedTime().getMilliseconds(); //set it to now just to be on the safe side.
+        cotEvent = rawCotEvent != null ? CotEvent.parse(rawCotEvent)
+                : null;
+
+        if (cotEvent != null) {
+            CotDetail detail = cotEvent.getDetail();
             for (GeoChatService.GeoChatDetailHandler gcdh : GeoChatService
                     .getInstance().getGeoChatDetailHandlers()) {
                 CotDetail child = detail.getFirstChildByName(0,
                         gcdh.getDetailName());
                 if (child != null)
-                    gcdh.toChatBundle(ret.extras, ret.cotEvent, child);
+                    gcdh.toChatBundle(extras, cotEvent, child);
             }
         }
 
         // crazy eights of what this chat is named before the first message comes in
         // never a problem before we looked at historic chats.
-        if (ret.cotEvent != null) {
-            CotDetail detail = ret.cotEvent.getDetail();
+        if (cotEvent != null) {
+            CotDetail detail = cotEvent.getDetail();
             CotDetail chatdetail = detail.getChild("__chat");
             if (chatdetail != null) {
-                ret.chatGrpName = chatdetail.getAttribute("chatroom");
+                chatGrpName = chatdetail.getAttribute("chatroom");
                 CotDetail chtgrpdetail = chatdetail.getChild("chatgrp");
                 if (chtgrpdetail != null) {
                     String uid0 = chtgrpdetail.getAttribute("uid0");
@@ -145,29 +158,27 @@ public class ChatLine {
                     String id = chtgrpdetail.getAttribute("id");
 
                     if (self.equals(uid0))
-                        ret.chatGrpName = chatdetail.getAttribute("chatroom");
+                        chatGrpName = chatdetail.getAttribute("chatroom");
                     else if (self.equals(uid1)) {
                         if (id.equals(uid0))
-                            ret.chatGrpName = chatdetail
+                            chatGrpName = chatdetail
                                     .getAttribute("chatroom");
                         else if (id.equals(uid1))
-                            ret.chatGrpName = chatdetail
+                            chatGrpName = chatdetail
                                     .getAttribute("senderCallsign");
                         else
-                            ret.chatGrpName = chatdetail
+                            chatGrpName = chatdetail
                                     .getAttribute("chatroom");
                     } else {
-                        ret.chatGrpName = chatdetail.getAttribute("chatroom");
+                        chatGrpName = chatdetail.getAttribute("chatroom");
                     }
                 }
             }
         } else {
-            ret.chatGrpName = ret.conversationName;
+            chatGrpName = conversationName;
         }
-        if (FileSystemUtils.isEmpty(ret.chatGrpName))
-            ret.chatGrpName = "<unknown>";
-
-        return ret;
+        if (FileSystemUtils.isEmpty(chatGrpName))
+            chatGrpName = "<unknown>";
     }
 
     static List<ChatLink> parseChatLinks(List<String> chatlinks) {
@@ -187,8 +198,7 @@ public class ChatLine {
         return retval;
     }
 
-    private static Status getMessageStatus(Bundle bundle) {
-        String status = bundle.getString("status");
+    static Status getMessageStatus(String status) {
         if (FileSystemUtils.isEmpty(status))
             return Status.NONE;
         try {
@@ -215,13 +225,6 @@ public class ChatLine {
         }
     }
 
-    private static CotEvent getCotEvent(final Bundle chatBundle) {
-        String rawCotEvent = chatBundle.getString("rawCotEvent");
-        if (rawCotEvent == null)
-            return null;
-        return CotEvent.parse(rawCotEvent);
-    }
-
     /**
      * @return Bundle with the following properties: conversationId -> String (reference this ID to
      *         send messages back to sender/grp) conversationName -> String (display name for
@@ -43,9 +43,8 @@ import com.atakmap.coremap.maps.time.CoordinatedTime;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -62,6 +61,12 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
     public static final String PLUGIN_SEND_MESSAGE_EXTRA = "MESSAGE";
     private static final String OPEN_GEOCHAT = "com.atakmap.android.OPEN_GEOCHAT";
 
+    /** number of history lines loaded at a time when scrolling back */
+    private static final int HISTORY_PAGE_SIZE = 100;
+
+    private static final ChatDatabase.HistoryPage EMPTY_HISTORY = new ChatDatabase.HistoryPage(
+            Collections.<ChatLine> emptyList(), false, false, 0L, 0L, 0L, 0L);
+
     private static Map<String, ConversationFragment> fragmentMap;
     private static AtakPreferences chatPrefs;
     private MapView _mapView;
@@ -693,8 +698,24 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
                     .setHistoryBehavior(
                             new ConversationFragment.HistoryBehavior() {
                                 @Override
-                                public List<ChatLine> onHistoryRequest() {
-                                    return getHistory(conversationId);
+                                public ChatDatabase.HistoryPage onHistoryRequest(
+                                        ChatDatabase.HistoryPage previous) {
+                                    return getHistory(conversationId,
+                                            previous);
+                                }
+
+                                @Override
+                                public ChatDatabase.HistoryPage onNewerHistoryRequest(
+                                        ChatDatabase.HistoryPage previous) {
+                                    return getNewerHistory(conversationId,
+                                            previous);
+                                }
+
+                                @Override
+                                public ChatDatabase.HistoryPage onHistoryAroundRequest(
+                                        String messageId) {
+                                    return getHistoryAround(conversationId,
+                                            messageId);
                                 }
                             });
 
@@ -887,33 +908,69 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
         sendMessage(msg, null);
     }
 
-    private List<ChatLine> getHistory(String conversationId) {
-        List<ChatLine> ret = new LinkedList<>();
+    /**
+     * Returns the page of history preceding <code>previous</code>, or the
+     * most recent page if <code>previous</code> is <code>null</code>.
+     */
+    private ChatDatabase.HistoryPage getHistory(String conversationId,
+            ChatDatabase.HistoryPage previous) {
+        ChatDatabase.HistoryPage ret = EMPTY_HISTORY;
         // Add chat history...
         if (chatService != null) {
-            List<Bundle> history;
             try {
-                history = chatService.getHistory(conversationId);
-                if (history != null) {
-                    Iterator<Bundle> it = history.iterator();
-                    while (it.hasNext()) {
-                        Bundle msgBundle = it.next();
-                        if (msgBundle != null) {
-                            ChatLine chatLine = ChatLine.fromBundle(msgBundle);
-                            // Mark all history as READ, but the last element
-                            // was potentially just added.
-                            if (it.hasNext()) {
-                                chatLine.read = true;
-                            }
-                            ret.add(chatLine);
-                        } else {
-                            Log.w(TAG, "Got a null msg Bundle from history "
-                                    + history);
-                        }
-                    }
-                } else {
-                    Log.w(TAG, "Received NULL history list for convo ID: "
-                            + conversationId);
+                ret = chatService.getHistoryPage(conversationId, previous,
+                        HISTORY_PAGE_SIZE);
+                // Mark all history as READ, but the last element of the
+                // most recent page was potentially just added.
+                final int n = ret.lines.size() - (previous == null ? 1 : 0);
+                for (int i = 0; i < n; i++)
+                    ret.lines.get(i).read = true;
+            } catch (Exception e) {
+                Log.w(TAG, "Error looking-up chat history for "
+                        + conversationId, e);
+            }
+        } else {
+            Log.w(TAG, "Could not fetch history because chat service was NULL");
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the page of history following <code>previous</code>
+     */
+    private ChatDatabase.HistoryPage getNewerHistory(String conversationId,
+            ChatDatabase.HistoryPage previous) {
+        ChatDatabase.HistoryPage ret = EMPTY_HISTORY;
+        if (chatService != null) {
+            try {
+                ret = chatService.getNewerHistoryPage(conversationId,
+                        previous, HISTORY_PAGE_SIZE);
+                for (ChatLine line : ret.lines)
+                    line.read = true;
+            } catch (Exception e) {
+                Log.w(TAG, "Error looking-up chat history for "
+                        + conversationId, e);
+            }
+        } else {
+            Log.w(TAG, "Could not fetch history because chat service was NULL");
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the page of history surrounding a message, or
+     * <code>null</code> if the message is not in the history.
+     */
+    private ChatDatabase.HistoryPage getHistoryAround(String conversationId,
+            String messageId) {
+        ChatDatabase.HistoryPage ret = null;
+        if (chatService != null) {
+            try {
+                ret = chatService.getHistoryPageAround(conversationId,
+                        messageId, HISTORY_PAGE_SIZE);
+                if (ret != null) {
+                    for (ChatLine line : ret.lines)
+                        line.read = true;
                 }
             } catch (Exception e) {
                 Log.w(TAG, "Error looking-up chat history for "
@@ -1493,7 +1550,7 @@ public class ChatManagerMapComponent extends AbstractMapComponent implements
 
         private void update() {
             //Clear all unread message counts
-            List<Contact> all = Contacts.getInstance().getAllContacts();
+            List<Contact> all = Contacts.getInstance().getContactsSnapshot();
             for (Contact c : all)
                 c.setUnreadCount(0);
             Contacts.getInstance().updateTotalUnreadCount();
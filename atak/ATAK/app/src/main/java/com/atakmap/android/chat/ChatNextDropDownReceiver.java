@@ -13,6 +13,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import android.widget.Filter;
@@ -46,7 +47,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 class ChatNextDropDownReceiver extends DropDownReceiver implements
         OnStateListener, ChatDatabase.ChatDatabaseListener {
@@ -57,6 +60,9 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
 
     private static final int MINUTES_IN_A_DAY = 1440;
 
+    /** number of conversations loaded at a time as the list is scrolled */
+    private static final int CONVERSATION_PAGE_SIZE = 50;
+
     private final View view;
     private final ImageButton searchButton;
     private final EditText searchLine;
@@ -67,13 +73,21 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
 
     private final ArrayList<Conversation> conversations = new ArrayList<>();
 
+    // the last page of conversations loaded, only accessed on the UI thread
+    private ChatDatabase.ConversationPage conversationPage;
+    private boolean conversationsRequested;
+
     static class Conversation {
         String chatid;
         long time;
         ChatLine chat;
 
         public Conversation(String id, Bundle bundle) {
-            chat = ChatLine.fromBundle(bundle);
+            this(id, ChatLine.fromBundle(bundle));
+        }
+
+        Conversation(String id, ChatLine chat) {
+            this.chat = chat;
             chatid = id;
             time = max(chat);
         }
@@ -139,8 +153,40 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
         });
 
         cla = new ConversationListAdapter(mapView, mapView.getContext(),
-                conversations);
+                chatDb, conversations);
         listview.setAdapter(cla);
+        listview.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view,
+                    int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem,
+                    int visibleItemCount, int totalItemCount) {
+                // the end of the list is visible, load the next page. Not
+                // while searching, a search covers every conversation.
+                if (totalItemCount > 0 && conversationPage != null
+                        && conversationPage.hasMore && !conversationsRequested
+                        && searchLine.getText().length() == 0
+                        && firstVisibleItem
+                                + visibleItemCount >= totalItemCount) {
+                    conversationsRequested = true;
+                    getMapView().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            conversationsRequested = false;
+                            if (!loadConversations())
+                                return;
+                            if (searchLine.getVisibility() == View.VISIBLE)
+                                cla.getFilter().filter(searchLine.getText());
+                            else
+                                cla.getFilter().filter("");
+                        }
+                    });
+                }
+            }
+        });
 
         chatDb.registerChatDatabaseListener(this);
 
@@ -161,19 +207,9 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
         if (action == null)
             return;
 
-        final List<String> ids = chatDb.getAvailableConversations();
-
         conversations.clear();
-
-        for (String id : ids) {
-            List<Bundle> lastChat = chatDb.getHistory(id, 1, false);
-            if (lastChat.isEmpty())
-                continue;
-            Conversation conversation = new Conversation(id, lastChat.get(0));
-            conversations.add(conversation);
-        }
-
-        Collections.sort(conversations, TIME_COMPARATOR);
+        conversationPage = null;
+        loadConversations();
         cla.getFilter().filter("");
 
         if (action.equals(SHOW)) {
@@ -183,6 +219,31 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
         }
     }
 
+    /**
+     * Loads the next page of conversations, less recently active than those
+     * already loaded.
+     * @return <code>true</code> if a page was loaded
+     */
+    private boolean loadConversations() {
+        if (conversationPage != null && !conversationPage.hasMore)
+            return false;
+        conversationPage = chatDb.getConversationPage(conversationPage,
+                CONVERSATION_PAGE_SIZE);
+
+        // conversations that became active since the first page was loaded
+        // have already been added via `onConversationChanged`
+        final Set<String> loaded = new HashSet<>();
+        for (Conversation c : conversations)
+            loaded.add(c.chatid);
+        for (ChatLine line : conversationPage.lines) {
+            if (loaded.add(line.conversationId))
+                conversations.add(new Conversation(line.conversationId,
+                        line));
+        }
+        Collections.sort(conversations, TIME_COMPARATOR);
+        return true;
+    }
+
     @Override
     public void onDropDownSelectionRemoved() {
     }
@@ -219,6 +280,7 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
             @Override
             public void run() {
                 conversations.clear();
+                conversationPage = null;
                 cla.notifyDataSetChanged();
             }
         });
@@ -259,15 +321,17 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
     static class ConversationListAdapter extends ArrayAdapter<Conversation>
             implements Filterable {
         private final MapView mapView;
+        private final ChatDatabase chatDb;
 
         private final List<Conversation> mOriginalValues;
         private final List<Conversation> mObjects;
         private Filter mFilter;
 
         public ConversationListAdapter(MapView mapView, Context context,
-                ArrayList<Conversation> conversations) {
+                ChatDatabase chatDb, ArrayList<Conversation> conversations) {
             super(context, 0);
             this.mapView = mapView;
+            this.chatDb = chatDb;
             mOriginalValues = conversations;
             mObjects = new ArrayList<>(conversations);
         }
@@ -355,21 +419,29 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
                     results.values = list;
                     results.count = list.size();
                 } else {
+                    final String lcConstraint = constraint.toString()
+                            .toLowerCase(LocaleUtil.getCurrent());
                     ArrayList<Conversation> newValues = new ArrayList<>();
+                    final Set<String> searched = new HashSet<>();
                     for (int i = 0; i < mOriginalValues.size(); i++) {
                         Conversation item = mOriginalValues.get(i);
-                        final String lcConstraint = ((String) constraint)
-                                .toLowerCase(LocaleUtil.getCurrent());
-                        final String lcChatGrp = item.chat.chatGrpName
-                                .toLowerCase(LocaleUtil.getCurrent());
-                        final String lcMessage = item.chat.message
-                                .toLowerCase(LocaleUtil.getCurrent());
-
-                        if (lcMessage.contains(lcConstraint)
-                                || lcChatGrp.contains(lcConstraint)) {
+                        searched.add(item.chatid);
+                        if (matches(item.chat, lcConstraint))
                             newValues.add(item);
-                        }
                     }
+
+                    // conversations that have not been paged in yet are
+                    // searched in the database. Filtering is performed off
+                    // the UI thread.
+                    for (ChatLine line : chatDb.searchConversations(
+                            constraint.toString())) {
+                        if (searched.add(line.conversationId)
+                                && matches(line, lcConstraint))
+                            newValues.add(new Conversation(
+                                    line.conversationId, line));
+                    }
+                    Collections.sort(newValues, TIME_COMPARATOR);
+
                     results.values = newValues;
                     results.count = newValues.size();
                 }
@@ -377,6 +449,15 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
                 return results;
             }
 
+            private boolean matches(ChatLine chat, String lcConstraint) {
+                final String lcChatGrp = chat.chatGrpName
+                        .toLowerCase(LocaleUtil.getCurrent());
+                final String lcMessage = chat.message
+                        .toLowerCase(LocaleUtil.getCurrent());
+                return lcMessage.contains(lcConstraint)
+                        || lcChatGrp.contains(lcConstraint);
+            }
+
             @SuppressWarnings("unchecked")
             @Override
             protected void publishResults(CharSequence constraint,
@@ -395,7 +476,7 @@ class ChatNextDropDownReceiver extends DropDownReceiver implements
         ImageView icon;
     }
 
-    private final Comparator<Conversation> TIME_COMPARATOR = new Comparator<Conversation>() {
+    private static final Comparator<Conversation> TIME_COMPARATOR = new Comparator<Conversation>() {
         @Override
         public int compare(Conversation o1, Conversation o2) {
             return Long.compare(o2.time, o1.time);
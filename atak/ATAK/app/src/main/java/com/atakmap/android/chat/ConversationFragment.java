@@ -16,6 +16,7 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.View.OnLongClickListener;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
@@ -143,6 +144,14 @@ public class ConversationFragment extends Fragment implements
 
     private String pendingScrollTo = null;
 
+    // history paging state, only accessed on the UI thread. The oldest and
+    // the newest pages displayed, which differ once older pages are loaded
+    // or a message is scrolled to.
+    private ChatDatabase.HistoryPage _oldestPage = null;
+    private ChatDatabase.HistoryPage _newestPage = null;
+    private boolean _olderHistoryRequested = false;
+    private boolean _newerHistoryRequested = false;
+
     public ConversationFragment() {
         modes = initButtons();
     }
@@ -192,7 +201,8 @@ public class ConversationFragment extends Fragment implements
         @Override
         public void onReceive(Context context, Intent intent) {
             if (intent != null) {
-                for (Contact c : Contacts.getInstance().getAllContacts()) {
+                for (Contact c : Contacts.getInstance()
+                        .getContactsSnapshot()) {
                     if (c instanceof IndividualContact
                             && c.getName().equals(title))
                         c.setUnreadCount(_mChatLineAdapter.getUnreadCount());
@@ -209,18 +219,67 @@ public class ConversationFragment extends Fragment implements
             mapView.postDelayed(new Runnable() {
                 @Override
                 public void run() {
-                    for (int i = 0; i < _mChatLineAdapter.getCount(); ++i) {
-                        ChatLine line = (ChatLine) _mChatLineAdapter.getItem(i);
-                        if (line.messageId.equals(messageId)) {
-                            lineList.setSelection(i);
-                            break;
-                        }
-                    }
+                    if (!selectMessage(messageId))
+                        loadHistoryAround(messageId);
                 }
             }, 30);
         }
     }
 
+    /**
+     * Selects a message if it is displayed.
+     * @return <code>true</code> if the message was selected
+     */
+    private boolean selectMessage(String messageId) {
+        if (lineList == null)
+            return false;
+        for (int i = 0; i < _mChatLineAdapter.getCount(); ++i) {
+            ChatLine line = (ChatLine) _mChatLineAdapter.getItem(i);
+            if (messageId.equals(line.messageId)) {
+                lineList.setSelection(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the displayed history with the page surrounding a message
+     * that has not been loaded yet, and selects the message. The page is
+     * looked up in the background; nothing changes if the message is not
+     * in the history.
+     */
+    private void loadHistoryAround(final String messageId) {
+        final HistoryBehavior behavior = onHistoryRequest;
+        if (behavior == null)
+            return;
+        Thread t = new Thread(TAG + "-ScrollTo") {
+            @Override
+            public void run() {
+                final ChatDatabase.HistoryPage page = behavior
+                        .onHistoryAroundRequest(messageId);
+                if (page == null) {
+                    Log.d(TAG, "message not in history: " + messageId);
+                    return;
+                }
+                getMapView().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the message may have been paged in meanwhile
+                        if (lineList == null || selectMessage(messageId))
+                            return;
+                        getLineAdapter().clearChat();
+                        _oldestPage = _newestPage = page;
+                        lineList.setTranscriptMode(getTranscriptMode());
+                        addHistory(page.lines);
+                        selectMessage(messageId);
+                    }
+                });
+            }
+        };
+        t.start();
+    }
+
     public boolean addOrAckChatLine(ChatLine toAddOrAck) {
         if (!acksAvailable)
             toAddOrAck.acked = true;
@@ -240,13 +299,83 @@ public class ConversationFragment extends Fragment implements
 
     public void populateHistory() {
         if (onHistoryRequest != null) {
-            List<ChatLine> history = onHistoryRequest.onHistoryRequest();
-            for (ChatLine line : history) {
-                line.read = true;
-                line.acked = false;
-                getLineAdapter().addChatLine(line);
-            }
+            _oldestPage = _newestPage = onHistoryRequest
+                    .onHistoryRequest(null);
+            if (lineList != null)
+                lineList.setTranscriptMode(getTranscriptMode());
+            addHistory(_oldestPage.lines);
+        }
+    }
+
+    /**
+     * Adds the page of history preceding the oldest line displayed.
+     * @return the number of lines added
+     */
+    private int populateOlderHistory() {
+        if (onHistoryRequest == null || _oldestPage == null
+                || !_oldestPage.hasMore)
+            return 0;
+        _oldestPage = onHistoryRequest.onHistoryRequest(_oldestPage);
+        addHistory(_oldestPage.lines);
+        return _oldestPage.lines.size();
+    }
+
+    /**
+     * Adds the page of history following the newest line displayed, once
+     * a message has been scrolled to.
+     */
+    private void loadNewerHistory() {
+        _newerHistoryRequested = false;
+        if (onHistoryRequest == null || _newestPage == null
+                || !_newestPage.hasNewer || lineList == null)
+            return;
+        _newestPage = onHistoryRequest.onNewerHistoryRequest(_newestPage);
+        addHistory(_newestPage.lines);
+        lineList.setTranscriptMode(getTranscriptMode());
+    }
+
+    /**
+     * New lines are scrolled to unless the newest history has not been
+     * loaded yet, in which case they would not follow the displayed lines.
+     */
+    private int getTranscriptMode() {
+        return (_newestPage != null && _newestPage.hasNewer)
+                ? ListView.TRANSCRIPT_MODE_DISABLED
+                : ListView.TRANSCRIPT_MODE_ALWAYS_SCROLL;
+    }
+
+    private void addHistory(List<ChatLine> history) {
+        for (ChatLine line : history) {
+            line.read = true;
+            line.acked = false;
         }
+        getLineAdapter().addChatLines(history);
+    }
+
+    /**
+     * Adds the page of history preceding the oldest line displayed while
+     * keeping the currently displayed lines in place.
+     */
+    private void loadOlderHistory() {
+        _olderHistoryRequested = false;
+        if (lineList == null)
+            return;
+        final View top = lineList.getChildAt(0);
+        final int offset = (top != null) ? top.getTop() : 0;
+        final int first = lineList.getFirstVisiblePosition();
+        // transcript mode would otherwise jump to the newest line
+        lineList.setTranscriptMode(ListView.TRANSCRIPT_MODE_DISABLED);
+        final int added = populateOlderHistory();
+        if (added > 0)
+            lineList.setSelectionFromTop(first + added, offset);
+        // restore once the list has been laid out with the new lines
+        lineList.post(new Runnable() {
+            @Override
+            public void run() {
+                if (lineList != null)
+                    lineList.setTranscriptMode(getTranscriptMode());
+            }
+        });
     }
 
     private ChatManagerMapComponent.MessageDestination _destinations = null;
@@ -314,7 +443,29 @@ public class ConversationFragment extends Fragment implements
     }
 
     interface HistoryBehavior {
-        List<ChatLine> onHistoryRequest();
+        /**
+         * @param previous the oldest page displayed, or <code>null</code>
+         * @return the page of history preceding <code>previous</code>, or
+         *         the most recent page if <code>previous</code> is
+         *         <code>null</code>
+         */
+        ChatDatabase.HistoryPage onHistoryRequest(
+                ChatDatabase.HistoryPage previous);
+
+        /**
+         * @param previous the newest page displayed
+         * @return the page of history following <code>previous</code>
+         */
+        ChatDatabase.HistoryPage onNewerHistoryRequest(
+                ChatDatabase.HistoryPage previous);
+
+        /**
+         * Called off the UI thread.
+         * @param messageId the message identifier
+         * @return the page of history surrounding the message, or
+         *         <code>null</code> if the message is not in the history
+         */
+        ChatDatabase.HistoryPage onHistoryAroundRequest(String messageId);
     }
 
     private HistoryBehavior onHistoryRequest = null;
@@ -346,8 +497,46 @@ public class ConversationFragment extends Fragment implements
 
         lineList = rootView.findViewById(R.id.lineList);
         lineList.setAdapter(getLineAdapter());
-        lineList.setTranscriptMode(ListView.TRANSCRIPT_MODE_ALWAYS_SCROLL);
+        lineList.setTranscriptMode(getTranscriptMode());
         lineList.setStackFromBottom(true);
+        lineList.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view,
+                    int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem,
+                    int visibleItemCount, int totalItemCount) {
+                // the oldest line displayed is visible, page in older
+                // history. Deferred as the adapter may not be modified while
+                // the list is being laid out.
+                if (firstVisibleItem == 0 && totalItemCount > 0
+                        && _oldestPage != null && _oldestPage.hasMore
+                        && !_olderHistoryRequested) {
+                    _olderHistoryRequested = true;
+                    lineList.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            loadOlderHistory();
+                        }
+                    });
+                }
+                // likewise for the newest line, once a message has been
+                // scrolled to
+                if (firstVisibleItem + visibleItemCount >= totalItemCount
+                        && totalItemCount > 0 && _newestPage != null
+                        && _newestPage.hasNewer && !_newerHistoryRequested) {
+                    _newerHistoryRequested = true;
+                    lineList.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            loadNewerHistory();
+                        }
+                    });
+                }
+            }
+        });
 
         titleText = rootView
                 .findViewById(R.id.conversationTitleText);
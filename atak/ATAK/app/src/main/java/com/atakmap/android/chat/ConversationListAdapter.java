@@ -34,7 +34,9 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 class ConversationListAdapter extends BaseAdapter {
 
@@ -408,6 +410,34 @@ class ConversationListAdapter extends BaseAdapter {
         notifyDataSetChanged();
     }
 
+    /**
+     * Adds lines in bulk, e.g. a page of history, sorting and notifying
+     * once. Lines already displayed, e.g. received while the page was
+     * being loaded, are skipped.
+     * @param toAdd the lines to add
+     */
+    void addChatLines(List<ChatLine> toAdd) {
+        if (toAdd.isEmpty())
+            return;
+        final Set<String> displayed = new HashSet<>();
+        for (ChatLine line : chatLines)
+            displayed.add(line.messageId);
+        for (ChatLine line : toAdd) {
+            if (!displayed.contains(line.messageId))
+                chatLines.add(line);
+        }
+        Collections.sort(chatLines, TIME_SORT);
+
+        for (ChatLine line : toAdd) {
+            if (!line.read) {
+                notifyContactListAdapter(line.conversationId);
+                break;
+            }
+        }
+
+        notifyDataSetChanged();
+    }
+
     private void notifyContactListAdapter(String conversationId) {
         Contact contact = Contacts.getInstance().getContactByUuid(
                 conversationId);
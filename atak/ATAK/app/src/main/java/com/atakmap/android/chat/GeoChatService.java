@@ -773,8 +773,19 @@ public final class GeoChatService implements
         return bundle;
     }
 
-    List<Bundle> getHistory(String conversationName) {
-        return chatDb.getHistory(conversationName);
+    ChatDatabase.HistoryPage getHistoryPage(String conversationId,
+            ChatDatabase.HistoryPage previous, int limit) {
+        return chatDb.getHistoryPage(conversationId, previous, limit);
+    }
+
+    ChatDatabase.HistoryPage getNewerHistoryPage(String conversationId,
+            ChatDatabase.HistoryPage previous, int limit) {
+        return chatDb.getNewerHistoryPage(conversationId, previous, limit);
+    }
+
+    ChatDatabase.HistoryPage getHistoryPageAround(String conversationId,
+            String messageId, int limit) {
+        return chatDb.getHistoryPageAround(conversationId, messageId, limit);
     }
 
     List<String> getPersistedConversationIds() {
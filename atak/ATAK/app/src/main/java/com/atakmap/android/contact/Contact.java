@@ -14,6 +14,7 @@ import com.atakmap.android.maps.MapView;
 import com.atakmap.android.maps.Marker;
 import com.atakmap.android.maps.PointMapItem;
 import com.atakmap.android.util.ATAKUtilities;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.locale.LocaleUtil;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 
@@ -120,7 +121,10 @@ public abstract class Contact extends AbstractHierarchyListItem2
      * @param uid New UID
      */
     protected void setUid(final String uid) {
+        final String oldUid = contactUUID;
         contactUUID = uid;
+        if (!FileSystemUtils.isEquals(oldUid, uid))
+            Contacts.getInstance().uidChanged(oldUid);
         dispatchChangeEvent();
     }
 
@@ -136,6 +140,8 @@ public abstract class Contact extends AbstractHierarchyListItem2
     public void dispatchChangeEvent() {
         if (bDispatch)
             Contacts.getInstance().dispatchContactChangedEvent(getUID());
+        else
+            Contacts.getInstance().refreshIndex(getUID());
     }
 
     public void setUpdateStatus(UpdateStatus status) {
@@ -0,0 +1,188 @@
+
+package com.atakmap.android.contact;
+
+import android.os.Bundle;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary indices over the contact store, keyed on callsign, team, role and
+ * connector type.
+ *
+ * Each index maps a key to the UIDs of the contacts currently filed under it.
+ * Updates are serialized on the index; lookups read the concurrent maps
+ * without locking and may briefly return stale candidates, so callers must
+ * resolve each UID against the store and verify the contact still matches.
+ */
+final class ContactIndex {
+
+    private final Map<String, Set<String>> callsigns;
+    private final Map<String, Set<String>> teams;
+    private final Map<String, Set<String>> roles;
+    private final Map<String, Set<String>> connectors;
+
+    /** keys each contact is currently filed under, guarded by this */
+    private final Map<String, Keys> indexed = new HashMap<>();
+
+    ContactIndex() {
+        callsigns = new ConcurrentHashMap<>();
+        teams = new ConcurrentHashMap<>();
+        roles = new ConcurrentHashMap<>();
+        connectors = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * File the contact under its current callsign, team, role and connector
+     * types, replacing any keys it was previously filed under
+     * @param contact the contact
+     */
+    synchronized void put(Contact contact) {
+        final String uid = contact.getUid();
+        if (uid == null)
+            return;
+        final Keys keys = new Keys(contact);
+        Keys previous = indexed.put(uid, keys);
+        if (previous == null)
+            previous = Keys.NONE;
+
+        // new keys are filed before stale keys are removed so that concurrent
+        // readers never miss a contact whose keys did not change
+        refile(callsigns, previous.callsign, keys.callsign, uid);
+        refile(teams, previous.team, keys.team, uid);
+        refile(roles, previous.role, keys.role, uid);
+        for (String type : keys.connectors) {
+            if (!previous.connectors.contains(type))
+                file(connectors, type, uid);
+        }
+        for (String type : previous.connectors) {
+            if (!keys.connectors.contains(type))
+                unfile(connectors, type, uid);
+        }
+    }
+
+    /**
+     * Remove the contact from all indices
+     * @param uid the contact UID
+     */
+    synchronized void remove(String uid) {
+        final Keys previous = indexed.remove(uid);
+        if (previous == null)
+            return;
+        unfile(callsigns, previous.callsign, uid);
+        unfile(teams, previous.team, uid);
+        unfile(roles, previous.role, uid);
+        for (String type : previous.connectors)
+            unfile(connectors, type, uid);
+    }
+
+    /**
+     * Remove all contacts from the indices
+     */
+    synchronized void clear() {
+        indexed.clear();
+        callsigns.clear();
+        teams.clear();
+        roles.clear();
+        connectors.clear();
+    }
+
+    Set<String> getByCallsign(String callsign) {
+        return get(callsigns, callsign);
+    }
+
+    Set<String> getByTeam(String team) {
+        return get(teams, team);
+    }
+
+    Set<String> getByRole(String role) {
+        return get(roles, role);
+    }
+
+    Set<String> getByConnectorType(String type) {
+        return get(connectors, type);
+    }
+
+    private static Set<String> get(Map<String, Set<String>> index,
+            String key) {
+        if (key == null)
+            return Collections.emptySet();
+        final Set<String> uids = index.get(key);
+        return (uids != null) ? Collections.unmodifiableSet(uids)
+                : Collections.<String> emptySet();
+    }
+
+    private static void refile(Map<String, Set<String>> index,
+            String previous, String key, String uid) {
+        if (FileSystemUtils.isEquals(previous, key))
+            return;
+        file(index, key, uid);
+        unfile(index, previous, uid);
+    }
+
+    private static void file(Map<String, Set<String>> index, String key,
+            String uid) {
+        if (key == null)
+            return;
+        Set<String> uids = index.get(key);
+        if (uids == null) {
+            uids = Collections
+                    .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            index.put(key, uids);
+        }
+        uids.add(uid);
+    }
+
+    private static void unfile(Map<String, Set<String>> index, String key,
+            String uid) {
+        if (key == null)
+            return;
+        final Set<String> uids = index.get(key);
+        if (uids != null && uids.remove(uid) && uids.isEmpty())
+            index.remove(key);
+    }
+
+    /**
+     * The index keys derived from a contact. Team and role default to "none",
+     * matching the legacy linear lookups.
+     */
+    private static final class Keys {
+        static final Keys NONE = new Keys();
+
+        final String callsign;
+        final String team;
+        final String role;
+        final Set<String> connectors;
+
+        private Keys() {
+            callsign = null;
+            team = null;
+            role = null;
+            connectors = Collections.emptySet();
+        }
+
+        Keys(Contact contact) {
+            final String name = contact.getName();
+            callsign = FileSystemUtils.isEmpty(name) ? null : name;
+
+            final Bundle extras = contact.getExtras();
+            team = (extras != null) ? extras.getString("team", "none") : null;
+            role = (extras != null) ? extras.getString("role", "none") : null;
+
+            if (contact instanceof IndividualContact) {
+                connectors = new HashSet<>();
+                for (Connector c : ((IndividualContact) contact)
+                        .getConnectors(false))
+                    connectors.add(c.getConnectionType());
+            } else {
+                connectors = Collections.emptySet();
+            }
+        }
+    }
+}
@@ -22,11 +22,15 @@ import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import gov.tak.api.contact.IContact;
 import gov.tak.api.contact.IContactListener;
@@ -44,6 +48,21 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
     private final IContactService contactStore;
     private final GroupContact rootGroup;
 
+    /**
+     * Secondary indices for the callsign, team, role and connector lookups.
+     * Presence updates refile a single contact; lookups never block.
+     */
+    private final ContactIndex index = new ContactIndex();
+
+    /**
+     * incremented whenever a contact is added to or removed from the store,
+     * or the store replaces the instance held for a uid
+     */
+    private final AtomicLong membershipVersion = new AtomicLong();
+
+    /** immutable list of all contacts, rebuilt lazily on membership change */
+    private volatile Snapshot snapshot;
+
     private final ConcurrentLinkedQueue<OnContactsChangedListener> contactsChangedListeners = new ConcurrentLinkedQueue<>();
 
     private static Contacts instance;
@@ -150,6 +169,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
         }
         synchronized (contactStore) {
             contactStore.addContact(contact);
+            contactsChanged(contact.getUid());
         }
         parent.addContact(contact);
     }
@@ -189,6 +209,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
     public void removeContactByUuid(final String uid) {
         synchronized (contactStore) {
             contactStore.removeContact(uid);
+            contactsChanged(uid);
         }
     }
 
@@ -229,13 +250,36 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      * @return a copy of all of the contacts
      */
     public List<Contact> getAllContacts() {
-        synchronized (contactStore) {
-            List<Contact> allContacts = new ArrayList<>();
-            for (IContact contact : contactStore.getAllContacts()) {
-                allContacts.add((Contact) contact);
+        return new ArrayList<>(getContactsSnapshot());
+    }
+
+    /**
+     * Get an immutable snapshot of all contacts. The snapshot is shared
+     * between callers until a contact is added or removed, so it is the
+     * preferred way to iterate over the contacts without copying.
+     *
+     * @return an unmodifiable list of all of the contacts
+     */
+    public List<Contact> getContactsSnapshot() {
+        Snapshot s = snapshot;
+        final long version = membershipVersion.get();
+        if (s != null && s.version == version)
+            return s.contacts;
+
+        // the version is read before the store so a snapshot built while the
+        // membership changes is stale on arrival and rebuilt by the next call
+        final List<Contact> contacts = new ArrayList<>();
+        final Map<String, Contact> byUid = new HashMap<>();
+        for (IContact contact : contactStore.getAllContacts()) {
+            if (contact instanceof Contact) {
+                contacts.add((Contact) contact);
+                byUid.put(contact.getUid(), (Contact) contact);
             }
-            return allContacts;
         }
+        s = new Snapshot(version, Collections.unmodifiableList(contacts),
+                byUid);
+        snapshot = s;
+        return s.contacts;
     }
 
     /**
@@ -248,18 +292,15 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
 
     private List<String> getAllContactsOfClass(Class<?> classType) {
         List<String> uuidsToReturn = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact c : contactStore.getAllContacts()) {
-                Contact contact = (Contact) c;
-                UpdateStatus status = contact.getUpdateStatus();
-                if (classType.isInstance(contact) && status != null
-                        && !status.equals(UpdateStatus.NA)
-                        && !contact.getExtras().getBoolean("fakeGroup")) {
-                    uuidsToReturn.add(contact.getUID());
-                }
+        for (Contact contact : getContactsSnapshot()) {
+            UpdateStatus status = contact.getUpdateStatus();
+            if (classType.isInstance(contact) && status != null
+                    && !status.equals(UpdateStatus.NA)
+                    && !contact.getExtras().getBoolean("fakeGroup")) {
+                uuidsToReturn.add(contact.getUID());
             }
-            return uuidsToReturn;
         }
+        return uuidsToReturn;
     }
 
     /**
@@ -342,7 +383,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
     }
 
     /**
-     * Iterate through contacts and find first contact with specified name.
+     * Find the first contact with specified name using the callsign index.
      * 
      * @param callsign the callsign to use in the search
      * @return the first contact that matches
@@ -350,12 +391,10 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
     public Contact getFirstContactWithCallsign(final String callsign) {
         if (FileSystemUtils.isEmpty(callsign))
             return null;
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (callsign.equals(contact.getName())) {
-                    return (Contact) contact;
-                }
-            }
+        for (String uid : index.getByCallsign(callsign)) {
+            final Contact contact = getIndexedContact(uid);
+            if (contact != null && callsign.equals(contact.getName()))
+                return contact;
         }
         return null;
     }
@@ -367,12 +406,12 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      */
     public List<String> getAllContactsInTeam(final String team) {
         List<String> ret = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (((Contact) contact).getExtras().getString("team", "none")
-                        .equals(team))
-                    ret.add(contact.getUid());
-            }
+        for (String uid : index.getByTeam(team)) {
+            final Contact contact = getIndexedContact(uid);
+            if (contact != null && contact.getExtras() != null
+                    && contact.getExtras().getString("team", "none")
+                            .equals(team))
+                ret.add(uid);
         }
         return ret;
     }
@@ -384,14 +423,31 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      */
     public List<String> getAllContactsWithRole(final String role) {
         List<String> ret = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (((Contact) contact).getExtras().getString("role", "none")
-                        .equals(role))
-                    ret.add(contact.getUid());
-            }
-            return ret;
+        for (String uid : index.getByRole(role)) {
+            final Contact contact = getIndexedContact(uid);
+            if (contact != null && contact.getExtras() != null
+                    && contact.getExtras().getString("role", "none")
+                            .equals(role))
+                ret.add(uid);
         }
+        return ret;
+    }
+
+    /**
+     * Return a list of all individual contacts that have a connector of the
+     * given type
+     * @param type the connector type, see {@link Connector#getConnectionType()}
+     * @return the list of contact uids
+     */
+    public List<String> getAllContactsWithConnector(final String type) {
+        List<String> ret = new ArrayList<>();
+        for (String uid : index.getByConnectorType(type)) {
+            final Contact contact = getIndexedContact(uid);
+            if (contact instanceof IndividualContact
+                    && ((IndividualContact) contact).hasConnector(type))
+                ret.add(uid);
+        }
+        return ret;
     }
 
     /**
@@ -401,18 +457,58 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
      */
     public List<String> getAllContactUuids() {
         List<String> uuidsToReturn = new ArrayList<>();
-        synchronized (contactStore) {
-            for (IContact contact : contactStore.getAllContacts()) {
-                if (contact instanceof Contact) {
-                    UpdateStatus status = ((Contact) contact).getUpdateStatus();
-                    if (status == null || status.equals(UpdateStatus.NA))
-                        continue;
-                }
-                uuidsToReturn.add(contact.getUid());
-            }
-
-            return uuidsToReturn;
+        for (Contact contact : getContactsSnapshot()) {
+            UpdateStatus status = contact.getUpdateStatus();
+            if (status == null || status.equals(UpdateStatus.NA))
+                continue;
+            uuidsToReturn.add(contact.getUid());
         }
+        return uuidsToReturn;
+    }
+
+    /**
+     * Resolve a uid returned by the index against the store
+     * @param uid the contact uid
+     * @return the contact, or null if it is no longer in the store
+     */
+    private Contact getIndexedContact(String uid) {
+        final IContact contact = contactStore.getContact(uid);
+        return (contact instanceof Contact) ? (Contact) contact : null;
+    }
+
+    /**
+     * Refile a contact in the index from its current state in the store.
+     * Idempotent, so it is safe to call for every add, remove and change
+     * notification regardless of the order they arrive in.
+     * @param uid the contact uid
+     */
+    void refreshIndex(String uid) {
+        if (uid == null)
+            return;
+        final Contact contact = getIndexedContact(uid);
+        if (contact != null)
+            index.put(contact);
+        else
+            index.remove(uid);
+    }
+
+    /**
+     * Called when the membership of the store may have changed
+     * @param uid the uid of the contact added or removed
+     */
+    private void contactsChanged(String uid) {
+        membershipVersion.incrementAndGet();
+        refreshIndex(uid);
+    }
+
+    /**
+     * Called when a contact has been given a new uid, so that it is no
+     * longer found in the index under the old one
+     * @param oldUid the uid the contact was previously filed under
+     */
+    void uidChanged(String oldUid) {
+        if (oldUid != null)
+            index.remove(oldUid);
     }
 
     /**
@@ -433,11 +529,14 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
             for (IContact contact : contactStore.getAllContacts()) {
                 contactStore.removeContact(contact.getUid());
             }
+            membershipVersion.incrementAndGet();
+            index.clear();
         }
     }
 
     @Override
     public void contactAdded(IContact addedContact) {
+        contactsChanged(addedContact.getUid());
         rootGroup.refreshImpl();
         dispatchSizeChangedEvents();
         updateTotalUnreadCount();
@@ -445,6 +544,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
 
     @Override
     public void contactRemoved(IContact removedContact) {
+        contactsChanged(removedContact.getUid());
         rootGroup.refreshImpl();
         dispatchSizeChangedEvents();
         updateTotalUnreadCount();
@@ -452,6 +552,14 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
 
     @Override
     public void contactUpdated(IContact updatedContact) {
+        final String uid = updatedContact.getUid();
+        // membership is unchanged, only invalidate the snapshot if the store
+        // now holds a different instance than the one in the snapshot. With
+        // no snapshot yet, invalidate in case one is being built
+        final Snapshot s = snapshot;
+        if (s == null || s.byUid.get(uid) != getIndexedContact(uid))
+            membershipVersion.incrementAndGet();
+        refreshIndex(uid);
         rootGroup.refreshImpl();
         dispatchContactChangedEvent(null);
     }
@@ -509,6 +617,7 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
     }
 
     void dispatchContactChangedEvent(String uuid) {
+        refreshIndex(uuid);
         for (OnContactsChangedListener listener : contactsChangedListeners) {
             try {
                 listener.onContactChanged(uuid);
@@ -597,6 +706,19 @@ public class Contacts implements MapEventDispatcher.MapEventDispatchListener,
         }
     }
 
+    private final static class Snapshot {
+        final long version;
+        final List<Contact> contacts;
+        final Map<String, Contact> byUid;
+
+        Snapshot(long version, List<Contact> contacts,
+                Map<String, Contact> byUid) {
+            this.version = version;
+            this.contacts = contacts;
+            this.byUid = byUid;
+        }
+    }
+
     final static class ViewEventQueueExecutor implements Executor {
 
         final View view;
@@ -138,9 +138,9 @@ public class CotMapComponent extends AbstractMapComponent implements
     private static final CotDispatcher internalDispatcher = new CotDispatcher();
 
     private static final CotDispatcher parallelInternalDispatcher = new CotDispatcher(
-            CotDispatcher.getSharedConcurrentInternalDispatchTrackExecutor());
+            CotDispatcher.getSharedInternalDispatchPipeline());
     private static final CotDispatcher parallelWaitInternalDispatcher = new CotDispatcher(
-            CotDispatcher.getSharedConcurrentInternalDispatchTrackExecutor());
+            CotDispatcher.getSharedInternalDispatchPipeline());
 
     private static CotMapComponent _instance;
 
@@ -1585,7 +1585,7 @@ public class CotMapComponent extends AbstractMapComponent implements
         internalDispatcher.setDispatchFlags(DispatchFlags.INTERNAL);
         parallelInternalDispatcher.setDispatchFlags(
                 DispatchFlags.INTERNAL | DispatchFlags.NO_WAIT);
-        parallelInternalDispatcher.setDispatchFlags(DispatchFlags.INTERNAL);
+        parallelWaitInternalDispatcher.setDispatchFlags(DispatchFlags.INTERNAL);
         _adapter.getCotMarkerSet().setCotRemote(externalDispatcher);
     }
 
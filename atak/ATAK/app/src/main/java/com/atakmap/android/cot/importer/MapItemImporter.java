@@ -109,7 +109,17 @@ public abstract class MapItemImporter extends CotEventTypeImporter {
 
         boolean commitProcess = false;
         try {
-            ImportResult res = importMapItem(existing, event, extras);
+            // apply the update as a single edit so that listeners of an
+            // existing item see one notification per changed property
+            final ImportResult res;
+            if (existing != null)
+                existing.beginEdit();
+            try {
+                res = importMapItem(existing, event, extras);
+            } finally {
+                if (existing != null)
+                    existing.endEdit();
+            }
             if (res == ImportResult.SUCCESS) {
                 MapItem item = findItem(event);
                 if (existing == null && !isLocalImport(extras)) {
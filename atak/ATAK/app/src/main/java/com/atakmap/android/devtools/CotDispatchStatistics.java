@@ -0,0 +1,40 @@
+package com.atakmap.android.devtools;
+
+import com.atakmap.android.util.LatencyHistogram;
+import com.atakmap.comms.CotDispatchPipeline;
+import com.atakmap.comms.CotDispatcher;
+
+/**
+ * Snapshot of the metrics for the shared internal CoT dispatch pipeline,
+ * taken when the list is built.
+ */
+final class CotDispatchStatistics extends DevToolGroup {
+    CotDispatchStatistics() {
+        super("CoT Dispatch Statistics", "CotDispatchStatistics");
+
+        final CotDispatchPipeline pipeline = CotDispatcher
+                .getSharedInternalDispatchPipeline();
+        _children.add(new DevToolLabel(
+                "Queue Depth: " + pipeline.getQueueDepth() + " ("
+                        + pipeline.getMailboxCount() + " UIDs)"));
+        _children.add(new DevToolLabel(
+                "Submitted: " + pipeline.getSubmittedCount()));
+        _children.add(new DevToolLabel(
+                "Handled: " + pipeline.getHandledCount()));
+        _children.add(new DevToolLabel(
+                "Coalesced: " + pipeline.getCoalescedCount()));
+        _children.add(new DevToolLabel(
+                "Dropped: " + pipeline.getDroppedCount()));
+        _children.add(new DevToolLabel(
+                "Queue Latency: " + format(pipeline.getQueueLatency())));
+        _children.add(new DevToolLabel(
+                "Handling Latency: "
+                        + format(pipeline.getHandlingLatency())));
+    }
+
+    private static String format(LatencyHistogram histogram) {
+        return "p50 " + histogram.getPercentileMicros(0.5d) + "us, p99 "
+                + histogram.getPercentileMicros(0.99d) + "us, max "
+                + histogram.getMaxMicros() + "us";
+    }
+}
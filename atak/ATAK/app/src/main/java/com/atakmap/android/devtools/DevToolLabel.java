@@ -0,0 +1,15 @@
+package com.atakmap.android.devtools;
+
+/**
+ * Read-only entry that displays a value in its title
+ */
+final class DevToolLabel extends DevToolGroup {
+    DevToolLabel(String title) {
+        super(title);
+    }
+
+    @Override
+    public boolean isChildSupported() {
+        return false;
+    }
+}
@@ -205,6 +205,7 @@ public class DeveloperTools extends AbstractMapOverlay2 {
             _children.add(new CoTMarkersRenderToggle(view));
             _children.add(new CoTMarkerOverlayManagerToggle(view));
             _children.add(new MapItemFeatures());
+            _children.add(new CotDispatchStatistics());
         }
     }
 }
@@ -758,16 +758,20 @@ public class GLHeatMap extends GLAsynchronousMapRenderable<HeatMapParams>
         void queryElevationManager(ElevationManager.QueryParameters filter) {
             final int numSamples = (result.xSampleResolution
                     * result.ySampleResolution);
-            double[] els = new double[numSamples];
+            final double[] lats = new double[numSamples];
+            final double[] lngs = new double[numSamples];
+            final double[] els = new double[numSamples];
 
             {
-                Collection<GeoPoint> pts = new LinkedList<>();
+                int idx = 0;
                 for (int y = 0; y < result.ySampleResolution; y++) {
                     for (int x = 0; x < result.xSampleResolution; x++) {
                         img.x = x;
                         img.y = y;
                         img2geo.transform(img, geo);
-                        pts.add(new GeoPoint(geo.y, geo.x));
+                        lats[idx] = geo.y;
+                        lngs[idx] = geo.x;
+                        idx++;
                     }
                 }
 
@@ -782,20 +786,20 @@ public class GLHeatMap extends GLAsynchronousMapRenderable<HeatMapParams>
                         result.lowerRight,
                         result.lowerLeft);
                 filter.elevationModel = result.elevationModel;
-                ElevationManager.getElevation(pts.iterator(), els, filter,
-                        hints);
+                final ElevationManager.CompiledQuery query = ElevationManager
+                        .compileQuery(filter, hints);
+                try {
+                    query.getElevation(lats, 0, lngs, 0, els, 0, numSamples);
+                } finally {
+                    query.dispose();
+                }
             }
 
             result.numSamples = 0;
             for (int i = 0; i < numSamples; i++) {
                 if (Double.isNaN(els[i]))
                     continue;
-                img.x = (i % result.xSampleResolution);
-                img.y = (i / result.xSampleResolution);
-                img2geo.transform(img, geo);
-
-                double altMSL = EGM96.getMSL(geo.y, geo.x,
-                        els[i]);
+                double altMSL = EGM96.getMSL(lats[i], lngs[i], els[i]);
                 if (!GeoPoint.isAltitudeValid(altMSL)) {
                     result.elevationData[i] = Float.NaN;
                 } else {
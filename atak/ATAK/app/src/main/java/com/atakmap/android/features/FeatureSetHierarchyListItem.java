@@ -57,6 +57,7 @@ import com.atakmap.math.MathUtils;
 import com.atakmap.spatial.file.MvtSpatialDb;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -875,8 +876,12 @@ public class FeatureSetHierarchyListItem extends AbstractHierarchyListItem2
                         new FeatureDataStore2.FeatureQueryParameters.Order.Distance(
                                 distanceFrom.location));
             } else { // default to alphabetic sort
-                params.order = Collections.singleton(
-                        new FeatureDataStore2.FeatureQueryParameters.Order.Name());
+                // FID breaks ties between equal names so that the page may be
+                // resumed from the last row read
+                params.order = Arrays.asList(
+                        new FeatureDataStore2.FeatureQueryParameters.Order.Name(),
+                        new FeatureDataStore2.FeatureQueryParameters.Order.ID());
+                params.continuation = getContinuation(resultsWindow, off);
             }
 
             params.featureSetFilter = new FeatureDataStore2.FeatureSetQueryParameters();
@@ -948,6 +953,24 @@ public class FeatureSetHierarchyListItem extends AbstractHierarchyListItem2
         }
     }
 
+    /**
+     * Returns the continuation for a name ordered query that starts at the
+     * specified offset, if the row preceding the offset is the last row of
+     * the window.
+     */
+    private static FeatureDataStore2.FeatureQueryParameters.Continuation getContinuation(
+            CursorWindow window, int off) {
+        final int last = window.getStartPosition() + window.getNumRows() - 1;
+        if (window.getNumRows() == 0 || last != off - 1)
+            return null;
+        // rows without geometry are not populated
+        if (window.getType(last, WINDOW_COL_FID) != Cursor.FIELD_TYPE_INTEGER)
+            return null;
+        return new FeatureDataStore2.FeatureQueryParameters.Continuation(
+                window.getLong(last, WINDOW_COL_FID),
+                window.getString(last, WINDOW_COL_NAME));
+    }
+
     /**************************************************************************/
 
     private static void transfer(CursorWindow src, CursorWindow dst,
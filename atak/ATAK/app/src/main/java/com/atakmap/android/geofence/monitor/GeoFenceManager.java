@@ -128,7 +128,12 @@ public class GeoFenceManager implements GeoFenceComponent.GeoFenceListener,
         _component.addGeoFenceChangedListener(this);
         _toRemove = new ArrayList<>();
         _deferredAdds = new ConcurrentHashMap<>();
-        _spatialCalc = new SpatialCalculator.Builder().inMemory().build();
+        // fence polygons are tested against every tracked point each pass;
+        // keep the point-in-polygon tests out of SQLite
+        _spatialCalc = new SpatialCalculator.Builder()
+                .useGeometryKernel()
+                .inMemory()
+                .build();
         _monitorIteration = 0;
         initialize();
     }
@@ -9,6 +9,7 @@ import android.content.res.Configuration;
 import android.graphics.PorterDuff;
 import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
+import android.os.CancellationSignal;
 import android.os.SystemClock;
 import android.text.Html;
 import android.view.LayoutInflater;
@@ -22,6 +23,7 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.atakmap.android.gui.drawable.CheckBoxDrawable;
 import com.atakmap.android.gui.drawable.VisibilityDrawable;
@@ -78,6 +80,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -195,6 +198,8 @@ public class HierarchyListAdapter extends BaseAdapter implements
     // Search parameters
     protected SearchResults searchResults;
     protected String searchTerms;
+    // Signal for the search in progress, cancelled when superseded
+    private volatile CancellationSignal searchSignal;
     private boolean showSearchLoader = false;
 
     // Inverse of whether the "Show All" checkbox is activated
@@ -478,16 +483,34 @@ public class HierarchyListAdapter extends BaseAdapter implements
         if (showLoader)
             this.receiver.showSearchLoader(true);
         this.showSearchLoader = false;
+        cancelSearch();
         this.searchThread.exec();
     }
 
+    /**
+     * Cancel the search in progress, if any
+     */
+    private void cancelSearch() {
+        CancellationSignal signal = this.searchSignal;
+        if (signal != null)
+            signal.cancel();
+    }
+
     private synchronized void searchImpl() {
         //beginTimeMeasure("search.find(" + terms + ")");
+
+        // Create the signal before reading the terms so any newer terms
+        // cancel this search
+        final CancellationSignal signal = new CancellationSignal();
+        this.searchSignal = signal;
+
         final HierarchyListItem curList = getCurrentList(true);
         final String terms = this.searchTerms != null ? this.searchTerms : "";
 
-        Map<String, HierarchyListItem> uidMap = new HashMap<>();
+        Map<String, HierarchyListItem> uidMap = new LinkedHashMap<>();
+        boolean truncated = false;
 
+        MapItemSearchIndex.setCancellationSignal(signal);
         try {
             // Perform recursive search
             List<HierarchyListItem> findResults = (curList instanceof Search)
@@ -511,10 +534,17 @@ public class HierarchyListAdapter extends BaseAdapter implements
                     }
                 }
             }
+            truncated = MapItemSearchIndex.isTruncated();
         } catch (Exception e) {
             Log.e(TAG, "Failed to complete search terms: " + terms, e);
+        } finally {
+            MapItemSearchIndex.setCancellationSignal(null);
         }
 
+        // Superseded by a newer search, which will post its own results
+        if (signal.isCanceled())
+            return;
+
         final List<HierarchyListItem> results = new ArrayList<>(
                 uidMap.values());
 
@@ -526,15 +556,43 @@ public class HierarchyListAdapter extends BaseAdapter implements
             comp = ((ComparatorSort) sort).getComparator();
         else if (sort instanceof SortDistanceFrom)
             comp = new ItemDistanceComparator((SortDistanceFrom) sort);
+
+        // The user's sort comes first; items it considers equal are
+        // ordered best match first
+        final MapItemSearchIndex index = MapItemSearchIndex.getInstance();
+        if (index != null && !terms.isEmpty()) {
+            final Comparator<HierarchyListItem> sortComp = comp;
+            final Map<HierarchyListItem, Integer> ranks = new HashMap<>();
+            for (HierarchyListItem item : results) {
+                Object o = item.getUserObject();
+                ranks.put(item, o instanceof MapItem
+                        ? index.getRank((MapItem) o, terms)
+                        : -1);
+            }
+            comp = new Comparator<HierarchyListItem>() {
+                @Override
+                public int compare(HierarchyListItem lhs,
+                        HierarchyListItem rhs) {
+                    int c = sortComp.compare(lhs, rhs);
+                    if (c != 0)
+                        return c;
+                    return Integer.compare(ranks.get(rhs), ranks.get(lhs));
+                }
+            };
+        }
         Collections.sort(results, comp);
 
         //endTimeMeasure("search.find(" + terms + ")");
 
+        final boolean partial = truncated;
         this.mapView.post(new Runnable() {
             @Override
             public void run() {
                 if (receiver != null)
                     receiver.showSearchLoader(false);
+                if (partial)
+                    Toast.makeText(context, R.string.search_results_partial,
+                            Toast.LENGTH_SHORT).show();
                 if (searchResults != null) {
                     searchResults.setResults(results);
                     notifyDataSetChanged();
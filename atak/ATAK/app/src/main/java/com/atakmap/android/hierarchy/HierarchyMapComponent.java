@@ -19,6 +19,7 @@ import java.util.ArrayList;
 public class HierarchyMapComponent extends AbstractWidgetMapComponent {
 
     protected HierarchyListReceiver _hierarchyListReceiver;
+    protected MapItemSearchIndex _searchIndex;
 
     @Override
     public void onCreateWidgets(Context context, Intent intent, MapView view) {
@@ -80,6 +81,9 @@ public class HierarchyMapComponent extends AbstractWidgetMapComponent {
                         context),
                 f);
         HierarchyListReceiver.setInstance(_hierarchyListReceiver);
+
+        _searchIndex = new MapItemSearchIndex(view);
+        MapItemSearchIndex.setInstance(_searchIndex);
     }
 
     @Override
@@ -87,5 +91,8 @@ public class HierarchyMapComponent extends AbstractWidgetMapComponent {
         _hierarchyListReceiver.dispose();
         _hierarchyListReceiver = null;
         HierarchyListReceiver.setInstance(null);
+        MapItemSearchIndex.setInstance(null);
+        _searchIndex.dispose();
+        _searchIndex = null;
     }
 }
@@ -0,0 +1,565 @@
+
+package com.atakmap.android.hierarchy;
+
+import android.os.CancellationSignal;
+
+import com.atakmap.android.maps.MapEvent;
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapGroup;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of the text searched by Overlay Manager for map items. The callsign,
+ * title, shape name and remarks (which carry hashtags) of each item are
+ * lower-cased and split into words once, when the item is added or changed,
+ * rather than on every search.
+ *
+ * Searches match the items a case-insensitive substring search of those
+ * fields would. Candidates are found through the vocabulary of indexed words
+ * instead of every item, then verified against the item text: exact and
+ * prefix matches from the sorted vocabulary, and words that contain the term
+ * elsewhere from an index of the substrings of up to three characters
+ * (trigrams, and shorter for short words and terms) of each word. Results are
+ * ranked with exact and prefix matches first.
+ *
+ * The index is built on a background thread when it is first searched and
+ * maintained from map events and item metadata changes thereafter. Remarks
+ * changes are not notified to metadata listeners, so they are picked up when
+ * the item is persisted or refreshed. Until the build completes, {@link #find} returns null and callers fall back to their
+ * own search.
+ */
+public class MapItemSearchIndex implements
+        MapEventDispatcher.MapEventDispatchListener,
+        MapItem.OnMetadataChangedListener {
+
+    private static final String TAG = "MapItemSearchIndex";
+
+    /**
+     * Metadata fields that are searched
+     */
+    static final String[] FIELDS = {
+            "callsign", "title", "shapeName", "remarks"
+    };
+
+    /**
+     * Searched fields whose changes are notified to metadata listeners
+     */
+    private static final String[] NOTIFIED_FIELDS = {
+            "callsign", "title", "shapeName"
+    };
+
+    /**
+     * Default time budget for a search, in milliseconds. Candidates are
+     * verified best first; a search that exceeds the budget returns the best
+     * matches found so far and is flagged by {@link #isTruncated()}.
+     */
+    public static final long DEFAULT_BUDGET_MS = 250;
+
+    private static final String[] EVENTS = {
+            MapEvent.ITEM_ADDED,
+            MapEvent.ITEM_REMOVED,
+            MapEvent.ITEM_REFRESH,
+            MapEvent.ITEM_PERSIST
+    };
+
+    private static final int CHECK_INTERVAL = 256;
+
+    // Length of the longest substrings indexed for infix matches
+    private static final int GRAM_LENGTH = 3;
+
+    private static final ThreadLocal<CancellationSignal> _signal = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> _truncated = new ThreadLocal<>();
+
+    private static MapItemSearchIndex _instance;
+
+    public static synchronized MapItemSearchIndex getInstance() {
+        return _instance;
+    }
+
+    static synchronized void setInstance(MapItemSearchIndex index) {
+        _instance = index;
+    }
+
+    /**
+     * Binds a cancellation signal to the calling thread. Searches made on the
+     * thread, including those made through
+     * {@link com.atakmap.android.hierarchy.action.Search#find(String)}, stop
+     * early once the signal is cancelled.
+     *
+     * @param signal Cancellation signal or null to unbind
+     */
+    public static void setCancellationSignal(CancellationSignal signal) {
+        if (signal != null)
+            _signal.set(signal);
+        else
+            _signal.remove();
+        _truncated.remove();
+    }
+
+    /**
+     * Whether a search made on the calling thread since the last call to
+     * {@link #setCancellationSignal(CancellationSignal)} ran out of time and
+     * returned only its best matches
+     *
+     * @return True if results were cut short by the time budget
+     */
+    public static boolean isTruncated() {
+        return Boolean.TRUE.equals(_truncated.get());
+    }
+
+    private final MapView _mapView;
+
+    // Indexed items by serial ID
+    private final Map<Long, Entry> _entries = new HashMap<>();
+
+    // Sorted vocabulary of indexed words
+    private final TreeMap<String, Set<Entry>> _words = new TreeMap<>();
+
+    // Vocabulary words by each of their substrings of up to GRAM_LENGTH
+    private final Map<String, Set<String>> _grams = new HashMap<>();
+
+    // Serial IDs of items removed while the index was being built
+    private final Set<Long> _removedWhileBuilding = new HashSet<>();
+
+    private boolean _built;
+    private boolean _building;
+    private boolean _disposed;
+
+    public MapItemSearchIndex(MapView mapView) {
+        _mapView = mapView;
+        MapEventDispatcher dispatcher = mapView.getMapEventDispatcher();
+        for (String event : EVENTS)
+            dispatcher.addMapEventListener(event, this);
+    }
+
+    public void dispose() {
+        MapEventDispatcher dispatcher = _mapView.getMapEventDispatcher();
+        for (String event : EVENTS)
+            dispatcher.removeMapEventListener(event, this);
+
+        List<Entry> entries;
+        synchronized (this) {
+            _disposed = true;
+            entries = new ArrayList<>(_entries.values());
+            _entries.clear();
+            _words.clear();
+            _grams.clear();
+            _removedWhileBuilding.clear();
+        }
+        for (Entry e : entries)
+            removeListeners(e.item);
+    }
+
+    /**
+     * Search for map items
+     *
+     * @param terms Search terms, matched case-insensitively against any part
+     *              of the indexed fields
+     * @param scope Only return items within this group, null for all
+     * @param limit Maximum number of results
+     * @param budgetMs Time budget in milliseconds for verifying candidates
+     * @return Matching items, best matches first, or null if the index is
+     *         still being built
+     */
+    public List<MapItem> find(String terms, MapGroup scope, int limit,
+            long budgetMs) {
+        final long deadline = System.nanoTime() + budgetMs * 1000000L;
+        final CancellationSignal signal = _signal.get();
+        final String query = terms.toLowerCase(LocaleUtil.getCurrent());
+        if (query.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+
+        if (!isBuilt()) {
+            buildAsync();
+            return null;
+        }
+
+        // Candidates contain a vocabulary word that contains the longest
+        // word of the query
+        String longest = "";
+        for (String w : split(query)) {
+            if (w.length() > longest.length())
+                longest = w;
+        }
+
+        // All matching words are collected so that the candidates can be
+        // verified best first; only the verification is bounded by the budget
+        final List<Entry> candidates = new ArrayList<>();
+        synchronized (this) {
+            if (_disposed)
+                return Collections.emptyList();
+            if (longest.isEmpty()) {
+                candidates.addAll(_entries.values());
+            } else {
+                // Exact word matches, then word prefixes, then substrings
+                Set<Entry> ordered = new LinkedHashSet<>();
+                Set<Entry> exact = _words.get(longest);
+                if (exact != null)
+                    ordered.addAll(exact);
+                int i = 0;
+                for (Set<Entry> prefixed : _words.subMap(longest, false,
+                        longest + '\uffff', false).values()) {
+                    if (++i % CHECK_INTERVAL == 0 && isCanceled(signal))
+                        return Collections.emptyList();
+                    ordered.addAll(prefixed);
+                }
+                List<String> infixes = findInfixes(longest);
+                Collections.sort(infixes);
+                for (String word : infixes) {
+                    if (++i % CHECK_INTERVAL == 0 && isCanceled(signal))
+                        return Collections.emptyList();
+                    ordered.addAll(_words.get(word));
+                }
+                candidates.addAll(ordered);
+            }
+        }
+
+        // Verify and rank outside of the lock
+        final Map<MapItem, Integer> scores = new HashMap<>();
+        final List<MapItem> results = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i % CHECK_INTERVAL == 0 && i > 0) {
+                if (isCanceled(signal))
+                    return Collections.emptyList();
+                if (System.nanoTime() > deadline) {
+                    Log.w(TAG, "Search for \"" + terms + "\" stopped after "
+                            + i + " of " + candidates.size() + " candidates");
+                    _truncated.set(Boolean.TRUE);
+                    break;
+                }
+            }
+            Entry e = candidates.get(i);
+            int score = score(e.text, query);
+            if (score < 0 || scope != null && !inGroup(e.item, scope))
+                continue;
+            scores.put(e.item, score);
+            results.add(e.item);
+        }
+
+        // Stable sort, so equal scores keep the candidate order
+        Collections.sort(results, new Comparator<MapItem>() {
+            @Override
+            public int compare(MapItem lhs, MapItem rhs) {
+                return Integer.compare(scores.get(rhs), scores.get(lhs));
+            }
+        });
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    /**
+     * Get the rank of an item for a search
+     *
+     * @param item Map item
+     * @param terms Search terms
+     * @return -1 if the item is not indexed or does not match, otherwise
+     *         higher is a better match
+     */
+    public int getRank(MapItem item, String terms) {
+        final String query = terms.toLowerCase(LocaleUtil.getCurrent());
+        final String[] text;
+        synchronized (this) {
+            Entry e = _entries.get(item.getSerialId());
+            if (e == null)
+                return -1;
+            text = e.text;
+        }
+        return score(text, query);
+    }
+
+    /**
+     * @return True once the index has been built and may be searched
+     */
+    public synchronized boolean isBuilt() {
+        return _built;
+    }
+
+    @Override
+    public void onMapEvent(MapEvent event) {
+        MapItem item = event.getItem();
+        if (item == null)
+            return;
+        if (MapEvent.ITEM_REMOVED.equals(event.getType()))
+            remove(item);
+        else
+            update(item);
+    }
+
+    @Override
+    public void onMetadataChanged(MapItem item, String field) {
+        update(item);
+    }
+
+    /**
+     * Find the vocabulary words that contain a term other than at their start
+     *
+     * @param term Lower-case word
+     * @return Matching words, in no particular order
+     */
+    private List<String> findInfixes(String term) {
+        List<String> words = new ArrayList<>();
+        Set<String> smallest = null;
+        if (term.length() <= GRAM_LENGTH) {
+            smallest = _grams.get(term);
+        } else {
+            // Words containing the term contain every one of its trigrams
+            for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+                Set<String> s = _grams.get(
+                        term.substring(i, i + GRAM_LENGTH));
+                if (s == null)
+                    return words;
+                if (smallest == null || s.size() < smallest.size())
+                    smallest = s;
+            }
+        }
+        if (smallest == null)
+            return words;
+        for (String word : smallest) {
+            if (!word.startsWith(term) && word.contains(term))
+                words.add(word);
+        }
+        return words;
+    }
+
+    private void buildAsync() {
+        synchronized (this) {
+            if (_built || _building || _disposed)
+                return;
+            _building = true;
+        }
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                build();
+            }
+        }, TAG);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Index every item on the map. Map events received during the build are
+     * applied as they arrive.
+     */
+    void build() {
+        synchronized (this) {
+            if (_built || _disposed)
+                return;
+            _building = true;
+        }
+        long start = System.currentTimeMillis();
+        final List<MapItem> items = new ArrayList<>();
+        _mapView.getRootGroup().deepForEachItem(
+                new MapGroup.MapItemsCallback() {
+                    @Override
+                    public boolean onItemFunction(MapItem item) {
+                        items.add(item);
+                        return false;
+                    }
+                });
+        for (MapItem item : items)
+            update(item, true);
+        synchronized (this) {
+            _built = true;
+            _building = false;
+            _removedWhileBuilding.clear();
+        }
+        Log.d(TAG, "Indexed " + items.size() + " items in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void update(MapItem item) {
+        update(item, false);
+    }
+
+    /**
+     * @param fromBuild True if the item was collected by {@link #build()},
+     *                  in which case it is skipped if it has been removed
+     *                  since
+     */
+    private void update(MapItem item, boolean fromBuild) {
+        // Read the item outside of the index lock
+        String[] text = extractText(item);
+        boolean added = false;
+        synchronized (this) {
+            if (!_built && !_building || _disposed)
+                return;
+            final long id = item.getSerialId();
+            if (fromBuild) {
+                if (_removedWhileBuilding.contains(id))
+                    return;
+            } else {
+                _removedWhileBuilding.remove(id);
+            }
+            Entry e = _entries.get(id);
+            if (e == null) {
+                e = new Entry(item);
+                _entries.put(id, e);
+                added = true;
+            } else if (Arrays.equals(e.text, text)) {
+                return;
+            } else {
+                unlink(e);
+            }
+            e.text = text;
+            e.words = split(text);
+            for (String w : e.words) {
+                Set<Entry> entries = _words.get(w);
+                if (entries == null) {
+                    _words.put(w, entries = new HashSet<>());
+                    for (String g : grams(w)) {
+                        Set<String> words = _grams.get(g);
+                        if (words == null)
+                            _grams.put(g, words = new HashSet<>());
+                        words.add(w);
+                    }
+                }
+                entries.add(e);
+            }
+        }
+        if (added) {
+            for (String field : NOTIFIED_FIELDS)
+                item.addOnMetadataChangedListener(field, this);
+        }
+    }
+
+    private void remove(MapItem item) {
+        synchronized (this) {
+            if (_building)
+                _removedWhileBuilding.add(item.getSerialId());
+            Entry e = _entries.remove(item.getSerialId());
+            if (e == null)
+                return;
+            unlink(e);
+        }
+        removeListeners(item);
+    }
+
+    private void removeListeners(MapItem item) {
+        for (String field : NOTIFIED_FIELDS)
+            item.removeOnMetadataChangedListener(field, this);
+    }
+
+    private void unlink(Entry e) {
+        for (String w : e.words) {
+            Set<Entry> entries = _words.get(w);
+            if (entries != null && entries.remove(e) && entries.isEmpty()) {
+                _words.remove(w);
+                for (String g : grams(w)) {
+                    Set<String> words = _grams.get(g);
+                    if (words != null && words.remove(w) && words.isEmpty())
+                        _grams.remove(g);
+                }
+            }
+        }
+    }
+
+    private static String[] extractText(MapItem item) {
+        String[] text = new String[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) {
+            String v = item.getMetaString(FIELDS[i], null);
+            if (v != null && !v.isEmpty())
+                text[i] = v.toLowerCase(LocaleUtil.getCurrent());
+        }
+        return text;
+    }
+
+    /**
+     * Score the match of a query against item text
+     *
+     * @return -1 if the query does not match, otherwise higher is better
+     */
+    static int score(String[] text, String query) {
+        int best = -1;
+        for (String t : text) {
+            if (t == null)
+                continue;
+            int idx = t.indexOf(query);
+            if (idx < 0)
+                continue;
+            int score;
+            if (t.length() == query.length())
+                score = 3;
+            else if (idx == 0)
+                score = 2;
+            else if (!Character.isLetterOrDigit(t.charAt(idx - 1)))
+                score = 1;
+            else
+                score = 0;
+            best = Math.max(best, score);
+        }
+        return best;
+    }
+
+    /**
+     * Split text into words on any character that is not a letter or digit
+     */
+    static Set<String> split(String... text) {
+        Set<String> words = new HashSet<>();
+        for (String t : text) {
+            if (t == null)
+                continue;
+            int start = -1;
+            for (int i = 0; i <= t.length(); i++) {
+                boolean wordChar = i < t.length()
+                        && Character.isLetterOrDigit(t.charAt(i));
+                if (wordChar && start < 0)
+                    start = i;
+                else if (!wordChar && start >= 0) {
+                    words.add(t.substring(start, i));
+                    start = -1;
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Get the distinct substrings of a word of up to {@link #GRAM_LENGTH}
+     * characters
+     */
+    static Set<String> grams(String word) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < word.length(); i++) {
+            for (int n = 1; n <= GRAM_LENGTH && i + n <= word.length(); n++)
+                grams.add(word.substring(i, i + n));
+        }
+        return grams;
+    }
+
+    private static boolean inGroup(MapItem item, MapGroup scope) {
+        for (MapGroup g = item.getGroup(); g != null; g = g.getParentGroup()) {
+            if (g == scope)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isCanceled(CancellationSignal signal) {
+        return signal != null && signal.isCanceled();
+    }
+
+    private static class Entry {
+        final MapItem item;
+        String[] text;
+        Set<String> words = Collections.emptySet();
+
+        Entry(MapItem item) {
+            this.item = item;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.atakmap.android.hierarchy.HierarchyListAdapter;
 import com.atakmap.android.hierarchy.HierarchyListFilter;
 import com.atakmap.android.hierarchy.HierarchyListItem;
 import com.atakmap.android.hierarchy.HierarchyListItem2;
+import com.atakmap.android.hierarchy.MapItemSearchIndex;
 import com.atakmap.android.hierarchy.action.Delete;
 import com.atakmap.android.hierarchy.action.Export;
 import com.atakmap.android.hierarchy.action.GroupDelete;
@@ -33,6 +34,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -311,10 +313,29 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
 
     @Override
     public Set<HierarchyListItem> find(String terms) {
+        // Ordered so that indexed results keep their rank
+        Set<HierarchyListItem> retval = new LinkedHashSet<>();
+        Set<String> contained = null;
+
+        // The index returns null until it has been built
+        MapItemSearchIndex index = MapItemSearchIndex.getInstance();
+        List<MapItem> ranked = (index != null) ? index.find(terms,
+                this.group, Integer.MAX_VALUE,
+                MapItemSearchIndex.DEFAULT_BUDGET_MS) : null;
+        if (ranked != null) {
+            for (MapItem item : ranked) {
+                if (contained == null)
+                    contained = getContainedUIDs();
+                if (contained.contains(item.getUID()))
+                    retval.add(new MapItemHierarchyListItem(this.mapView,
+                            item));
+            }
+            return retval;
+        }
+
         terms = "*" + terms + "*";
 
         Set<Long> found = new HashSet<>();
-        Set<HierarchyListItem> retval = new HashSet<>();
 
         List<MapItem> results;
         for (String field : SEARCH_FIELDS) {
@@ -322,7 +343,11 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
             if (results == null)
                 continue;
             for (MapItem item : results) {
-                if (found.contains(item.getSerialId()) || !itemContained(item))
+                if (found.contains(item.getSerialId()))
+                    continue;
+                if (contained == null)
+                    contained = getContainedUIDs();
+                if (!contained.contains(item.getUID()))
                     continue;
                 retval.add(new MapItemHierarchyListItem(this.mapView, item));
                 found.add(item.getSerialId());
@@ -333,22 +358,24 @@ public class MapGroupHierarchyListItem extends AbstractHierarchyListItem2
     }
 
     /**
-     * Check whether a map item is in the children list
-     * Used with find to avoid re-filtering
-     * @param item Map item to look for
-     * @return True if the map item is part of this list
+     * Get the UIDs of the map items in the children list, including those in
+     * child groups. Used with find to avoid re-filtering.
+     * @return Set of map item UIDs that are part of this list
      */
-    private boolean itemContained(MapItem item) {
+    private Set<String> getContainedUIDs() {
+        Set<String> uids = new HashSet<>();
+        addContainedUIDs(uids);
+        return uids;
+    }
+
+    private void addContainedUIDs(Set<String> uids) {
         List<HierarchyListItem> children = getChildren();
         for (HierarchyListItem hli : children) {
-            if (hli instanceof MapItemHierarchyListItem
-                    && hli.getUID().equals(item.getUID())
-                    || hli instanceof MapGroupHierarchyListItem
-                            && ((MapGroupHierarchyListItem) hli)
-                                    .itemContained(item))
-                return true;
+            if (hli instanceof MapItemHierarchyListItem)
+                uids.add(hli.getUID());
+            else if (hli instanceof MapGroupHierarchyListItem)
+                ((MapGroupHierarchyListItem) hli).addContainedUIDs(uids);
         }
-        return false;
     }
 
     /**************************************************************************/
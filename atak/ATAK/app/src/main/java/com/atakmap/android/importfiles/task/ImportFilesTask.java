@@ -54,21 +54,36 @@ import com.atakmap.android.importfiles.sort.ImportUserIconSetSort;
 import com.atakmap.android.importfiles.sort.ImportVideoResolver;
 import com.atakmap.android.importfiles.sort.ImportVideoSort;
 import com.atakmap.app.R;
+import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.locale.LocaleUtil;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.map.layer.raster.ImageryFileType;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import gov.tak.api.annotation.DeprecatedApi;
+import gov.tak.api.importfiles.FileHeader;
 import gov.tak.api.importfiles.ImportAlternateContactResolver;
 import gov.tak.api.importfiles.ImportCotResolver;
 import gov.tak.api.importfiles.ImportDRWResolver;
@@ -99,6 +114,20 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
 
     private static final String TAG = "ImportFilesTask";
 
+    /**
+     * Maximum number of threads used to scan and sort files
+     */
+    private static final int MAX_THREADS = 4;
+
+    private static final int SORT_NEXT = 0;
+    private static final int SORT_SORTED = 1;
+    private static final int SORT_ABORTED = 2;
+
+    /**
+     * Header buffers shared by the sort threads
+     */
+    private static final ConcurrentLinkedQueue<FileHeader> _headers = new ConcurrentLinkedQueue<>();
+
     private static final Set<String> extensions = new HashSet<>();
     // array form of the above set
     private static String[] extensionList;
@@ -186,7 +215,7 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
 
     /**
      * Destination path of already sorted files, do not overwrite during a single import as ATAK may
-     * still be processing it...
+     * still be processing it... Guarded by itself, since files are sorted in parallel.
      */
     private final Set<String> _sortedFiles;
 
@@ -499,7 +528,7 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
         return MarshalManager.marshal(context.getDrawable(resId), Drawable.class, gov.tak.api.commons.graphics.Drawable.class);
     }
 
-    private int sort(File dir, List<gov.tak.api.importfiles.ImportResolver> sorters) {
+    private int sort(File dir, final List<gov.tak.api.importfiles.ImportResolver> sorters) {
         if (dir == null) {
             Log.d(TAG, "Import directory null.");
             return 0;
@@ -512,85 +541,295 @@ public class ImportFilesTask extends AsyncTask<Void, Void, Integer> {
         }
 
         Log.d(TAG, "Importing from directory: " + dir.getAbsolutePath());
+        final long start = System.currentTimeMillis();
+        final SortStats stats = new SortStats(sorters.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(MAX_THREADS,
+                        Runtime.getRuntime().availableProcessors())),
+                new NamedThreadFactory(TAG));
+
         int numberSorted = 0;
+        final List<File> dirs = new ArrayList<>();
+        try {
+            // scan the directory tree one level at a time, listing the
+            // directories of each level in parallel
+            final List<List<File>> groups = new ArrayList<>();
+            List<File> level = Collections.singletonList(dir);
+            while (!level.isEmpty()) {
+                dirs.addAll(level);
+                List<Future<Listing>> listings = new ArrayList<>(
+                        level.size());
+                for (final File d : level) {
+                    listings.add(executor.submit(new Callable<Listing>() {
+                        @Override
+                        public Listing call() {
+                            return list(d);
+                        }
+                    }));
+                }
+                List<File> next = new ArrayList<>();
+                for (Future<Listing> f : listings) {
+                    Listing listing = getResult(f);
+                    if (listing != null) {
+                        next.addAll(listing.dirs);
+                        groups.addAll(listing.groups);
+                    }
+                }
+                level = next;
+            }
+
+            // sort the files, each group of related files on one thread
+            List<Future<Integer>> results = new ArrayList<>(groups.size());
+            for (final List<File> group : groups) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return sortFiles(group, sorters, stats);
+                    }
+                }));
+            }
+            for (Future<Integer> f : results) {
+                Integer sorted = getResult(f);
+                if (sorted != null)
+                    numberSorted += sorted;
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Import interrupted: " + dir.getAbsolutePath());
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // if no files left in a directory, remove it. The deepest
+        // directories are last in the list.
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            File d = dirs.get(i);
+            File[] files = IOProviderFactory.listFiles(d);
+            if (IOProviderFactory.exists(d) && IOProviderFactory.isDirectory(d)
+                    && (files == null || files.length < 1)) {
+                Log.i(TAG, "Cleaning up empty directory: " + d.getAbsolutePath());
+                FileSystemUtils.delete(d);
+            }
+        }
+
+        for (int i = 0; i < sorters.size(); i++) {
+            if (stats.fileSorted.get(i) != 0)
+                sorters.get(i).finalizeImport();
+        }
+
+        stats.log(sorters);
+        Log.d(TAG, "Sorted " + numberSorted + " files from "
+                + dir.getAbsolutePath() + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return numberSorted;
+    }
+
+    /**
+     * List a directory. Files that share a base name (e.g. the parts of a
+     * shapefile) are grouped, since a sorter may move them together.
+     */
+    private static Listing list(File dir) {
+        Listing listing = new Listing();
         File[] files = IOProviderFactory.listFiles(dir);
-        if (files != null) {
-            for (File file : files) {
-                if (file == null || !IOProviderFactory.exists(file))
-                    continue;
+        if (files == null)
+            return listing;
 
-                // if subdir, recurse
-                if (IOProviderFactory.isDirectory(file)) {
-                    numberSorted += sort(file, sorters);
-                    continue;
-                }
+        Map<String, List<File>> groups = new LinkedHashMap<>();
+        for (File file : files) {
+            if (file == null || !IOProviderFactory.exists(file))
+                continue;
 
-                // otherwise attempt to sort the file
-                boolean sorted = false;
-                for (gov.tak.api.importfiles.ImportResolver sorter : sorters) {
-                    // see if this sorter can handle the current file
-                    if (sorter.match(file)) {
-                        // do not overwrite is we've already imported a file to the anticipated
-                        // location
-                        File destPath = sorter.getDestinationPath(file);
-                        if (destPath == null) {
-                            Log.w(TAG,
-                                    sorter
-                                            + ", Unable to determine destination path for: "
-                                            + file.getAbsolutePath());
-                            continue;
-                        }
+            if (IOProviderFactory.isDirectory(file)) {
+                listing.dirs.add(file);
+                continue;
+            }
 
-                        if (_sortedFiles.contains(destPath.getAbsolutePath())) {
-                            Log.w(TAG,
-                                    sorter
-                                            + ", Matched, but destination path already exists: "
-                                            + destPath.getAbsolutePath());
-                            break;
-                        }
+            String name = file.getName().toLowerCase(LocaleUtil.getCurrent());
+            int dot = name.indexOf('.', 1);
+            String key = dot > 0 ? name.substring(0, dot) : name;
+            List<File> group = groups.get(key);
+            if (group == null)
+                groups.put(key, group = new ArrayList<>());
+            group.add(file);
+        }
+        listing.groups.addAll(groups.values());
+        return listing;
+    }
+
+    private int sortFiles(List<File> files,
+            List<gov.tak.api.importfiles.ImportResolver> sorters,
+            SortStats stats) {
+        // read the header of each file once and share it with all sorters
+        FileHeader header = _headers.poll();
+        if (header == null)
+            header = new FileHeader();
+        FileHeader.bind(header);
+
+        int numberSorted = 0;
+        try {
+            for (File file : files) {
+                // may have been sorted along with another file in the group
+                if (!IOProviderFactory.exists(file))
+                    continue;
 
-                        // now attempt to sort (i.e. move the file to proper location)
-                        sorted = sorter.beginImport(file, EnumSet.noneOf(gov.tak.api.importfiles.ImportResolver.SortFlags.class));
-                        if (sorted) {
-                            numberSorted++;
-                            _sortedFiles.add(destPath.getAbsolutePath());
-                            Log.d(TAG,
-                                    sorter + ", Sorted: "
-                                            + file.getAbsolutePath()
-                                            + " to "
-                                            + destPath.getAbsolutePath());
-                            break;
-                        } else
-                            Log.w(TAG,
-                                    sorter
-                                            + ", Matched, but did not sort: "
-                                            + file.getAbsolutePath());
-                    } // end if sorter match was found
+                try {
+                    header.read(file);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to read header: "
+                            + file.getAbsolutePath(), e);
+                    header.clear();
                 }
 
-                if (!sorted) {
+                if (sortFile(file, sorters, stats))
+                    numberSorted++;
+                else
                     Log.i(TAG,
                             "Did not sort unsupported file: "
                                     + file.getAbsolutePath());
-                }
-            } // end file loop
+            }
+        } finally {
+            FileHeader.bind(null);
+            header.clear();
+            _headers.offer(header);
         }
+        return numberSorted;
+    }
 
-        // if no files left in this directory, remove it
-        files = IOProviderFactory.listFiles(dir);
+    private boolean sortFile(File file,
+            List<gov.tak.api.importfiles.ImportResolver> sorters,
+            SortStats stats) {
+        for (int i = 0; i < sorters.size(); i++) {
+            gov.tak.api.importfiles.ImportResolver sorter = sorters.get(i);
+
+            // resolvers that have not opted in to concurrent use are only
+            // ever called by one sorting thread at a time
+            final int result;
+            if (sorter.isThreadSafe()) {
+                result = sortFile(file, sorter, i, stats);
+            } else {
+                synchronized (sorter) {
+                    result = sortFile(file, sorter, i, stats);
+                }
+            }
+            if (result == SORT_SORTED)
+                return true;
+            else if (result == SORT_ABORTED)
+                return false;
+        }
+        return false;
+    }
 
-        if (IOProviderFactory.exists(dir) && IOProviderFactory.isDirectory(dir)
-                && (files == null || files.length < 1)) {
-            Log.i(TAG, "Cleaning up empty directory: " + dir.getAbsolutePath());
-            FileSystemUtils.delete(dir);
+    /**
+     * Attempt to sort the file with a single sorter
+     *
+     * @return {@link #SORT_SORTED} if the file was sorted,
+     * {@link #SORT_ABORTED} if no other sorter should be tried and
+     * {@link #SORT_NEXT} otherwise
+     */
+    private int sortFile(File file,
+            gov.tak.api.importfiles.ImportResolver sorter, int index,
+            SortStats stats) {
+        // see if this sorter can handle the current file
+        long start = System.nanoTime();
+        boolean match = sorter.match(file);
+        stats.matchCount.incrementAndGet(index);
+        stats.matchNanos.addAndGet(index, System.nanoTime() - start);
+        if (!match)
+            return SORT_NEXT;
+
+        // do not overwrite is we've already imported a file to the anticipated
+        // location
+        File destPath = sorter.getDestinationPath(file);
+        if (destPath == null) {
+            Log.w(TAG,
+                    sorter
+                            + ", Unable to determine destination path for: "
+                            + file.getAbsolutePath());
+            return SORT_NEXT;
         }
 
-        for (gov.tak.api.importfiles.ImportResolver sorter : sorters) {
-            if (sorter.getFileSorted()) {
-                sorter.finalizeImport();
+        final String dest = destPath.getAbsolutePath();
+        synchronized (_sortedFiles) {
+            if (!_sortedFiles.add(dest)) {
+                Log.w(TAG,
+                        sorter
+                                + ", Matched, but destination path already exists: "
+                                + dest);
+                return SORT_ABORTED;
             }
         }
 
-        return numberSorted;
+        // now attempt to sort (i.e. move the file to proper location)
+        start = System.nanoTime();
+        boolean sorted = sorter.beginImport(file, EnumSet.noneOf(
+                gov.tak.api.importfiles.ImportResolver.SortFlags.class));
+        stats.importCount.incrementAndGet(index);
+        stats.importNanos.addAndGet(index, System.nanoTime() - start);
+        if (sorter.getFileSorted())
+            stats.fileSorted.set(index, 1);
+
+        if (sorted) {
+            Log.d(TAG,
+                    sorter + ", Sorted: "
+                            + file.getAbsolutePath()
+                            + " to " + dest);
+            return SORT_SORTED;
+        }
+
+        synchronized (_sortedFiles) {
+            _sortedFiles.remove(dest);
+        }
+        Log.w(TAG,
+                sorter
+                        + ", Matched, but did not sort: "
+                        + file.getAbsolutePath());
+        return SORT_NEXT;
+    }
+
+    private static <T> T getResult(Future<T> future)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Import failed", e.getCause());
+            return null;
+        }
+    }
+
+    private static class Listing {
+        final List<File> dirs = new ArrayList<>();
+        final List<List<File>> groups = new ArrayList<>();
+    }
+
+    /**
+     * Time spent in each sorter, indexed by the position of the sorter
+     */
+    private static class SortStats {
+        final AtomicIntegerArray matchCount;
+        final AtomicLongArray matchNanos;
+        final AtomicIntegerArray importCount;
+        final AtomicLongArray importNanos;
+        final AtomicIntegerArray fileSorted;
+
+        SortStats(int numSorters) {
+            matchCount = new AtomicIntegerArray(numSorters);
+            matchNanos = new AtomicLongArray(numSorters);
+            importCount = new AtomicIntegerArray(numSorters);
+            importNanos = new AtomicLongArray(numSorters);
+            fileSorted = new AtomicIntegerArray(numSorters);
+        }
+
+        void log(List<gov.tak.api.importfiles.ImportResolver> sorters) {
+            for (int i = 0; i < sorters.size(); i++) {
+                if (matchCount.get(i) == 0)
+                    continue;
+                Log.d(TAG, sorters.get(i).getDisplayableName() + " ("
+                        + sorters.get(i).getClass().getSimpleName() + "): "
+                        + matchCount.get(i) + " matches in "
+                        + matchNanos.get(i) / 1000000L + "ms, "
+                        + importCount.get(i) + " imports in "
+                        + importNanos.get(i) / 1000000L + "ms");
+            }
+        }
     }
 }
@@ -10,7 +10,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,6 +24,13 @@ import java.util.concurrent.ConcurrentHashMap;
  * coloring and styling).
  */
 public class DefaultMapGroup extends MapGroup {
+
+    /**
+     * Groups with fewer items than this are scanned directly rather than
+     * querying the spatial index of the root group
+     */
+    private final static int SPATIAL_INDEX_THRESHOLD = 256;
+
     /**
      * Create an empty MapGroup
      */
@@ -232,6 +238,13 @@ public class DefaultMapGroup extends MapGroup {
 
     @Override
     public MapItem deepFindUID(final String uid) {
+        final RootMapGroup root = RootMapGroup.getRoot(this);
+        if (root != null) {
+            final MapItem indexed = root.getUidIndex().get(uid);
+            if (indexed != null && RootMapGroup.isDescendant(indexed, this))
+                return indexed;
+        }
+
         Collection<MapItem> items = this.getItems();
         for (MapItem item : items) {
             if (item.getUID().equals(uid))
@@ -408,7 +421,7 @@ public class DefaultMapGroup extends MapGroup {
 
         MetaDataMapItemFilter filter = new MetaDataMapItemFilter(metadata);
         double distance;
-        for (MapItem i : _items.values()) {
+        for (MapItem i : getCandidates(location, threshold)) {
             distance = MapItem.computeDistance(i, location);
             if (Double.isNaN(distance) || distance > threshold)
                 continue;
@@ -428,13 +441,13 @@ public class DefaultMapGroup extends MapGroup {
             final double radius,
             final Map<String, String> metadata) {
 
-        final Collection<MapItem> candidates = new LinkedList<>();
+        final Collection<MapItem> candidates = new ArrayList<>();
 
         if (location != null) {
             final MetaDataMapItemFilter filter = new MetaDataMapItemFilter(
                     metadata);
             double distance;
-            for (MapItem i : _items.values()) {
+            for (MapItem i : getCandidates(location, radius)) {
                 distance = MapItem.computeDistance(i, location);
                 if (Double.isNaN(distance) || distance > radius)
                     continue;
@@ -455,8 +468,17 @@ public class DefaultMapGroup extends MapGroup {
                         ? null
                         : new MetaDataMapItemFilter(metadata);
 
-        Collection<MapItem> candidates = new LinkedList<>();
-        for (MapItem i : _items.values()) {
+        Collection<MapItem> items = _items.values();
+        final MapItemSpatialIndex index = bounds == null ? null
+                : getSpatialIndex();
+        if (index != null) {
+            final List<MapItem> indexed = new ArrayList<>();
+            index.query(bounds, indexed);
+            items = filterMembers(indexed);
+        }
+
+        Collection<MapItem> candidates = new ArrayList<>();
+        for (MapItem i : items) {
             if (boundsfilter != null && !boundsfilter.accept(i))
                 continue;
 
@@ -473,7 +495,7 @@ public class DefaultMapGroup extends MapGroup {
     public Collection<MapItem> deepFindItems(GeoBounds bounds,
             Map<String, String> metadata) {
 
-        LinkedList<MapItem> retval = new LinkedList<>(
+        List<MapItem> retval = new ArrayList<>(
                 this.findItems(bounds, metadata));
 
         Collection<MapGroup> children = this.getChildGroups();
@@ -483,6 +505,38 @@ public class DefaultMapGroup extends MapGroup {
         return retval;
     }
 
+    /**
+     * Returns the items of this group that may be within the specified
+     * distance of the location. Large groups attached to the map are served
+     * by the spatial index of the root group.
+     */
+    private Collection<MapItem> getCandidates(GeoPoint location,
+            double radius) {
+        final MapItemSpatialIndex index = location == null ? null
+                : getSpatialIndex();
+        if (index == null)
+            return _items.values();
+        final List<MapItem> indexed = new ArrayList<>();
+        index.query(location, radius, indexed);
+        return filterMembers(indexed);
+    }
+
+    private List<MapItem> filterMembers(List<MapItem> items) {
+        final List<MapItem> retval = new ArrayList<>(items.size());
+        for (MapItem i : items) {
+            if (containsItem(i))
+                retval.add(i);
+        }
+        return retval;
+    }
+
+    private MapItemSpatialIndex getSpatialIndex() {
+        if (_items.size() < SPATIAL_INDEX_THRESHOLD)
+            return null;
+        final RootMapGroup root = RootMapGroup.getRoot(this);
+        return (root != null) ? root.getSpatialIndex() : null;
+    }
+
     /**************************************************************************/
 
     public static class MetaDataMapItemFilter implements
@@ -9,6 +9,7 @@ import com.atakmap.util.ReadWriteLock;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -67,6 +68,76 @@ public class EventSet {
         private ArrayList<ArrayList<Observer>> furtherLevels;
         private final ReadWriteLock lock = new ReadWriteLock();
 
+        // open batch, if any; allocated only while a batch is in progress
+        private volatile Batch batch;
+
+        /**
+         * Begin a batch of changes. Until the matching {@link #endBatch()},
+         * events invoked on the calling thread are held back rather than
+         * delivered, and an event that is invoked again with the same
+         * arguments is only delivered once. Batches may be nested, and
+         * events invoked on other threads are delivered immediately.
+         */
+        public void beginBatch() {
+            synchronized (this) {
+                Batch b = batch;
+                if (b == null)
+                    batch = new Batch(Thread.currentThread());
+                else if (b.owner == Thread.currentThread())
+                    b.depth++;
+            }
+        }
+
+        /**
+         * End a batch of changes started by {@link #beginBatch()}. When the
+         * outermost batch ends, the held back events are delivered in the
+         * order of their last invocation.
+         */
+        public void endBatch() {
+            final Batch b;
+            synchronized (this) {
+                b = batch;
+                if (b == null || b.owner != Thread.currentThread())
+                    return;
+                if (--b.depth > 0)
+                    return;
+                batch = null;
+            }
+            for (Deferred d : b.pending)
+                invokeImpl(d.event, d.a, d.b, d.c, d.d, d.e);
+        }
+
+        /**
+         * Hold back an invocation if the calling thread has a batch open
+         *
+         * @return true if the invocation was deferred
+         */
+        private boolean defer(Parameters5<?, ?, ?, ?, ?, ?> event, Object a,
+                Object b, Object c, Object d, Object e) {
+            synchronized (this) {
+                final Batch batch = this.batch;
+                if (batch == null || batch.owner != Thread.currentThread())
+                    return false;
+
+                // only search the pending events if this one may be there
+                final long bit = getEventBit(event.id);
+                if (getEventLevel(event.id) > 0
+                        || (batch.dirty & bit) != 0) {
+                    for (int i = 0; i < batch.pending.size(); i++) {
+                        if (batch.pending.get(i).matches(event, a, b, c, d,
+                                e)) {
+                            batch.pending.add(batch.pending.remove(i));
+                            return true;
+                        }
+                    }
+                }
+                if (getEventLevel(event.id) == 0)
+                    batch.dirty |= bit;
+                batch.pending.add(new Deferred(event, a, b, c, d, e));
+                return true;
+            }
+        }
+
         /**
          * Add a listener for a given event
          *
@@ -319,6 +390,9 @@ public class EventSet {
                 Parameters5<Listener, A, B, C, D, E> event, A a, B b, C c, D d,
                 E e) {
 
+            if (batch != null && defer(event, a, b, c, d, e))
+                return;
+
             // gather up listeners to invoke, avoid heap allocations unless necessary (to reduce garbage)
             Observer[] invokes = {
                     null, null, null
@@ -798,6 +872,53 @@ public class EventSet {
         final Object listener;
     }
 
+    // Events held back by an open batch. Only the owning thread defers
+    // events, all access is synchronized on the owning Listeners.
+    private static class Batch {
+
+        Batch(Thread owner) {
+            this.owner = owner;
+        }
+
+        final Thread owner;
+        int depth = 1;
+
+        // bits of the level 0 events that are pending
+        long dirty;
+
+        final ArrayList<Deferred> pending = new ArrayList<>();
+    }
+
+    // A single held back event invocation
+    private static class Deferred {
+
+        Deferred(Parameters5<?, ?, ?, ?, ?, ?> event, Object a, Object b,
+                Object c, Object d, Object e) {
+            // the arguments were supplied with the event's own type arguments
+            @SuppressWarnings("unchecked")
+            final Parameters5<Object, Object, Object, Object, Object, Object> typed = (Parameters5<Object, Object, Object, Object, Object, Object>) event;
+            this.event = typed;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+            this.e = e;
+        }
+
+        boolean matches(Parameters5<?, ?, ?, ?, ?, ?> event, Object a,
+                Object b, Object c, Object d, Object e) {
+            return this.event == event
+                    && Objects.equals(this.a, a)
+                    && Objects.equals(this.b, b)
+                    && Objects.equals(this.c, c)
+                    && Objects.equals(this.d, d)
+                    && Objects.equals(this.e, e);
+        }
+
+        final Parameters5<Object, Object, Object, Object, Object, Object> event;
+        final Object a, b, c, d, e;
+    }
+
     private static long atomicRemoveBits(final AtomicLong dst,
             final long bits) {
         long oldValue = dst.get();
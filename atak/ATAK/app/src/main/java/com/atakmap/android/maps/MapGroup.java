@@ -17,7 +17,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -462,7 +461,7 @@ public abstract class MapGroup extends FilterMetaDataHolder implements
     @Override
     public Collection<MapItem> deepFindItems(GeoPoint location, double radius,
             Map<String, String> metadata) {
-        LinkedList<MapItem> retval = new LinkedList<>(
+        List<MapItem> retval = new ArrayList<>(
                 this.findItems(location, radius, metadata));
 
         Collection<MapGroup> children = this.getChildGroups();
@@ -68,6 +68,11 @@ import gov.tak.api.util.AttributeSet;
  * <li>When <b>visible</b> is <i>false</i>, no element of the MapItem is drawn</li>
  * <li>A lower <b>zOrder</b> will be drawn over a higher <b>zOrder</b></li>
  * </p>
+ * <p>
+ * Code that changes several properties at once, e.g. when applying an update received over the
+ * network, should do so between {@link #beginEdit()} and {@link #endEdit()} so that listeners are
+ * notified once per changed property rather than once per setter call.
+ * </p>
  */
 public abstract class MapItem extends FilterMetaDataHolder implements
         HashtagContent, VisibilityListener {
@@ -815,6 +820,26 @@ public abstract class MapItem extends FilterMetaDataHolder implements
         return false;
     }
 
+    /**
+     * Begin an edit of this item. Until the matching {@link #endEdit()}, property change
+     * events raised on the calling thread are held back; each distinct change is then
+     * delivered once, when the edit ends. Edits may be nested, and changes made on other
+     * threads are delivered immediately. Per-key metadata listeners are not affected.
+     * <p>
+     * Callers must always end the edit, typically in a <code>finally</code> block.
+     */
+    public void beginEdit() {
+        eventListeners.beginBatch();
+    }
+
+    /**
+     * End an edit started by {@link #beginEdit()}, delivering the held back property
+     * change events once the outermost edit ends.
+     */
+    public void endEdit() {
+        eventListeners.endBatch();
+    }
+
     /**
      * Invokes when the clickable property changes
      */
@@ -0,0 +1,195 @@
+
+package com.atakmap.android.maps;
+
+import com.atakmap.android.hierarchy.filters.FOVFilter;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.math.PointD;
+import com.atakmap.util.Quadtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incrementally maintained spatial index over all of the items that have
+ * been added to the map. Point items are stored in a quadtree keyed on their
+ * location and are refreshed as their points change. Items that cannot be
+ * represented by a single location (shapes, anchored items, items that
+ * implement their own FOV acceptance) are tracked separately and are always
+ * returned as candidates.
+ *
+ * <P>Queries return candidates only; callers are expected to apply the exact
+ * distance or bounds test to the results.
+ */
+final class MapItemSpatialIndex implements
+        MapEventDispatcher.MapEventDispatchListener,
+        PointMapItem.OnPointChangedListener {
+
+    /** lower bound on the meters spanned by one degree of latitude */
+    private final static double METERS_PER_DEGREE = 110574d;
+
+    /** padding applied to the search region derived from a radius */
+    private final static double RADIUS_MARGIN = 1.01d;
+
+    private final Quadtree<PointMapItem> points;
+    private final Set<MapItem> others;
+
+    MapItemSpatialIndex() {
+        this.points = new Quadtree<>(new Quadtree.Function<PointMapItem>() {
+            @Override
+            public void getBounds(PointMapItem object, PointD min,
+                    PointD max) {
+                final GeoPoint p = object.getPoint();
+                min.x = p.getLongitude();
+                min.y = p.getLatitude();
+                max.x = min.x;
+                max.y = min.y;
+            }
+        }, -180d, -90d, 180d, 90d);
+        this.others = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void onMapEvent(MapEvent event) {
+        final MapItem item = event.getItem();
+        if (item == null)
+            return;
+        final String etype = event.getType();
+        if (etype.equals(MapEvent.ITEM_ADDED))
+            add(item);
+        else if (etype.equals(MapEvent.ITEM_REMOVED))
+            remove(item);
+    }
+
+    @Override
+    public void onPointChanged(PointMapItem item) {
+        synchronized (this.points) {
+            this.points.refresh(item);
+        }
+    }
+
+    void add(MapItem item) {
+        if (isIndexable(item)) {
+            final PointMapItem pmi = (PointMapItem) item;
+            pmi.removeOnPointChangedListener(this);
+            synchronized (this.points) {
+                // re-adding an item that is already indexed must not leave a
+                // stale reference in its previous node
+                this.points.remove(pmi);
+                this.points.add(pmi);
+            }
+            pmi.addOnPointChangedListener(this);
+        } else {
+            this.others.add(item);
+        }
+    }
+
+    void remove(MapItem item) {
+        if (isIndexable(item)) {
+            final PointMapItem pmi = (PointMapItem) item;
+            pmi.removeOnPointChangedListener(this);
+            synchronized (this.points) {
+                this.points.remove(pmi);
+            }
+        } else {
+            this.others.remove(item);
+        }
+    }
+
+    /**
+     * Returns the number of items tracked by the index.
+     */
+    int size() {
+        final int indexed;
+        synchronized (this.points) {
+            indexed = this.points.size();
+        }
+        return indexed + this.others.size();
+    }
+
+    /**
+     * Collects the items that may be within the specified distance of the
+     * location.
+     *
+     * @param location  The location
+     * @param radius    The search radius, in meters
+     * @param retval    Receives the candidates
+     */
+    void query(GeoPoint location, double radius,
+            Collection<MapItem> retval) {
+        if (location == null || Double.isNaN(radius) || radius < 0d)
+            return;
+
+        final double lat = location.getLatitude();
+        final double lng = location.getLongitude();
+        final double dlat = (radius / METERS_PER_DEGREE) * RADIUS_MARGIN;
+
+        final double south = Math.max(lat - dlat, -90d);
+        final double north = Math.min(lat + dlat, 90d);
+        final double maxLat = Math.max(Math.abs(south), Math.abs(north));
+
+        double dlng = Double.POSITIVE_INFINITY;
+        if (maxLat < 89d)
+            dlng = dlat / Math.cos(Math.toRadians(maxLat));
+
+        final List<PointMapItem> candidates = new ArrayList<>();
+        synchronized (this.points) {
+            if (dlng >= 180d) {
+                this.points.get(-180d, south, 180d, north, candidates);
+            } else if (lng - dlng < -180d) {
+                this.points.get(-180d, south, lng + dlng, north, candidates);
+                this.points.get(lng - dlng + 360d, south, 180d, north,
+                        candidates);
+            } else if (lng + dlng > 180d) {
+                this.points.get(lng - dlng, south, 180d, north, candidates);
+                this.points.get(-180d, south, lng + dlng - 360d, north,
+                        candidates);
+            } else {
+                this.points.get(lng - dlng, south, lng + dlng, north,
+                        candidates);
+            }
+        }
+        retval.addAll(candidates);
+        retval.addAll(this.others);
+    }
+
+    /**
+     * Collects the items that may intersect the specified bounds.
+     *
+     * @param bounds    The bounds
+     * @param retval    Receives the candidates
+     */
+    void query(GeoBounds bounds, Collection<MapItem> retval) {
+        if (bounds == null)
+            return;
+
+        final double south = bounds.getSouth();
+        final double north = bounds.getNorth();
+        double west = bounds.getWest();
+        double east = bounds.getEast();
+
+        // the FOV test is responsible for any wrapping semantics; only
+        // narrow the longitude when the bounds are unambiguous
+        if (bounds.crossesIDL() || west > east || west < -180d
+                || east > 180d) {
+            west = -180d;
+            east = 180d;
+        }
+
+        final List<PointMapItem> candidates = new ArrayList<>();
+        synchronized (this.points) {
+            this.points.get(west, south, east, north, candidates);
+        }
+        retval.addAll(candidates);
+        retval.addAll(this.others);
+    }
+
+    private static boolean isIndexable(MapItem item) {
+        return (item instanceof PointMapItem)
+                && !(item instanceof FOVFilter.Filterable);
+    }
+}
@@ -227,6 +227,10 @@ public class MapView extends AtakMapView {
                 MapEvent.ITEM_ADDED, _rootGroup.getUidIndex());
         getMapEventDispatcher().addMapEventListener(
                 MapEvent.ITEM_REMOVED, _rootGroup.getUidIndex());
+        getMapEventDispatcher().addMapEventListener(
+                MapEvent.ITEM_ADDED, _rootGroup.getSpatialIndex());
+        getMapEventDispatcher().addMapEventListener(
+                MapEvent.ITEM_REMOVED, _rootGroup.getSpatialIndex());
 
         _mapView = this;
 
@@ -1,9 +1,11 @@
 
 package com.atakmap.android.maps;
 
+import com.atakmap.android.hierarchy.filters.FOVFilter;
 import com.atakmap.android.maps.hittest.DeepHitTestQuery;
 import com.atakmap.android.maps.hittest.RootHitTestQuery;
 import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.map.hittest.HitTestQueryParameters;
 
@@ -33,6 +35,7 @@ public final class RootMapGroup extends DefaultMapGroup
 
     private final Map<DeepMapItemQuery, DeepQuerySpec> deepQueryFunctions;
     private final FastUIDLookup uidIndex;
+    private final MapItemSpatialIndex spatialIndex;
     private final RootHitTestQuery hitTester;
 
     RootMapGroup() {
@@ -40,6 +43,7 @@ public final class RootMapGroup extends DefaultMapGroup
 
         this.deepQueryFunctions = new IdentityHashMap<>();
         this.uidIndex = new FastUIDLookup();
+        this.spatialIndex = new MapItemSpatialIndex();
         this.hitTester = new RootHitTestQuery();
     }
 
@@ -47,6 +51,39 @@ public final class RootMapGroup extends DefaultMapGroup
         return this.uidIndex;
     }
 
+    MapItemSpatialIndex getSpatialIndex() {
+        return this.spatialIndex;
+    }
+
+    /**
+     * Returns the root of the hierarchy that the group is attached to.
+     *
+     * @param group A group
+     * @return The root group or <code>null</code> if the group is not
+     *         attached to a {@link RootMapGroup}
+     */
+    static RootMapGroup getRoot(MapGroup group) {
+        while (group != null) {
+            if (group instanceof RootMapGroup)
+                return (RootMapGroup) group;
+            group = group.getParentGroup();
+        }
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the item is a descendant of the group.
+     */
+    static boolean isDescendant(MapItem item, MapGroup group) {
+        MapGroup parent = item.getGroup();
+        while (parent != null) {
+            if (parent == group)
+                return true;
+            parent = parent.getParentGroup();
+        }
+        return false;
+    }
+
     synchronized void dispose() {
         this._groups.clear();
         this._items.clear();
@@ -78,14 +115,15 @@ public final class RootMapGroup extends DefaultMapGroup
         // XXX - MapItem.computeDistance is not well-defined over future
         // derivatives of MapItem
 
-        result = this.findClosestItem(location, threshold, metadata);
+        // items in the default groups are served by the spatial index
+        result = this.findClosestIndexedItem(location, threshold, metadata);
         if (result != null) {
             distance = MapItem.computeDistance(result, location);
             if (!Double.isNaN(distance))
                 candidates.put(distance, result);
         }
 
-        for (DeepMapItemQuery query : this.deepQueryFunctions.keySet()) {
+        for (DeepMapItemQuery query : this.getUnindexedQueries()) {
             try {
                 result = query.deepFindClosestItem(location, threshold,
                         metadata);
@@ -112,9 +150,24 @@ public final class RootMapGroup extends DefaultMapGroup
     public synchronized final Collection<MapItem> deepFindItems(
             GeoPoint location, double radius,
             Map<String, String> metadata) {
-        List<MapItem> retval = new LinkedList<>(
-                this.findItems(location, radius, metadata));
-        for (DeepMapItemQuery query : this.deepQueryFunctions.keySet())
+        final Set<MapItem> retval = Collections
+                .newSetFromMap(new IdentityHashMap<>());
+        if (location != null) {
+            final MetaDataMapItemFilter filter = new MetaDataMapItemFilter(
+                    metadata);
+            final List<MapItem> candidates = new ArrayList<>();
+            this.spatialIndex.query(location, radius, candidates);
+            double distance;
+            for (MapItem i : candidates) {
+                distance = MapItem.computeDistance(i, location);
+                if (Double.isNaN(distance) || distance > radius)
+                    continue;
+                if (!isDescendant(i, this) || !filter.onItemFunction(i))
+                    continue;
+                retval.add(i);
+            }
+        }
+        for (DeepMapItemQuery query : this.getUnindexedQueries())
             try {
                 retval.addAll(query.deepFindItems(location, radius, metadata));
             } catch (RuntimeException e) {
@@ -123,6 +176,111 @@ public final class RootMapGroup extends DefaultMapGroup
                 if (DEBUGGING)
                     throw e;
             }
+        return new ArrayList<>(retval);
+    }
+
+    @Override
+    public synchronized final Collection<MapItem> deepFindItems(
+            GeoBounds bounds, Map<String, String> metadata) {
+        final Set<MapItem> retval = Collections
+                .newSetFromMap(new IdentityHashMap<>());
+        final FOVFilter boundsfilter = bounds == null ? null
+                : new FOVFilter(bounds);
+        final MetaDataMapItemFilter metafilter = (metadata == null
+                || metadata.isEmpty())
+                        ? null
+                        : new MetaDataMapItemFilter(metadata);
+
+        final List<MapItem> candidates = new ArrayList<>();
+        if (bounds != null)
+            this.spatialIndex.query(bounds, candidates);
+        else
+            candidates.addAll(this.uidIndex.getItems());
+        for (MapItem i : candidates) {
+            if (boundsfilter != null && !boundsfilter.accept(i))
+                continue;
+            if (metafilter != null && !metafilter.onItemFunction(i))
+                continue;
+            if (!isDescendant(i, this))
+                continue;
+            retval.add(i);
+        }
+
+        for (MapGroup child : this.getUnindexedGroups(this))
+            retval.addAll(child.deepFindItems(bounds, metadata));
+
+        return new ArrayList<>(retval);
+    }
+
+    /**
+     * Finds the closest item in the default groups of the hierarchy using the
+     * spatial index.
+     */
+    private MapItem findClosestIndexedItem(GeoPoint location,
+            double threshold, Map<String, String> metadata) {
+        if (location == null)
+            return null;
+
+        final List<MapItem> candidates = new ArrayList<>();
+        this.spatialIndex.query(location, threshold, candidates);
+
+        MapItem candidate = null;
+        double candidateDistance = Double.NaN;
+
+        final MetaDataMapItemFilter filter = new MetaDataMapItemFilter(
+                metadata);
+        double distance;
+        for (MapItem i : candidates) {
+            distance = MapItem.computeDistance(i, location);
+            if (Double.isNaN(distance) || distance > threshold)
+                continue;
+            if (!Double.isNaN(candidateDistance)
+                    && distance >= candidateDistance)
+                continue;
+            if (!isDescendant(i, this) || !filter.onItemFunction(i))
+                continue;
+            candidate = i;
+            candidateDistance = distance;
+        }
+        return candidate;
+    }
+
+    /**
+     * Returns the deep queries whose results are not covered by the spatial
+     * index. Default groups registered as their own query are covered by the
+     * index, with the exception of any custom groups in their hierarchy.
+     */
+    private List<DeepMapItemQuery> getUnindexedQueries() {
+        final List<DeepMapItemQuery> retval = new ArrayList<>();
+        for (Map.Entry<DeepMapItemQuery, DeepQuerySpec> entry : this.deepQueryFunctions
+                .entrySet()) {
+            final DeepMapItemQuery query = entry.getKey();
+            final DeepQuerySpec spec = entry.getValue();
+            if (spec != null && spec.identity
+                    && query instanceof DefaultMapGroup)
+                retval.addAll(getUnindexedGroups((MapGroup) query));
+            else
+                retval.add(query);
+        }
+        return retval;
+    }
+
+    /**
+     * Collects the non-default groups in the hierarchy of the specified
+     * group. Items in these groups may not be reachable through the map
+     * event driven indices, so they are queried directly.
+     */
+    private static List<MapGroup> getUnindexedGroups(MapGroup group) {
+        final List<MapGroup> retval = new ArrayList<>();
+        final LinkedList<MapGroup> pending = new LinkedList<>(
+                group.getChildGroups());
+        while (!pending.isEmpty()) {
+            final MapGroup child = pending.removeFirst();
+            if (child instanceof DefaultMapGroup)
+                pending.addAll(child.getChildGroups());
+            else
+                retval.add(child);
+        }
         return retval;
     }
 
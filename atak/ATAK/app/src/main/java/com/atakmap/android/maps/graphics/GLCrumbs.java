@@ -4,6 +4,7 @@ package com.atakmap.android.maps.graphics;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.lang.Unsafe;
 import com.atakmap.map.elevation.ElevationManager;
+import com.atakmap.map.elevation.ElevationSampleCache;
 import com.atakmap.map.opengl.GLMapRenderable2;
 import com.atakmap.map.opengl.GLMapView;
 import com.atakmap.map.projection.Projection;
@@ -129,6 +130,12 @@ final class GLCrumbs implements GLMapRenderable2 {
     boolean _lollipopsVisible;
     boolean _clampToGroundAtNadir;
     int _lastDrawSrid = 4978;
+    ElevationSampleCache _surfaceCache;
+    // resolution of the elevation data under the most recently filled tile,
+    // in meters; NaN if unknown
+    double _surfaceResolution = Double.NaN;
+    boolean _surfaceFillPending;
+    final double[] _surfaceSample = new double[1];
 
     GLCrumbs() {
         _crumbShader = new CrumbShader();
@@ -235,9 +242,10 @@ final class GLCrumbs implements GLMapRenderable2 {
         buf.order(buffer.data.order()); // ByteBuffer.duplicate() does NOT preserve order
         buf.position(pos);
 
-        // micro-optimize against pulling terrain more than necessary
-        double surfaceEl = ElevationManager.getElevation(location.getLatitude(),
-                location.getLongitude(), null);
+        // micro-optimize against pulling terrain more than necessary; trails
+        // stay within a few tiles so the surface is sampled from the cache
+        double surfaceEl = getSurfaceElevation(location.getLatitude(),
+                location.getLongitude());
         if (Double.isNaN(surfaceEl))
             surfaceEl = 0d;
         final double pointEl = Double.isNaN(location.getAltitude())
@@ -546,12 +554,70 @@ final class GLCrumbs implements GLMapRenderable2 {
         GLES30.glDisableVertexAttribArray(_lollipopShader.aDrawLollipop);
     }
 
+    /**
+     * Returns the surface elevation from a cached tile. On a miss the point
+     * is queried directly, preserving the highest resolution value, and the
+     * tile is filled in the background.
+     */
+    private synchronized double getSurfaceElevation(double lat, double lng) {
+        final ElevationSampleCache cache = getSurfaceCache();
+        if (!Double.isNaN(_surfaceResolution) && cache.getCachedElevation(null,
+                lat, lng, _surfaceResolution, _surfaceSample))
+            return _surfaceSample[0];
+        if (!_surfaceFillPending) {
+            _surfaceFillPending = true;
+            fillSurfaceCache(cache, lat, lng);
+        }
+        return ElevationManager.getElevation(lat, lng, null);
+    }
+
+    /**
+     * Loads the tile containing the location, at the resolution of the data
+     * at that location, off of the render thread.
+     */
+    private void fillSurfaceCache(final ElevationSampleCache cache,
+            final double lat, final double lng) {
+        new Thread("GLCrumbs-surface") {
+            @Override
+            public void run() {
+                double resolution = Double.NaN;
+                try {
+                    resolution = ElevationSampleCache.getSourceResolution(lat,
+                            lng);
+                    if (!Double.isNaN(resolution))
+                        cache.prefetch(null, lat, lng, resolution);
+                } finally {
+                    synchronized (GLCrumbs.this) {
+                        if (_surfaceCache == cache)
+                            _surfaceResolution = resolution;
+                        _surfaceFillPending = false;
+                    }
+                }
+            }
+        }.start();
+    }
+
+    private synchronized ElevationSampleCache getSurfaceCache() {
+        if (_surfaceCache == null)
+            _surfaceCache = new ElevationSampleCache(null, Double.NaN,
+                    ElevationSampleCache.DEFAULT_MAX_SIZE);
+        return _surfaceCache;
+    }
+
     @Override
     public void release() {
         for (CrumbBuffer buffer : _vertexBuffers.values())
             Unsafe.free(buffer.data);
         _vertexBuffers.clear();
 
+        synchronized (this) {
+            if (_surfaceCache != null) {
+                _surfaceCache.dispose();
+                _surfaceCache = null;
+                _surfaceResolution = Double.NaN;
+            }
+        }
+
         if (_crumbShader.handle != GLES30.GL_NONE) {
             GLES30.glDeleteProgram(_crumbShader.handle);
             _crumbShader.handle = GLES30.GL_NONE;
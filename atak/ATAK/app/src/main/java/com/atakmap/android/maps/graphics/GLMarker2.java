@@ -100,6 +100,24 @@ public class GLMarker2 extends GLPointMapItem2 implements
     private final GLLabelManager _labelManager;
     private String _extraLinesText;
 
+    // label text waiting on the GL thread; title and summary changes made
+    // before the refresh runs are applied by the one refresh already queued
+    private String _pendingTitle;
+    private String _pendingExtraLines;
+    private boolean _labelRefreshQueued;
+    private final Runnable _labelRefresh = new Runnable() {
+        @Override
+        public void run() {
+            final String title, extraLines;
+            synchronized (this) {
+                title = _pendingTitle;
+                extraLines = _pendingExtraLines;
+                _labelRefreshQueued = false;
+            }
+            refreshLabel(title, extraLines);
+        }
+    };
+
     private boolean _nadirClamp;
 
     GLLabelManager.Priority _labelPriority = GLLabelManager.Priority.Standard;
@@ -471,26 +489,26 @@ public class GLMarker2 extends GLPointMapItem2 implements
 
     @Override
     public void onTitleChanged(final Marker marker) {
-        final String title = getTitle(marker);
-        final String extraLines = getExtraLines(marker);
-        this.context.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                refreshLabel(title, extraLines);
-            }
-        });
+        queueLabelRefresh(marker);
     }
 
     @Override
     public void onSummaryChanged(Marker marker) {
+        queueLabelRefresh(marker);
+    }
+
+    private void queueLabelRefresh(Marker marker) {
         final String title = getTitle(marker);
         final String extraLines = getExtraLines(marker);
-        this.context.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                refreshLabel(title, extraLines);
-            }
-        });
+        final boolean queue;
+        synchronized (_labelRefresh) {
+            _pendingTitle = title;
+            _pendingExtraLines = extraLines;
+            queue = !_labelRefreshQueued;
+            _labelRefreshQueued = true;
+        }
+        if (queue)
+            this.context.queueEvent(_labelRefresh);
     }
 
     @Override
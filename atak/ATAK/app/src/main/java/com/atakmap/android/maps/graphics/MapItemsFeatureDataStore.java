@@ -1,8 +1,6 @@
 
 package com.atakmap.android.maps.graphics;
 
-import android.util.Pair;
-
 import com.atakmap.android.maps.MapItem;
 import com.atakmap.map.layer.feature.AttributeSet;
 import com.atakmap.map.layer.feature.Feature;
@@ -12,7 +10,9 @@ import com.atakmap.map.layer.feature.FeatureSetCursor;
 import com.atakmap.map.layer.feature.datastore.AbstractReadOnlyFeatureDataStore2;
 import com.atakmap.map.layer.feature.geometry.Envelope;
 import com.atakmap.math.MathUtils;
+import com.atakmap.math.PointD;
 import com.atakmap.math.Rectangle;
+import com.atakmap.util.Quadtree;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -27,6 +27,7 @@ import java.util.concurrent.atomic.AtomicLong;
 final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
         implements GLMapItemFeature.Callback {
     private static final int _initialDictionaryCapacity = 100003;
+    private static final int _indexNodeLimit = 32;
 
     private AtomicLong _currentFid = new AtomicLong(1);
     private boolean _disposed = false;
@@ -52,15 +53,46 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
             _initialDictionaryCapacity);
     private final GLMapItemFeatures _features;
 
-    private volatile Pair<Integer, ArrayList<Record>> cachedRecords;
+    /**
+     * Incremented whenever a record is inserted or deleted. Used to
+     * determine if the cached list of all records is stale.
+     */
+    private final AtomicLong _membershipVersion = new AtomicLong(0);
+    /**
+     * Incremented on every change reported via {@link #onItemChanged(MapItem)},
+     * including inserts and deletes. Used to determine if the results of the
+     * last spatial query are stale.
+     */
+    private final AtomicLong _contentVersion = new AtomicLong(0);
+
+    private volatile Snapshot cachedRecords;
+    private volatile SpatialQuery cachedQuery;
 
     private final ConcurrentLinkedQueue<Record> markedForDelete = new ConcurrentLinkedQueue<>();
 
+    /**
+     * Index over the bounds of all observed records. Records are (re)indexed
+     * lazily on query from {@link #_dirty}; access is guarded by the index
+     * monitor.
+     */
+    private final Quadtree<Record> _index;
+    /** records changed since they were last indexed */
+    private final ConcurrentLinkedQueue<Record> _dirty = new ConcurrentLinkedQueue<>();
+
     MapItemsFeatureDataStore(GLMapItemFeatures features) {
         super(0, 0);
         _features = features;
-        cachedRecords = new Pair<>(_content.hashCode(),
+        cachedRecords = new Snapshot(_membershipVersion.get(),
                 new ArrayList<>(_content.values()));
+        _index = new Quadtree<>(new Quadtree.Function<Record>() {
+            @Override
+            public void getBounds(Record object, PointD min, PointD max) {
+                min.x = object.minX;
+                min.y = object.minY;
+                max.x = object.maxX;
+                max.y = object.maxY;
+            }
+        }, _indexNodeLimit, -180d, -90d, 180d, 90d);
 
         Thread t = new Thread(new ContentChangedDispatcher(),
                 "MapItemsFeatureDSChanged");
@@ -85,6 +117,7 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
         final boolean editing = item.getEditing();
         if (_content.putIfAbsent(item,
                 new Record(item, feature, editing)) == null) {
+            _membershipVersion.incrementAndGet();
             if (editing)
                 feature.startObserving(item, this);
             onItemChanged(item);
@@ -97,6 +130,7 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
     void delete(MapItem item) {
         Record feature = _content.remove(item);
         if (feature != null) {
+            _membershipVersion.incrementAndGet();
             markedForDelete.add(feature);
             onItemChanged(item);
         }
@@ -122,16 +156,28 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
                 break;
         } while (true);
 
+        // capture the version before the index is brought up-to-date; any
+        // change that is not reflected in the index will bump the version
+        final long version = _contentVersion.get();
+
         if (!markedForDelete.isEmpty()) {
-            Iterator<Record> iterator = markedForDelete.iterator();
-            while (iterator.hasNext()) {
-                final Record feature = iterator.next();
-                if (feature.observing.getAndSet(false))
-                    feature.glfeature.stopObserving();
-                iterator.remove();
+            synchronized (_index) {
+                Iterator<Record> iterator = markedForDelete.iterator();
+                while (iterator.hasNext()) {
+                    final Record feature = iterator.next();
+                    if (feature.observing.getAndSet(false))
+                        feature.glfeature.stopObserving();
+                    if (feature.indexed) {
+                        _index.remove(feature);
+                        feature.indexed = false;
+                    }
+                    iterator.remove();
+                }
             }
         }
 
+        validateIndex();
+
         ArrayList<Record> records;
         if (params.ids != null) {
             records = new ArrayList<>(params.ids.size());
@@ -144,13 +190,27 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
                     continue;
                 records.add(record);
             }
+        } else if (params.spatialFilter != null) {
+            final Envelope filter = params.spatialFilter.getEnvelope();
+            final SpatialQuery cached = cachedQuery;
+            if (cached != null && cached.matches(version, filter)) {
+                records = cached.records;
+            } else {
+                records = new ArrayList<>();
+                synchronized (_index) {
+                    _index.get(filter.minX, filter.minY, filter.maxX,
+                            filter.maxY, records);
+                }
+                cachedQuery = new SpatialQuery(version, filter, records);
+            }
         } else {
-            final int v = _content.hashCode();
-            if (v == cachedRecords.first) {
-                records = cachedRecords.second;
+            final long v = _membershipVersion.get();
+            final Snapshot cached = cachedRecords;
+            if (v == cached.version) {
+                records = cached.records;
             } else {
                 records = new ArrayList<>(_content.values());
-                cachedRecords = new Pair<>(v, records);
+                cachedRecords = new Snapshot(v, records);
             }
         }
         return new FeatureCursorImpl(records,
@@ -162,6 +222,49 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
                         : null);
     }
 
+    /**
+     * Brings the spatial index up-to-date with all records that have changed
+     * since the last query. Records that are not yet observed start
+     * observation here so that their bounds are available for indexing.
+     */
+    private void validateIndex() {
+        if (_dirty.isEmpty())
+            return;
+        synchronized (_index) {
+            Record record;
+            while ((record = _dirty.poll()) != null) {
+                // reset prior to reading the bounds so that any concurrent
+                // change re-queues the record
+                record.dirty.set(false);
+                // the record was deleted; removal from the index is handled
+                // via `markedForDelete`
+                if (_content.get(record.item) != record)
+                    continue;
+                if (record.observing.compareAndSet(false, true))
+                    record.glfeature.startObserving(record.item, this);
+                final Envelope bounds = record.glfeature.getBounds();
+                if (record.indexed &&
+                        bounds.minX == record.minX &&
+                        bounds.minY == record.minY &&
+                        bounds.maxX == record.maxX &&
+                        bounds.maxY == record.maxY) {
+
+                    continue;
+                }
+                record.minX = bounds.minX;
+                record.minY = bounds.minY;
+                record.maxX = bounds.maxX;
+                record.maxY = bounds.maxY;
+                if (record.indexed) {
+                    _index.refresh(record);
+                } else {
+                    _index.add(record);
+                    record.indexed = true;
+                }
+            }
+        }
+    }
+
     @Override
     public FeatureSetCursor queryFeatureSets(FeatureSetQueryParameters params) {
         return FeatureSetCursor.EMPTY;
@@ -211,6 +314,14 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
 
     @Override
     public void onItemChanged(MapItem item) {
+        // queue the record for reindexing; the version is bumped after the
+        // record is queued so a query observing the new version is
+        // guaranteed to see the record
+        final Record record = _content.get(item);
+        if (record != null && record.dirty.compareAndSet(false, true))
+            _dirty.add(record);
+        _contentVersion.incrementAndGet();
+
         // mark and notify content changed if unset
         do {
             final int bs = _contentChanged.get();
@@ -321,6 +432,15 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
         final MapItem item;
         final GLMapItemFeature glfeature;
         final AtomicBoolean observing;
+        /** set while the record is queued for reindexing */
+        final AtomicBoolean dirty = new AtomicBoolean(false);
+
+        // indexed bounds; guarded by the index monitor
+        boolean indexed;
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
 
         Record(MapItem item, GLMapItemFeature glfeature, boolean observing) {
             this.item = item;
@@ -329,6 +449,45 @@ final class MapItemsFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
         }
     }
 
+    /** all records as of a membership version */
+    final static class Snapshot {
+        final long version;
+        final ArrayList<Record> records;
+
+        Snapshot(long version, ArrayList<Record> records) {
+            this.version = version;
+            this.records = records;
+        }
+    }
+
+    /** candidates returned by the index for the most recent spatial query */
+    final static class SpatialQuery {
+        final long version;
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        final ArrayList<Record> records;
+
+        SpatialQuery(long version, Envelope filter,
+                ArrayList<Record> records) {
+            this.version = version;
+            this.minX = filter.minX;
+            this.minY = filter.minY;
+            this.maxX = filter.maxX;
+            this.maxY = filter.maxY;
+            this.records = records;
+        }
+
+        boolean matches(long version, Envelope filter) {
+            return this.version == version &&
+                    this.minX == filter.minX &&
+                    this.minY == filter.minY &&
+                    this.maxX == filter.maxX &&
+                    this.maxY == filter.maxY;
+        }
+    }
+
     class FeatureCursorImpl implements FeatureCursor, FeatureDefinition3 {
         final List<Record> _records;
         final Envelope _spatialFilter;
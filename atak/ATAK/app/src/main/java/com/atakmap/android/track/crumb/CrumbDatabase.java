@@ -19,7 +19,6 @@ import com.atakmap.app.ATAKDatabaseHelper;
 import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.DatabaseInformation;
-import com.atakmap.coremap.io.IOProvider;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.GeoPoint;
@@ -40,9 +39,7 @@ import com.ekito.simpleKML.model.Track;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
@@ -61,7 +58,14 @@ public class CrumbDatabase {
     public static final double VALUE_UNKNOWN = GeoPoint.UNKNOWN;
     private static final int MAX_TITLE_LENGTH = 30;
 
-    private final Set<Crumb> crumbsToProcess = new HashSet<>();
+    /**
+     * The default maximum amount of time, in milliseconds, that a crumb is
+     * queued before it is written to the database.
+     */
+    public static final long DEFAULT_MAX_FLUSH_LATENCY = 500L;
+
+    private final List<Crumb> crumbsToProcess = new ArrayList<>();
+    private volatile long maxFlushLatency = DEFAULT_MAX_FLUSH_LATENCY;
     private final ExecutorService pool = Executors
             .newSingleThreadExecutor(new NamedThreadFactory(
                     "CrumbPool"));
@@ -74,6 +78,7 @@ public class CrumbDatabase {
     private final ConcurrentLinkedQueue<OnCrumbListener> _listeners = new ConcurrentLinkedQueue<>();
 
     private final Object lock = new Object();
+    private final Object readLock = new Object();
 
     public interface OnCrumbListener {
         void onCrumbAdded(int trackId, Crumb c);
@@ -160,6 +165,17 @@ public class CrumbDatabase {
 
     private DatabaseIface crumbdb;
 
+    /**
+     * Connection used for the track and crumb queries, paired with the lock
+     * that guards it. When the database is in WAL mode this is a separate
+     * read-only connection guarded by <code>readLock</code>; readers see the
+     * last committed state and are not blocked by the crumb writer.
+     * Otherwise reads are serviced by <code>crumbdb</code> under
+     * <code>lock</code>. The pair is replaced as a unit so that a reader never
+     * holds one connection's lock while querying another.
+     */
+    private volatile ReadConnection reader;
+
     private static CrumbDatabase instance;
 
     public static synchronized CrumbDatabase instance() {
@@ -196,10 +212,7 @@ public class CrumbDatabase {
                 }
             } catch (Exception ignored) {
             }
-            if (IOProviderFactory.exists(CRUMB_DB_FILE2)) {
-                IOProviderFactory.delete(CRUMB_DB_FILE2,
-                        IOProvider.SECURE_DELETE);
-            }
+            ATAKDatabaseHelper.deleteDatabase(CRUMB_DB_FILE2);
             newCrumbDb = IOProviderFactory.createDatabase(dbi);
         } else {
 
@@ -209,10 +222,7 @@ public class CrumbDatabase {
                 results = newCrumbDb.query(sql, null);
                 boolean exists = results.moveToNext();
                 if (!exists) {
-                    if (IOProviderFactory.exists(CRUMB_DB_FILE2)) {
-                        IOProviderFactory.delete(CRUMB_DB_FILE2,
-                                IOProvider.SECURE_DELETE);
-                    }
+                    ATAKDatabaseHelper.deleteDatabase(CRUMB_DB_FILE2);
                     newCrumbDb = IOProviderFactory.createDatabase(dbi);
                 }
             } finally {
@@ -229,9 +239,28 @@ public class CrumbDatabase {
             onUpgrade(newCrumbDb, newCrumbDb.getVersion(), DATABASE_VERSION);
         }
 
+        createIndices(newCrumbDb);
+
+        final ReadConnection newReader = openReader(newCrumbDb,
+                CRUMB_DB_FILE2, lock, readLock);
+
+        final ReadConnection oldReader = reader;
+
         // swap only after the newCrumbDb is good to go.
-        crumbdb = newCrumbDb;
+        synchronized (lock) {
+            crumbdb = newCrumbDb;
+        }
+        reader = newReader;
 
+        try {
+            // wait out any query still running on the old connection
+            if (oldReader != null && oldReader.dedicated) {
+                synchronized (oldReader.lock) {
+                    oldReader.database.close();
+                }
+            }
+        } catch (Exception ignored) {
+        }
         try {
             if (oldCrumbDb != null)
                 oldCrumbDb.close();
@@ -240,6 +269,116 @@ public class CrumbDatabase {
 
     }
 
+    /**
+     * Opens the connection used for queries. Readers only get their own
+     * read-only connection if they are guaranteed not to be blocked by the
+     * crumb writer, i.e. if the database could be switched to WAL mode;
+     * otherwise they share the writer's connection and lock.
+     *
+     * @param db        the writer's connection
+     * @param file      the database file
+     * @param lock      the lock guarding the writer's connection
+     * @param readLock  the lock to guard a dedicated read connection
+     * @return the read connection
+     */
+    static ReadConnection openReader(DatabaseIface db, File file,
+            Object lock, Object readLock) {
+        if (enableWriteAheadLogging(db)) {
+            try {
+                DatabaseIface readDb = IOProviderFactory.createDatabase(
+                        new DatabaseInformation(Uri.fromFile(file),
+                                DatabaseInformation.OPTION_RESERVED1
+                                        | DatabaseInformation.OPTION_READONLY));
+                if (readDb != null)
+                    return new ReadConnection(readLock, readDb, true);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to open read connection", e);
+            }
+        }
+        return new ReadConnection(lock, db, false);
+    }
+
+    /**
+     * Creates the indices used by the segment and crumb queries if they do
+     * not already exist.
+     */
+    static void createIndices(DatabaseIface db) {
+        try {
+            db.execute("CREATE INDEX IF NOT EXISTS "
+                    + BREADCRUMB_TABLE_NAME2 + "_segment_timestamp_idx ON "
+                    + BREADCRUMB_TABLE_NAME2 + "(" + COLUMN_SEGMENT_ID + ", "
+                    + COLUMN_TIMESTAMP + ")", null);
+            db.execute("CREATE INDEX IF NOT EXISTS "
+                    + SEGMENT_TABLE_NAME + "_uid_timestamp_idx ON "
+                    + SEGMENT_TABLE_NAME + "(" + SEG_COLUMN_USER_UID + ", "
+                    + SEG_COLUMN_TIMESTAMP + ")", null);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to create indices", e);
+        }
+    }
+
+    /**
+     * Switches the database to write-ahead logging so that readers on a
+     * separate connection are not blocked by the batched crumb inserts.
+     *
+     * @return <code>true</code> if the database is in WAL mode
+     */
+    private static boolean enableWriteAheadLogging(DatabaseIface db) {
+        CursorIface result = null;
+        try {
+            result = db.query("PRAGMA journal_mode = WAL", null);
+            return result.moveToNext()
+                    && "wal".equalsIgnoreCase(result.getString(0));
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to enable write-ahead logging", e);
+            return false;
+        } finally {
+            if (result != null)
+                result.close();
+        }
+    }
+
+    /**
+     * A query connection and the lock to hold while using it. Immutable so
+     * that the pair is obtained with a single read of <code>reader</code>.
+     */
+    static final class ReadConnection {
+        final Object lock;
+        final DatabaseIface database;
+        /** <code>true</code> if this is a connection separate from crumbdb */
+        final boolean dedicated;
+
+        ReadConnection(Object lock, DatabaseIface database,
+                boolean dedicated) {
+            this.lock = lock;
+            this.database = database;
+            this.dedicated = dedicated;
+        }
+    }
+
+    /**
+     * Sets the maximum amount of time that a crumb passed to
+     * {@link #persist(PointMapItem, long, SharedPreferences)} is queued
+     * before it is written to the database. Crumbs received within this
+     * window are inserted in a single transaction.
+     *
+     * @param millis the maximum flush latency, in milliseconds
+     */
+    public void setMaxFlushLatency(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException(
+                    "flush latency must be non-negative");
+        maxFlushLatency = millis;
+    }
+
+    /**
+     * @return the maximum amount of time, in milliseconds, that a crumb is
+     *         queued before it is written to the database
+     */
+    public long getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
     private CrumbDatabase() {
         final File pFile = CRUMB_DB_FILE2.getParentFile();
         if (!IOProviderFactory.exists(pFile))
@@ -454,10 +593,7 @@ public class CrumbDatabase {
                     + COLUMN_POINT_SOURCE + " TEXT, "
                     + COLUMN_ALTITUDE_SOURCE + " TEXT) ", null);
 
-            // probably should index (uid and timestamp but won't for the first cut
-            //
-            //crumbdb.execute("CREATE INDEX " + TABLE_NAME_INDEX + 
-            //                              " on " + TABLE_NAME + "(" + COLUMN_UID + ")");
+            // indices are created by createIndices
 
             final int major = FeatureSpatialDatabase
                     .getSpatialiteMajorVersion(db);
@@ -501,10 +637,7 @@ public class CrumbDatabase {
                     + SEG_COLUMN_USER_UID + " TEXT, "
                     + SEG_COLUMN_USER_TITLE + " TITLE) ", null);
 
-            // probably should index (uid and timestamp but won't for the first cut
-            //
-            //crumbdb.execute("CREATE INDEX " + TABLE_NAME_INDEX + 
-            //                              " on " + TABLE_NAME + "(" + COLUMN_UID + ")");  
+            // indices are created by createIndices
         } else {
             //remove segments no longer referenced by any crumbs. We could have a track with
             //stale timestamp which still has un-stale crumbs
@@ -525,10 +658,19 @@ public class CrumbDatabase {
     @Deprecated
     @DeprecatedApi(since = "4.1")
     public void deleteAll() {
+        final ReadConnection oldReader = reader;
+        reader = new ReadConnection(lock, null, false);
+        if (oldReader != null && oldReader.dedicated) {
+            synchronized (oldReader.lock) {
+                oldReader.database.close();
+            }
+        }
         deleteAll(crumbdb);
+        synchronized (lock) {
+            ATAKDatabaseHelper.disableWriteAheadLogging(crumbdb);
+        }
         crumbdb.close();
-        IOProviderFactory.delete(CrumbDatabase.CRUMB_DB_FILE2,
-                IOProvider.SECURE_DELETE);
+        ATAKDatabaseHelper.deleteDatabase(CrumbDatabase.CRUMB_DB_FILE2);
         crumbdb = null;
     }
 
@@ -573,29 +715,38 @@ public class CrumbDatabase {
     public int getCurrentSegmentId(String uid, String orderBy) {
 
         synchronized (lock) {
-            CursorIface result = null;
-            int mostRecentSegment_id = -1;
-            try {
-                String sql = "SELECT " + SEG_COLUMN_ID + " FROM "
-                        + SEGMENT_TABLE_NAME + " WHERE " + SEG_COLUMN_USER_UID
-                        + "='" + uid +
-                        "' ORDER BY " + orderBy + " DESC LIMIT 1";
+            return getCurrentSegmentId(crumbdb, uid, orderBy);
+        }
+    }
 
-                result = crumbdb.query(sql, null);
-                if (result.moveToNext()) {
-                    mostRecentSegment_id = result.getInt(SEG_COLUMN_ID_INDEX);
-                } //else {
-                  //Log.d(TAG, "No segments found: " + sql);
-                  //}
-            } catch (Exception e) {
-                Log.w(TAG, "Failed to find any track segments, " + e);
-                mostRecentSegment_id = -1;
-            } finally {
-                if (result != null)
-                    result.close();
-            }
-            return mostRecentSegment_id;
+    /**
+     * Get ID of segment with most recent timestamp. The caller is expected
+     * to hold the lock associated with the supplied database.
+     */
+    private static int getCurrentSegmentId(DatabaseIface db, String uid,
+            String orderBy) {
+        CursorIface result = null;
+        int mostRecentSegment_id = -1;
+        try {
+            String sql = "SELECT " + SEG_COLUMN_ID + " FROM "
+                    + SEGMENT_TABLE_NAME + " WHERE " + SEG_COLUMN_USER_UID
+                    + "='" + uid +
+                    "' ORDER BY " + orderBy + " DESC LIMIT 1";
+
+            result = db.query(sql, null);
+            if (result.moveToNext()) {
+                mostRecentSegment_id = result.getInt(SEG_COLUMN_ID_INDEX);
+            } //else {
+              //Log.d(TAG, "No segments found: " + sql);
+              //}
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to find any track segments, " + e);
+            mostRecentSegment_id = -1;
+        } finally {
+            if (result != null)
+                result.close();
         }
+        return mostRecentSegment_id;
     }
 
     /**
@@ -865,9 +1016,10 @@ public class CrumbDatabase {
 
         CursorIface result = null;
 
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
                 if (result.moveToNext())
                     return crumbPointFromCursor(result);
             } finally {
@@ -901,9 +1053,10 @@ public class CrumbDatabase {
                 " ORDER BY " + COLUMN_TIMESTAMP + " ASC";
 
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
 
                 Crumb c;
                 while (result.moveToNext()) {
@@ -934,9 +1087,10 @@ public class CrumbDatabase {
                 " ORDER BY " + COLUMN_TIMESTAMP + " ASC";
 
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
 
                 CrumbPoint c;
                 while (result.moveToNext()) {
@@ -967,9 +1121,10 @@ public class CrumbDatabase {
 
         CrumbPoint last = null;
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
                 CrumbPoint c;
                 while (result.moveToNext()) {
                     c = crumbPointFromCursor(result);
@@ -1040,10 +1195,11 @@ public class CrumbDatabase {
         //map crumbs to track ID
         SparseArray<List<CrumbPoint>> crumbMap = new SparseArray<>();
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
                 //get all crumbs in timerange for this UID
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
 
                 //loop all crumbs
                 CrumbPoint c;
@@ -1142,9 +1298,10 @@ public class CrumbDatabase {
         Log.d(TAG, "getCrumbs: " + sql);
 
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
 
                 Crumb c;
                 while (result.moveToNext()) {
@@ -1309,12 +1466,13 @@ public class CrumbDatabase {
 
         TrackPolyline track = null;
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
 
                 if (result.moveToNext()) {
-                    track = trackFromCursor(result, -1);
+                    track = trackFromCursor(reader.database, result, -1);
                 }
             } finally {
                 if (result != null)
@@ -1365,12 +1523,13 @@ public class CrumbDatabase {
 
         TrackPolyline track = null;
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
 
                 if (result.moveToNext()) {
-                    track = trackFromCursor(result, -1);
+                    track = trackFromCursor(reader.database, result, -1);
                 }
             } finally {
                 if (result != null)
@@ -1412,17 +1571,19 @@ public class CrumbDatabase {
 
         TrackPolyline track = null;
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                int currentTrackId = getCurrentSegmentId(uid,
-                        SEG_COLUMN_TIMESTAMP);
+                int currentTrackId = getCurrentSegmentId(reader.database,
+                        uid, SEG_COLUMN_TIMESTAMP);
 
-                result = crumbdb.query(sql, new String[] {
+                result = reader.database.query(sql, new String[] {
                         callsign, uid
                 });
 
                 if (result.moveToNext()) {
-                    track = trackFromCursor(result, currentTrackId);
+                    track = trackFromCursor(reader.database, result,
+                            currentTrackId);
                 }
             } finally {
                 if (result != null)
@@ -1455,17 +1616,19 @@ public class CrumbDatabase {
 
         TrackPolyline track = null;
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                int currentTrackId = getCurrentSegmentId(uid,
-                        SEG_COLUMN_TIMESTAMP);
+                int currentTrackId = getCurrentSegmentId(reader.database,
+                        uid, SEG_COLUMN_TIMESTAMP);
 
-                result = crumbdb.query(sql, new String[] {
+                result = reader.database.query(sql, new String[] {
                         title, uid
                 });
 
                 if (result.moveToNext()) {
-                    track = trackFromCursor(result, currentTrackId);
+                    track = trackFromCursor(reader.database, result,
+                            currentTrackId);
                 }
             } finally {
                 if (result != null)
@@ -1510,10 +1673,11 @@ public class CrumbDatabase {
         // query all tracks from the segments table, for this UID, build out metadata
         //select all segments, sort by timestamp
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                int currentTrackId = getCurrentSegmentId(uid,
-                        SEG_COLUMN_TIMESTAMP);
+                int currentTrackId = getCurrentSegmentId(reader.database,
+                        uid, SEG_COLUMN_TIMESTAMP);
 
                 //now get list of segments
                 String sql = "SELECT * FROM " + SEGMENT_TABLE_NAME +
@@ -1521,7 +1685,7 @@ public class CrumbDatabase {
                         + SEG_COLUMN_TIMESTAMP + " DESC";
                 Log.d(TAG, "getTracks: " + sql);
 
-                result = crumbdb.query(sql, new String[] {
+                result = reader.database.query(sql, new String[] {
                         uid
                 });
                 if (progress != null)
@@ -1529,7 +1693,8 @@ public class CrumbDatabase {
 
                 TrackPolyline track;
                 while (result.moveToNext()) {
-                    track = trackFromCursor(result, currentTrackId);
+                    track = trackFromCursor(reader.database, result,
+                            currentTrackId);
                     if (track != null) {
                         tracks.add(track);
                     }
@@ -1657,9 +1822,10 @@ public class CrumbDatabase {
 
         //group tracks by user UID
         CursorIface result = null;
-        synchronized (lock) {
+        final ReadConnection reader = this.reader;
+        synchronized (reader.lock) {
             try {
-                result = crumbdb.query(sql, null);
+                result = reader.database.query(sql, null);
 
                 TrackUser trackUser;
                 while (result.moveToNext()) {
@@ -1692,13 +1858,14 @@ public class CrumbDatabase {
     /**
      * Create Polyline from database entry (metadata, not actual track points)
      *
+     * @param db the database the cursor was obtained from
      * @param cursor
      * @param mostRecentTrackForUID of the most recent track on this device, for the owner of the track
      *                              being created
      * @return a track polyline from the database cursor
      */
-    private TrackPolyline trackFromCursor(CursorIface cursor,
-            int mostRecentTrackForUID) {
+    private TrackPolyline trackFromCursor(DatabaseIface db,
+            CursorIface cursor, int mostRecentTrackForUID) {
         if (cursor == null) {
             Log.w(TAG, "Cannot create track w/out cursor");
             return null;
@@ -1723,7 +1890,7 @@ public class CrumbDatabase {
             String tempUid = p.getMetaString(CrumbDatabase.META_TRACK_NODE_UID,
                     null);
             if (!FileSystemUtils.isEmpty(tempUid)) {
-                mostRecentTrackForUID = getCurrentSegmentId(tempUid,
+                mostRecentTrackForUID = getCurrentSegmentId(db, tempUid,
                         SEG_COLUMN_TIMESTAMP);
             }
         }
@@ -2093,7 +2260,7 @@ public class CrumbDatabase {
 
     class Handler implements Runnable {
 
-        private final Set<Crumb> localCrumbsToProcess = new HashSet<>();
+        private final List<Crumb> localCrumbsToProcess = new ArrayList<>();
         private boolean endTransactionError = false;
         private final StatementIface insertStmt;
 
@@ -2122,7 +2289,7 @@ public class CrumbDatabase {
             while (!endTransactionError) {
                 try {
                     // batch process the crumbs for efficiency
-                    Thread.sleep(500);
+                    Thread.sleep(maxFlushLatency);
                 } catch (Exception ignored) {
                 }
 
@@ -0,0 +1,124 @@
+package com.atakmap.android.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe, lock free histogram of latency samples. Samples are binned
+ * into power of two microsecond buckets; bucket <code>i</code> counts the
+ * samples in the range <code>[2^(i-1), 2^i)</code> microseconds, bucket
+ * <code>0</code> counts samples of less than one microsecond and the last
+ * bucket counts all samples at or above its lower bound.
+ */
+public final class LatencyHistogram {
+
+    /** The number of buckets in the histogram */
+    public static final int NUM_BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong(0L);
+    private final AtomicLong totalMicros = new AtomicLong(0L);
+    private final AtomicLong maxMicros = new AtomicLong(0L);
+
+    /**
+     * Records a sample
+     *
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(long nanos) {
+        final long micros = Math.max(nanos, 0L) / 1000L;
+        buckets.incrementAndGet(getBucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        do {
+            max = maxMicros.get();
+        } while (micros > max && !maxMicros.compareAndSet(max, micros));
+    }
+
+    /**
+     * @return the number of samples recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @param bucket the bucket index
+     * @return the number of samples recorded in the bucket
+     */
+    public long getCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * @return the mean latency, in microseconds
+     */
+    public long getMeanMicros() {
+        final long n = count.get();
+        return (n > 0L) ? totalMicros.get() / n : 0L;
+    }
+
+    /**
+     * @return the largest recorded latency, in microseconds
+     */
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Returns an upper bound for the specified percentile. The value returned
+     * is the exclusive upper bound of the bucket containing the percentile,
+     * clamped to the largest recorded sample.
+     *
+     * @param percentile the percentile, in the range <code>[0, 1]</code>
+     * @return the upper bound of the percentile, in microseconds
+     */
+    public long getPercentileMicros(double percentile) {
+        final long n = count.get();
+        if (n == 0L)
+            return 0L;
+        final long target = Math.max(1L, (long) Math.ceil(percentile * n));
+        long cumulative = 0L;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulative += buckets.get(i);
+            if (cumulative >= target)
+                return Math.min(getUpperBoundMicros(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * Clears all recorded samples
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            buckets.set(i, 0L);
+        count.set(0L);
+        totalMicros.set(0L);
+        maxMicros.set(0L);
+    }
+
+    /**
+     * @param bucket the bucket index
+     * @return the exclusive upper bound of the bucket, in microseconds
+     */
+    public static long getUpperBoundMicros(int bucket) {
+        if (bucket >= NUM_BUCKETS - 1)
+            return Long.MAX_VALUE;
+        return 1L << bucket;
+    }
+
+    private static int getBucket(long micros) {
+        final int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, NUM_BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMeanMicros()
+                + "us p50=" + getPercentileMicros(0.5d) + "us p99="
+                + getPercentileMicros(0.99d) + "us max=" + getMaxMicros()
+                + "us";
+    }
+}
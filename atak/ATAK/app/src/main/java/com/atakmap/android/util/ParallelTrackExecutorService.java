@@ -414,6 +414,10 @@ public class ParallelTrackExecutorService implements ExecutorService {
     }
 
     private static final String TAG = "ParallelTrackExecutorService";
+
+    /** the executor owning the calling thread, if any */
+    private static final ThreadLocal<ParallelTrackExecutorService> currentExecutor = new ThreadLocal<>();
+
     private final ThreadFactory threadFactory;
     private final long threadTimeout;
     private final TimeUnit threadTimeoutUnit;
@@ -559,6 +563,18 @@ public class ParallelTrackExecutorService implements ExecutorService {
         }
     }
 
+    /**
+     * Returns whether the calling thread is one of the threads running the
+     * tasks of this executor. Such a thread must not wait for work that is
+     * only completed by the executor, since all of the threads may be
+     * waiting.
+     *
+     * @return true if called from a thread of this executor
+     */
+    public boolean isExecutorThread() {
+        return currentExecutor.get() == this;
+    }
+
     private class Queue {
 
         final ReentrantLock lock = new ReentrantLock();
@@ -573,9 +589,11 @@ public class ParallelTrackExecutorService implements ExecutorService {
             thread = threadFactory.newThread(new Runnable() {
                 @Override
                 public void run() {
+                    currentExecutor.set(ParallelTrackExecutorService.this);
                     try {
                         runImpl();
                     } finally {
+                        currentExecutor.remove();
                         // clear out thread to signal spawning new
                         lock.lock();
                         thread = null;
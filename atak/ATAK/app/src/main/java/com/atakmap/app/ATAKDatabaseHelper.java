@@ -207,15 +207,60 @@ public class ATAKDatabaseHelper {
     }
 
     public static void removeDatabases() {
-        IOProviderFactory.delete(
-                FileSystemUtils.getItem("Databases/ChatDb2.sqlite"),
-                IOProvider.SECURE_DELETE);
-        IOProviderFactory.delete(
-                FileSystemUtils.getItem("Databases/statesaver2.sqlite"),
-                IOProvider.SECURE_DELETE);
-        IOProviderFactory.delete(
-                FileSystemUtils.getItem("Databases/crumbs2.sqlite"),
-                IOProvider.SECURE_DELETE);
+        deleteDatabase(FileSystemUtils.getItem("Databases/ChatDb2.sqlite"));
+        deleteDatabase(
+                FileSystemUtils.getItem("Databases/statesaver2.sqlite"));
+        deleteDatabase(FileSystemUtils.getItem("Databases/crumbs2.sqlite"));
+    }
+
+    /**
+     * Securely deletes a database file along with the write-ahead log and
+     * shared memory files that SQLite keeps beside it in WAL mode. The
+     * database should be closed.
+     *
+     * @param dbFile the database file
+     */
+    public static void deleteDatabase(File dbFile) {
+        for (String suffix : new String[] {
+                "", "-wal", "-shm"
+        }) {
+            File f = new File(dbFile.getPath() + suffix);
+            if (IOProviderFactory.exists(f))
+                IOProviderFactory.delete(f, IOProvider.SECURE_DELETE);
+        }
+    }
+
+    /**
+     * Moves the content of the write-ahead log into the main database file
+     * and takes the database out of WAL mode, which removes the -wal and -shm
+     * side files. Does nothing if the database is not in WAL mode. Fails if
+     * another connection to the database is open.
+     *
+     * @param db the database
+     * @return <code>true</code> if the database is not in WAL mode on return
+     */
+    public static boolean disableWriteAheadLogging(DatabaseIface db) {
+        try {
+            if (!"wal".equalsIgnoreCase(queryPragma(db, "journal_mode")))
+                return true;
+            queryPragma(db, "wal_checkpoint(TRUNCATE)");
+            return !"wal".equalsIgnoreCase(
+                    queryPragma(db, "journal_mode = DELETE"));
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to leave write-ahead logging", e);
+            return false;
+        }
+    }
+
+    private static String queryPragma(DatabaseIface db, String pragma) {
+        CursorIface result = null;
+        try {
+            result = db.query("PRAGMA " + pragma, null);
+            return result.moveToNext() ? result.getString(0) : null;
+        } finally {
+            if (result != null)
+                result.close();
+        }
     }
 
     private static void promptForRemoval(final Context context,
@@ -326,6 +371,9 @@ public class ATAKDatabaseHelper {
                 try {
                     ctDb = DatabaseImpl.open(ctFile.getAbsolutePath(),
                             credentials.password, DatabaseImpl.OPEN_CREATE);
+                    // the whole database must be in the main file to be
+                    // rekeyed; WAL mode is restored when it is next opened
+                    disableWriteAheadLogging(ctDb);
                     ctDb.execute("PRAGMA rekey = '" + key + "'", null);
                 } catch (Exception e) {
                     Log.e(TAG, "Database rekey failed for " + ctFile
@@ -39,8 +39,10 @@ import com.atakmap.commoncommo.CloudClient;
 import com.atakmap.commoncommo.CloudIO;
 import com.atakmap.commoncommo.CloudIOProtocol;
 import com.atakmap.commoncommo.CoTDetailExtender;
+import com.atakmap.commoncommo.CoTMessageBufferListener;
 import com.atakmap.commoncommo.CoTMessageListener;
 import com.atakmap.commoncommo.CoTMessageType;
+import com.atakmap.commoncommo.CoTPayload;
 import com.atakmap.commoncommo.CoTPointData;
 import com.atakmap.commoncommo.CoTSendFailureListener;
 import com.atakmap.commoncommo.CoTSendMethod;
@@ -76,6 +78,8 @@ import com.atakmap.comms.missionpackage.MPSendListener;
 import com.atakmap.comms.missionpackage.MPSendListener.UploadStatus;
 import com.atakmap.coremap.cot.event.CotDetail;
 import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.CotEventSerializer;
+import com.atakmap.coremap.cot.event.EncodedCotEvent;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.locale.LocaleUtil;
@@ -98,11 +102,13 @@ import java.net.SocketException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.UnknownServiceException;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -115,7 +121,8 @@ import java.util.Vector;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class CommsMapComponent extends AbstractMapComponent implements
-        CoTMessageListener, ContactPresenceListener, InterfaceStatusListener,
+        CoTMessageListener, CoTMessageBufferListener, ContactPresenceListener,
+        InterfaceStatusListener,
         CoTSendFailureListener, OnSharedPreferenceChangeListener,
         CrashListener, CommsProvider.ContactPresenceListener {
     private static final String TAG = "CommsMapComponent";
@@ -525,17 +532,25 @@ public class CommsMapComponent extends AbstractMapComponent implements
             try {
                 commo.init(context, new Logger(TAG + "Commo"), uid, callsign,
                         NetInterfaceAddressMode.NAME);
-                commo.addCoTMessageListener(this);
                 if ((commo instanceof DefaultCommsProvider)) {
+                    // parse inbound CoT straight from the received bytes
+                    ((DefaultCommsProvider) commo)
+                            .addCoTMessageBufferListener(this);
                     ((DefaultCommsProvider) commo)
                             .addInterfaceStatusListener(this);
+                } else {
+                    commo.addCoTMessageListener(this);
                 }
                 commo.addContactPresenceListener(this);
                 commo.addCoTSendFailureListener(this);
-                if (commo instanceof DefaultCommsProvider)
+                if (commo instanceof DefaultCommsProvider) {
                     ((DefaultCommsProvider) commo)
                             .setStreamMonitorEnabled(prefs.get(
                                     "monitorServerConnections", true));
+                    // SA bursts queue many small events per server
+                    ((DefaultCommsProvider) commo)
+                            .setStreamWriteCoalescingEnabled(true);
+                }
                 if ((commo instanceof DefaultCommsProvider)) {
                     ((DefaultCommsProvider) commo)
                             .setMulticastLoopbackEnabled(prefs.get(
@@ -1892,6 +1907,18 @@ public class CommsMapComponent extends AbstractMapComponent implements
     // DEPRECATED
     // Supports only tcp endpoints for backwards compatibility
     public void sendCoTToEndpoint(CotEvent e, String endpoint) {
+        sendCoTToEndpoint(e != null ? new EncodedCotEvent(e) : null, endpoint);
+    }
+
+    /**
+     * Sends an already serialized event to a tcp endpoint. The same
+     * {@link EncodedCotEvent} may be sent to several endpoints without
+     * re-serializing the event.
+     *
+     * @param encoded the serialized event
+     * @param endpoint the endpoint, in the form <code>host:port:tcp</code>
+     */
+    public void sendCoTToEndpoint(EncodedCotEvent encoded, String endpoint) {
 
         if (!(commo instanceof DefaultCommsProvider)) {
             Log.d(TAG, "CommsProvider doesn't support endpoint connections",
@@ -1922,14 +1949,15 @@ public class CommsMapComponent extends AbstractMapComponent implements
             return;
         }
 
-        if (e == null) {
+        if (encoded == null) {
             Log.e(TAG,
                     "Empty CotEvent received while trying to send (ignore).");
             return;
         }
 
+        final CotEvent e = encoded.getEvent();
         try {
-            final String event = e.toString();
+            final String event = encoded.getXml();
             ((DefaultCommsProvider) commo).sendCoTTcpDirect(s[0], port, event);
 
             for (CommsLogger logger : loggers) {
@@ -1985,11 +2013,17 @@ public class CommsMapComponent extends AbstractMapComponent implements
             Log.e(TAG, "preSendProcessor failed", ex);
         }
 
+        // encode once, after pre-send processing, for all destinations. The
+        // payload takes its own copy, so the thread's scratch buffer is used
+        final EncodedCotEvent encoded = new EncodedCotEvent(e);
+        final CoTPayload payload = (commo instanceof DefaultCommsProvider)
+                ? new CoTPayload(CotEventSerializer.serializeToScratch(e))
+                : null;
+
         if (toUIDs == null) {
             try {
-                final String event = e.toString();
                 if (commo != null)
-                    commo.broadcastCoT(event, method);
+                    sendEncoded(encoded, payload, true, null, method);
 
                 for (CommsLogger logger : loggers) {
                     try {
@@ -2020,9 +2054,9 @@ public class CommsMapComponent extends AbstractMapComponent implements
 
             boolean success = false;
             try {
-                final String event = e.toString();
                 if (commo != null)
-                    commo.sendCoT(commoContacts, event, method);
+                    sendEncoded(encoded, payload, false, commoContacts,
+                            method);
                 success = true;
             } catch (CommoException ex) {
                 Log.e(TAG, "Invalid cot message for unicast " + e);
@@ -2051,6 +2085,52 @@ public class CommsMapComponent extends AbstractMapComponent implements
         }
     }
 
+    /**
+     * Broadcasts and/or sends an encoded event to contacts. With the default
+     * provider the payload is handed to commo as UTF-8 bytes, in a single
+     * call for all destinations, without being converted to a String.
+     *
+     * @param encoded the encoded event
+     * @param payload the event as a commo payload, null if the provider is
+     *                not the default provider
+     */
+    private void sendEncoded(EncodedCotEvent encoded, CoTPayload payload,
+            boolean broadcast, Collection<String> contactUids,
+            CoTSendMethod method) throws CommoException {
+        final CommsProvider provider = commo;
+        if (payload != null && provider instanceof DefaultCommsProvider) {
+            ((DefaultCommsProvider) provider).sendCoT(payload, broadcast,
+                    contactUids, method);
+            return;
+        }
+        if (broadcast)
+            provider.broadcastCoT(encoded.getXml(), method);
+        if (contactUids != null)
+            provider.sendCoT(contactUids, encoded.getXml(), method);
+    }
+
+    /**
+     * Returns the number of messages waiting to be sent to a TAK server.
+     *
+     * @param uniqueIfaceKey the unique key identifier specifying a configured
+     *                       streaming interface
+     * @return the number of queued messages, 0 if the server is not
+     *         connected, or -1 if the interface is not known
+     */
+    public int getStreamTxQueueDepth(String uniqueIfaceKey) {
+        if (!(commo instanceof DefaultCommsProvider))
+            return -1;
+
+        final String id;
+        synchronized (streamingIfaces) {
+            StreamingNetInterface iface = streamingIfaces.get(uniqueIfaceKey);
+            if (iface == null)
+                return -1;
+            id = iface.streamId;
+        }
+        return ((DefaultCommsProvider) commo).getStreamTxQueueDepth(id);
+    }
+
     /**
      * Send the specified CotEvent to all configured and connected TAK servers.
      * They will be routed to the specified mission on those servers.
@@ -2196,7 +2276,43 @@ public class CommsMapComponent extends AbstractMapComponent implements
             }
         }
 
-        CotEvent cotEvent = CotEvent.parse(message);
+        dispatchReceived(CotEvent.parse(message), rxEndpointId);
+    }
+
+    /**
+     * Invoked when a CoT Message has been received, as UTF-8 bytes. The
+     * event is parsed directly from the buffer without first decoding the
+     * message to a String.
+     *
+     * @param message the CoT message that was received; only valid for the
+     *                duration of this call
+     * @param rxEndpointId identifier of NetworkInterface upon which
+     *                     the message was received, if known, or null
+     *                     if not known
+     */
+    @Override
+    public void cotMessageReceived(final ByteBuffer message,
+            final String rxEndpointId) {
+
+        // The buffer is reused once this returns, so deferred messages are
+        // decoded. This only happens while the components are loading.
+        if (!componentsLoaded) {
+            synchronized (deferredMessages) {
+                if (!componentsLoaded) {
+                    deferredMessages.add(new Pair<>(
+                            FileSystemUtils.UTF8_CHARSET
+                                    .decode(message.duplicate()).toString(),
+                            rxEndpointId));
+                    return;
+                }
+            }
+        }
+
+        dispatchReceived(CotEvent.parse(message), rxEndpointId);
+    }
+
+    private void dispatchReceived(final CotEvent cotEvent,
+            final String rxEndpointId) {
         Bundle extras = new Bundle();
         extras.putString("from", cotEvent.getUID());
         if (rxEndpointId != null) {
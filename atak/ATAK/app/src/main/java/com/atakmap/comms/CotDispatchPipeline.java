@@ -0,0 +1,512 @@
+package com.atakmap.comms;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import com.atakmap.android.util.LatencyHistogram;
+import com.atakmap.android.util.ParallelTrackExecutorService;
+import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.log.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatch stage for internally routed CoT events. Each UID has a bounded
+ * mailbox of pending events. Mailboxes are drained on a
+ * {@link ParallelTrackExecutorService}, so events for the same UID are
+ * handled serially and in order while events for different UIDs are handled
+ * concurrently.
+ * <p>
+ * Events accepted by the {@link CoalescingFilter} are coalesced, latest wins.
+ * Such an event replaces the most recent pending event for the same UID when
+ * that event was also accepted by the filter, so only the latest of a burst
+ * of position reports is handled. When a mailbox is full, the
+ * {@link OverflowPolicy} determines whether the caller waits or an event is
+ * dropped. Threads of the executor never wait, since they are the only
+ * threads that drain the mailboxes; for them, and for callers that must not
+ * wait, {@link OverflowPolicy#BLOCK} drops the oldest pending event instead.
+ * <p>
+ * Queue depth, queue and handling latency histograms and the dropped and
+ * coalesced counters are exposed for diagnostics. The interface to this
+ * class is thread safe.
+ */
+public class CotDispatchPipeline {
+
+    public static final String TAG = "CotDispatchPipeline";
+
+    /**
+     * Determines the behavior of {@link #submit(CotEvent, Bundle)} when the
+     * mailbox for the event UID is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The caller waits until the mailbox has room for the event. Callers
+         * that may not wait, see {@link #submit(CotEvent, Bundle, boolean)},
+         * and threads draining the pipeline drop the oldest pending event
+         * instead.
+         */
+        BLOCK,
+        /**
+         * The oldest pending event for the UID is dropped
+         */
+        DROP_OLDEST,
+        /**
+         * The submitted event is dropped
+         */
+        DROP_NEWEST,
+    }
+
+    /**
+     * Selects the events that may be replaced by a later event for the same
+     * UID before they are handled.
+     */
+    public interface CoalescingFilter {
+        /**
+         * @param event the event
+         * @param data the dispatch data, may be <code>null</code>
+         * @return <code>true</code> if the event may be replaced by a later
+         *         coalescable event with the same UID
+         */
+        boolean isCoalescable(CotEvent event, Bundle data);
+    }
+
+    /**
+     * Handles the events drained from the mailboxes.
+     */
+    public interface EventHandler {
+        void onEvent(CotEvent event, Bundle data);
+    }
+
+    /**
+     * Accepts atom (<code>a-*</code>) events. Atoms report the full state of
+     * the item they describe, so only the latest pending report for a UID
+     * needs to be handled.
+     */
+    public static final CoalescingFilter POSITION_REPORTS = new CoalescingFilter() {
+        @Override
+        public boolean isCoalescable(CotEvent event, Bundle data) {
+            final String type = event.getType();
+            return type != null && type.startsWith("a-");
+        }
+    };
+
+    private final ParallelTrackExecutorService executor;
+    private final EventHandler handler;
+    private final int capacity;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile CoalescingFilter coalescingFilter;
+
+    // BEGIN: mailboxes protected section
+    private final Map<String, Mailbox> mailboxes = new HashMap<>();
+    private int queueDepth;
+    // END: mailboxes protected section
+
+    private final AtomicLong submitted = new AtomicLong(0L);
+    private final AtomicLong handled = new AtomicLong(0L);
+    private final AtomicLong coalesced = new AtomicLong(0L);
+    private final AtomicLong dropped = new AtomicLong(0L);
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram handlingLatency = new LatencyHistogram();
+
+    /** set while the calling thread is draining a mailbox of this pipeline */
+    private final ThreadLocal<Boolean> draining = new ThreadLocal<>();
+
+    /**
+     * Create a pipeline with coalescing disabled
+     *
+     * @param executor the executor that drains the mailboxes; the UID of the
+     *                 event is used as the track ID
+     * @param handler the handler for the drained events
+     * @param mailboxCapacity the maximum number of pending events per UID,
+     *                        must be greater than or equal to 1
+     * @param overflowPolicy the behavior when a mailbox is full
+     */
+    public CotDispatchPipeline(@NonNull ParallelTrackExecutorService executor,
+            @NonNull EventHandler handler, int mailboxCapacity,
+            @NonNull OverflowPolicy overflowPolicy) {
+        if (mailboxCapacity <= 0)
+            throw new IllegalArgumentException("mailboxCapacity must be >= 1");
+
+        this.executor = executor;
+        this.handler = handler;
+        this.capacity = mailboxCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.coalescingFilter = null;
+    }
+
+    /**
+     * @param policy the behavior when a mailbox is full
+     */
+    public void setOverflowPolicy(@NonNull OverflowPolicy policy) {
+        this.overflowPolicy = policy;
+    }
+
+    /**
+     * @return the behavior when a mailbox is full
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    /**
+     * @param filter the filter selecting the events that may be coalesced or
+     *               <code>null</code> to disable coalescing
+     */
+    public void setCoalescingFilter(CoalescingFilter filter) {
+        this.coalescingFilter = filter;
+    }
+
+    /**
+     * @return the maximum number of pending events per UID
+     */
+    public int getMailboxCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Submit an event, waiting for room in a full mailbox when the overflow
+     * policy is {@link OverflowPolicy#BLOCK}.
+     *
+     * @see #submit(CotEvent, Bundle, boolean)
+     */
+    public Future<?> submit(@NonNull CotEvent event, Bundle data) {
+        return submit(event, data, true);
+    }
+
+    /**
+     * Submit an event. The returned future completes once the event, or a
+     * later event that it was coalesced with, has been handled. If the event
+     * is dropped, the future is cancelled.
+     *
+     * @param event the event, which must have a UID. The event is not copied
+     *              and must not be modified after submission.
+     * @param data the dispatch data, may be <code>null</code>
+     * @param mayBlock <code>false</code> if the caller must not wait for room
+     *                 in a full mailbox. The oldest pending event is dropped
+     *                 instead.
+     * @return the future for the handling of the event
+     */
+    public Future<?> submit(@NonNull CotEvent event, Bundle data,
+            boolean mayBlock) {
+        final String uid = event.getUID();
+        if (uid == null)
+            throw new IllegalArgumentException("event must have a UID");
+
+        final CoalescingFilter filter = this.coalescingFilter;
+        final Entry entry = new Entry(event, data,
+                filter != null && filter.isCoalescable(event, data));
+        submitted.incrementAndGet();
+
+        final Mailbox mailbox;
+        Entry evicted = null;
+        boolean schedule;
+        synchronized (mailboxes) {
+            while (true) {
+                Mailbox m = mailboxes.get(uid);
+                if (m == null) {
+                    m = new Mailbox(uid);
+                    mailboxes.put(uid, m);
+                }
+
+                // only the most recent pending event is considered so that
+                // ordering with respect to other events for the UID is kept
+                final Entry last = m.pending.peekLast();
+                if (entry.coalescable && last != null && last.coalescable) {
+                    last.event = event;
+                    last.data = data;
+                    coalesced.incrementAndGet();
+                    return last;
+                }
+
+                if (m.pending.size() < capacity) {
+                    mailbox = m;
+                    break;
+                }
+
+                OverflowPolicy policy = this.overflowPolicy;
+                // the executor threads are the only threads that make room,
+                // a worker waiting on any mailbox may never be woken
+                if (policy == OverflowPolicy.BLOCK
+                        && (!mayBlock || isDrainingThread()))
+                    policy = OverflowPolicy.DROP_OLDEST;
+
+                if (policy == OverflowPolicy.DROP_NEWEST) {
+                    dropped.incrementAndGet();
+                    entry.cancel(false);
+                    return entry;
+                } else if (policy == OverflowPolicy.DROP_OLDEST) {
+                    evicted = m.pending.removeFirst();
+                    queueDepth--;
+                    dropped.incrementAndGet();
+                    mailbox = m;
+                    break;
+                }
+
+                try {
+                    mailboxes.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    entry.cancel(false);
+                    return entry;
+                }
+            }
+
+            entry.enqueueTime = System.nanoTime();
+            mailbox.pending.addLast(entry);
+            queueDepth++;
+            schedule = !mailbox.scheduled;
+            mailbox.scheduled = true;
+        }
+
+        if (evicted != null)
+            evicted.cancel(false);
+        if (schedule)
+            schedule(mailbox);
+        return entry;
+    }
+
+    /**
+     * @return the number of events pending across all mailboxes
+     */
+    public int getQueueDepth() {
+        synchronized (mailboxes) {
+            return queueDepth;
+        }
+    }
+
+    /**
+     * @return the number of UIDs with pending or in progress events
+     */
+    public int getMailboxCount() {
+        synchronized (mailboxes) {
+            return mailboxes.size();
+        }
+    }
+
+    /**
+     * @return the number of events submitted
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return the number of events handled
+     */
+    public long getHandledCount() {
+        return handled.get();
+    }
+
+    /**
+     * @return the number of events replaced by a later event for the same
+     *         UID
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of events dropped due to a full mailbox
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the histogram of the time between submission and the start of
+     *         handling
+     */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * @return the histogram of the time spent in the {@link EventHandler}
+     */
+    public LatencyHistogram getHandlingLatency() {
+        return handlingLatency;
+    }
+
+    /**
+     * Resets the counters and latency histograms
+     */
+    public void resetMetrics() {
+        submitted.set(0L);
+        handled.set(0L);
+        coalesced.set(0L);
+        dropped.set(0L);
+        queueLatency.reset();
+        handlingLatency.reset();
+    }
+
+    private boolean isDrainingThread() {
+        return draining.get() != null || executor.isExecutorThread();
+    }
+
+    private void schedule(Mailbox mailbox) {
+        // if the executor has been shutdown, handle on the calling thread
+        if (executor.submit(mailbox, mailbox.uid) == null)
+            mailbox.run();
+    }
+
+    /**
+     * Pending events for a UID. Handles a single event per execution and
+     * reschedules itself while events remain, so that a busy UID does not
+     * starve the other UIDs sharing the executor thread.
+     */
+    private final class Mailbox implements Runnable {
+        final String uid;
+        final ArrayDeque<Entry> pending = new ArrayDeque<>();
+        boolean scheduled;
+
+        Mailbox(String uid) {
+            this.uid = uid;
+        }
+
+        @Override
+        public void run() {
+            final Entry entry;
+            final CotEvent event;
+            final Bundle data;
+            synchronized (mailboxes) {
+                entry = pending.pollFirst();
+                if (entry != null) {
+                    queueDepth--;
+                    event = entry.event;
+                    data = entry.data;
+                    mailboxes.notifyAll();
+                } else {
+                    event = null;
+                    data = null;
+                }
+            }
+
+            final boolean nested = draining.get() != null;
+            draining.set(Boolean.TRUE);
+            try {
+                if (entry != null && entry.start()) {
+                    final long start = System.nanoTime();
+                    queueLatency.record(start - entry.enqueueTime);
+                    Throwable error = null;
+                    try {
+                        handler.onEvent(event, data);
+                    } catch (Throwable t) {
+                        Log.w(TAG, "error handling event " + uid, t);
+                        error = t;
+                    }
+                    handlingLatency.record(System.nanoTime() - start);
+                    handled.incrementAndGet();
+                    entry.finish(error);
+                }
+            } finally {
+                if (!nested)
+                    draining.remove();
+                final boolean reschedule;
+                synchronized (mailboxes) {
+                    reschedule = !pending.isEmpty();
+                    if (!reschedule) {
+                        scheduled = false;
+                        mailboxes.remove(uid);
+                    }
+                }
+                if (reschedule)
+                    schedule(this);
+            }
+        }
+    }
+
+    private static final class Entry implements Future<Void> {
+        static final int PENDING = 0;
+        static final int RUNNING = 1;
+        static final int DONE = 2;
+        static final int CANCELLED = 3;
+
+        final boolean coalescable;
+        // guarded by the pipeline mailboxes while pending
+        CotEvent event;
+        Bundle data;
+        long enqueueTime;
+
+        int state;
+        Throwable error;
+
+        Entry(CotEvent event, Bundle data, boolean coalescable) {
+            this.event = event;
+            this.data = data;
+            this.coalescable = coalescable;
+            this.state = PENDING;
+        }
+
+        synchronized boolean start() {
+            if (state != PENDING)
+                return false;
+            state = RUNNING;
+            return true;
+        }
+
+        synchronized void finish(Throwable t) {
+            error = t;
+            state = DONE;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterrupt) {
+            if (state != PENDING)
+                return false;
+            state = CANCELLED;
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return state == DONE || state == CANCELLED;
+        }
+
+        @Override
+        public synchronized Void get()
+                throws ExecutionException, InterruptedException {
+            while (state == PENDING || state == RUNNING)
+                wait();
+            return result();
+        }
+
+        @Override
+        public synchronized Void get(long timeout, TimeUnit unit)
+                throws ExecutionException, InterruptedException,
+                TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (state == PENDING || state == RUNNING) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L)
+                    throw new TimeoutException();
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return result();
+        }
+
+        private Void result() throws ExecutionException {
+            if (state == CANCELLED)
+                throw new CancellationException();
+            if (error != null)
+                throw new ExecutionException(error);
+            return null;
+        }
+    }
+}
@@ -8,12 +8,14 @@ import com.atakmap.android.util.ParallelTrackExecutorService;
 import com.atakmap.commoncommo.CoTSendMethod;
 import com.atakmap.coremap.concurrent.NamedThreadFactory;
 import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.cot.event.EncodedCotEvent;
 import com.atakmap.coremap.log.Log;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -30,6 +32,7 @@ public class CotDispatcher {
 
     private final ExecutorService internalDispatchExecutor;
     private final ParallelTrackExecutorService parallelInternalDispatchExecutor;
+    private final CotDispatchPipeline internalDispatchPipeline;
 
     private static final ParallelTrackExecutorService sharedConcurrentInternalDispatchExecutor = new ParallelTrackExecutorService(
             4, // based on latest testing, anything more has diminishing returns
@@ -37,6 +40,22 @@ public class CotDispatcher {
             TimeUnit.SECONDS,
             new NamedThreadFactory(TAG));
 
+    private static final CotDispatchPipeline sharedInternalDispatchPipeline = new CotDispatchPipeline(
+            sharedConcurrentInternalDispatchExecutor,
+            new CotDispatchPipeline.EventHandler() {
+                @Override
+                public void onEvent(CotEvent event, Bundle data) {
+                    CommsMapComponent.getInstance().sendCoTInternally(event,
+                            data);
+                }
+            },
+            64, // per UID, a burst beyond this is not keeping up
+            CotDispatchPipeline.OverflowPolicy.BLOCK);
+    static {
+        sharedInternalDispatchPipeline
+                .setCoalescingFilter(CotDispatchPipeline.POSITION_REPORTS);
+    }
+
     /**
      * Get the Application-wide shared ExecutorService tuned for handling INTERNAL dispatched
      * CoT efficiently and concurrently. The executor service is guaranteed to be a first-in, first
@@ -61,6 +80,18 @@ public class CotDispatcher {
         return sharedConcurrentInternalDispatchExecutor;
     }
 
+    /**
+     * Get the Application-wide shared CotDispatchPipeline for INTERNAL CoT. The pipeline runs on
+     * the getSharedConcurrentInternalDispatchTrackExecutor ParallelTrackExecutorService, so CoT
+     * Events with the same UID are processed serially. Pending position reports for the same UID
+     * are coalesced and the pipeline exposes queue depth and latency metrics.
+     *
+     * @return the shared CotDispatchPipeline
+     */
+    public static CotDispatchPipeline getSharedInternalDispatchPipeline() {
+        return sharedInternalDispatchPipeline;
+    }
+
     /**
      * Create a default dispatcher that handles INTERNAL dispatched CoT events immediately on
      * the calling thread.
@@ -78,6 +109,7 @@ public class CotDispatcher {
     public CotDispatcher(ExecutorService internalDispatchExecutor) {
         this.internalDispatchExecutor = internalDispatchExecutor;
         this.parallelInternalDispatchExecutor = null;
+        this.internalDispatchPipeline = null;
     }
 
     /**
@@ -93,6 +125,21 @@ public class CotDispatcher {
             ParallelTrackExecutorService internalDispatchParallelTrackExecutor) {
         this.parallelInternalDispatchExecutor = internalDispatchParallelTrackExecutor;
         this.internalDispatchExecutor = internalDispatchParallelTrackExecutor;
+        this.internalDispatchPipeline = null;
+    }
+
+    /**
+     * Create a dispatcher that submits internally routed CoT events to a CotDispatchPipeline.
+     * Passing null for the pipeline results in handling of INTERNAL CoT immediately on the calling
+     * thread. CoT events with the same UID are handled serially; events that are coalesced or
+     * dropped by the pipeline are not handled.
+     *
+     * @param internalDispatchPipeline the instance of CotDispatchPipeline or null
+     */
+    public CotDispatcher(CotDispatchPipeline internalDispatchPipeline) {
+        this.parallelInternalDispatchExecutor = null;
+        this.internalDispatchExecutor = null;
+        this.internalDispatchPipeline = internalDispatchPipeline;
     }
 
     /**
@@ -169,8 +216,13 @@ public class CotDispatcher {
                 Log.w(TAG,
                         "Got a dispatchEvent command w/o Contacts, using OLD NetConnectStr method... ",
                         new Exception());
+                // serialize once for all of the endpoints
+                final EncodedCotEvent encoded = (event != null)
+                        ? new EncodedCotEvent(event)
+                        : null;
                 for (String toConnectString : toConnectStrings)
-                    dispatchToConnectString(event, toConnectString);
+                    CommsMapComponent.getInstance()
+                            .sendCoTToEndpoint(encoded, toConnectString);
             }
         }
         if ((flags & DispatchFlags.DISPATCH_INTERNAL) != 0) {
@@ -298,7 +350,8 @@ public class CotDispatcher {
     private boolean tryDispatchWithExecutor(CotEvent event, Bundle data) {
 
         if (parallelInternalDispatchExecutor == null
-                && internalDispatchExecutor == null)
+                && internalDispatchExecutor == null
+                && internalDispatchPipeline == null)
             return false;
 
         final CotEvent eventCopy = new CotEvent(event);
@@ -312,7 +365,15 @@ public class CotDispatcher {
         };
 
         final Future<?> future;
-        if (parallelInternalDispatchExecutor != null) {
+        if (internalDispatchPipeline != null) {
+            // the pipeline requires a UID to assign the mailbox
+            if (eventCopy.getUID() == null)
+                return false;
+
+            // a NO_WAIT caller must not wait for room in a full mailbox
+            future = internalDispatchPipeline.submit(eventCopy, dataCopy,
+                    (flags & DispatchFlags.NO_WAIT) == 0);
+        } else if (parallelInternalDispatchExecutor != null) {
             final String eventUID = eventCopy.getUID();
 
             // in that bad case where a plugin has constructed a CotEvent without providing a UID
@@ -329,6 +390,8 @@ public class CotDispatcher {
         if ((flags & DispatchFlags.NO_WAIT) == 0) {
             try {
                 future.get();
+            } catch (CancellationException ignored) {
+                // dropped by the pipeline
             } catch (ExecutionException | InterruptedException e) {
                 throw new RuntimeException(e);
             }
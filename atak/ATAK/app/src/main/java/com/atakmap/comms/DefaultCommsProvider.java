@@ -7,8 +7,10 @@ import com.atakmap.commoncommo.CloudClient;
 import com.atakmap.commoncommo.CloudIO;
 import com.atakmap.commoncommo.CloudIOProtocol;
 import com.atakmap.commoncommo.CoTDetailExtender;
+import com.atakmap.commoncommo.CoTMessageBufferListener;
 import com.atakmap.commoncommo.CoTMessageListener;
 import com.atakmap.commoncommo.CoTMessageType;
+import com.atakmap.commoncommo.CoTPayload;
 import com.atakmap.commoncommo.CoTSendFailureListener;
 import com.atakmap.commoncommo.CoTSendMethod;
 import com.atakmap.commoncommo.Commo;
@@ -120,6 +122,14 @@ public final class DefaultCommsProvider extends CommsProvider {
         commo.addCoTMessageListener(coTMessageListener);
     }
 
+    /**
+     * Registers a listener that receives inbound CoT as UTF-8 bytes rather
+     * than as a String.
+     */
+    void addCoTMessageBufferListener(CoTMessageBufferListener listener) {
+        commo.addCoTMessageBufferListener(listener);
+    }
+
     void addInterfaceStatusListener(
             InterfaceStatusListener interfaceStatusListener) {
         commo.addInterfaceStatusListener(interfaceStatusListener);
@@ -141,6 +151,14 @@ public final class DefaultCommsProvider extends CommsProvider {
         commo.setStreamMonitorEnabled(enabled);
     }
 
+    void setStreamWriteCoalescingEnabled(boolean enabled) {
+        commo.setStreamWriteCoalescingEnabled(enabled);
+    }
+
+    int getStreamTxQueueDepth(String streamId) {
+        return commo.getStreamTxQueueDepth(streamId);
+    }
+
     void setMulticastLoopbackEnabled(boolean enabled) {
         commo.setMulticastLoopbackEnabled(enabled);
     }
@@ -340,6 +358,30 @@ public final class DefaultCommsProvider extends CommsProvider {
         commo.sendCoT(contacts, event, method);
     }
 
+    /**
+     * Broadcasts and/or sends an encoded event to the specified contacts
+     * with a single call into commo.
+     *
+     * @param payload the encoded event
+     * @param broadcast true to broadcast the event
+     * @param contactUids contacts to send to, or null for none
+     * @param method method for sending
+     */
+    void sendCoT(CoTPayload payload, boolean broadcast,
+            Collection<String> contactUids, CoTSendMethod method)
+            throws CommoException {
+        Vector<Contact> contacts = null;
+        if (contactUids != null) {
+            contacts = new Vector<>(contactUids.size());
+            for (String contactUid : contactUids) {
+                Contact contact = uidToCommoContact.get(contactUid);
+                if (contact != null)
+                    contacts.add(contact);
+            }
+        }
+        commo.sendCoT(payload, broadcast, contacts, method);
+    }
+
     @Override
     public void sendCoTToServerMissionDest(String id, String mission,
             String event) throws CommoException {
@@ -5,11 +5,13 @@ import com.atakmap.app.R;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.map.layer.feature.DataSourceFeatureDataStore;
+import com.atakmap.map.layer.feature.FeatureDataSource;
 
 import java.io.File;
 import java.util.HashSet;
 import com.atakmap.coremap.locale.LocaleUtil;
 import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.kml.KmlFeatureDataSource;
 
 import java.util.Set;
 
@@ -34,6 +36,15 @@ public class KmlFileSpatialDb extends OgrSpatialDb {
     private static final String ICON_PATH = "asset://icons/kml.png";
     public static final int KML_FILE_ICON_ID = R.drawable.ic_kml_file_notification_icon;
 
+    /**
+     * Documents larger than this, in bytes, are ingested with the streaming
+     * KML parser. OGR builds the whole document in memory before the first
+     * feature is read, which does not scale to very large exports.
+     */
+    public static final long STREAMING_THRESHOLD = 16L * 1024L * 1024L;
+
+    public final static FeatureDataSource STREAMING_KML_DATA_SOURCE = new KmlFeatureDataSource();
+
     /** @deprecated use {@link #KmlFileSpatialDb(FeatureDataStore2)} */
     @Deprecated
     @DeprecatedApi(since = "5.3", forRemoval = true, removeAt = "5.6")
@@ -68,6 +79,13 @@ public class KmlFileSpatialDb extends OgrSpatialDb {
         return PROCESS_REJECT;
     }
 
+    @Override
+    protected String getProviderHint(File file) {
+        if (KmlFeatureDataSource.getDocumentSize(file) > STREAMING_THRESHOLD)
+            return STREAMING_KML_DATA_SOURCE.getName();
+        return super.getProviderHint(file);
+    }
+
     @Override
     public String getFileMimeType() {
         return KML_FILE_MIME_TYPE;
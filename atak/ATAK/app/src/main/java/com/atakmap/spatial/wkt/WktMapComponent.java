@@ -132,6 +132,10 @@ public class WktMapComponent extends AbstractMapComponent implements
                 .register(ShapefileSpatialDb.ZIPPED_SHP_DATA_SOURCE);
         FeatureDataSourceContentFactory
                 .register(GMLSpatialDb.ZIPPED_GML_DATA_SOURCE);
+        // registered below the default priority so that OGR remains the
+        // default for KML; the streaming parser is selected by hint
+        FeatureDataSourceContentFactory
+                .register(KmlFileSpatialDb.STREAMING_KML_DATA_SOURCE, -1);
 
         this.mapView = view;
 
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -15,6 +16,7 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
+import android.os.Bundle;
 
 import com.atakmap.MapViewMocker;
 import com.atakmap.android.ipc.AtakBroadcast;
@@ -98,6 +100,13 @@ public class ContactsTest {
         return contact;
     }
 
+    void setupTeamAndRole(Contact contact, String team, String role) {
+        Bundle extras = mock(Bundle.class);
+        when(extras.getString("team", "none")).thenReturn(team);
+        when(extras.getString("role", "none")).thenReturn(role);
+        when(contact.getExtras()).thenReturn(extras);
+    }
+
     @Test
     public void addContact_IgnoresContact_WhenContactHasAlreadyBeenAdded() {
         Contacts contactsUnderTest = setupContactStore();
@@ -255,6 +264,120 @@ public class ContactsTest {
         assertNull(contactWithCallsign);
     }
 
+    @Test
+    public void getFirstContactWithCallsign_WhenContactRenamed() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupDefaultContact();
+        when(contact.getName()).thenReturn("abcdef");
+
+        contactsUnderTest.addContact(contact);
+        assertNotNull(contactsUnderTest.getFirstContactWithCallsign("abcdef"));
+
+        when(contact.getName()).thenReturn("ghijkl");
+        contactsUnderTest.dispatchContactChangedEvent(contact.getUid());
+
+        assertNull(contactsUnderTest.getFirstContactWithCallsign("abcdef"));
+        final Contact contactWithCallsign = contactsUnderTest
+                .getFirstContactWithCallsign("ghijkl");
+        assertNotNull(contactWithCallsign);
+        assertEquals(contact.getUid(), contactWithCallsign.getUid());
+    }
+
+    @Test
+    public void getFirstContactWithCallsign_WhenContactRemoved() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupDefaultContact();
+        when(contact.getName()).thenReturn("abcdef");
+
+        contactsUnderTest.addContact(contact);
+        contactsUnderTest.removeContactByUuid(contact.getUid());
+
+        assertNull(contactsUnderTest.getFirstContactWithCallsign("abcdef"));
+    }
+
+    @Test
+    public void getAllContactsInTeamAndWithRole() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupDefaultContact();
+        setupTeamAndRole(contact, "Cyan", "Medic");
+
+        final Contact altContact1 = setupContact(ALTERNATE_CONTACT_ID1);
+        setupTeamAndRole(altContact1, "Cyan", "Team Member");
+        final Contact altContact2 = setupContact(ALTERNATE_CONTACT_ID2);
+        setupTeamAndRole(altContact2, "Red", "Medic");
+
+        contactsUnderTest.addContact(contact);
+        contactsUnderTest.addContact(altContact1);
+        contactsUnderTest.addContact(altContact2);
+
+        List<String> team = contactsUnderTest.getAllContactsInTeam("Cyan");
+        assertEquals(2, team.size());
+        assertTrue(team.contains(contact.getUid()));
+        assertTrue(team.contains(altContact1.getUid()));
+
+        List<String> role = contactsUnderTest.getAllContactsWithRole("Medic");
+        assertEquals(2, role.size());
+        assertTrue(role.contains(contact.getUid()));
+        assertTrue(role.contains(altContact2.getUid()));
+
+        // team change is picked up on the next change notification
+        setupTeamAndRole(altContact2, "Cyan", "Medic");
+        contactsUnderTest.dispatchContactChangedEvent(altContact2.getUid());
+        assertEquals(3, contactsUnderTest.getAllContactsInTeam("Cyan").size());
+        assertTrue(contactsUnderTest.getAllContactsInTeam("Red").isEmpty());
+    }
+
+    @Test
+    public void getContactsSnapshot_ReflectsMembershipChanges() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupDefaultContact();
+        final Contact altContact1 = setupContact(ALTERNATE_CONTACT_ID1);
+
+        contactsUnderTest.addContact(contact);
+        List<Contact> snapshot = contactsUnderTest.getContactsSnapshot();
+        assertEquals(1, snapshot.size());
+
+        contactsUnderTest.addContact(altContact1);
+        assertEquals(2, contactsUnderTest.getContactsSnapshot().size());
+        contactsUnderTest.removeContactByUuid(contact.getUid());
+        assertEquals(1, contactsUnderTest.getContactsSnapshot().size());
+
+        // previously published snapshots are immutable
+        assertEquals(1, snapshot.size());
+    }
+
+    @Test
+    public void getContactsSnapshot_SharedAcrossUpdates() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupDefaultContact();
+
+        contactsUnderTest.addContact(contact);
+        List<Contact> snapshot = contactsUnderTest.getContactsSnapshot();
+
+        // the store still holds the same instance, membership is unchanged
+        contactsUnderTest.contactUpdated(contact);
+        assertSame(snapshot, contactsUnderTest.getContactsSnapshot());
+    }
+
+    @Test
+    public void uidChanged_RemovesOldUidFromIndex() {
+        Contacts contactsUnderTest = setupContactStore();
+        Contact contact = setupDefaultContact();
+        setupTeamAndRole(contact, "Cyan", "Medic");
+
+        contactsUnderTest.addContact(contact);
+        assertTrue(contactsUnderTest.getAllContactsInTeam("Cyan")
+                .contains(DEFAULT_CONTACT_ID));
+
+        // as done by Contact.setUid
+        when(contact.getUid()).thenReturn(ALTERNATE_CONTACT_ID1);
+        contactsUnderTest.uidChanged(DEFAULT_CONTACT_ID);
+        contactsUnderTest.dispatchContactChangedEvent(ALTERNATE_CONTACT_ID1);
+
+        assertFalse(contactsUnderTest.getAllContactsInTeam("Cyan")
+                .contains(DEFAULT_CONTACT_ID));
+    }
+
     @Test
     public void getAllContactIds() {
         Contacts contactsUnderTest = setupContactStore();
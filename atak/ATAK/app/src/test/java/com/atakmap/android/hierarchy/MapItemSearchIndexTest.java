@@ -0,0 +1,210 @@
+
+package com.atakmap.android.hierarchy;
+
+import com.atakmap.android.maps.MapEvent;
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapGroup;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.android.maps.RootMapGroup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class MapItemSearchIndexTest {
+
+    private static long serialId = 1;
+
+    @Test
+    public void results_are_ranked_best_first() {
+        MapItem substring = item("subalpha");
+        MapItem wordPrefix = item("big alpha");
+        MapItem prefix = item("alphabet");
+        MapItem exact = item("alpha");
+        MapItem other = item("bravo");
+        MapItemSearchIndex index = new MapItemSearchIndex(mapView(null,
+                substring, wordPrefix, prefix, exact, other));
+        index.build();
+
+        List<MapItem> results = index.find("Alpha", null, Integer.MAX_VALUE,
+                MapItemSearchIndex.DEFAULT_BUDGET_MS);
+        assertEquals(Arrays.asList(exact, prefix, wordPrefix, substring),
+                results);
+
+        assertEquals(3, index.getRank(exact, "alpha"));
+        assertEquals(0, index.getRank(substring, "alpha"));
+        assertEquals(-1, index.getRank(other, "alpha"));
+    }
+
+    @Test
+    public void infix_matches_use_substring_index() {
+        MapItem subalpha = item("subalpha");
+        MapItem alpine = item("alpine");
+        MapItem xy = item("xy");
+        MapItemSearchIndex index = new MapItemSearchIndex(
+                mapView(null, subalpha, alpine, xy));
+        index.build();
+
+        assertEquals(Arrays.asList(subalpha), find(index, "balph"));
+        assertEquals(Arrays.asList(alpine, subalpha), find(index, "lp"));
+        assertEquals(Arrays.asList(xy), find(index, "y"));
+        assertTrue(find(index, "alphz").isEmpty());
+
+        // removed words are dropped from the substring index
+        index.onMapEvent(new MapEvent.Builder(MapEvent.ITEM_REMOVED)
+                .setItem(subalpha).build());
+        assertTrue(find(index, "balph").isEmpty());
+        assertEquals(Arrays.asList(alpine), find(index, "lp"));
+    }
+
+    @Test
+    public void limit_keeps_best_matches() {
+        MapItem substring = item("subalpha");
+        MapItem exact = item("alpha");
+        MapItemSearchIndex index = new MapItemSearchIndex(
+                mapView(null, substring, exact));
+        index.build();
+
+        List<MapItem> results = index.find("alpha", null, 1,
+                MapItemSearchIndex.DEFAULT_BUDGET_MS);
+        assertEquals(Arrays.asList(exact), results);
+    }
+
+    @Test
+    public void find_returns_null_until_built() throws InterruptedException {
+        MapItem item = item("alpha");
+        MapItemSearchIndex index = new MapItemSearchIndex(
+                mapView(null, item));
+
+        assertNull(index.find("alpha", null, Integer.MAX_VALUE,
+                MapItemSearchIndex.DEFAULT_BUDGET_MS));
+
+        // the first search starts the build in the background
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!index.isBuilt() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertTrue(index.isBuilt());
+
+        List<MapItem> results = index.find("alpha", null, Integer.MAX_VALUE,
+                MapItemSearchIndex.DEFAULT_BUDGET_MS);
+        assertNotNull(results);
+        assertEquals(Arrays.asList(item), results);
+    }
+
+    @Test
+    public void item_removed_during_build_is_not_indexed() {
+        final MapItem kept = item("alpha one");
+        final MapItem removed = item("alpha two");
+        final MapItemSearchIndex[] index = new MapItemSearchIndex[1];
+
+        // the removal arrives after the items were collected but before they
+        // are indexed
+        index[0] = new MapItemSearchIndex(mapView(new Runnable() {
+            @Override
+            public void run() {
+                index[0].onMapEvent(new MapEvent.Builder(
+                        MapEvent.ITEM_REMOVED).setItem(removed).build());
+            }
+        }, kept, removed));
+        index[0].build();
+
+        List<MapItem> results = index[0].find("alpha", null,
+                Integer.MAX_VALUE, MapItemSearchIndex.DEFAULT_BUDGET_MS);
+        assertEquals(Arrays.asList(kept), results);
+        assertEquals(-1, index[0].getRank(removed, "alpha"));
+    }
+
+    @Test
+    public void remarks_are_updated_when_persisted() {
+        MapItem item = item("callsign");
+        Mockito.when(item.getMetaString(ArgumentMatchers.eq("remarks"),
+                ArgumentMatchers.<String> any())).thenReturn("alpha");
+        MapItemSearchIndex index = new MapItemSearchIndex(
+                mapView(null, item));
+        index.build();
+        assertEquals(Arrays.asList(item), find(index, "alpha"));
+
+        // remarks changes are not notified to metadata listeners
+        Mockito.verify(item, Mockito.never()).addOnMetadataChangedListener(
+                ArgumentMatchers.eq("remarks"),
+                ArgumentMatchers.any(MapItem.OnMetadataChangedListener.class));
+
+        Mockito.when(item.getMetaString(ArgumentMatchers.eq("remarks"),
+                ArgumentMatchers.<String> any())).thenReturn("bravo");
+        index.onMapEvent(new MapEvent.Builder(MapEvent.ITEM_PERSIST)
+                .setItem(item).build());
+        assertTrue(find(index, "alpha").isEmpty());
+        assertEquals(Arrays.asList(item), find(index, "bravo"));
+    }
+
+    @Test
+    public void search_is_not_truncated_within_budget() {
+        MapItemSearchIndex index = new MapItemSearchIndex(
+                mapView(null, item("alpha")));
+        index.build();
+
+        MapItemSearchIndex.setCancellationSignal(null);
+        index.find("alpha", null, Integer.MAX_VALUE,
+                MapItemSearchIndex.DEFAULT_BUDGET_MS);
+        assertFalse(MapItemSearchIndex.isTruncated());
+    }
+
+    private static List<MapItem> find(MapItemSearchIndex index,
+            String terms) {
+        return index.find(terms, null, Integer.MAX_VALUE,
+                MapItemSearchIndex.DEFAULT_BUDGET_MS);
+    }
+
+    private static MapItem item(String callsign) {
+        MapItem item = Mockito.mock(MapItem.class);
+        Mockito.when(item.getSerialId()).thenReturn(serialId++);
+        Mockito.when(item.getMetaString(ArgumentMatchers.anyString(),
+                ArgumentMatchers.<String> any())).thenReturn(null);
+        Mockito.when(item.getMetaString(ArgumentMatchers.eq("callsign"),
+                ArgumentMatchers.<String> any())).thenReturn(callsign);
+        return item;
+    }
+
+    /**
+     * @param afterCollect Invoked once all items have been passed to the
+     *                     callback, may be null
+     */
+    private static MapView mapView(final Runnable afterCollect,
+            final MapItem... items) {
+        MapView mapView = Mockito.mock(MapView.class);
+        Mockito.when(mapView.getMapEventDispatcher())
+                .thenReturn(Mockito.mock(MapEventDispatcher.class));
+        RootMapGroup root = Mockito.mock(RootMapGroup.class);
+        Mockito.when(root.deepForEachItem(
+                ArgumentMatchers.any(MapGroup.MapItemsCallback.class)))
+                .thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        MapGroup.MapItemsCallback cb = invocation
+                                .getArgument(0);
+                        for (MapItem item : items)
+                            cb.onItemFunction(item);
+                        if (afterCollect != null)
+                            afterCollect.run();
+                        return false;
+                    }
+                });
+        Mockito.when(mapView.getRootGroup()).thenReturn(root);
+        return mapView;
+    }
+}
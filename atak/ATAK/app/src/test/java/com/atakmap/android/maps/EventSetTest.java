@@ -0,0 +1,117 @@
+
+package com.atakmap.android.maps;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class EventSetTest {
+
+    private interface OnChangedListener {
+        void onChanged(String value);
+    }
+
+    private static class Runner {
+        final EventSet.Parameters1<OnChangedListener, String> onChanged;
+        final EventSet.Parameters1<OnChangedListener, String> onOtherChanged;
+        final EventSet.Listeners listeners;
+        final List<String> received = Collections
+                .synchronizedList(new ArrayList<>());
+
+        Runner() {
+            EventSet.Builder builder = new EventSet.Builder("test");
+            onChanged = builder.addEvent(
+                    new EventSet.Invoker1<OnChangedListener, String>() {
+                        @Override
+                        public void invoke(OnChangedListener l, String v) {
+                            l.onChanged(v);
+                        }
+                    });
+            onOtherChanged = builder.addEvent(
+                    new EventSet.Invoker1<OnChangedListener, String>() {
+                        @Override
+                        public void invoke(OnChangedListener l, String v) {
+                            l.onChanged("other:" + v);
+                        }
+                    });
+            listeners = builder.build().createListeners();
+            OnChangedListener l = new OnChangedListener() {
+                @Override
+                public void onChanged(String value) {
+                    received.add(value);
+                }
+            };
+            listeners.addListener(onChanged, l);
+            listeners.addListener(onOtherChanged, l);
+        }
+    }
+
+    @Test
+    public void invoke_without_batch_is_immediate() {
+        Runner r = new Runner();
+        r.onChanged.invoke(r.listeners, "a");
+        r.onChanged.invoke(r.listeners, "a");
+        Assert.assertEquals(Arrays.asList("a", "a"), r.received);
+    }
+
+    @Test
+    public void batch_coalesces_repeated_invocations() {
+        Runner r = new Runner();
+        r.listeners.beginBatch();
+        r.onChanged.invoke(r.listeners, "a");
+        r.onOtherChanged.invoke(r.listeners, "a");
+        r.onChanged.invoke(r.listeners, "b");
+        r.onChanged.invoke(r.listeners, "a");
+        Assert.assertTrue(r.received.isEmpty());
+        r.listeners.endBatch();
+        Assert.assertEquals(Arrays.asList("other:a", "b", "a"), r.received);
+    }
+
+    @Test
+    public void nested_batch_delivers_on_outermost_end() {
+        Runner r = new Runner();
+        r.listeners.beginBatch();
+        r.listeners.beginBatch();
+        r.onChanged.invoke(r.listeners, "a");
+        r.listeners.endBatch();
+        Assert.assertTrue(r.received.isEmpty());
+        r.listeners.endBatch();
+        Assert.assertEquals(Collections.singletonList("a"), r.received);
+
+        // batch is closed, further invocations are immediate
+        r.onChanged.invoke(r.listeners, "b");
+        Assert.assertEquals(Arrays.asList("a", "b"), r.received);
+    }
+
+    @Test
+    public void batch_does_not_defer_other_threads() throws Exception {
+        final Runner r = new Runner();
+        r.listeners.beginBatch();
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                r.onChanged.invoke(r.listeners, "t");
+                // cannot end a batch owned by another thread
+                r.listeners.endBatch();
+            }
+        });
+        t.start();
+        t.join();
+        r.onChanged.invoke(r.listeners, "a");
+        Assert.assertEquals(Collections.singletonList("t"), r.received);
+        r.listeners.endBatch();
+        Assert.assertEquals(Arrays.asList("t", "a"), r.received);
+    }
+
+    @Test
+    public void end_without_begin_is_ignored() {
+        Runner r = new Runner();
+        r.listeners.endBatch();
+        r.onChanged.invoke(r.listeners, "a");
+        Assert.assertEquals(Collections.singletonList("a"), r.received);
+    }
+}
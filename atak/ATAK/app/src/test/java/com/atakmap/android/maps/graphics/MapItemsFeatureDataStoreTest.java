@@ -0,0 +1,257 @@
+package com.atakmap.android.maps.graphics;
+
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.Geometry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class MapItemsFeatureDataStoreTest {
+
+    private final Map<MapItem, TestFeature> features = new IdentityHashMap<>();
+    private final GLMapItemFeatureSpi spi = new GLMapItemFeatureSpi() {
+        @Override
+        public GLMapItemFeature create(GLMapItemFeatures f, MapItem item) {
+            TestFeature feature = new TestFeature(f);
+            features.put(item, feature);
+            return feature;
+        }
+
+        @Override
+        public boolean isSupported(MapItem item) {
+            return true;
+        }
+    };
+
+    private MapItemsFeatureDataStore store;
+
+    @Before
+    public void createStore() {
+        GLMapItemFeatureFactory.registerSpi(spi, 0);
+        store = new MapItemsFeatureDataStore(null);
+    }
+
+    @After
+    public void disposeStore() {
+        store.dispose();
+        GLMapItemFeatureFactory.unregisterSpi(spi);
+    }
+
+    @Test
+    public void spatial_query_follows_moved_items() {
+        MapItem a = insert(10, 10);
+        MapItem b = insert(-10, -10);
+        assertEquals(Collections.singletonList(a), query(0, 0, 20, 20));
+
+        features.get(a).moveTo(-10, -10);
+        assertTrue(query(0, 0, 20, 20).isEmpty());
+        assertEquals(set(a, b), new HashSet<>(query(-20, -20, 0, 0)));
+
+        // only the last of several moves between queries is indexed
+        features.get(b).moveTo(10, 10);
+        features.get(b).moveTo(15, 15);
+        assertEquals(Collections.singletonList(b), query(12, 12, 20, 20));
+        assertTrue(query(5, 5, 11, 11).isEmpty());
+    }
+
+    @Test
+    public void items_are_observed_and_indexed_on_first_query() {
+        MapItem a = insert(10, 10);
+        assertNull(features.get(a)._subject);
+
+        assertEquals(Collections.singletonList(a), query(0, 0, 20, 20));
+        assertSame(a, features.get(a)._subject);
+        assertSame(a, store.getItem(features.get(a)._fids[0]));
+    }
+
+    @Test
+    public void deleted_items_are_removed_from_index() {
+        MapItem a = insert(10, 10);
+        MapItem b = insert(11, 11);
+        assertEquals(set(a, b), new HashSet<>(query(0, 0, 20, 20)));
+        final long fid = features.get(a)._fids[0];
+
+        store.delete(a);
+        assertEquals(Collections.singletonList(b), query(0, 0, 20, 20));
+        assertNull(store.getItem(fid));
+
+        // a move queued before the delete does not re-index the record
+        features.get(b).moveTo(12, 12);
+        store.delete(b);
+        assertTrue(query(0, 0, 20, 20).isEmpty());
+    }
+
+    @Test
+    public void spatial_query_is_cached_until_content_changes() {
+        MapItem a = insert(10, 10);
+        List<?> first = candidates(spatial(0, 0, 20, 20));
+        assertSame(first, candidates(spatial(0, 0, 20, 20)));
+        assertNotSame(first, candidates(spatial(0, 0, 30, 30)));
+
+        first = candidates(spatial(0, 0, 20, 20));
+        store.onItemChanged(a);
+        List<?> changed = candidates(spatial(0, 0, 20, 20));
+        assertNotSame(first, changed);
+        assertEquals(first, changed);
+
+        // a move invalidates the cached candidates
+        features.get(a).moveTo(-10, -10);
+        assertTrue(query(0, 0, 20, 20).isEmpty());
+    }
+
+    @Test
+    public void unfiltered_query_is_cached_until_membership_changes() {
+        MapItem a = insert(10, 10);
+        List<?> first = candidates(new FeatureDataStore2.FeatureQueryParameters());
+        assertEquals(1, first.size());
+        assertSame(first, candidates(
+                new FeatureDataStore2.FeatureQueryParameters()));
+
+        // content changes do not change the membership
+        store.onItemChanged(a);
+        assertSame(first, candidates(
+                new FeatureDataStore2.FeatureQueryParameters()));
+
+        MapItem b = insert(-10, -10);
+        List<?> inserted = candidates(
+                new FeatureDataStore2.FeatureQueryParameters());
+        assertNotSame(first, inserted);
+        assertEquals(2, inserted.size());
+
+        store.delete(a);
+        assertEquals(Collections.singletonList(b),
+                query(new FeatureDataStore2.FeatureQueryParameters()));
+    }
+
+    private MapItem insert(double lat, double lng) {
+        MapItem item = Mockito.mock(MapItem.class);
+        Mockito.when(item.getVisible()).thenReturn(true);
+        assertTrue(store.insert(item));
+        TestFeature feature = features.get(item);
+        assertNotNull(feature);
+        feature.lat = lat;
+        feature.lng = lng;
+        return item;
+    }
+
+    private List<MapItem> query(double minX, double minY, double maxX,
+            double maxY) {
+        return query(spatial(minX, minY, maxX, maxY));
+    }
+
+    private List<MapItem> query(
+            FeatureDataStore2.FeatureQueryParameters params) {
+        List<MapItem> items = new ArrayList<>();
+        FeatureCursor cursor = store.queryFeatures(params);
+        try {
+            while (cursor.moveToNext())
+                items.add(store.getItem(cursor.getId()));
+        } finally {
+            cursor.close();
+        }
+        return items;
+    }
+
+    /**
+     * @return The records the query cursor iterates, before filtering
+     */
+    private List<?> candidates(
+            FeatureDataStore2.FeatureQueryParameters params) {
+        FeatureCursor cursor = store.queryFeatures(params);
+        try {
+            return ((MapItemsFeatureDataStore.FeatureCursorImpl) cursor)._records;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static FeatureDataStore2.FeatureQueryParameters spatial(
+            double minX, double minY, double maxX, double maxY) {
+        Geometry filter = Mockito.mock(Geometry.class);
+        Mockito.when(filter.getEnvelope()).thenReturn(
+                new Envelope(minX, minY, 0d, maxX, maxY, 0d));
+        FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+        params.spatialFilter = filter;
+        return params;
+    }
+
+    private static Set<MapItem> set(MapItem... items) {
+        return new HashSet<>(Arrays.asList(items));
+    }
+
+    /**
+     * Feature for a single point whose position is set by the test
+     */
+    private static final class TestFeature extends GLMapItemFeature {
+        private final Feature feature;
+        double lat;
+        double lng;
+
+        TestFeature(GLMapItemFeatures features) {
+            super(features, 1);
+            feature = Mockito.mock(Feature.class);
+            Mockito.when(feature.getId()).thenAnswer(new Answer<Long>() {
+                @Override
+                public Long answer(InvocationOnMock invocation) {
+                    return _fids[0];
+                }
+            });
+        }
+
+        void moveTo(double lat, double lng) {
+            this.lat = lat;
+            this.lng = lng;
+            markDirty(FeatureDataStore2.PROPERTY_FEATURE_GEOMETRY);
+        }
+
+        @Override
+        void startObservingImpl() {
+        }
+
+        @Override
+        void stopObservingImpl() {
+        }
+
+        @Override
+        void validateFeatureImpl(int propertiesMask, Feature[] features) {
+            features[0] = feature;
+        }
+
+        @Override
+        void validateLabel() {
+        }
+
+        @Override
+        void refreshBounds() {
+            _bounds.minX = _bounds.maxX = lng;
+            _bounds.minY = _bounds.maxY = lat;
+        }
+    }
+}
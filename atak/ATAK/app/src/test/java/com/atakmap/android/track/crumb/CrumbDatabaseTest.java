@@ -0,0 +1,110 @@
+package com.atakmap.android.track.crumb;
+
+import com.atakmap.MapViewMocker;
+import com.atakmap.coremap.io.DatabaseInformation;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.database.CursorIface;
+import com.atakmap.database.DatabaseIface;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CrumbDatabaseTest {
+
+    private final Object lock = new Object();
+    private final Object readLock = new Object();
+    private final File file = new File("crumbs2.sqlite");
+
+    @Before
+    public void mockStatics() {
+        new MapViewMocker().getMapView();
+    }
+
+    @Test
+    public void wal_database_gets_dedicated_read_connection() {
+        DatabaseIface db = database("wal");
+        DatabaseIface readDb = Mockito.mock(DatabaseIface.class);
+        Mockito.when(IOProviderFactory.createDatabase(
+                ArgumentMatchers.any(DatabaseInformation.class)))
+                .thenReturn(readDb);
+
+        CrumbDatabase.ReadConnection reader = CrumbDatabase.openReader(db,
+                file, lock, readLock);
+
+        assertTrue(reader.dedicated);
+        assertSame(readDb, reader.database);
+        assertSame(readLock, reader.lock);
+    }
+
+    @Test
+    public void rollback_journal_shares_writer_connection() {
+        DatabaseIface db = database("delete");
+
+        CrumbDatabase.ReadConnection reader = CrumbDatabase.openReader(db,
+                file, lock, readLock);
+
+        assertFalse(reader.dedicated);
+        assertSame(db, reader.database);
+        assertSame(lock, reader.lock);
+    }
+
+    @Test
+    public void failed_read_connection_shares_writer_connection() {
+        DatabaseIface db = database("wal");
+        Mockito.when(IOProviderFactory.createDatabase(
+                ArgumentMatchers.any(DatabaseInformation.class)))
+                .thenReturn(null);
+
+        CrumbDatabase.ReadConnection reader = CrumbDatabase.openReader(db,
+                file, lock, readLock);
+
+        assertFalse(reader.dedicated);
+        assertSame(db, reader.database);
+        assertSame(lock, reader.lock);
+    }
+
+    @Test
+    public void indices_cover_segment_and_user_queries() {
+        DatabaseIface db = Mockito.mock(DatabaseIface.class);
+
+        CrumbDatabase.createIndices(db);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(db, Mockito.times(2)).execute(sql.capture(),
+                ArgumentMatchers.<String[]> isNull());
+        List<String> statements = sql.getAllValues();
+        assertEquals(2, statements.size());
+        assertTrue(statements.contains("CREATE INDEX IF NOT EXISTS"
+                + " breadcrumb2_segment_timestamp_idx"
+                + " ON breadcrumb2(_sid, timestamp)"));
+        assertTrue(statements.contains("CREATE INDEX IF NOT EXISTS"
+                + " segment_uid_timestamp_idx ON segment(uuid, timestamp)"));
+    }
+
+    /**
+     * @param journalMode the journal mode reported after requesting WAL
+     */
+    private static DatabaseIface database(String journalMode) {
+        DatabaseIface db = Mockito.mock(DatabaseIface.class);
+        CursorIface result = Mockito.mock(CursorIface.class);
+        Mockito.when(result.moveToNext()).thenReturn(true);
+        Mockito.when(result.getString(0)).thenReturn(journalMode);
+        Mockito.when(db.query(ArgumentMatchers.eq("PRAGMA journal_mode = WAL"),
+                ArgumentMatchers.nullable(String[].class))).thenReturn(result);
+        return db;
+    }
+}
@@ -0,0 +1,241 @@
+package com.atakmap.comms;
+
+import android.os.Bundle;
+
+import com.atakmap.android.util.ParallelTrackExecutorService;
+import com.atakmap.coremap.cot.event.CotEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class CotDispatchPipelineTest {
+
+    /**
+     * Records the handled event types. Handling of the "gate" event blocks
+     * until the gate is opened so that subsequent events stay pending.
+     */
+    private static class GatedHandler
+            implements CotDispatchPipeline.EventHandler {
+        final List<String> handled = Collections
+                .synchronizedList(new ArrayList<String>());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public void onEvent(CotEvent event, Bundle data) {
+            if (event.getType().equals("gate")) {
+                started.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+            handled.add(event.getType());
+        }
+    }
+
+    private static CotEvent createEvent(String uid, String type) {
+        CotEvent event = new CotEvent();
+        event.setUID(uid);
+        event.setType(type);
+        return event;
+    }
+
+    private static void shutdownService(
+            ParallelTrackExecutorService service) {
+        service.shutdown();
+        try {
+            Assert.assertTrue(
+                    service.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS));
+        } catch (InterruptedException e) {
+            Assert.fail();
+        }
+    }
+
+    @Test
+    public void position_reports_coalesced() throws Exception {
+        final ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final GatedHandler handler = new GatedHandler();
+        final CotDispatchPipeline pipeline = new CotDispatchPipeline(service,
+                handler, 16, CotDispatchPipeline.OverflowPolicy.BLOCK);
+        pipeline.setCoalescingFilter(CotDispatchPipeline.POSITION_REPORTS);
+
+        pipeline.submit(createEvent("uid", "gate"), null);
+        Assert.assertTrue(handler.started.await(10, TimeUnit.SECONDS));
+
+        final Future<?> first = pipeline.submit(createEvent("uid", "a-f-G-1"),
+                null);
+        Future<?> last = null;
+        for (int i = 2; i <= 5; i++)
+            last = pipeline.submit(createEvent("uid", "a-f-G-" + i), null);
+        // a non coalescable event is ordered after the position report
+        final Future<?> other = pipeline.submit(createEvent("uid", "b-t-f"),
+                null);
+
+        Assert.assertSame(first, last);
+        Assert.assertEquals(2, pipeline.getQueueDepth());
+        Assert.assertEquals(4, pipeline.getCoalescedCount());
+
+        handler.gate.countDown();
+        first.get();
+        other.get();
+
+        Assert.assertEquals(3, handler.handled.size());
+        Assert.assertEquals("gate", handler.handled.get(0));
+        Assert.assertEquals("a-f-G-5", handler.handled.get(1));
+        Assert.assertEquals("b-t-f", handler.handled.get(2));
+        Assert.assertEquals(7, pipeline.getSubmittedCount());
+        Assert.assertEquals(3, pipeline.getHandledCount());
+        Assert.assertEquals(3, pipeline.getHandlingLatency().getCount());
+
+        shutdownService(service);
+    }
+
+    @Test
+    public void overflow_drop_newest() throws Exception {
+        final ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final GatedHandler handler = new GatedHandler();
+        final CotDispatchPipeline pipeline = new CotDispatchPipeline(service,
+                handler, 2, CotDispatchPipeline.OverflowPolicy.DROP_NEWEST);
+
+        pipeline.submit(createEvent("uid", "gate"), null);
+        Assert.assertTrue(handler.started.await(10, TimeUnit.SECONDS));
+
+        final Future<?> a = pipeline.submit(createEvent("uid", "a"), null);
+        final Future<?> b = pipeline.submit(createEvent("uid", "b"), null);
+        final Future<?> c = pipeline.submit(createEvent("uid", "c"), null);
+
+        Assert.assertTrue(c.isCancelled());
+        Assert.assertEquals(1, pipeline.getDroppedCount());
+
+        handler.gate.countDown();
+        a.get();
+        b.get();
+        try {
+            c.get();
+            Assert.fail();
+        } catch (CancellationException expected) {
+        }
+
+        Assert.assertEquals("gate", handler.handled.get(0));
+        Assert.assertEquals("a", handler.handled.get(1));
+        Assert.assertEquals("b", handler.handled.get(2));
+        Assert.assertEquals(3, handler.handled.size());
+
+        shutdownService(service);
+    }
+
+    @Test
+    public void overflow_drop_oldest() throws Exception {
+        final ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final GatedHandler handler = new GatedHandler();
+        final CotDispatchPipeline pipeline = new CotDispatchPipeline(service,
+                handler, 2, CotDispatchPipeline.OverflowPolicy.DROP_OLDEST);
+
+        pipeline.submit(createEvent("uid", "gate"), null);
+        Assert.assertTrue(handler.started.await(10, TimeUnit.SECONDS));
+
+        final Future<?> a = pipeline.submit(createEvent("uid", "a"), null);
+        final Future<?> b = pipeline.submit(createEvent("uid", "b"), null);
+        final Future<?> c = pipeline.submit(createEvent("uid", "c"), null);
+
+        Assert.assertTrue(a.isCancelled());
+        Assert.assertEquals(1, pipeline.getDroppedCount());
+        Assert.assertEquals(2, pipeline.getQueueDepth());
+
+        handler.gate.countDown();
+        b.get();
+        c.get();
+
+        Assert.assertEquals("gate", handler.handled.get(0));
+        Assert.assertEquals("b", handler.handled.get(1));
+        Assert.assertEquals("c", handler.handled.get(2));
+        Assert.assertEquals(3, handler.handled.size());
+        Assert.assertEquals(0, pipeline.getQueueDepth());
+
+        shutdownService(service);
+    }
+
+    @Test
+    public void overflow_block_does_not_wait_when_not_allowed()
+            throws Exception {
+        final ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final GatedHandler handler = new GatedHandler();
+        final CotDispatchPipeline pipeline = new CotDispatchPipeline(service,
+                handler, 1, CotDispatchPipeline.OverflowPolicy.BLOCK);
+
+        pipeline.submit(createEvent("uid", "gate"), null);
+        Assert.assertTrue(handler.started.await(10, TimeUnit.SECONDS));
+
+        final Future<?> a = pipeline.submit(createEvent("uid", "a"), null);
+        final Future<?> b = pipeline.submit(createEvent("uid", "b"), null,
+                false);
+
+        Assert.assertTrue(a.isCancelled());
+        Assert.assertEquals(1, pipeline.getDroppedCount());
+
+        handler.gate.countDown();
+        b.get();
+
+        Assert.assertEquals("gate", handler.handled.get(0));
+        Assert.assertEquals("b", handler.handled.get(1));
+        Assert.assertEquals(2, handler.handled.size());
+
+        shutdownService(service);
+    }
+
+    @Test
+    public void overflow_block_does_not_wait_in_worker() throws Exception {
+        final ParallelTrackExecutorService service = new ParallelTrackExecutorService(
+                1);
+        final GatedHandler handler = new GatedHandler();
+        final CotDispatchPipeline[] pipeline = new CotDispatchPipeline[1];
+        pipeline[0] = new CotDispatchPipeline(service,
+                new CotDispatchPipeline.EventHandler() {
+                    @Override
+                    public void onEvent(CotEvent event, Bundle data) {
+                        handler.onEvent(event, data);
+                        // the only worker is busy, so the mailbox for the
+                        // other UID cannot drain while this waits
+                        if (event.getType().equals("gate"))
+                            pipeline[0].submit(createEvent("other", "c"),
+                                    null);
+                    }
+                }, 1, CotDispatchPipeline.OverflowPolicy.BLOCK);
+
+        pipeline[0].submit(createEvent("uid", "gate"), null);
+        Assert.assertTrue(handler.started.await(10, TimeUnit.SECONDS));
+        final Future<?> b = pipeline[0].submit(createEvent("other", "b"),
+                null);
+
+        handler.gate.countDown();
+        try {
+            b.get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (CancellationException expected) {
+        }
+
+        Assert.assertEquals(1, pipeline[0].getDroppedCount());
+        final long deadline = System.currentTimeMillis() + 10000L;
+        while (pipeline[0].getHandledCount() < 2
+                && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        Assert.assertEquals("gate", handler.handled.get(0));
+        Assert.assertEquals("c", handler.handled.get(1));
+        Assert.assertEquals(2, handler.handled.size());
+
+        shutdownService(service);
+    }
+}
@@ -0,0 +1,123 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.log.Log;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Compares the bytes allocated per dispatched event when serializing through
+ * <code>String</code> and re-encoding per output against serializing once
+ * directly to UTF-8.
+ */
+public class CotEventSerializerBenchmarkTest {
+
+    private static final String TAG = "CotEventSerializerBenchmarkTest";
+
+    private static final boolean ENABLED = false;
+
+    private static final int ITERATIONS = 100000;
+    private static final int OUTPUTS = 3;
+
+    @Test
+    public void benchmark_string_per_output() {
+        if (ENABLED) {
+            final CotEvent event = CotEventSerializerTest
+                    .createEvent("moving to checkpoint bravo");
+            doBench("string per output", new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < OUTPUTS; i++)
+                        consume(event.toString()
+                                .getBytes(FileSystemUtils.UTF8_CHARSET));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void benchmark_encoded_shared() {
+        if (ENABLED) {
+            final CotEvent event = CotEventSerializerTest
+                    .createEvent("moving to checkpoint bravo");
+            doBench("encoded shared", new Runnable() {
+                @Override
+                public void run() {
+                    EncodedCotEvent encoded = new EncodedCotEvent(event);
+                    for (int i = 0; i < OUTPUTS; i++)
+                        consume(encoded.getBytes());
+                }
+            });
+        }
+    }
+
+    @Test
+    public void benchmark_serialize_to_scratch() {
+        if (ENABLED) {
+            final CotEvent event = CotEventSerializerTest
+                    .createEvent("moving to checkpoint bravo");
+            doBench("serialize to scratch", new Runnable() {
+                @Override
+                public void run() {
+                    final ByteBuffer scratch = CotEventSerializer
+                            .serializeToScratch(event);
+                    for (int i = 0; i < OUTPUTS; i++)
+                        consume(scratch.duplicate());
+                }
+            });
+        }
+    }
+
+    @Test
+    public void benchmark_serialize_into_pooled() {
+        if (ENABLED) {
+            final CotEvent event = CotEventSerializerTest
+                    .createEvent("moving to checkpoint bravo");
+            final ByteBuffer pooled = ByteBuffer.allocateDirect(8192);
+            doBench("serialize into pooled", new Runnable() {
+                @Override
+                public void run() {
+                    pooled.clear();
+                    CotEventSerializer.serialize(event, pooled);
+                    pooled.flip();
+                    for (int i = 0; i < OUTPUTS; i++)
+                        consume(pooled.duplicate());
+                }
+            });
+        }
+    }
+
+    private static int sink;
+
+    private static void consume(byte[] b) {
+        sink += b.length;
+    }
+
+    private static void consume(ByteBuffer b) {
+        sink += b.remaining();
+    }
+
+    private static void doBench(String name, Runnable runnable) {
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        final long tid = Thread.currentThread().getId();
+
+        // warm up
+        for (int i = 0; i < ITERATIONS / 10; i++)
+            runnable.run();
+
+        final long allocStart = mx.getThreadAllocatedBytes(tid);
+        final long timeStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            runnable.run();
+        final long elapsed = System.nanoTime() - timeStart;
+        final long allocated = mx.getThreadAllocatedBytes(tid) - allocStart;
+
+        Log.i(TAG, name + " duration= " + (elapsed / ITERATIONS)
+                + "ns allocated= " + (allocated / ITERATIONS)
+                + " bytes/event");
+    }
+}
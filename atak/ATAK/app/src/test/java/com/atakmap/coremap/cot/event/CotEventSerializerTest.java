@@ -0,0 +1,123 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CotEventSerializerTest {
+
+    static CotEvent createEvent(String remarks) {
+        CotEvent event = new CotEvent();
+        CoordinatedTime time = new CoordinatedTime(1714573351512L);
+        event.setUID("ANDROID-358f7a1e4b2d9c61");
+        event.setType("a-f-G-U-C");
+        event.setHow(CotEvent.HOW_MACHINE_GENERATED);
+        event.setTime(time);
+        event.setStart(time);
+        event.setStale(time.addSeconds(375));
+        event.setPoint(new CotPoint(38.8977123, -77.0365298, 18.512, 4.9,
+                CotPoint.UNKNOWN));
+
+        CotDetail detail = new CotDetail();
+        CotDetail contact = new CotDetail("contact");
+        contact.setAttribute("callsign", "WOLF 1");
+        contact.setAttribute("endpoint", "*:-1:stcp");
+        detail.addChild(contact);
+        CotDetail rem = new CotDetail("remarks");
+        rem.setInnerText(remarks);
+        detail.addChild(rem);
+        event.setDetail(detail);
+        return event;
+    }
+
+    private static void assertSerializesAsString(CotEvent event) {
+        byte[] expected = event.toString()
+                .getBytes(FileSystemUtils.UTF8_CHARSET);
+        ByteBuffer actual = CotEventSerializer.serialize(event);
+        assertEquals(0, actual.position());
+        assertEquals(expected.length, actual.remaining());
+        byte[] bytes = new byte[actual.remaining()];
+        actual.get(bytes);
+        assertArrayEquals(expected, bytes);
+    }
+
+    @Test
+    public void serialize_matches_string_ascii() {
+        assertSerializesAsString(createEvent("moving to checkpoint <bravo>"));
+    }
+
+    @Test
+    public void serialize_matches_string_multibyte() {
+        // two and three byte sequences and a surrogate pair
+        assertSerializesAsString(
+                createEvent("été Бі € 😀"));
+    }
+
+    @Test
+    public void serialize_grows_scratch_buffer() {
+        StringBuilder remarks = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            remarks.append("Бremarks ");
+        assertSerializesAsString(createEvent(remarks.toString()));
+    }
+
+    @Test
+    public void serialize_to_scratch_reuses_thread_buffer() {
+        CotEvent first = createEvent("a much longer first remark");
+        CotEvent second = createEvent("second");
+
+        ByteBuffer scratch = CotEventSerializer.serializeToScratch(first);
+        assertEquals(0, scratch.position());
+        assertTrue(scratch.isReadOnly());
+        assertEquals(first.toString(), new String(toArray(scratch),
+                FileSystemUtils.UTF8_CHARSET));
+
+        // a shorter message is fully replaced, not overlaid
+        scratch = CotEventSerializer.serializeToScratch(second);
+        assertEquals(second.toString(), new String(toArray(scratch),
+                FileSystemUtils.UTF8_CHARSET));
+    }
+
+    private static byte[] toArray(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void serialize_into_buffer() {
+        CotEvent event = createEvent("remarks");
+        byte[] expected = event.toString()
+                .getBytes(FileSystemUtils.UTF8_CHARSET);
+        ByteBuffer dst = ByteBuffer.allocate(expected.length + 8);
+        dst.position(8);
+        assertEquals(expected.length, CotEventSerializer.serialize(event, dst));
+        assertEquals(dst.capacity(), dst.position());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void serialize_into_small_buffer_throws() {
+        CotEventSerializer.serialize(createEvent("remarks"),
+                ByteBuffer.allocate(16));
+    }
+
+    @Test
+    public void encoded_event_serializes_once() {
+        CotEvent event = createEvent("remarks");
+        EncodedCotEvent encoded = new EncodedCotEvent(event);
+        String xml = encoded.getXml();
+        assertEquals(event.toString(), xml);
+        assertSame(xml, encoded.getXml());
+        assertEquals(xml.getBytes(FileSystemUtils.UTF8_CHARSET).length,
+                encoded.getLength());
+    }
+}
@@ -774,6 +774,22 @@ void Commo::setStreamMonitorEnabled(bool enable)
     impl->streamMgmt->setMonitor(enable);
 }
 
+void Commo::setStreamWriteCoalescingEnabled(bool enable)
+{
+    impl->streamMgmt->setWriteCoalescing(enable);
+}
+
+int Commo::getStreamTxQueueDepth(const char *streamingRemoteId)
+{
+    if (!streamingRemoteId)
+        return -1;
+    try {
+        return (int)impl->streamMgmt->getTxQueueDepth(streamingRemoteId);
+    } catch (std::invalid_argument &) {
+        return -1;
+    }
+}
+
 int Commo::getBroadcastProto()
 {
     return impl->contactMgmt->getProtoVersion();
@@ -1043,6 +1059,41 @@ CommoResult Commo::sendCoT(ContactList *destinations, const char *cotMessage, Co
     }
 }
 
+CommoResult Commo::sendCoTMulti(const uint8_t *cotMessage, size_t len,
+                                bool broadcast, ContactList *destinations,
+                                CoTSendMethod sendMethod)
+{
+    try {
+        static const std::vector<std::string> takServerDests;
+        if (len > maxUDPMessageSize) {
+            InternalUtils::logprintf(impl->logger, CommoLogger::LEVEL_ERROR,
+                                             CommoLogger::TYPE_GENERAL, nullptr,
+                                             "sendCoTMulti() message exceeds max length");
+            return COMMO_ILLEGAL_ARGUMENT;
+        }
+        CoTMessage msg(impl->logger, cotMessage, len);
+        if (broadcast) {
+            // Sending to contacts modifies the message, so broadcast a copy
+            CoTMessage bmsg(msg);
+            if (sendMethod & SEND_POINT_TO_POINT)
+                impl->dgMgmt->sendMulticast(&bmsg);
+            if (sendMethod & SEND_TAK_SERVER) {
+                bmsg.setEndpoints(ENDPOINT_STREAMING, "", NULL);
+                bmsg.setTAKServerRecipients(&takServerDests);
+                impl->streamMgmt->sendBroadcast(&bmsg);
+            }
+        }
+        if (destinations && destinations->nContacts)
+            return impl->contactMgmt->sendCoT(destinations, &msg, sendMethod);
+        return COMMO_SUCCESS;
+    } catch (std::invalid_argument &ex) {
+        InternalUtils::logprintf(impl->logger, CommoLogger::LEVEL_ERROR,
+                                         CommoLogger::TYPE_GENERAL, nullptr,
+                                         "sendCoTMulti() invalid argument: %s", ex.what() ? ex.what() : "");
+        return COMMO_ILLEGAL_ARGUMENT;
+    }
+}
+
 CommoResult Commo::sendCoTTcpDirect(const char *host, int port, const char *cotMessage)
 {
     std::string hostStr(host);
@@ -20,6 +20,8 @@ using namespace atakmap::commoncommo::impl::thread;
 
 namespace {
     const float PROTO_TIMEOUT_SECONDS = 60.0f;
+    // Upper bound on the size of a coalesced streaming write
+    const size_t MAX_COALESCED_WRITE_BYTES = 64 * 1024;
     const float DEFAULT_CONN_TIMEOUT_SECONDS = 20.0f;
     const float CONN_RETRY_SECONDS = 15.0f;
     const float RESOLVE_RETRY_SECONDS = 30.0f;
@@ -64,6 +66,7 @@ StreamingSocketManagement::StreamingSocketManagement(CommoLogger *logger,
         resolver(new ResolverQueue(logger, this, RESOLVE_RETRY_SECONDS, RESQ_INFINITE_TRIES)),
         connTimeoutSec(DEFAULT_CONN_TIMEOUT_SECONDS),
         monitor(true),
+        coalesceWrites(false),
         sslCtx(NULL),
         contexts(), contextMutex(RWMutex::Policy_Fair),
         ioNeedsRebuild(false),
@@ -396,6 +399,12 @@ void StreamingSocketManagement::setMonitor(bool en)
 }
 
 
+void StreamingSocketManagement::setWriteCoalescing(bool en)
+{
+    this->coalesceWrites = en;
+}
+
+
 /*************************************************************************/
 // StreamingSocketManagement public api: SSL config access
 
@@ -496,6 +505,22 @@ void StreamingSocketManagement::sendMessage(
     }
 }
 
+size_t StreamingSocketManagement::getTxQueueDepth(
+        std::string streamingEndpoint) COMMO_THROW (std::invalid_argument)
+{
+    ReadLock lock(contextMutex);
+    ContextMap::iterator iter = contexts.find(streamingEndpoint);
+    if (iter == contexts.end())
+        throw std::invalid_argument("Invalid stream endpoint - interface has been removed/disabled");
+
+    ConnectionContext *ctx = iter->second;
+
+    Lock upLock(upMutex);
+    if (upContexts.find(ctx) == upContexts.end())
+        return 0;
+    return ctx->txQueue.size() + ctx->txBatchItems;
+}
+
 void StreamingSocketManagement::sendBroadcast(
         const CoTMessage *msg, bool ignoreType) COMMO_THROW (std::invalid_argument)
 {
@@ -910,7 +935,31 @@ void StreamingSocketManagement::ioThreadProcess()
                     if (doTx) {
                         // Tx might have room
                         bool writeTried = false;
-                        while (!ctx->txQueue.empty() && !ctx->protoBlockedForResponse) {
+                        while (!ctx->protoBlockedForResponse) {
+                            if (ctx->txBatch.empty() && coalesceWrites)
+                                ctx->txGatherBatch(MAX_COALESCED_WRITE_BYTES);
+                            if (!ctx->txBatch.empty()) {
+                                size_t r = ctx->txBatch.size() - ctx->txBatchSent;
+                                while (r > 0) {
+                                    size_t w = ctx->ioWrite(&ctx->txBatch[ctx->txBatchSent], r);
+                                    writeTried = true;
+                                    if (!w)
+                                        break;
+                                    r -= w;
+                                    ctx->txBatchSent += w;
+                                }
+                                if (r)
+                                    // Same as for a single item below;
+                                    // batch is retried unchanged
+                                    break;
+                                ctx->txBatch.clear();
+                                ctx->txBatchSent = 0;
+                                ctx->txBatchItems = 0;
+                                continue;
+                            }
+                            if (ctx->txQueue.empty())
+                                break;
+
                             TxQueueItem &item = ctx->txQueue.back();
                             size_t r = item.dataLen - item.bytesSent;
                             while (r > 0) {
@@ -926,8 +975,10 @@ void StreamingSocketManagement::ioThreadProcess()
                                 // some input or output needed (SSL)
                                 // before finishing this item.
                                 // break out and leave queue item intact
+                                ctx->txItemInProgress = true;
                                 break;
                             } else {
+                                ctx->txItemInProgress = false;
                                 if (item.protoSwapRequest)
                                     // No more sending on this guy until
                                     // we get a response to this proto swap
@@ -1658,7 +1709,8 @@ StreamingSocketManagement::ConnectionContext::ConnectionContext(
         transport(transport),
         resolverRequest(NULL), retryTime(CommoTime::ZERO_TIME),
         lastRxTime(CommoTime::ZERO_TIME),
-        txQueue(), txQueueProtoVersion(0), txExtensions(),
+        txQueue(), txBatch(), txBatchSent(0), txBatchItems(0),
+        txItemInProgress(false), txQueueProtoVersion(0), txExtensions(),
         resetRequested(false),
         rxBufStart(0), rxBufOffset(0),
         protoState(PROTO_XML_NEGOTIATE),
@@ -1682,7 +1734,40 @@ StreamingSocketManagement::ConnectionContext::~ConnectionContext()
 
 bool StreamingSocketManagement::ConnectionContext::ioWantsWrite()
 {
-    return !txQueue.empty() && !protoBlockedForResponse;
+    return (!txQueue.empty() || !txBatch.empty()) && !protoBlockedForResponse;
+}
+
+bool StreamingSocketManagement::ConnectionContext::txGatherBatch(
+    size_t maxLen)
+{
+    if (txItemInProgress)
+        return false;
+
+    size_t n = 0;
+    size_t len = 0;
+    TxQueue::reverse_iterator iter;
+    for (iter = txQueue.rbegin(); iter != txQueue.rend(); ++iter) {
+        if (iter->protoSwapRequest || iter->bytesSent)
+            break;
+        if (n && len + iter->dataLen > maxLen)
+            break;
+        len += iter->dataLen;
+        n++;
+    }
+    // A lone item is written directly from the queue
+    if (n < 2)
+        return false;
+
+    txBatch.reserve(len);
+    for (size_t i = 0; i < n; ++i) {
+        TxQueueItem &item = txQueue.back();
+        txBatch.insert(txBatch.end(), item.data, item.data + item.dataLen);
+        item.implode();
+        txQueue.pop_back();
+    }
+    txBatchSent = 0;
+    txBatchItems = n;
+    return true;
 }
 
 
@@ -1708,6 +1793,10 @@ void StreamingSocketManagement::ConnectionContext::reset(
             txi.implode();
             txQueue.pop_back();
         }
+        txBatch.clear();
+        txBatchSent = 0;
+        txBatchItems = 0;
+        txItemInProgress = false;
         txQueueProtoVersion = 0;
         supportsAllExtensions = false;
         txExtensions.clear();
@@ -21,6 +21,7 @@
 #include <map>
 #include <set>
 #include <deque>
+#include <vector>
 
 namespace atakmap {
 namespace commoncommo {
@@ -51,6 +52,7 @@ public:
     virtual ~StreamingSocketManagement();
 
     void setMonitor(bool enable);
+    void setWriteCoalescing(bool enable);
     void setConnTimeout(float sec);
 
     StreamingNetInterface *addStreamingInterface(
@@ -83,6 +85,9 @@ public:
     // Only broadcast to those streams configured to support the message's type,
     // unless ignoreType is true, then send to all servers regardless
     void sendBroadcast(const CoTMessage *msg, bool ignoreType = false) COMMO_THROW (std::invalid_argument);
+    // Number of messages waiting to be sent on the given stream; 0 if
+    // the stream is not up. Throws if the endpoint is not valid.
+    size_t getTxQueueDepth(std::string streamingEndpoint) COMMO_THROW (std::invalid_argument);
 
     void addStreamingMessageListener(StreamingMessageListener *listener);
     void removeStreamingMessageListener(StreamingMessageListener *listener);
@@ -220,6 +225,16 @@ private:
         // Valid when "up" only; this is empty otherwise. Protected by main
         // upMutex
         TxQueue txQueue;
+        // Valid when "up"; the content of several items taken from
+        // the back of txQueue, to be written together. Written completely
+        // before anything remaining in txQueue. Protected by main upMutex
+        std::vector<uint8_t> txBatch;
+        size_t txBatchSent;
+        size_t txBatchItems;
+        // Valid when "up"; true if the item at the back of txQueue
+        // has had a write attempted that did not complete. Such an item
+        // must be retried as-is. Protected by main upMutex
+        bool txItemInProgress;
         // Valid when "up"; indicates if this connection's tx queue is
         // protobuf (>0) or xml (0). Protected by main upMutex
         int txQueueProtoVersion;
@@ -332,6 +347,12 @@ private:
         // If protocol expiration time has lapsed, handle it. Return
         // milliseconds from now until next expiration time.
         virtual long handleExpirations() COMMO_THROW (SocketException) { throw SocketException(netinterfaceenums::ERR_INTERNAL, "Not implemented"); }
+        // Move the oldest items in txQueue to txBatch, up to maxLen
+        // bytes in total, if at least 2 are eligible. Items are not
+        // eligible once a write of them has started or if they are
+        // a protocol swap request.  Returns true if a batch was formed.
+        // Assumes caller has necessary thread safety to modify tx queue
+        bool txGatherBatch(size_t maxLen);
         // Push a ping message on to the txQueue - assumes caller
         // has necessary thread safety to modify tx queue
         void txPushPing();
@@ -585,6 +606,7 @@ private:
     ResolverQueue *resolver;
     float connTimeoutSec;
     bool monitor;
+    bool coalesceWrites;
 
     SSL_CTX *sslCtx;
 
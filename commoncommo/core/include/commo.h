@@ -369,6 +369,29 @@ public:
      * @param en true to enable monitoring, false to disable it
      */
     void setStreamMonitorEnabled(bool enable);
+
+    /**
+     * Indicates if messages queued for a streaming interface may be
+     * coalesced into a single write. If enabled, when several messages are
+     * waiting to be sent on a streaming connection they are written to
+     * the connection together, reducing the number of writes and, for
+     * SSL connections, the number of TLS records. Messages are still
+     * sent in the order they were queued.
+     * Default is disabled.
+     * @param enable true to enable coalescing, false to disable it
+     */
+    void setStreamWriteCoalescingEnabled(bool enable);
+
+    /**
+     * Gets the number of messages waiting to be sent on the streaming
+     * interface with the given id.
+     * @param streamingRemoteId the remote endpoint id of the
+     *                          StreamingNetInterface
+     * @return the number of messages queued, 0 if the interface is not
+     *         currently connected, or -1 if the id does not correspond
+     *         to a valid StreamingNetInterface
+     */
+    int getStreamTxQueueDepth(const char *streamingRemoteId);
     
     /**
      * Gets the TAK protocol version current in use when sending things
@@ -1089,6 +1112,34 @@ public:
      */
     CommoResult broadcastCoT(const char *cotMessage, CoTSendMethod sendMethod = SEND_ANY);
 
+    /**
+     * Sends a single CoT-formatted message out all broadcast interfaces and
+     * streams and/or to the specified Contacts. The message is parsed only
+     * once for all destinations, so this is preferred over separate calls
+     * to broadcastCoT() and sendCoT() when the same message is fanned out
+     * to several destinations.
+     * The message is queued for delivery immediately, but the actual
+     * transmission is done asynchronously.
+     * The cot message and destinations need only remain valid for the
+     * duration of this call.
+     *
+     * @param cotMessage the UTF-8 encoded CoT message content; need not
+     *                   be null terminated
+     * @param len the length of cotMessage, in bytes
+     * @param broadcast true to send the message out all broadcast
+     *                  interfaces and streams, as broadcastCoT() does
+     * @param destinations Contacts to send to, or NULL to send to none.
+     *                     This list may be updated during this call in the
+     *                     same way as for sendCoT()
+     * @param sendMethod method(s) by which the message may be broadcast
+     *                   and sent to the destination contacts
+     * @return SUCCESS, ILLEGAL_ARGUMENT or CONTACT_GONE, with the
+     *         same meanings as for sendCoT()
+     */
+    CommoResult sendCoTMulti(const uint8_t *cotMessage, size_t len,
+                             bool broadcast, ContactList *destinations,
+                             CoTSendMethod sendMethod = SEND_ANY);
+
     /**
      * Attempt to send a CoT-formatted message to the specified host
      * on the specified TCP port number.  
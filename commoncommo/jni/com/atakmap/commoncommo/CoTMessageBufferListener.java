@@ -0,0 +1,33 @@
+package com.atakmap.commoncommo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface that can be implemented and registered with a Commo instance
+ * to indicate interest in receiving any CoT messages received
+ * on any non-generic inbound interfaces, as raw UTF-8 encoded bytes.
+ * This is an alternative to CoTMessageListener for high volume consumers
+ * that parse the message directly and wish to avoid creating a String
+ * for every message received.
+ */
+public interface CoTMessageBufferListener {
+    /**
+     * Invoked when a CoT Message has been received.  The message
+     * is provided without modification as UTF-8 encoded XML, starting
+     * at position 0 of the buffer and ending at the buffer's limit.
+     * Some basic validity checking is done prior to passing it off to
+     * listeners, but it is limited and should not be relied upon for
+     * anything specific.
+     * <p>
+     * The buffer is a direct buffer owned by Commo and is reused for
+     * subsequent messages once this method returns. Implementations
+     * must not modify its content, and must copy out any bytes they
+     * need to retain beyond the duration of this call.
+     *
+     * @param cotMessage the CoT message that was received
+     * @param rxEndpointId identifier of NetworkInterface upon which
+     *                     the message was received, if known, or null
+     *                     if not known
+     */
+    public void cotMessageReceived(ByteBuffer cotMessage, String rxEndpointId);
+}
@@ -0,0 +1,74 @@
+package com.atakmap.commoncommo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A CoT message already encoded as UTF-8. A payload is created once and
+ * may then be passed to any number of send calls, to any number of
+ * destinations, without the message being re-encoded. The message is
+ * held in an ordinary heap array that native code reads in place for
+ * the duration of each send, so creating a payload allocates no native
+ * memory. Payloads are immutable and may be shared between threads.
+ */
+public final class CoTPayload {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    final byte[] data;
+    final int length;
+
+    /**
+     * Creates a payload from UTF-8 encoded message bytes. The bytes
+     * are copied; later changes to data do not affect the payload.
+     *
+     * @param data buffer containing the message
+     * @param offset offset of the message in data
+     * @param length length of the message, in bytes
+     * @throws IllegalArgumentException if the range is not valid
+     */
+    public CoTPayload(byte[] data, int offset, int length)
+    {
+        if (data == null || offset < 0 || length < 0
+                || offset > data.length - length)
+            throw new IllegalArgumentException("Invalid payload range");
+        this.data = Arrays.copyOfRange(data, offset, offset + length);
+        this.length = length;
+    }
+
+    /**
+     * Creates a payload from the remaining UTF-8 encoded message bytes
+     * in a buffer. The position of the source buffer is not modified.
+     *
+     * @param data buffer containing the message
+     */
+    public CoTPayload(ByteBuffer data)
+    {
+        if (data == null)
+            throw new IllegalArgumentException("Cannot create null payload");
+        length = data.remaining();
+        this.data = new byte[length];
+        data.duplicate().get(this.data);
+    }
+
+    /**
+     * Creates a payload from CoT message text.
+     *
+     * @param cotMessage the CoT message
+     */
+    public CoTPayload(String cotMessage)
+    {
+        if (cotMessage == null)
+            throw new IllegalArgumentException("Cannot create null payload");
+        data = cotMessage.getBytes(UTF8);
+        length = data.length;
+    }
+
+    /**
+     * @return the length of the encoded message, in bytes
+     */
+    public int getLength()
+    {
+        return length;
+    }
+}
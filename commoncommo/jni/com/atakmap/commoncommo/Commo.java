@@ -729,6 +729,36 @@ public class Commo {
     {
         setStreamMonitorEnabledNative(nativePtr, en);
     }
+
+    /**
+     * Indicates if messages queued for a streaming interface may be
+     * coalesced into a single write. If enabled, when several messages
+     * are waiting to be sent on a streaming connection they are written
+     * to the connection together, reducing the number of writes and,
+     * for SSL connections, the number of TLS records. Messages are
+     * still sent in the order they were queued.
+     * Default is disabled.
+     * @param en true to enable coalescing, false to disable it
+     */
+    public void setStreamWriteCoalescingEnabled(boolean en)
+    {
+        setStreamWriteCoalescingEnabledNative(nativePtr, en);
+    }
+
+    /**
+     * Gets the number of messages waiting to be sent on a streaming
+     * interface.
+     * @param streamId the streamId of the StreamingNetInterface
+     * @return the number of messages queued, 0 if the interface is
+     *         not currently connected, or -1 if streamId does not
+     *         correspond to a currently valid StreamingNetInterface
+     */
+    public int getStreamTxQueueDepth(String streamId)
+    {
+        if (streamId == null)
+            return -1;
+        return getStreamTxQueueDepthNative(nativePtr, streamId);
+    }
     
     /**
      * Gets the TAK protocol version current in use when sending things
@@ -1459,7 +1489,38 @@ public class Commo {
         if (!removeCoTListenerNative(nativePtr, listener))
             throw new IllegalArgumentException("Listener not valid");
     }
-    
+
+
+    /**
+     * Adds an instance of CoTMessageBufferListener which desires to be
+     * notified when new CoT messages are received. Messages are delivered
+     * as UTF-8 bytes in a reused direct buffer rather than as Strings.
+     * See CoTMessageBufferListener interface.
+     *
+     * @param listener the listener to add
+     * @throws IllegalArgumentException if the specified listener
+     *         was already added
+     */
+    public void addCoTMessageBufferListener(CoTMessageBufferListener listener) {
+        if (!addCoTBufferListenerNative(nativePtr, listener))
+            throw new IllegalArgumentException("Listener already added");
+    }
+
+    /**
+     * Removes a previously added instance of CoTMessageBufferListener;
+     * upon completion of this method, the listener will no longer
+     * receive any further event updates.  The listener may
+     * receive events while this method is being executed.
+     *
+     * @param listener the listener to remove
+     * @throws IllegalArgumentException if the specified listener
+     *                 was not previously added
+     */
+    public void removeCoTMessageBufferListener(CoTMessageBufferListener listener) {
+        if (!removeCoTBufferListenerNative(nativePtr, listener))
+            throw new IllegalArgumentException("Listener not valid");
+    }
+
     
     /**
      * Adds an instance of GenericDataListener which desires to be notified
@@ -1739,6 +1800,104 @@ public class Commo {
         if (!broadcastCoTNative(nativePtr, cotMessage, method.getNativeVal()))
             throw new CommoException("Invalid cot message");
     }
+
+    /**
+     * Sends the provided pre-encoded CoT message out all broadcast
+     * interfaces and streams configured for the CoTMessageType of the
+     * message and that match the send method specified.
+     * See broadcastCoT(String, CoTSendMethod).
+     *
+     * @param payload the encoded CoT message
+     * @param method method by which to broadcast
+     * @throws CommoException if the payload is not a
+     *                        validly formatted CoT message
+     */
+    public void broadcastCoT(CoTPayload payload, CoTSendMethod method) throws CommoException
+    {
+        sendCoT(payload, true, null, method);
+    }
+
+    /**
+     * Send a pre-encoded CoT message to the specified Contacts.
+     * See sendCoT(Vector, String, CoTSendMethod).
+     *
+     * @param destinations Contacts to send to. This list is updated
+     *                     as for sendCoT(CoTPayload, boolean, Vector,
+     *                     CoTSendMethod)
+     * @param payload the encoded CoT message
+     * @param method method by which to send the message
+     *               to the destination contacts
+     * @throws CommoException if the payload is not a
+     *                        validly formatted CoT message
+     */
+    public void sendCoT(Vector<Contact> destinations, CoTPayload payload,
+                        CoTSendMethod method) throws CommoException
+    {
+        sendCoT(payload, false, destinations, method);
+    }
+
+    /**
+     * Sends a single pre-encoded CoT message out all broadcast
+     * interfaces and streams and/or to the specified Contacts in
+     * one operation. The message is parsed only once for all
+     * destinations, so this is preferred over separate
+     * broadcast and send calls when the same message is fanned out to
+     * several destinations.
+     * The message is queued for transmission immediately, but the
+     * actual transmission is done asynchronously.
+     *
+     * @param payload the encoded CoT message
+     * @param broadcast true to send the message out all broadcast
+     *                  interfaces and streams matching method, as
+     *                  broadcastCoT() does
+     * @param destinations Contacts to send to, or null to send to no
+     *                     specific contacts. If non-null and the message
+     *                     is queued, this list is updated to contain only
+     *                     the Contacts that are known to be "gone" or who
+     *                     are unknown via the specified send method. If
+     *                     an exception is thrown the list is left
+     *                     unchanged.
+     * @param method method(s) by which the message may be broadcast
+     *               and sent to the destination contacts
+     * @throws CommoException if the payload is not a
+     *                        validly formatted CoT message
+     */
+    public void sendCoT(CoTPayload payload, boolean broadcast,
+                        Vector<Contact> destinations,
+                        CoTSendMethod method) throws CommoException
+    {
+        if (payload == null)
+            throw new CommoException("Cannot send null cot payload");
+
+        String[] uids;
+        HashMap<String, Contact> uidToContact = null;
+        if (destinations != null) {
+            uids = new String[destinations.size()];
+            uidToContact = new HashMap<String, Contact>();
+            int i = 0;
+            for (Contact c : destinations) {
+                uidToContact.put(c.contactUID, c);
+                uids[i++] = c.contactUID;
+            }
+        } else {
+            uids = new String[0];
+        }
+
+        String[] gone = sendCoTMultiNative(nativePtr, payload.data,
+                                           payload.length, broadcast,
+                                           uids, uids.length,
+                                           method.getNativeVal());
+
+        if (gone == null)
+            throw new CommoException("Invalid cot message");
+
+        if (destinations != null) {
+            destinations.clear();
+            for (String uid : gone) {
+                destinations.add(uidToContact.get(uid));
+            }
+        }
+    }
     
     
     /**
@@ -2530,6 +2689,8 @@ public class Commo {
     static native boolean setMissionPackageTransferTimeoutNative(long nativePtr,
                                    int seconds);
     static native void setStreamMonitorEnabledNative(long nativePtr, boolean en);
+    static native void setStreamWriteCoalescingEnabledNative(long nativePtr, boolean en);
+    static native int getStreamTxQueueDepthNative(long nativePtr, String streamId);
     static native int getBroadcastProtoNative(long nativePtr);
     static native PhysicalNetInterface addBroadcastNative(long nativePtr,
                                    byte[] hwAddress,
@@ -2587,6 +2748,10 @@ public class Commo {
                                              CoTMessageListener listener);
     static native boolean removeCoTListenerNative(long nativePtr,
                                              CoTMessageListener listener);
+    static native boolean addCoTBufferListenerNative(long nativePtr,
+                                             CoTMessageBufferListener listener);
+    static native boolean removeCoTBufferListenerNative(long nativePtr,
+                                             CoTMessageBufferListener listener);
     static native boolean addGenericDataListenerNative(long nativePtr,
                                              GenericDataListener listener);
     static native boolean removeGenericDataListenerNative(long nativePtr,
@@ -2613,6 +2778,13 @@ public class Commo {
                                          String cotMessage);
     static native boolean broadcastCoTNative(long nativePtr, String cot,
                                              int method);
+    static native String[] sendCoTMultiNative(long nativePtr,
+                                         byte[] payload,
+                                         int payloadLen,
+                                         boolean broadcast,
+                                         String[] destinations,
+                                         int nDestinations,
+                                         int method);
     static native int enrollmentInitNative(long nativePtr,
                                          String host,
                                          int port,
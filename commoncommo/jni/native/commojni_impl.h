@@ -7,6 +7,8 @@
 #include <mutex>
 #include <set>
 #include <map>
+#include <string>
+#include <vector>
 
 #define COMMO_THROW(...)
 
@@ -321,6 +323,51 @@ namespace commoncommo {
     };
 
 
+    // Delivers CoT messages to a CoTMessageBufferListener as UTF-8 bytes
+    // in pooled direct ByteBuffers, avoiding a new java String
+    // for every message
+    class CoTBufferListenerJNI : public JNIObjWrapper,
+                                 public CoTMessageListener
+    {
+    public:
+        CoTBufferListenerJNI(JNIEnv *env, jobject jcotListener) COMMO_THROW (int);
+        static void destroy(JNIEnv *env, CoTBufferListenerJNI *listener);
+
+        virtual void cotMessageReceived(const char *cotMessage, const char *rxEndpointId);
+        virtual jglobalobjectref getWrappedRef() const;
+
+        static bool reflectionInit(JNIEnv *env);
+        static void reflectionRelease(JNIEnv *env);
+
+    private:
+        struct PooledBuffer {
+            uint8_t *data;
+            size_t capacity;
+            jglobalobjectref jbuffer;
+        };
+
+        ~CoTBufferListenerJNI();
+
+        PooledBuffer *acquireBuffer(JNIEnv *env, size_t len);
+        void releaseBuffer(JNIEnv *env, PooledBuffer *buffer);
+        static void freeBuffer(JNIEnv *env, PooledBuffer *buffer);
+        jstring getEndpointId(JNIEnv *env, const char *rxEndpointId,
+                              bool *isLocal);
+
+        jglobalobjectref jcotListener;
+
+        std::mutex poolMutex;
+        std::vector<PooledBuffer *> pool;
+
+        std::mutex endpointIdsMutex;
+        std::map<std::string, jglobalobjectref> endpointIds;
+
+        static jmethodID jmethod_cotReceived;
+        static jmethodID jmethod_bufferClear;
+        static jmethodID jmethod_bufferLimit;
+    };
+
+
     class GenericDataListenerJNI : public JNIObjWrapper,
                            public GenericDataListener
     {
@@ -543,6 +590,9 @@ namespace commoncommo {
         bool addCoTListener(JNIEnv *env, jobject jcotListener);
         bool removeCoTListener(JNIEnv *env, jobject jcotListener);
 
+        bool addCoTBufferListener(JNIEnv *env, jobject jcotListener);
+        bool removeCoTBufferListener(JNIEnv *env, jobject jcotListener);
+
         bool addGenericListener(JNIEnv *env, jobject jgenericListener);
         bool removeGenericListener(JNIEnv *env, jobject jgenericListener);
 
@@ -596,6 +646,9 @@ namespace commoncommo {
         std::mutex cotListenersMutex;
         std::set<CoTListenerJNI *> cotListeners;
 
+        std::mutex cotBufferListenersMutex;
+        std::set<CoTBufferListenerJNI *> cotBufferListeners;
+
         std::mutex genericListenersMutex;
         std::set<GenericDataListenerJNI *> genericListeners;
 
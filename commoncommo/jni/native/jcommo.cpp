@@ -1306,6 +1306,229 @@ CoTListenerJNI::~CoTListenerJNI()
 
 
 
+/**********************************************************************/
+// CoTBufferListenerJNI
+
+namespace {
+    // Smallest buffer allocated; covers nearly all SA messages
+    const size_t MIN_BUFFER_SIZE = 8 * 1024;
+    // Buffers larger than this are freed rather than returned to the pool
+    const size_t MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+    // Buffers retained for reuse; one per concurrent receive thread
+    const size_t MAX_POOLED_BUFFERS = 4;
+    // Endpoint id strings cached for reuse
+    const size_t MAX_ENDPOINT_IDS = 64;
+}
+
+jmethodID CoTBufferListenerJNI::jmethod_cotReceived = NULL;
+jmethodID CoTBufferListenerJNI::jmethod_bufferClear = NULL;
+jmethodID CoTBufferListenerJNI::jmethod_bufferLimit = NULL;
+
+CoTBufferListenerJNI::CoTBufferListenerJNI(JNIEnv *env, jobject jcotListener)
+                                       COMMO_THROW (int) :
+          JNIObjWrapper(), CoTMessageListener(),
+          jcotListener(NULL), poolMutex(), pool(),
+          endpointIdsMutex(), endpointIds()
+{
+    this->jcotListener = env->NewGlobalRef(jcotListener);
+    if (!this->jcotListener)
+        throw 1;
+}
+
+void CoTBufferListenerJNI::destroy(JNIEnv *env, CoTBufferListenerJNI *listener)
+{
+    if (listener->jcotListener) {
+        env->DeleteGlobalRef(listener->jcotListener);
+        listener->jcotListener = NULL;
+    }
+    {
+        CommoLock lock(listener->poolMutex);
+        std::vector<PooledBuffer *>::iterator iter;
+        for (iter = listener->pool.begin(); iter != listener->pool.end(); ++iter)
+            freeBuffer(env, *iter);
+        listener->pool.clear();
+    }
+    {
+        CommoLock lock(listener->endpointIdsMutex);
+        std::map<std::string, jglobalobjectref>::iterator iter;
+        for (iter = listener->endpointIds.begin();
+                 iter != listener->endpointIds.end(); ++iter)
+            env->DeleteGlobalRef(iter->second);
+        listener->endpointIds.clear();
+    }
+    delete listener;
+}
+
+void CoTBufferListenerJNI::cotMessageReceived(const char *cotMessage, const char *rxEndpointId)
+{
+    JNIEnv *env = NULL;
+    LocalJNIEnv localEnv(&env);
+    if (!env)
+        return;
+
+    size_t len = strlen(cotMessage);
+    PooledBuffer *buffer = acquireBuffer(env, len);
+    if (!buffer)
+        return;
+    memcpy(buffer->data, cotMessage, len);
+
+    // position 0, limit at the end of the message
+    jobject jret = env->CallObjectMethod(buffer->jbuffer, jmethod_bufferClear);
+    if (!env->ExceptionOccurred()) {
+        env->DeleteLocalRef(jret);
+        jret = env->CallObjectMethod(buffer->jbuffer, jmethod_bufferLimit,
+                                     (jint)len);
+    }
+    if (env->ExceptionOccurred()) {
+        env->ExceptionClear();
+        releaseBuffer(env, buffer);
+        return;
+    }
+    env->DeleteLocalRef(jret);
+
+    bool endpointIsLocal = false;
+    jstring jrxEndpointId = getEndpointId(env, rxEndpointId, &endpointIsLocal);
+    if (env->ExceptionOccurred()) {
+        env->ExceptionClear();
+        releaseBuffer(env, buffer);
+        return;
+    }
+
+    env->CallVoidMethod(jcotListener, jmethod_cotReceived, buffer->jbuffer,
+                        jrxEndpointId);
+    if (env->ExceptionOccurred())
+        env->ExceptionClear();
+
+    if (endpointIsLocal)
+        env->DeleteLocalRef(jrxEndpointId);
+    releaseBuffer(env, buffer);
+}
+
+CoTBufferListenerJNI::PooledBuffer *CoTBufferListenerJNI::acquireBuffer(
+                                            JNIEnv *env, size_t len)
+{
+    PooledBuffer *buffer = NULL;
+    {
+        CommoLock lock(poolMutex);
+        if (!pool.empty()) {
+            buffer = pool.back();
+            pool.pop_back();
+        }
+    }
+    if (buffer && buffer->capacity >= len)
+        return buffer;
+    if (buffer)
+        freeBuffer(env, buffer);
+
+    size_t capacity = MIN_BUFFER_SIZE;
+    while (capacity < len)
+        capacity *= 2;
+
+    buffer = new PooledBuffer();
+    buffer->capacity = capacity;
+    buffer->jbuffer = NULL;
+    buffer->data = new uint8_t[capacity];
+
+    jobject jbuffer = env->NewDirectByteBuffer(buffer->data, capacity);
+    if (jbuffer) {
+        buffer->jbuffer = env->NewGlobalRef(jbuffer);
+        env->DeleteLocalRef(jbuffer);
+    }
+    if (!buffer->jbuffer) {
+        env->ExceptionClear();
+        freeBuffer(env, buffer);
+        return NULL;
+    }
+    return buffer;
+}
+
+void CoTBufferListenerJNI::releaseBuffer(JNIEnv *env, PooledBuffer *buffer)
+{
+    if (buffer->capacity <= MAX_POOLED_BUFFER_SIZE) {
+        CommoLock lock(poolMutex);
+        if (pool.size() < MAX_POOLED_BUFFERS) {
+            pool.push_back(buffer);
+            return;
+        }
+    }
+    freeBuffer(env, buffer);
+}
+
+void CoTBufferListenerJNI::freeBuffer(JNIEnv *env, PooledBuffer *buffer)
+{
+    if (buffer->jbuffer)
+        env->DeleteGlobalRef(buffer->jbuffer);
+    delete[] buffer->data;
+    delete buffer;
+}
+
+jstring CoTBufferListenerJNI::getEndpointId(JNIEnv *env,
+                                            const char *rxEndpointId,
+                                            bool *isLocal)
+{
+    *isLocal = false;
+    if (!rxEndpointId)
+        return NULL;
+
+    // Endpoints are few and long lived; reuse one java String for each
+    std::string key(rxEndpointId);
+    CommoLock lock(endpointIdsMutex);
+    std::map<std::string, jglobalobjectref>::iterator iter =
+            endpointIds.find(key);
+    if (iter != endpointIds.end())
+        return (jstring)iter->second;
+
+    jstring jrxEndpointId = env->NewStringUTF(rxEndpointId);
+    if (!jrxEndpointId)
+        return NULL;
+    if (endpointIds.size() < MAX_ENDPOINT_IDS) {
+        jglobalobjectref ref = env->NewGlobalRef(jrxEndpointId);
+        if (ref) {
+            env->DeleteLocalRef(jrxEndpointId);
+            endpointIds.insert(std::pair<std::string, jglobalobjectref>(key, ref));
+            return (jstring)ref;
+        }
+    }
+    *isLocal = true;
+    return jrxEndpointId;
+}
+
+jglobalobjectref CoTBufferListenerJNI::getWrappedRef() const
+{
+    return jcotListener;
+}
+
+bool CoTBufferListenerJNI::reflectionInit(JNIEnv *env)
+{
+    bool ret = false;
+    jclass class_cotListener = NULL;
+    jclass class_buffer = NULL;
+
+    LOOKUP_CLASS(class_cotListener, COMMO_PACKAGE "CoTMessageBufferListener", true);
+    LOOKUP_METHOD(jmethod_cotReceived, class_cotListener,
+                  "cotMessageReceived",
+                  "(Ljava/nio/ByteBuffer;Ljava/lang/String;)V");
+    LOOKUP_CLASS(class_buffer, "java/nio/Buffer", true);
+    LOOKUP_METHOD(jmethod_bufferClear, class_buffer,
+                  "clear", "()Ljava/nio/Buffer;");
+    LOOKUP_METHOD(jmethod_bufferLimit, class_buffer,
+                  "limit", "(I)Ljava/nio/Buffer;");
+    ret = true;
+
+cleanup:
+    return ret;
+}
+
+void CoTBufferListenerJNI::reflectionRelease(JNIEnv *env)
+{
+}
+
+CoTBufferListenerJNI::~CoTBufferListenerJNI()
+{
+}
+
+
+
 /**********************************************************************/
 // GenericDataListenerJNI
 
@@ -1638,6 +1861,7 @@ CommoJNI::CommoJNI(JNIEnv *env, jobject jlogger,
         ifaceListenersMutex(), ifaceListeners(),
         contactListenersMutex(), contactListeners(),
         cotListenersMutex(), cotListeners(),
+        cotBufferListenersMutex(), cotBufferListeners(),
         genericListenersMutex(), genericListeners(),
         cotFailListenersMutex(), cotFailListeners(),
         netInterfaceMapMutex(), netInterfaceMap(),
@@ -1993,6 +2217,61 @@ bool CommoJNI::removeCoTListener(JNIEnv *env, jobject jcotListener)
     return true;
 }
 
+bool CommoJNI::addCoTBufferListener(JNIEnv *env, jobject jcotListener)
+{
+    CoTBufferListenerJNI *newListener = NULL;
+    {
+        CommoLock lock(cotBufferListenersMutex);
+
+        std::set<CoTBufferListenerJNI *>::iterator iter;
+        for (iter = cotBufferListeners.begin(); iter != cotBufferListeners.end(); ++iter) {
+            CoTBufferListenerJNI *listener = *iter;
+            if (env->IsSameObject(jcotListener, listener->getWrappedRef()))
+                return false;
+        }
+        
+        try {
+            newListener = new CoTBufferListenerJNI(env,
+                                             jcotListener);
+        } catch (int &) {
+            return false;
+        }
+        cotBufferListeners.insert(newListener);
+    }
+    // then add it
+    if (commo->addCoTMessageListener(newListener) != COMMO_SUCCESS) {
+        CommoLock lock(cotBufferListenersMutex);
+        cotBufferListeners.erase(newListener);
+        CoTBufferListenerJNI::destroy(env, newListener);
+        return false;
+    }
+    return true;
+}
+
+bool CommoJNI::removeCoTBufferListener(JNIEnv *env, jobject jcotListener)
+{
+    CoTBufferListenerJNI *listener = NULL;
+    {
+        CommoLock lock(cotBufferListenersMutex);
+
+        std::set<CoTBufferListenerJNI *>::iterator iter;
+        for (iter = cotBufferListeners.begin(); iter != cotBufferListeners.end(); ++iter) {
+            CoTBufferListenerJNI *listener = *iter;
+            if (env->IsSameObject(jcotListener, listener->getWrappedRef()))
+                break;
+        }
+        
+        if (iter == cotBufferListeners.end())
+            return false;
+        
+        listener = *iter;
+        cotBufferListeners.erase(iter);
+    }
+    commo->removeCoTMessageListener(listener);
+    CoTBufferListenerJNI::destroy(env, listener);
+    return true;
+}
+
 bool CommoJNI::addGenericListener(JNIEnv *env, jobject jgenericListener)
 {
     GenericDataListenerJNI *newListener = NULL;
@@ -2390,6 +2669,7 @@ bool CommoJNI::reflectionInit(JNIEnv *env)
     ret = ret && InterfaceStatusListenerJNI::reflectionInit(env);
     ret = ret && ContactListenerJNI::reflectionInit(env);
     ret = ret && CoTListenerJNI::reflectionInit(env);
+    ret = ret && CoTBufferListenerJNI::reflectionInit(env);
     ret = ret && GenericDataListenerJNI::reflectionInit(env);
     ret = ret && CoTFailListenerJNI::reflectionInit(env);
     ret = ret && CoTDetailExtenderJNI::reflectionInit(env);
@@ -2404,6 +2684,7 @@ void CommoJNI::reflectionRelease(JNIEnv *env)
     CoTDetailExtenderJNI::reflectionRelease(env);
     CoTFailListenerJNI::reflectionRelease(env);
     GenericDataListenerJNI::reflectionRelease(env);
+    CoTBufferListenerJNI::reflectionRelease(env);
     CoTListenerJNI::reflectionRelease(env);
     ContactListenerJNI::reflectionRelease(env);
     InterfaceStatusListenerJNI::reflectionRelease(env);
@@ -2651,6 +2932,30 @@ Java_com_atakmap_commoncommo_Commo_setStreamMonitorEnabledNative
 }
 
 
+JNIEXPORT void JNICALL
+Java_com_atakmap_commoncommo_Commo_setStreamWriteCoalescingEnabledNative
+    (JNIEnv *env, jclass selfCls, jlong nativePtr, jboolean en)
+{
+    CommoJNI *c = JLONG_TO_PTR(CommoJNI, nativePtr);
+    c->commo->setStreamWriteCoalescingEnabled(en == JNI_TRUE);
+}
+
+
+JNIEXPORT jint JNICALL
+Java_com_atakmap_commoncommo_Commo_getStreamTxQueueDepthNative
+    (JNIEnv *env, jclass selfCls, jlong nativePtr, jstring jstreamId)
+{
+    CommoJNI *c = JLONG_TO_PTR(CommoJNI, nativePtr);
+    const char *streamId = env->GetStringUTFChars(jstreamId, NULL);
+    if (!streamId)
+        return -1;
+
+    int ret = c->commo->getStreamTxQueueDepth(streamId);
+    env->ReleaseStringUTFChars(jstreamId, streamId);
+    return ret;
+}
+
+
 JNIEXPORT jint JNICALL
 Java_com_atakmap_commoncommo_Commo_getBroadcastProtoNative
     (JNIEnv *env, jclass selfCls, jlong nativePtr)
@@ -3299,6 +3604,24 @@ Java_com_atakmap_commoncommo_Commo_removeCoTListenerNative
 }
 
 
+JNIEXPORT jboolean JNICALL
+Java_com_atakmap_commoncommo_Commo_addCoTBufferListenerNative
+    (JNIEnv *env, jclass selfCls, jlong nativePtr, jobject jcotListener)
+{
+    CommoJNI *c = JLONG_TO_PTR(CommoJNI, nativePtr);
+    return c->addCoTBufferListener(env, jcotListener);
+}
+
+
+JNIEXPORT jboolean JNICALL
+Java_com_atakmap_commoncommo_Commo_removeCoTBufferListenerNative
+    (JNIEnv *env, jclass selfCls, jlong nativePtr, jobject jcotListener)
+{
+    CommoJNI *c = JLONG_TO_PTR(CommoJNI, nativePtr);
+    return c->removeCoTBufferListener(env, jcotListener);
+}
+
+
 JNIEXPORT jboolean JNICALL
 Java_com_atakmap_commoncommo_Commo_addGenericDataListenerNative
     (JNIEnv *env, jclass selfCls, jlong nativePtr, jobject jgenericListener)
@@ -3507,6 +3830,95 @@ Java_com_atakmap_commoncommo_Commo_broadcastCoTNative
 }
 
 
+JNIEXPORT jobjectArray JNICALL
+Java_com_atakmap_commoncommo_Commo_sendCoTMultiNative
+    (JNIEnv *env, jclass selfCls, jlong nativePtr, jbyteArray jpayload,
+     jint payloadLen, jboolean jbroadcast,
+     jobjectArray jcontactUIDs, jint ncontacts, jint method)
+{
+    CommoJNI *c = JLONG_TO_PTR(CommoJNI, nativePtr);
+    jobjectArray ret = NULL;
+    jclass stringClass = NULL;
+    std::vector<uint8_t> payload;
+    std::vector<std::string> uidStrings;
+    std::vector<const ContactUID *> owned;
+    std::vector<const ContactUID *> contacts;
+    CommoResult result;
+    size_t nGone = 0;
+
+    if (!jpayload || payloadLen < 0 ||
+            env->GetArrayLength(jpayload) < payloadLen)
+        return NULL;
+
+    // Pin the heap array only long enough to take a copy; commo takes
+    // locks while sending, which must not happen inside a critical region
+    {
+        void *pinned = env->GetPrimitiveArrayCritical(jpayload, NULL);
+        if (!pinned)
+            return NULL;
+        payload.assign((const uint8_t *)pinned,
+                       (const uint8_t *)pinned + payloadLen);
+        env->ReleasePrimitiveArrayCritical(jpayload, pinned, JNI_ABORT);
+    }
+
+    // Copy the uids first; ContactUIDs reference the strings' data
+    uidStrings.reserve(ncontacts);
+    for (jint i = 0; i < ncontacts; ++i) {
+        jstring jcontact = (jstring)env->GetObjectArrayElement(jcontactUIDs, i);
+        const char *contactString = jcontact ?
+                env->GetStringUTFChars(jcontact, NULL) : NULL;
+        if (!contactString)
+            goto cleanup;
+        uidStrings.push_back(std::string(contactString));
+        env->ReleaseStringUTFChars(jcontact, contactString);
+        env->DeleteLocalRef(jcontact);
+    }
+    for (jint i = 0; i < ncontacts; ++i)
+        owned.push_back(new ContactUID(
+                (const uint8_t *)uidStrings[i].c_str(),
+                uidStrings[i].length()));
+    // The list is rewritten in place to hold the gone contacts
+    contacts = owned;
+
+    {
+        ContactList list(contacts.size(),
+                         contacts.empty() ? NULL : &contacts[0]);
+        result = c->commo->sendCoTMulti(
+                payload.empty() ? NULL : &payload[0], payload.size(),
+                                        jbroadcast == JNI_TRUE,
+                                        &list,
+                                        (CoTSendMethod)method);
+        if (result == COMMO_CONTACT_GONE)
+            nGone = list.nContacts;
+        else if (result != COMMO_SUCCESS)
+            goto cleanup;
+    }
+
+    stringClass = env->FindClass("java/lang/String");
+    if (!stringClass)
+        goto cleanup;
+    ret = env->NewObjectArray(nGone, stringClass, NULL);
+    if (!ret)
+        goto cleanup;
+    for (size_t i = 0; i < nGone; ++i) {
+        jstring string = env->NewStringUTF(
+                std::string((const char *)contacts[i]->contactUID,
+                            contacts[i]->contactUIDLen).c_str());
+        if (!string) {
+            ret = NULL;
+            goto cleanup;
+        }
+        env->SetObjectArrayElement(ret, i, string);
+        env->DeleteLocalRef(string);
+    }
+
+cleanup:
+    for (size_t i = 0; i < owned.size(); ++i)
+        delete owned[i];
+    return ret;
+}
+
+
 JNIEXPORT jint JNICALL Java_com_atakmap_commoncommo_Commo_enrollmentInitNative
   (JNIEnv *env, jclass selfCls, jlong nativePtr,
    jstring jhost, jint port, jboolean jverifyHost,
@@ -0,0 +1,247 @@
+package com.atakmap.io;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.io.DefaultIOProvider;
+import com.atakmap.coremap.io.IOProviderFactoryHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrentCachingProtocolHandlerTest {
+
+    @Before
+    public void beforeTests() {
+        IOProviderFactoryHelper.registerProvider(new DefaultIOProvider(), true);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void null_source_provider_throws() throws IOException {
+        try (CachingProtocolHandlerTest.TempFile dir = new CachingProtocolHandlerTest.TempFile(
+                true)) {
+            ProtocolHandler handler = new ConcurrentCachingProtocolHandler(
+                    null, dir.file, 0);
+            fail();
+        }
+    }
+
+    @Test
+    public void provider_invalid_uri_returns_null() throws IOException {
+        final String uri = "mock://ConcurrentCachingProtocolHandlerTest/provider_invalid_uri_returns_null";
+        MockProtocolHandler mock = new MockProtocolHandler(uri, data(256),
+                true);
+        try (CachingProtocolHandlerTest.TempFile dir = new CachingProtocolHandlerTest.TempFile(
+                true)) {
+            ConcurrentCachingProtocolHandler handler = new ConcurrentCachingProtocolHandler(
+                    mock, dir.file, 0);
+
+            try (UriFactory.OpenResult result = handler
+                    .handleURI("invalid://invaliduri")) {
+                assertNull(result);
+            }
+            assertEquals(1, handler.getMissCount());
+        }
+    }
+
+    @Test
+    public void provider_retrieve_from_cache() throws IOException {
+        final byte[] data = data(256);
+        final String uri = "mock://ConcurrentCachingProtocolHandlerTest/provider_retrieve_from_cache";
+        MockProtocolHandler mock = new MockProtocolHandler(uri, data, false);
+        try (CachingProtocolHandlerTest.TempFile dir = new CachingProtocolHandlerTest.TempFile(
+                true)) {
+            ConcurrentCachingProtocolHandler handler = new ConcurrentCachingProtocolHandler(
+                    mock, dir.file, 0);
+
+            // do the initial cache
+            try (UriFactory.OpenResult result = handler.handleURI(uri)) {
+                assertContent(data, result);
+            }
+
+            // disable reads from the underlying
+            mock.setSimulateFailure(true);
+
+            // confirm good result from caching handler
+            try (UriFactory.OpenResult result = handler.handleURI(uri)) {
+                assertContent(data, result);
+            }
+
+            assertEquals(1, handler.getMissCount());
+            assertEquals(1, handler.getHitCount());
+        }
+    }
+
+    @Test
+    public void concurrent_requests_load_once() throws Exception {
+        final byte[] data = data(4096);
+        final String uri = "mock://ConcurrentCachingProtocolHandlerTest/concurrent_requests_load_once";
+        MockProtocolHandler mock = new MockProtocolHandler(uri, data, true);
+        try (CachingProtocolHandlerTest.TempFile dir = new CachingProtocolHandlerTest.TempFile(
+                true)) {
+            final ConcurrentCachingProtocolHandler handler = new ConcurrentCachingProtocolHandler(
+                    mock, dir.file, 0);
+
+            final Throwable[] error = new Throwable[1];
+            Thread[] threads = new Thread[8];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try (UriFactory.OpenResult result = handler
+                                .handleURI(uri)) {
+                            assertContent(data, result);
+                        } catch (Throwable t) {
+                            synchronized (error) {
+                                error[0] = t;
+                            }
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread t : threads)
+                t.join();
+
+            assertNull(error[0]);
+            assertEquals(1, handler.getMissCount());
+            assertEquals(threads.length - 1, handler.getHitCount());
+        }
+    }
+
+    @Test
+    public void eviction_is_least_recently_used() throws Exception {
+        final byte[] data = data(1024);
+        final String uriA = "mock://ConcurrentCachingProtocolHandlerTest/a";
+        final String uriB = "mock://ConcurrentCachingProtocolHandlerTest/b";
+        final String uriC = "mock://ConcurrentCachingProtocolHandlerTest/c";
+        MockProtocolHandler mockA = new MockProtocolHandler(uriA, data, true);
+        MockProtocolHandler mockB = new MockProtocolHandler(uriB, data, true);
+        MockProtocolHandler mockC = new MockProtocolHandler(uriC, data, true);
+        MultiProtocolHandler source = new MultiProtocolHandler(mockA, mockB,
+                mockC);
+        try (CachingProtocolHandlerTest.TempFile dir = new CachingProtocolHandlerTest.TempFile(
+                true)) {
+            ConcurrentCachingProtocolHandler handler = new ConcurrentCachingProtocolHandler(
+                    source, dir.file, 2 * data.length + data.length / 2);
+
+            handler.handleURI(uriA).close();
+            Thread.sleep(5);
+            handler.handleURI(uriB).close();
+            Thread.sleep(5);
+            // touch 'a' so that 'b' is least recently used
+            handler.handleURI(uriA).close();
+            handler.flush();
+            // exceeds limit, evicts 'b'
+            handler.handleURI(uriC).close();
+
+            assertEquals(1, handler.getEvictionCount());
+
+            mockA.setSimulateFailure(true);
+            mockB.setSimulateFailure(true);
+            try (UriFactory.OpenResult result = handler.handleURI(uriA)) {
+                assertContent(data, result);
+            }
+            try (UriFactory.OpenResult result = handler.handleURI(uriB)) {
+                assertNull(result);
+            }
+        }
+    }
+
+    @Test
+    public void replaced_entry_releases_previous_file() throws IOException {
+        final byte[] data = data(1024);
+        final String uri = "mock://ConcurrentCachingProtocolHandlerTest/replaced_entry_releases_previous_file";
+        MockProtocolHandler mock = new MockProtocolHandler(uri, data, true);
+        try (CachingProtocolHandlerTest.TempFile dir = new CachingProtocolHandlerTest.TempFile(
+                true)) {
+            ConcurrentCachingProtocolHandler handler = new ConcurrentCachingProtocolHandler(
+                    mock, dir.file, 0);
+
+            handler.handleURI(uri).close();
+            assertEquals(data.length, handler.getCacheSize());
+
+            // remove the cache file out from under the handler, forcing a
+            // reload that replaces the index row
+            File[] cached = cacheFiles(dir.file);
+            assertEquals(1, cached.length);
+            assertTrue(cached[0].delete());
+
+            try (UriFactory.OpenResult result = handler.handleURI(uri)) {
+                assertContent(data, result);
+            }
+
+            assertEquals(2, handler.getMissCount());
+            assertEquals(data.length, handler.getCacheSize());
+            assertEquals(1, cacheFiles(dir.file).length);
+        }
+    }
+
+    private static File[] cacheFiles(File dir) {
+        return dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.getName().startsWith("cache");
+            }
+        });
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        return data;
+    }
+
+    private static void assertContent(byte[] expected,
+            UriFactory.OpenResult result) throws IOException {
+        assertNotNull(result);
+        try (ByteArrayOutputStream content = new ByteArrayOutputStream(
+                result.contentLength > 0 ? (int) result.contentLength
+                        : 8192)) {
+            FileSystemUtils.copyStream(result.inputStream, false,
+                    content, false);
+            assertEquals(expected.length, content.size());
+            assertArrayEquals(expected, content.toByteArray());
+        }
+    }
+
+    final static class MultiProtocolHandler implements ProtocolHandler {
+        final ProtocolHandler[] handlers;
+
+        MultiProtocolHandler(ProtocolHandler... handlers) {
+            this.handlers = handlers;
+        }
+
+        @Override
+        public UriFactory.OpenResult handleURI(String uri) {
+            for (ProtocolHandler h : handlers) {
+                UriFactory.OpenResult result = h.handleURI(uri);
+                if (result != null)
+                    return result;
+            }
+            return null;
+        }
+
+        @Override
+        public long getContentLength(String uri) {
+            return handlers[0].getContentLength(uri);
+        }
+
+        @Override
+        public Collection<String> getSupportedSchemes() {
+            return handlers[0].getSupportedSchemes();
+        }
+    }
+}
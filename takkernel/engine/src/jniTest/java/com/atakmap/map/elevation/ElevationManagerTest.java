@@ -217,6 +217,48 @@ public class ElevationManagerTest extends KernelJniTest {
         assertTrue(fetched > 0);
     }
 
+    @Test
+    public void get_elevation_packed_fills_across_boundaries() {
+        final double[] lats = new double[] {
+                33.5, 34.5
+        };
+        final double[] lngs = new double[] {
+                -76.5, -77.5
+        };
+        final double[] els = new double[2];
+        final boolean done = ElevationManager.getElevation(lats, lngs, els, 2,
+                null);
+        assertTrue(done);
+
+        assertEquals(56789, els[0], 0.0);
+        assertEquals(34567, els[1], 0.0);
+    }
+
+    @Test
+    public void compiled_query_large_interleaved_retrieves_best_elevation() {
+        // enough samples that the request is split across workers
+        final int count = ElevationManager.MIN_BATCH_CHUNK_SIZE * 4 + 1;
+        final double[] latLng = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            latLng[i * 2] = 34.25 + (0.5d * i / count);
+            latLng[i * 2 + 1] = -77.75 + (0.5d * i / count);
+        }
+        final double[] els = new double[count + 1];
+        els[0] = -1d;
+
+        ElevationManager.CompiledQuery query = ElevationManager
+                .compileQuery(null);
+        try {
+            assertTrue(query.getElevation(latLng, 0, els, 1, count));
+        } finally {
+            query.dispose();
+        }
+
+        assertEquals(-1d, els[0], 0.0);
+        for (int i = 1; i <= count; i++)
+            assertEquals(34567, els[i], 0.0);
+    }
+
     @Test
     public void chunk_query_order_resolution_asc() {
         ElevationSource.QueryParameters params = new ElevationSource.QueryParameters();
@@ -1,6 +1,16 @@
 package com.atakmap.map.layer.feature;
 
+import com.atakmap.map.layer.feature.datastore.BulkInsertionCallback;
 import com.atakmap.map.layer.feature.datastore.FeatureSetDatabase2;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.util.Disposer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FeatureSetDatabase2Tests extends FeatureDataStore4Tests
 {
@@ -8,4 +18,56 @@ public class FeatureSetDatabase2Tests extends FeatureDataStore4Tests
     protected FeatureDataStore4 createDataStore() {
         return new FeatureSetDatabase2(null);
     }
+
+    @Test
+    public void insertFeaturesBulk_roundtrip() throws DataStoreException
+    {
+        final int numFeatures = 1000;
+
+        final FeatureSetDatabase2 src = new FeatureSetDatabase2(null);
+        try(Disposer srcDisposer = new Disposer(src))
+        {
+            final long fsid = src.insertFeatureSet(new FeatureSet("a", "b", "c", Double.MAX_VALUE, 0d));
+            for(int i = 0; i < numFeatures; i++)
+                src.insertFeature(new Feature(fsid, FeatureDataStore2.FEATURE_ID_NONE, "feature" + i, new Point(i * 0.01d, 0d), null, null, FeatureDataStore2.TIMESTAMP_NONE, FeatureDataStore2.FEATURE_VERSION_NONE));
+
+            final FeatureSetDatabase2 dst = new FeatureSetDatabase2(null);
+            try(Disposer dstDisposer = new Disposer(dst))
+            {
+                dst.insertFeatureSet(Utils.getFeatureSet(src, fsid));
+
+                final AtomicLong reported = new AtomicLong(0L);
+                final long inserted;
+                FeatureCursor features = src.queryFeatures(new FeatureDataStore2.FeatureQueryParameters());
+                try
+                {
+                    inserted = dst.insertFeaturesBulk(features, new BulkInsertionCallback() {
+                        @Override
+                        public void onProgress(long numFeatures, long elapsed)
+                        {
+                            Assert.assertTrue(numFeatures >= reported.get());
+                            reported.set(numFeatures);
+                        }
+                    });
+                } finally
+                {
+                    features.close();
+                }
+
+                Assert.assertEquals(numFeatures, inserted);
+                Assert.assertEquals(numFeatures, reported.get());
+                Assert.assertEquals(numFeatures, dst.queryFeaturesCount(null));
+
+                // spatial index is rebuilt
+                FeatureDataStore2.FeatureQueryParameters params = new FeatureDataStore2.FeatureQueryParameters();
+                params.spatialFilter = GeometryFactory.fromEnvelope(new Envelope(-0.001d, -0.001d, 0d, 0.095d, 0.001d, 0d));
+                Assert.assertEquals(10, dst.queryFeaturesCount(params));
+
+                // IDs are preserved
+                Feature feature = Utils.getFeature(dst, 1L);
+                Assert.assertNotNull(feature);
+                Assert.assertEquals("feature0", feature.getName());
+            }
+        }
+    }
 }
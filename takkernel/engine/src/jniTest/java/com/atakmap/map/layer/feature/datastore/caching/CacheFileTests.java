@@ -0,0 +1,137 @@
+package com.atakmap.map.layer.feature.datastore.caching;
+
+import com.atakmap.android.androidtest.util.FileUtils;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureSet;
+import com.atakmap.map.layer.feature.datastore.FeatureSetDatabase2;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.util.Disposer;
+
+import gov.tak.test.KernelJniTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+public class CacheFileTests extends KernelJniTest
+{
+    @Test
+    public void cache_file_roundtrip() throws IOException, DataStoreException
+    {
+        final int numFeatures = 100;
+
+        final FeatureSetDatabase2 src = new FeatureSetDatabase2(null);
+        try (Disposer srcDisposer = new Disposer(src);
+             FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile.createTempFile(getTestContext()))
+        {
+            final long fsid = src.insertFeatureSet(new FeatureSet("a", "b", "c", Double.MAX_VALUE, 0d));
+            for (int i = 0; i < numFeatures; i++)
+                src.insertFeature(new Feature(fsid, FeatureDataStore2.FEATURE_ID_NONE, "feature" + i, (i % 10 == 0) ? null : new Point(i, i), null, null, FeatureDataStore2.TIMESTAMP_NONE, FeatureDataStore2.FEATURE_VERSION_NONE));
+
+            CacheFile.createCacheFile(7, 1, 2, 3L, src, null, f.file.getAbsolutePath());
+
+            CacheFile cached = CacheFile.readCacheFile(f.file.getAbsolutePath());
+            Assert.assertNotNull(cached);
+            try
+            {
+                Assert.assertEquals(7, cached.getClientVersion());
+                Assert.assertEquals(1, cached.getLevel());
+                Assert.assertEquals(2, cached.getIndex());
+                Assert.assertEquals(3L, cached.getTimestamp());
+                Assert.assertEquals(numFeatures, cached.getNumFeatures());
+                Assert.assertEquals(1, cached.getNumFeatureSets());
+                Assert.assertEquals("c", cached.getFeatureSet(0).getName());
+
+                // features without geometry are not returned for a region
+                FeatureCursor result = cached.queryFeatures(GeometryFactory.fromEnvelope(new Envelope(19.5d, 19.5d, 0d, 40.5d, 40.5d, 0d)), 0);
+                Assert.assertNotNull(result);
+                try
+                {
+                    int count = 0;
+                    long lastFid = FeatureDataStore2.FEATURE_ID_NONE;
+                    while (result.moveToNext())
+                    {
+                        Assert.assertTrue(result.getId() > lastFid);
+                        lastFid = result.getId();
+                        Assert.assertEquals(fsid, result.getFsid());
+                        Assert.assertTrue(result.getRawGeometry() instanceof Point);
+                        count++;
+                    }
+                    Assert.assertEquals(18, count);
+                } finally
+                {
+                    result.close();
+                }
+
+                Feature feature = cached.findFeature(6L);
+                Assert.assertNotNull(feature);
+                Assert.assertEquals("feature5", feature.getName());
+                Assert.assertEquals(5d, ((Point) feature.getGeometry()).getX(), 0d);
+            } finally
+            {
+                cached.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void cache_file_query_tests_exact_geometry() throws IOException, DataStoreException
+    {
+        final FeatureSetDatabase2 src = new FeatureSetDatabase2(null);
+        try (Disposer srcDisposer = new Disposer(src);
+             FileUtils.AutoDeleteFile f = FileUtils.AutoDeleteFile.createTempFile(getTestContext()))
+        {
+            final long fsid = src.insertFeatureSet(new FeatureSet("a", "b", "c", Double.MAX_VALUE, 0d));
+
+            // both lines have the same envelope, only the second crosses the
+            // lower right corner of that envelope
+            final LineString diagonal = new LineString(2);
+            diagonal.addPoint(0d, 0d);
+            diagonal.addPoint(10d, 10d);
+            final long diagonalFid = src.insertFeature(new Feature(fsid, FeatureDataStore2.FEATURE_ID_NONE, "diagonal", diagonal, null, null, FeatureDataStore2.TIMESTAMP_NONE, FeatureDataStore2.FEATURE_VERSION_NONE));
+
+            final LineString antidiagonal = new LineString(2);
+            antidiagonal.addPoint(0d, 10d);
+            antidiagonal.addPoint(10d, 0d);
+            final long antidiagonalFid = src.insertFeature(new Feature(fsid, FeatureDataStore2.FEATURE_ID_NONE, "antidiagonal", antidiagonal, null, null, FeatureDataStore2.TIMESTAMP_NONE, FeatureDataStore2.FEATURE_VERSION_NONE));
+
+            CacheFile.createCacheFile(7, 1, 2, 3L, src, null, f.file.getAbsolutePath());
+
+            CacheFile cached = CacheFile.readCacheFile(f.file.getAbsolutePath());
+            Assert.assertNotNull(cached);
+            try
+            {
+                final Envelope corner = new Envelope(7d, 0d, 0d, 10d, 4d, 0d);
+
+                FeatureCursor result = cached.queryFeatures(GeometryFactory.fromEnvelope(corner), 0);
+                Assert.assertNotNull(result);
+                try
+                {
+                    Assert.assertTrue(result.moveToNext());
+                    Assert.assertEquals(antidiagonalFid, result.getId());
+                    Assert.assertFalse(result.moveToNext());
+                } finally
+                {
+                    result.close();
+                }
+
+                final Set<Long> fids = new HashSet<>();
+                Assert.assertTrue(cached.findIntersectingFeatures(fids, GeometryFactory.fromEnvelope(corner)));
+                Assert.assertTrue(fids.contains(antidiagonalFid));
+                Assert.assertFalse(fids.contains(diagonalFid));
+            } finally
+            {
+                cached.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.atakmap.map.layer.raster.tilereader;
+
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+
+import gov.tak.test.KernelJniTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkStealingReadRequestSchedulerTest extends KernelJniTest
+{
+    private static final String TAG = "WorkStealingReadRequestSchedulerTest";
+    private static final boolean ENABLED = false;
+
+    private static final int TILE_SIZE = 256;
+    private static final int GRID_SIZE = 64;
+
+    @Test
+    public void all_requests_serviced()
+    {
+        final TileReader.AsynchronousIO io = new TileReader.AsynchronousIO(
+                new WorkStealingReadRequestScheduler(4));
+
+        try
+        {
+            final int readers = 4;
+            final int perReader = 50;
+            final Listener listener = new Listener(readers * perReader);
+            for (int i = 0; i < readers; i++)
+            {
+                MockTileReader reader = new MockTileReader(io, 0L);
+                for (int j = 0; j < perReader; j++)
+                    enqueue(io, reader, 0, j % GRID_SIZE, j / GRID_SIZE, listener);
+            }
+
+            assertTrue(listener.await(30000L));
+            assertEquals(readers * perReader, listener.completed.get());
+            assertEquals(0, listener.canceled.get());
+        } finally
+        {
+            io.release();
+        }
+    }
+
+    @Test
+    public void abort_cancels_queued_requests() throws InterruptedException
+    {
+        final TileReader.AsynchronousIO io = new TileReader.AsynchronousIO(
+                new WorkStealingReadRequestScheduler(1));
+
+        try
+        {
+            final CountDownLatch blocked = new CountDownLatch(1);
+            final CountDownLatch unblock = new CountDownLatch(1);
+            final MockTileReader blocker = new MockTileReader(io, 0L)
+            {
+                @Override
+                public ReadResult read(long srcX, long srcY, long srcW, long srcH, int dstW, int dstH, byte[] buf)
+                {
+                    blocked.countDown();
+                    try
+                    {
+                        unblock.await();
+                    } catch (InterruptedException ignored)
+                    {
+                    }
+                    return ReadResult.SUCCESS;
+                }
+            };
+            final MockTileReader aborted = new MockTileReader(io, 0L);
+
+            final Listener blockerListener = new Listener(1);
+            enqueue(io, blocker, 0, 0, 0, blockerListener);
+            assertTrue(blocked.await(5000L, TimeUnit.MILLISECONDS));
+
+            final Listener abortedListener = new Listener(10);
+            for (int i = 0; i < 10; i++)
+                enqueue(io, aborted, 0, i, 0, abortedListener);
+            io.abortRequests(aborted);
+            unblock.countDown();
+
+            assertTrue(blockerListener.await(5000L));
+
+            // the worker is idle once the queue has drained
+            final Listener probe = new Listener(1);
+            enqueue(io, new MockTileReader(io, 0L), 0, 0, 0, probe);
+            assertTrue(probe.await(5000L));
+
+            assertEquals(0, abortedListener.started.get());
+        } finally
+        {
+            io.release();
+        }
+    }
+
+    @Test
+    public void benchmark_camera_trace_sorting()
+    {
+        if (ENABLED)
+            replay("sorting", new TileReader.AsynchronousIO(false));
+    }
+
+    @Test
+    public void benchmark_camera_trace_work_stealing()
+    {
+        if (ENABLED)
+            replay("work-stealing", new TileReader.AsynchronousIO(true));
+    }
+
+    /**
+     * Replays a camera trace that pans across a mosaic of several readers and
+     * zooms in and out. Each frame cancels the requests that have left the
+     * view and requests the visible tiles at the frame's level.
+     */
+    private static void replay(String name, TileReader.AsynchronousIO io)
+    {
+        final int numReaders = 4;
+        final List<MockTileReader> readers = new ArrayList<>(numReaders);
+        for (int i = 0; i < numReaders; i++)
+            readers.add(new MockTileReader(io, 2L));
+
+        final List<Listener> listeners = new ArrayList<>();
+        final List<TileReader.ReadRequest> inflight = new ArrayList<>();
+
+        final long start = System.nanoTime();
+        try
+        {
+            final int frames = 400;
+            for (int frame = 0; frame < frames; frame++)
+            {
+                // pan diagonally while zooming through levels 0..3 and back
+                final double t = (double) frame / frames;
+                final GeoPoint camera = new GeoPoint(t, t);
+                final int level = (int) Math.round(3d * Math.abs(Math.sin(t * Math.PI * 4d)));
+                final int span = 4 << level;
+
+                io.setCameraLocation(camera);
+
+                for (TileReader.ReadRequest request : inflight)
+                    request.cancel();
+                inflight.clear();
+
+                final int tiles = GRID_SIZE >> level;
+                final int centerCol = (int) (t * tiles);
+                final int centerRow = (int) (t * tiles);
+                final int minRow = Math.max(0, centerRow - span / 2);
+                final int maxRow = Math.min(tiles, centerRow + span / 2);
+                final int minCol = Math.max(0, centerCol - span / 2);
+                final int maxCol = Math.min(tiles, centerCol + span / 2);
+
+                final Listener listener = new Listener(readers.size() * (maxRow - minRow) * (maxCol - minCol));
+                listeners.add(listener);
+                for (MockTileReader reader : readers)
+                {
+                    for (int row = minRow; row < maxRow; row++)
+                        for (int col = minCol; col < maxCol; col++)
+                            inflight.add(enqueue(io, reader, level, col, row, listener));
+                }
+
+                try
+                {
+                    Thread.sleep(16L);
+                } catch (InterruptedException ignored)
+                {
+                }
+            }
+
+            // drain the final frame
+            listeners.get(listeners.size() - 1).await(60000L);
+        } finally
+        {
+            io.release();
+        }
+        final long duration = System.nanoTime() - start;
+
+        int created = 0;
+        int completed = 0;
+        for (Listener listener : listeners)
+        {
+            created += listener.created.get();
+            completed += listener.completed.get();
+        }
+        Log.i(TAG, name + " duration=" + TimeUnit.NANOSECONDS.toMillis(duration) + "ms completed="
+                + completed + " created=" + created);
+    }
+
+    private static TileReader.ReadRequest enqueue(TileReader.AsynchronousIO io, MockTileReader reader, int level, long col, long row, Listener listener)
+    {
+        final TileReader.ReadRequest request = new TileReader.ReadRequest(reader, level, col, row, listener);
+        final double tileDegrees = (double) (1 << level) / GRID_SIZE;
+        io.asyncRead(request, new Envelope(col * tileDegrees, row * tileDegrees, 0d, (col + 1) * tileDegrees, (row + 1) * tileDegrees, 0d));
+        return request;
+    }
+
+    static class MockTileReader extends TileReader
+    {
+        final long readMillis;
+
+        MockTileReader(AsynchronousIO io, long readMillis)
+        {
+            super("mock://tilereader", null, 0, io);
+            this.readMillis = readMillis;
+        }
+
+        @Override
+        public long getWidth()
+        {
+            return (long) TILE_SIZE * GRID_SIZE;
+        }
+
+        @Override
+        public long getHeight()
+        {
+            return (long) TILE_SIZE * GRID_SIZE;
+        }
+
+        @Override
+        public int getTileWidth()
+        {
+            return TILE_SIZE;
+        }
+
+        @Override
+        public int getTileHeight()
+        {
+            return TILE_SIZE;
+        }
+
+        @Override
+        public ReadResult read(long srcX, long srcY, long srcW, long srcH, int dstW, int dstH, byte[] buf)
+        {
+            if (this.readMillis > 0L)
+            {
+                try
+                {
+                    Thread.sleep(this.readMillis);
+                } catch (InterruptedException ignored)
+                {
+                }
+            }
+            return ReadResult.SUCCESS;
+        }
+
+        @Override
+        public Format getFormat()
+        {
+            return Format.RGBA;
+        }
+
+        @Override
+        public Interleave getInterleave()
+        {
+            return Interleave.BIP;
+        }
+    }
+
+    static class Listener implements TileReader.AsynchronousReadRequestListener
+    {
+        final AtomicInteger created = new AtomicInteger(0);
+        final AtomicInteger started = new AtomicInteger(0);
+        final AtomicInteger completed = new AtomicInteger(0);
+        final AtomicInteger canceled = new AtomicInteger(0);
+        final CountDownLatch done;
+
+        Listener(int expected)
+        {
+            this.done = new CountDownLatch(expected);
+        }
+
+        boolean await(long millis)
+        {
+            try
+            {
+                return this.done.await(millis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e)
+            {
+                return false;
+            }
+        }
+
+        @Override
+        public void requestCreated(TileReader.ReadRequest request)
+        {
+            created.incrementAndGet();
+        }
+
+        @Override
+        public void requestStarted(int id)
+        {
+            started.incrementAndGet();
+        }
+
+        @Override
+        public void requestUpdate(int id, byte[] data, int dstX, int dstY, int dstW, int dstH)
+        {
+        }
+
+        @Override
+        public void requestCompleted(int id)
+        {
+            completed.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void requestCanceled(int id)
+        {
+            canceled.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void requestError(int id, Throwable error)
+        {
+            done.countDown();
+        }
+    }
+}
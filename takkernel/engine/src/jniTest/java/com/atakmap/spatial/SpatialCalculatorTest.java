@@ -295,6 +295,101 @@ public class SpatialCalculatorTest extends KernelJniTest
         local.dispose();
     }
 
+    @Test
+    public void geometry_kernel_predicates_match_spatialite() {
+        SpatialCalculator sql = new SpatialCalculator.Builder()
+                .inMemory().build();
+        SpatialCalculator kernel = new SpatialCalculator.Builder()
+                .useGeometryKernel()
+                .inMemory().build();
+
+        final GeoPoint[] poly = new GeoPoint[] {
+                new GeoPoint(0, 0),
+                new GeoPoint(0, 10),
+                new GeoPoint(5, 12),
+                new GeoPoint(10, 10),
+                new GeoPoint(10, 0),
+        };
+        final GeoPoint[][] hole = new GeoPoint[][] {
+                {
+                        new GeoPoint(4, 4),
+                        new GeoPoint(4, 6),
+                        new GeoPoint(6, 6),
+                        new GeoPoint(6, 4),
+                }
+        };
+        final long sqlPoly = sql.createPolygon(poly, hole);
+        final long kernelPoly = kernel.createPolygon(poly, hole);
+
+        java.util.Random r = new java.util.Random(1);
+        for (int i = 0; i < 500; i++) {
+            final GeoPoint p = new GeoPoint(r.nextDouble() * 14 - 2, r.nextDouble() * 14 - 2);
+            final long sqlPt = sql.createPoint(p);
+            final long kernelPt = kernel.createPoint(p);
+            Assert.assertEquals(sql.contains(sqlPoly, sqlPt), kernel.contains(kernelPoly, kernelPt));
+            Assert.assertEquals(sql.intersects(sqlPoly, sqlPt), kernel.intersects(kernelPoly, kernelPt));
+
+            final GeoPoint a = new GeoPoint(r.nextDouble() * 14 - 2, r.nextDouble() * 14 - 2);
+            final GeoPoint b = new GeoPoint(a.getLatitude() + r.nextDouble() * 2, a.getLongitude() + r.nextDouble() * 2);
+            final long sqlQuad = sql.createPolygon(a, new GeoPoint(a.getLatitude(), b.getLongitude()), b, new GeoPoint(b.getLatitude(), a.getLongitude()));
+            final long kernelQuad = kernel.createPolygon(a, new GeoPoint(a.getLatitude(), b.getLongitude()), b, new GeoPoint(b.getLatitude(), a.getLongitude()));
+            Assert.assertEquals(sql.contains(sqlPoly, sqlQuad), kernel.contains(kernelPoly, kernelQuad));
+            Assert.assertEquals(sql.intersects(sqlPoly, sqlQuad), kernel.intersects(kernelPoly, kernelQuad));
+        }
+
+        sql.dispose();
+        kernel.dispose();
+    }
+
+    @Test
+    public void geometry_kernel_simplify_matches_spatialite() {
+        SpatialCalculator sql = new SpatialCalculator.Builder()
+                .inMemory().build();
+        SpatialCalculator kernel = new SpatialCalculator.Builder()
+                .useGeometryKernel()
+                .inMemory().build();
+
+        java.util.Random r = new java.util.Random(2);
+        GeoPoint[] line = new GeoPoint[200];
+        for (int i = 0; i < line.length; i++)
+            line[i] = new GeoPoint(Math.sin(i / 10d) + r.nextDouble() * 0.01, i * 0.05);
+
+        Collection<GeoPoint> expected = sql.simplify(line, 0.02, false);
+        Collection<GeoPoint> actual = kernel.simplify(line, 0.02, false);
+        Assert.assertEquals(expected.size(), actual.size());
+        java.util.Iterator<GeoPoint> it = actual.iterator();
+        for (GeoPoint e : expected) {
+            final GeoPoint a = it.next();
+            Assert.assertEquals(e.getLatitude(), a.getLatitude(), 0d);
+            Assert.assertEquals(e.getLongitude(), a.getLongitude(), 0d);
+        }
+
+        sql.dispose();
+        kernel.dispose();
+    }
+
+    @Test
+    public void geometry_kernel_handles_usable_with_spatialite_operations() {
+        SpatialCalculator local = new SpatialCalculator.Builder()
+                .useGeometryKernel()
+                .inMemory().build();
+
+        final long point = local.createPoint(new GeoPoint(1, 1));
+        final long buffer = local.buffer(point, 0.5);
+        Assert.assertEquals(SpatialCalculator.GEOM_TYPE_POLYGON, local.getGeometryType(buffer));
+        Assert.assertTrue(local.contains(buffer, point));
+
+        // updates are visible to subsequent database operations
+        local.updatePoint(point, new GeoPoint(5, 5));
+        Assert.assertFalse(local.contains(buffer, point));
+        local.buffer(point, 0.5, buffer);
+        Assert.assertTrue(local.contains(buffer, point));
+
+        local.deleteGeometry(point);
+        Assert.assertNull(local.getGeometry(point));
+        local.dispose();
+    }
+
     static GeoPoint[] geopointsFromLinestring(LineString linestring) {
         GeoPoint[] ls = new GeoPoint[linestring.getNumPoints()];
         for(int i = 0; i < linestring.getNumPoints(); i++)
@@ -0,0 +1,260 @@
+package com.atakmap.util.zip;
+
+import com.atakmap.coremap.io.DefaultIOProvider;
+import com.atakmap.coremap.io.IOProviderFactoryHelper;
+import com.atakmap.coremap.log.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ZipFileTest {
+    private static final String TAG = "ZipFileTest";
+    private static final boolean ENABLED = false;
+
+    private static final int NUM_ENTRIES = 64;
+
+    private File file;
+    private byte[][] data;
+
+    @Before
+    public void beforeTests() throws IOException {
+        IOProviderFactoryHelper.registerProvider(new DefaultIOProvider(), true);
+        ZipFile.clearCache();
+
+        file = File.createTempFile("ZipFileTest", ".zip");
+        data = new byte[NUM_ENTRIES][];
+        final Random r = new Random(NUM_ENTRIES);
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new FileOutputStream(file))) {
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                // alternate incompressible and compressible content
+                data[i] = new byte[16384 + r.nextInt(16384)];
+                for (int j = 0; j < data[i].length; j++)
+                    data[i][j] = (byte) ((i % 2 == 0) ? r.nextInt(256) : j % 7);
+                zos.putNextEntry(new java.util.zip.ZipEntry("entry" + i));
+                zos.write(data[i]);
+                zos.closeEntry();
+            }
+        }
+    }
+
+    @After
+    public void afterTests() {
+        ZipFile.clearCache();
+        file.delete();
+    }
+
+    @Test
+    public void concurrent_entry_reads_match_content() throws Exception {
+        try (ZipFile zip = new ZipFile(file)) {
+            readAll(zip, 8, 2);
+        }
+    }
+
+    @Test
+    public void instances_share_central_directory() throws IOException {
+        try (ZipFile a = new ZipFile(file); ZipFile b = new ZipFile(file)) {
+            assertEquals(NUM_ENTRIES, a.size());
+            assertEquals(NUM_ENTRIES, b.size());
+            assertArrayEquals(data[3], read(b, "entry3"));
+        }
+    }
+
+    @Test
+    public void modified_archive_is_reparsed() throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(NUM_ENTRIES, zip.size());
+        }
+
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new FileOutputStream(file))) {
+            zos.putNextEntry(new java.util.zip.ZipEntry("only"));
+            zos.write(data[0]);
+            zos.closeEntry();
+        }
+        file.setLastModified(file.lastModified() + 2000L);
+
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(1, zip.size());
+            assertArrayEquals(data[0], read(zip, "only"));
+        }
+    }
+
+    @Test
+    public void rewritten_archive_with_same_length_and_time_is_reparsed()
+            throws IOException {
+        // two stored entries, then one stored entry padded to the same length
+        final String[] twoNames = new String[] {"a", "b"};
+        final byte[][] twoData = new byte[][] {new byte[10], new byte[10]};
+        writeStored(file, twoNames, twoData);
+        final long length = file.length();
+        byte[] padded = new byte[16];
+        writeStored(file, new String[] {"c"}, new byte[][] {padded});
+        padded = new byte[padded.length + (int) (length - file.length())];
+        writeStored(file, new String[] {"c"}, new byte[][] {padded});
+        assertEquals(length, file.length());
+        final long lastModified = file.lastModified();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(1, zip.size());
+        }
+
+        writeStored(file, twoNames, twoData);
+        file.setLastModified(lastModified);
+        assertEquals(length, file.length());
+
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(2, zip.size());
+            assertArrayEquals(twoData[1], read(zip, "b"));
+        }
+    }
+
+    @Test
+    public void returned_entries_are_copies() throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            final ZipEntry entry = zip.getEntry("entry3");
+            entry.setComment("modified");
+            entry.setSize(1L);
+            final ZipEntry enumerated = zip.entries().nextElement();
+            enumerated.setComment("modified");
+        }
+
+        try (ZipFile zip = new ZipFile(file)) {
+            final ZipEntry entry = zip.getEntry("entry3");
+            assertNull(entry.getComment());
+            assertEquals(data[3].length, entry.getSize());
+            assertNull(zip.entries().nextElement().getComment());
+            assertArrayEquals(data[3], read(zip, "entry3"));
+        }
+    }
+
+    @Test
+    public void interrupted_reader_does_not_close_other_streams()
+            throws Exception {
+        try (final ZipFile zip = new ZipFile(file)) {
+            final InputStream other = zip.getInputStream(zip.getEntry("entry1"));
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true)
+                            read(zip, "entry0");
+                    } catch (IOException ignored) {
+                        // the interrupt closes the channel under this reader
+                    }
+                }
+            });
+            reader.start();
+            Thread.sleep(50L);
+            reader.interrupt();
+            reader.join();
+
+            assertArrayEquals(data[1], drain(other));
+            readAll(zip, 4, 1);
+        }
+    }
+
+    @Test
+    public void benchmark_concurrent_reads() throws Exception {
+        if (!ENABLED)
+            return;
+        try (ZipFile zip = new ZipFile(file)) {
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                final long start = System.nanoTime();
+                readAll(zip, threads, 20);
+                final long duration = System.nanoTime() - start;
+                Log.i(TAG, "threads=" + threads + " duration="
+                        + TimeUnit.NANOSECONDS.toMillis(duration) + "ms");
+            }
+        }
+    }
+
+    private void readAll(final ZipFile zip, int threads, final int passes)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * 7;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        for (int pass = 0; pass < passes; pass++) {
+                            for (int i = 0; i < NUM_ENTRIES; i++) {
+                                final int idx = (i + offset) % NUM_ENTRIES;
+                                assertArrayEquals(data[idx],
+                                        read(zip, "entry" + idx));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results)
+                result.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void writeStored(File file, String[] names, byte[][] data)
+            throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new FileOutputStream(file))) {
+            for (int i = 0; i < names.length; i++) {
+                final CRC32 crc = new CRC32();
+                crc.update(data[i]);
+                final java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry(
+                        names[i]);
+                entry.setMethod(java.util.zip.ZipEntry.STORED);
+                entry.setSize(data[i].length);
+                entry.setCompressedSize(data[i].length);
+                entry.setCrc(crc.getValue());
+                zos.putNextEntry(entry);
+                zos.write(data[i]);
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        assertNotNull(entry);
+        return drain(zip.getInputStream(entry));
+    }
+
+    private static byte[] drain(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) > 0)
+                bytes.write(buf, 0, n);
+            return bytes.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package gov.tak.api.engine.map.coords;
+
+import com.atakmap.coremap.log.Log;
+
+import gov.tak.test.KernelJniTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class GeoCalculationsBatchTest extends KernelJniTest
+{
+    private static final String TAG = "GeoCalculationsBatchTest";
+
+    private static final boolean ENABLED = false;
+
+    private static final double DISTANCE_TOLERANCE = 0.001;
+    private static final double ANGLE_TOLERANCE = 1e-7;
+
+    public GeoCalculationsBatchTest()
+    {
+        new gov.tak.api.engine.map.coords.GeoPoint(0, 0);
+    }
+
+    @Test
+    public void pathLengthMatchesPointwise()
+    {
+        final double[] points = createPath(500, 3, 1);
+
+        double expected = 0d;
+        double expectedSlant = 0d;
+        for (int i = 1; i < 500; i++)
+        {
+            expected += GeoCalculations.distance(point(points, 3, i - 1), point(points, 3, i));
+            expectedSlant += GeoCalculations.slantDistance(point(points, 3, i - 1), point(points, 3, i));
+        }
+
+        final double[] cumulative = new double[500];
+        Assert.assertEquals(expected, GeoCalculations.pathLength(points, 3, 0, 500, false, cumulative), DISTANCE_TOLERANCE);
+        Assert.assertEquals(0d, cumulative[0], 0d);
+        Assert.assertEquals(expected, cumulative[499], DISTANCE_TOLERANCE);
+        Assert.assertEquals(expected, VincentyGeodesic.pathLength(points, 3, 0, 500, false, null), DISTANCE_TOLERANCE);
+
+        Assert.assertEquals(expectedSlant, GeoCalculations.pathLength(points, 3, 0, 500, true, null), DISTANCE_TOLERANCE);
+        Assert.assertEquals(expectedSlant, VincentyGeodesic.pathLength(points, 3, 0, 500, true, null), DISTANCE_TOLERANCE);
+    }
+
+    @Test
+    public void pathLengthSubrange()
+    {
+        final double[] points = createPath(10, 2, 2);
+        final double expected = GeoCalculations.distance(point(points, 2, 3), point(points, 2, 4))
+                + GeoCalculations.distance(point(points, 2, 4), point(points, 2, 5));
+        Assert.assertEquals(expected, GeoCalculations.pathLength(points, 2, 3, 3, false, null), DISTANCE_TOLERANCE);
+        Assert.assertEquals(0d, GeoCalculations.pathLength(points, 2, 3, 1, false, null), 0d);
+    }
+
+    @Test
+    public void segmentDistanceAndBearingMatchesPointwise()
+    {
+        final int count = 200;
+        final double[] points = createPath(count + 1, 2, 3);
+
+        final double[] distances = new double[count];
+        final double[] bearings = new double[count];
+        final double[] jdistances = new double[count];
+        final double[] jbearings = new double[count];
+        GeoCalculations.distanceAndBearing(points, 0, points, 1, 2, count, false, distances, bearings);
+        VincentyGeodesic.distanceAndBearing(points, 0, points, 1, 2, count, false, jdistances, jbearings);
+        for (int i = 0; i < count; i++)
+        {
+            final IGeoPoint a = point(points, 2, i);
+            final IGeoPoint b = point(points, 2, i + 1);
+            Assert.assertEquals(GeoCalculations.distance(a, b), distances[i], DISTANCE_TOLERANCE);
+            Assert.assertEquals(GeoCalculations.bearing(a, b), bearings[i], ANGLE_TOLERANCE);
+            Assert.assertEquals(distances[i], jdistances[i], DISTANCE_TOLERANCE);
+            Assert.assertEquals(bearings[i], jbearings[i], ANGLE_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void pointsAtDistanceMatchesPointwise()
+    {
+        final int count = 360;
+        final double[] azimuths = new double[count];
+        for (int i = 0; i < count; i++)
+            azimuths[i] = i;
+
+        final double[] ring = new double[count * 2];
+        final double[] jring = new double[count * 2];
+        GeoCalculations.pointsAtDistance(35d, 42d, azimuths, new double[] {25000d}, count, ring);
+        VincentyGeodesic.pointsAtDistance(35d, 42d, azimuths, new double[] {25000d}, count, jring);
+
+        final IGeoPoint center = new GeoPoint(35d, 42d);
+        for (int i = 0; i < count; i++)
+        {
+            final IGeoPoint expected = GeoCalculations.pointAtDistance(center, azimuths[i], 25000d);
+            Assert.assertEquals(expected.getLatitude(), ring[i * 2], ANGLE_TOLERANCE);
+            Assert.assertEquals(expected.getLongitude(), ring[i * 2 + 1], ANGLE_TOLERANCE);
+            Assert.assertEquals(ring[i * 2], jring[i * 2], ANGLE_TOLERANCE);
+            Assert.assertEquals(ring[i * 2 + 1], jring[i * 2 + 1], ANGLE_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void pointsAtDistanceWrapsAntimeridian()
+    {
+        final double[] result = new double[2];
+        GeoCalculations.pointsAtDistance(0d, 179.99d, new double[] {90d}, new double[] {10000d}, 1, result);
+        Assert.assertTrue(result[1] < 0d);
+        Assert.assertTrue(result[1] >= -180d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slantRequiresAltitude()
+    {
+        GeoCalculations.pathLength(new double[4], 2, 0, 2, true, null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rangeChecked()
+    {
+        GeoCalculations.pathLength(new double[4], 2, 1, 2, false, null);
+    }
+
+    @Test
+    public void benchmark_path_length()
+    {
+        if (ENABLED)
+        {
+            final int count = 10000;
+            final double[] points = createPath(count, 2, 4);
+            final IGeoPoint[] geoPoints = new IGeoPoint[count];
+            for (int i = 0; i < count; i++)
+                geoPoints[i] = point(points, 2, i);
+
+            for (int pass = 0; pass < 2; pass++)
+            {
+                long start = System.nanoTime();
+                double length = 0d;
+                for (int i = 1; i < count; i++)
+                    length += GeoCalculations.distance(geoPoints[i - 1], geoPoints[i]);
+                final long pointwise = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                length -= GeoCalculations.pathLength(points, 2, 0, count, false, null);
+                final long batch = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                length -= VincentyGeodesic.pathLength(points, 2, 0, count, false, null);
+                final long java = System.nanoTime() - start;
+
+                Log.i(TAG, "pathLength " + count + " points: pointwise= " + (pointwise / 1000) + "us native batch= "
+                        + (batch / 1000) + "us java batch= " + (java / 1000) + "us (" + length + ")");
+            }
+        }
+    }
+
+    private static double[] createPath(int count, int size, long seed)
+    {
+        final Random r = new Random(seed);
+        final double[] points = new double[count * size];
+        double lat = 34d;
+        double lng = -117d;
+        for (int i = 0; i < count; i++)
+        {
+            lat += (r.nextDouble() - 0.5) * 0.01;
+            lng += (r.nextDouble() - 0.5) * 0.01;
+            points[i * size] = lat;
+            points[i * size + 1] = lng;
+            if (size > 2)
+                points[i * size + 2] = r.nextDouble() * 1000d;
+        }
+        return points;
+    }
+
+    private static IGeoPoint point(double[] points, int size, int index)
+    {
+        final int off = index * size;
+        if (size > 2)
+            return new GeoPoint(points[off], points[off + 1], points[off + 2]);
+        return new GeoPoint(points[off], points[off + 1]);
+    }
+}
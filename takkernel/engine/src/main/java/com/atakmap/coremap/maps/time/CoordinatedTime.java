@@ -139,6 +139,24 @@ public class CoordinatedTime implements Parcelable
             Locale.US,
             TimeZone.getTimeZone("UTC"));
 
+    /**
+     * Most recently formatted CoT time. The holder is immutable so that it
+     * may be shared across threads without locking.
+     */
+    private static volatile FormattedTime _lastFormatted;
+
+    private final static class FormattedTime
+    {
+        final long millis;
+        final String formatted;
+
+        FormattedTime(long millis, String formatted)
+        {
+            this.millis = millis;
+            this.formatted = formatted;
+        }
+    }
+
     private static long gpsTimeDelta = 0;
     private static boolean gps = false;
 
@@ -384,7 +402,15 @@ public class CoordinatedTime implements Parcelable
      */
     public static String toCot(final CoordinatedTime time)
     {
-        return formatTime(new Date(time.getMilliseconds()));
+        final long millis = time.getMilliseconds();
+        // the time, start and stale of an event frequently share the same
+        // millisecond, as do events generated in the same pass
+        FormattedTime cached = _lastFormatted;
+        if (cached != null && cached.millis == millis)
+            return cached.formatted;
+        cached = new FormattedTime(millis, formatTime(new Date(millis)));
+        _lastFormatted = cached;
+        return cached.formatted;
     }
 
     /**
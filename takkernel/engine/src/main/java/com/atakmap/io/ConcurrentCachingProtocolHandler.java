@@ -0,0 +1,517 @@
+package com.atakmap.io;
+
+import android.net.Uri;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.io.DatabaseInformation;
+import com.atakmap.coremap.io.IOProvider;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.database.CursorIface;
+import com.atakmap.database.DatabaseIface;
+import com.atakmap.database.StatementIface;
+import com.atakmap.math.MathUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ProtocolHandler} that caches content retrieved from a source handler
+ * on the local file system. Unlike {@link CachingProtocolHandler}, lookups
+ * for different URIs do not contend on a common monitor. The cache index is
+ * mirrored in memory and cache hits are served without taking a lock.
+ * Concurrent requests for the <I>same</I> URI are collapsed into a single
+ * load from the source, with the remaining callers waiting only on that
+ * URI's load.
+ *
+ * <P>Writes to the persistent index (new entries, evictions and access time
+ * updates) are serialized on a writer lock that cache hits never wait on.
+ * Entries are evicted in least-recently-used order. Cache hits record their
+ * access time in memory; the access times are written back to the index in
+ * batches.
+ *
+ * <P>This handler is not registered by default; applications opt in by
+ * registering an instance with {@link UriFactory#registerProtocolHandler}.
+ */
+public class ConcurrentCachingProtocolHandler implements ProtocolHandler
+{
+    private final static String TAG = "ConcurrentCachingProtocolHandler";
+
+    private final static String INDEX_FILE_NAME = "lruindex.sqlite";
+    private final static int INDEX_VERSION = 1;
+
+    /** number of pending access time updates that triggers a flush */
+    private final static int TOUCH_FLUSH_COUNT = 64;
+    /** maximum interval, in milliseconds, between access time flushes */
+    private final static long TOUCH_FLUSH_INTERVAL = 5000L;
+
+    private final ProtocolHandler source;
+    private final File cacheDir;
+    private final long maxCache;
+
+    /** the persistent index, guarded by <code>indexLock</code> */
+    private final DatabaseIface index;
+    private final ReentrantLock indexLock = new ReentrantLock();
+
+    /**
+     * in-memory mirror of the index. Only modified while holding
+     * <code>indexLock</code>; read without locking.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, PendingLoad> pendingLoads = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingTouches = new ConcurrentHashMap<>();
+    private final AtomicLong cacheSize = new AtomicLong(0L);
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong evictions = new AtomicLong(0L);
+    private volatile long lastTouchFlush;
+
+    /**
+     * @param source    The handler that content is retrieved from on a cache
+     *                  miss
+     * @param cacheDir  The directory that cached content and the cache index
+     *                  are stored in
+     * @param maxCache  The maximum size of the cache, in bytes. If less than
+     *                  or equal to zero, the cache is unbounded.
+     */
+    public ConcurrentCachingProtocolHandler(ProtocolHandler source, File cacheDir, long maxCache)
+    {
+        if (source == null)
+            throw new IllegalArgumentException();
+        if (cacheDir == null)
+            throw new IllegalArgumentException();
+
+        this.source = source;
+        this.cacheDir = cacheDir;
+        if (!IOProviderFactory.exists(this.cacheDir))
+            IOProviderFactory.mkdirs(this.cacheDir);
+        this.maxCache = maxCache;
+
+        final File dbfile = new File(cacheDir.getAbsolutePath(), INDEX_FILE_NAME);
+        this.index = IOProviderFactory.createDatabase(
+                new DatabaseInformation(Uri.fromFile(dbfile)));
+        if (this.index.getVersion() != INDEX_VERSION)
+        {
+            this.index.execute("DROP TABLE IF EXISTS cacheindex", null);
+            this.index.execute("CREATE TABLE cacheindex " +
+                    "(uri TEXT NOT NULL, path TEXT, length INTEGER, cache_datetime INTEGER, access_datetime INTEGER)",
+                    null);
+            this.index.execute("CREATE UNIQUE INDEX IdxCacheIndexUri ON cacheindex(uri)", null);
+            this.index.execute("CREATE INDEX IdxCacheIndexAccess ON cacheindex(access_datetime)", null);
+            this.index.setVersion(INDEX_VERSION);
+        }
+
+        CursorIface result = null;
+        try
+        {
+            result = this.index.query("SELECT uri, path, length, access_datetime FROM cacheindex", null);
+            long size = 0L;
+            while (result.moveToNext())
+            {
+                final Entry entry = new Entry(result.getString(1), result.getLong(2), result.getLong(3));
+                this.entries.put(result.getString(0), entry);
+                size += entry.length;
+            }
+            this.cacheSize.set(size);
+        } finally
+        {
+            if (result != null)
+                result.close();
+        }
+
+        this.lastTouchFlush = System.currentTimeMillis();
+    }
+
+    @Override
+    public UriFactory.OpenResult handleURI(String uri)
+    {
+        UriFactory.OpenResult result = this.openCached(uri);
+        if (result != null)
+            return result;
+
+        final PendingLoad load = new PendingLoad();
+        final PendingLoad inflight = this.pendingLoads.putIfAbsent(uri, load);
+        if (inflight != null)
+        {
+            // another thread is already loading this URI; wait for it to
+            // complete and then service the request from the cache
+            if (!inflight.await())
+                return null;
+            return this.openCached(uri);
+        }
+
+        try
+        {
+            // check again; the load may have completed between the initial
+            // lookup and our registration as the loader
+            result = this.openCached(uri);
+            if (result != null)
+            {
+                load.complete(true);
+                return result;
+            }
+
+            this.misses.incrementAndGet();
+            result = this.load(uri);
+            load.complete(result != null);
+            return result;
+        } catch (RuntimeException e)
+        {
+            load.complete(false);
+            throw e;
+        } finally
+        {
+            this.pendingLoads.remove(uri, load);
+        }
+    }
+
+    @Override
+    public long getContentLength(String uri)
+    {
+        final Entry entry = this.entries.get(uri);
+        if (entry != null)
+            return entry.length;
+        return this.source.getContentLength(uri);
+    }
+
+    @Override
+    public Collection<String> getSupportedSchemes()
+    {
+        return this.source.getSupportedSchemes();
+    }
+
+    /**
+     * @return The number of requests that were serviced from the cache
+     */
+    public long getHitCount()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return The number of requests that required a load from the source
+     *         handler
+     */
+    public long getMissCount()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return The number of entries evicted from the cache
+     */
+    public long getEvictionCount()
+    {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return The current size of the cache, in bytes
+     */
+    public long getCacheSize()
+    {
+        return this.cacheSize.get();
+    }
+
+    /**
+     * Writes any pending access time updates to the cache index.
+     */
+    public void flush()
+    {
+        this.indexLock.lock();
+        try
+        {
+            this.flushTouchesNoSync();
+        } finally
+        {
+            this.indexLock.unlock();
+        }
+    }
+
+    private UriFactory.OpenResult openCached(String uri)
+    {
+        final Entry entry = this.entries.get(uri);
+        if (entry == null)
+            return null;
+
+        try
+        {
+            UriFactory.OpenResult result = new UriFactory.OpenResult();
+            result.inputStream = IOProviderFactory.getInputStream(new File(entry.path));
+            result.contentLength = entry.length;
+
+            this.hits.incrementAndGet();
+            this.touch(uri, entry);
+            return result;
+        } catch (IOException e)
+        {
+            // the entry may have been evicted or replaced concurrently; the
+            // caller reloads it from the source
+            Log.w(TAG, "Failed to reconstruct content from cache file");
+            return null;
+        }
+    }
+
+    private UriFactory.OpenResult load(String uri)
+    {
+        UriFactory.OpenResult result = this.source.handleURI(uri);
+        if (result == null)
+            return null;
+
+        File cached = null;
+        try
+        {
+            byte[] transfer = new byte[MathUtils.clamp((int) result.contentLength, 64 * 1024, 1024 * 1024)];
+            cached = IOProviderFactory.createTempFile("cache", "", this.cacheDir);
+            try (FileOutputStream fos = IOProviderFactory.getOutputStream(cached))
+            {
+                FileSystemUtils.copyStream(result.inputStream, true, fos, false, transfer);
+            }
+        } catch (IOException e)
+        {
+            Log.w(TAG, "Failed to create cache file");
+            if (cached != null)
+                IOProviderFactory.delete(cached, IOProvider.SECURE_DELETE);
+            return null;
+        }
+
+        final long length = IOProviderFactory.length(cached);
+        final long now = System.currentTimeMillis();
+        final Entry entry = new Entry(cached.getAbsolutePath(), length, now);
+        this.indexLock.lock();
+        try
+        {
+            StatementIface stmt = null;
+            try
+            {
+                stmt = this.index.compileStatement(
+                        "INSERT OR REPLACE INTO cacheindex (uri, path, length, cache_datetime, access_datetime) VALUES(?, ?, ?, ?, ?)");
+                stmt.bind(1, uri);
+                stmt.bind(2, entry.path);
+                stmt.bind(3, length);
+                stmt.bind(4, now);
+                stmt.bind(5, now);
+
+                stmt.execute();
+            } finally
+            {
+                if (stmt != null)
+                    stmt.close();
+            }
+
+            // a row replaced for the URI (e.g. its file was removed
+            // externally) must release its file and its share of the size
+            final Entry previous = this.entries.put(uri, entry);
+            if (previous != null)
+            {
+                IOProviderFactory.delete(new File(previous.path), IOProvider.SECURE_DELETE);
+                this.cacheSize.addAndGet(-previous.length);
+            }
+
+            final long size = this.cacheSize.addAndGet(length);
+            if (this.maxCache > 0L && size > this.maxCache + (this.maxCache / 20))
+                this.evictNoSync();
+        } finally
+        {
+            this.indexLock.unlock();
+        }
+
+        try
+        {
+            result.inputStream = IOProviderFactory.getInputStream(cached);
+            result.contentLength = length;
+        } catch (IOException e)
+        {
+            Log.w(TAG, "Failed to open cache file");
+            return null;
+        }
+        return result;
+    }
+
+    private void touch(String uri, Entry entry)
+    {
+        final long now = System.currentTimeMillis();
+        entry.accessed = now;
+        this.pendingTouches.put(uri, now);
+        if (this.pendingTouches.size() < TOUCH_FLUSH_COUNT &&
+                (now - this.lastTouchFlush) < TOUCH_FLUSH_INTERVAL)
+            return;
+        // cache hits never wait on the writer; if the index is busy the
+        // touches are written by a later flush
+        if (!this.indexLock.tryLock())
+            return;
+        try
+        {
+            this.flushTouchesNoSync();
+        } finally
+        {
+            this.indexLock.unlock();
+        }
+    }
+
+    /**
+     * Writes pending access time updates to the index in a single
+     * transaction. Must be invoked while holding <code>indexLock</code>.
+     */
+    private void flushTouchesNoSync()
+    {
+        this.lastTouchFlush = System.currentTimeMillis();
+        if (this.pendingTouches.isEmpty())
+            return;
+
+        StatementIface stmt = null;
+        this.index.beginTransaction();
+        try
+        {
+            stmt = this.index.compileStatement("UPDATE cacheindex SET access_datetime = ? WHERE uri = ?");
+            for (String uri : new ArrayList<>(this.pendingTouches.keySet()))
+            {
+                final Long accessed = this.pendingTouches.remove(uri);
+                if (accessed == null)
+                    continue;
+                stmt.clearBindings();
+                stmt.bind(1, accessed.longValue());
+                stmt.bind(2, uri);
+                stmt.execute();
+            }
+            this.index.setTransactionSuccessful();
+        } finally
+        {
+            if (stmt != null)
+                stmt.close();
+            this.index.endTransaction();
+        }
+    }
+
+    /**
+     * Evicts least recently used entries until the cache is 10% under its
+     * limit. Must be invoked while holding <code>indexLock</code>.
+     */
+    private void evictNoSync()
+    {
+        // persist the access times recorded by hits
+        this.flushTouchesNoSync();
+
+        // snapshot the access times so that concurrent hits do not change
+        // the order while sorting
+        final ArrayList<Candidate> lru = new ArrayList<>(this.entries.size());
+        for (Map.Entry<String, Entry> e : this.entries.entrySet())
+            lru.add(new Candidate(e.getKey(), e.getValue()));
+        Collections.sort(lru, Candidate.LRU_ORDER);
+
+        final long target = this.maxCache - (this.maxCache / 10);
+        final ArrayList<String> evicted = new ArrayList<>();
+        for (Candidate c : lru)
+        {
+            if (this.cacheSize.get() <= target)
+                break;
+            if (!this.entries.remove(c.uri, c.entry))
+                continue;
+            IOProviderFactory.delete(new File(c.entry.path), IOProvider.SECURE_DELETE);
+            this.cacheSize.addAndGet(-c.entry.length);
+            evicted.add(c.uri);
+        }
+
+        StatementIface stmt = null;
+        this.index.beginTransaction();
+        try
+        {
+            stmt = this.index.compileStatement("DELETE FROM cacheindex WHERE uri = ?");
+            for (String uri : evicted)
+            {
+                stmt.clearBindings();
+                stmt.bind(1, uri);
+                stmt.execute();
+            }
+            this.index.setTransactionSuccessful();
+        } finally
+        {
+            if (stmt != null)
+                stmt.close();
+            this.index.endTransaction();
+        }
+        this.evictions.addAndGet(evicted.size());
+    }
+
+    /**
+     * In-memory record of an index row
+     */
+    private final static class Entry
+    {
+        final String path;
+        final long length;
+        volatile long accessed;
+
+        Entry(String path, long length, long accessed)
+        {
+            this.path = path;
+            this.length = length;
+            this.accessed = accessed;
+        }
+    }
+
+    private final static class Candidate
+    {
+        final static Comparator<Candidate> LRU_ORDER = new Comparator<Candidate>()
+        {
+            @Override
+            public int compare(Candidate a, Candidate b)
+            {
+                return Long.compare(a.accessed, b.accessed);
+            }
+        };
+
+        final String uri;
+        final Entry entry;
+        final long accessed;
+
+        Candidate(String uri, Entry entry)
+        {
+            this.uri = uri;
+            this.entry = entry;
+            this.accessed = entry.accessed;
+        }
+    }
+
+    /**
+     * Tracks an in-flight load from the source. Callers requesting the same
+     * URI wait on the instance rather than on the handler.
+     */
+    private final static class PendingLoad
+    {
+        private boolean done;
+        private boolean success;
+
+        synchronized void complete(boolean success)
+        {
+            this.success = success;
+            this.done = true;
+            this.notifyAll();
+        }
+
+        synchronized boolean await()
+        {
+            while (!this.done)
+            {
+                try
+                {
+                    this.wait();
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return this.success;
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package com.atakmap.map.elevation;
 
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.maps.coords.GeoBounds;
@@ -22,6 +37,7 @@ import com.atakmap.map.layer.raster.mosaic.MosaicDatabase2.Cursor;
 import com.atakmap.spi.PriorityServiceProviderRegistry2;
 import com.atakmap.util.Filter;
 import gov.tak.api.annotation.DontObfuscate;
+import gov.tak.api.util.Disposable;
 
 public final class ElevationManager
 {
@@ -29,6 +45,14 @@ public final class ElevationManager
     private final static Map<MosaicDatabase2, ElevationSource> dbs = new IdentityHashMap<MosaicDatabase2, ElevationSource>();
     private final static PriorityServiceProviderRegistry2<ElevationData, ImageInfo, ElevationDataSpi> dataSpiRegistry = new PriorityServiceProviderRegistry2<ElevationData, ImageInfo, ElevationDataSpi>();
 
+    /**
+     * The minimum number of samples assigned to a worker when a batch query
+     * is split across cores.
+     */
+    final static int MIN_BATCH_CHUNK_SIZE = 4096;
+    private final static int BATCH_PARALLELISM = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+    private static ExecutorService batchExecutor;
+
     private ElevationManager()
     {
     }
@@ -408,6 +432,65 @@ public final class ElevationManager
         }
     }
 
+    /**
+     * Returns elevation values for a set of locations specified as separate
+     * latitude and longitude arrays. No per sample objects are allocated and
+     * large requests are split across cores.
+     *
+     * @param latitudes  The latitudes
+     * @param longitudes The longitudes
+     * @param hae        Returns the elevation values, as meters HAE, for the
+     *                   specified locations. Values are <code>Double.NaN</code>
+     *                   where no elevation is available.
+     * @param count      The number of locations
+     * @param params     The query parameters, may be <code>null</code>
+     * @return <code>true</code> if elevation values were found for all
+     * locations, <code>false</code> otherwise
+     * @see #compileQuery(ElevationSource.QueryParameters)
+     */
+    public static boolean getElevation(double[] latitudes, double[] longitudes, double[] hae, int count, ElevationSource.QueryParameters params)
+    {
+        final CompiledQuery query = compileQuery(params);
+        try
+        {
+            return query.getElevation(latitudes, 0, longitudes, 0, hae, 0, count);
+        } finally
+        {
+            query.dispose();
+        }
+    }
+
+    /**
+     * Converts the specified query parameters to their native form once, for
+     * use with any number of subsequent batch elevation requests.
+     *
+     * <P>If the parameters do not specify a spatial filter, each request is
+     * filtered on the minimum bounding box of its locations.
+     *
+     * @param params The query parameters, may be <code>null</code>
+     * @return The compiled query. The caller is responsible for disposing
+     * the query when it is no longer needed.
+     */
+    public static CompiledQuery compileQuery(ElevationSource.QueryParameters params)
+    {
+        return new CompiledQuery(params);
+    }
+
+    /**
+     * Converts the specified filter and hints to their native form once, for
+     * use with any number of subsequent batch elevation requests.
+     *
+     * @param filter      The filter, may be <code>null</code>
+     * @param legacyHints The hints, may be <code>null</code>
+     * @return The compiled query. The caller is responsible for disposing
+     * the query when it is no longer needed.
+     * @see #compileQuery(ElevationSource.QueryParameters)
+     */
+    public static CompiledQuery compileQuery(QueryParameters filter, ElevationData.Hints legacyHints)
+    {
+        return new CompiledQuery(Adapter.adapt(filter, legacyHints));
+    }
+
     /**
      * Returns a heightmap for an {@link ElevationSource}.
      * @param value     an array to hold the results
@@ -459,6 +542,346 @@ public final class ElevationManager
 
     /**************************************************************************/
 
+    /**
+     * Query parameters in their native form, for repeated batch elevation
+     * requests over packed coordinate arrays. Requests with many samples are
+     * split across cores, with all workers sharing the native parameters.
+     *
+     * <P>Instances are thread-safe. Disposal blocks until any in-progress
+     * requests have completed.
+     */
+    public final static class CompiledQuery implements Disposable
+    {
+        private final ReadWriteLock rwlock = new ReentrantReadWriteLock();
+        private Pointer cparams;
+        private boolean disposed;
+
+        CompiledQuery(ElevationSource.QueryParameters params)
+        {
+            if (params != null)
+            {
+                this.cparams = NativeElevationSource.QueryParameters_create();
+                NativeElevationSource.QueryParameters_adapt(params, this.cparams.raw);
+            }
+            this.disposed = false;
+        }
+
+        /**
+         * Returns elevation values for a set of locations specified as
+         * separate latitude and longitude arrays.
+         *
+         * @param latitudes  The latitudes
+         * @param latOffset  The index of the first latitude
+         * @param longitudes The longitudes
+         * @param lngOffset  The index of the first longitude
+         * @param hae        Returns the elevation values, as meters HAE. Values
+         *                   are <code>Double.NaN</code> where no elevation is
+         *                   available.
+         * @param haeOffset  The index of the first elevation value
+         * @param count      The number of locations
+         * @return <code>true</code> if elevation values were found for all
+         * locations, <code>false</code> otherwise
+         * @throws IndexOutOfBoundsException if any of the arrays is too short
+         */
+        public boolean getElevation(double[] latitudes, int latOffset, double[] longitudes, int lngOffset, double[] hae, int haeOffset, int count)
+        {
+            checkRange(latitudes.length, latOffset, 1, count);
+            checkRange(longitudes.length, lngOffset, 1, count);
+            checkRange(hae.length, haeOffset, 1, count);
+            return sample(new ArraySampler(latitudes, latOffset, 1, longitudes, lngOffset, 1, hae, haeOffset), count);
+        }
+
+        /**
+         * Returns elevation values for a set of locations specified as
+         * interleaved latitude, longitude pairs.
+         *
+         * @param latLng    The locations, as latitude, longitude pairs
+         * @param offset    The index of the latitude of the first location
+         * @param hae       Returns the elevation values, as meters HAE. Values
+         *                  are <code>Double.NaN</code> where no elevation is
+         *                  available.
+         * @param haeOffset The index of the first elevation value
+         * @param count     The number of locations
+         * @return <code>true</code> if elevation values were found for all
+         * locations, <code>false</code> otherwise
+         * @throws IndexOutOfBoundsException if either array is too short
+         */
+        public boolean getElevation(double[] latLng, int offset, double[] hae, int haeOffset, int count)
+        {
+            checkRange(latLng.length, offset, 2, count);
+            checkRange(latLng.length, offset + 1, 2, count);
+            checkRange(hae.length, haeOffset, 1, count);
+            return sample(new ArraySampler(latLng, offset, 2, latLng, offset + 1, 2, hae, haeOffset), count);
+        }
+
+        /**
+         * Returns elevation values for a set of locations specified as
+         * interleaved latitude, longitude pairs. The locations are read
+         * starting at the position of <code>latLng</code> and the values are
+         * written starting at the position of <code>hae</code>. The buffer
+         * positions are not modified.
+         *
+         * <P>Direct buffers in native byte order are accessed in place.
+         *
+         * @param latLng The locations, as latitude, longitude pairs
+         * @param hae    Returns the elevation values, as meters HAE. Values
+         *               are <code>Double.NaN</code> where no elevation is
+         *               available.
+         * @param count  The number of locations
+         * @return <code>true</code> if elevation values were found for all
+         * locations, <code>false</code> otherwise
+         * @throws IndexOutOfBoundsException if either buffer has too few
+         *                                   remaining elements
+         */
+        public boolean getElevation(DoubleBuffer latLng, DoubleBuffer hae, int count)
+        {
+            if (latLng.remaining() < 2 * count || hae.remaining() < count)
+                throw new IndexOutOfBoundsException();
+            if (hae.isReadOnly())
+                throw new IllegalArgumentException("hae buffer is read-only");
+
+            if (isNativeDirect(latLng) && isNativeDirect(hae))
+            {
+                final int pos = latLng.position();
+                return sample(new DirectSampler(latLng, pos, 2, latLng, pos + 1, 2, hae, hae.position()), count);
+            } else if (latLng.hasArray() && hae.hasArray())
+            {
+                return getElevation(latLng.array(), latLng.arrayOffset() + latLng.position(), hae.array(), hae.arrayOffset() + hae.position(), count);
+            }
+
+            final double[] src = new double[2 * count];
+            latLng.duplicate().get(src);
+            final double[] dst = new double[count];
+            final boolean done = getElevation(src, 0, dst, 0, count);
+            hae.duplicate().put(dst);
+            return done;
+        }
+
+        @Override
+        public void dispose()
+        {
+            rwlock.writeLock().lock();
+            try
+            {
+                if (this.cparams != null)
+                    NativeElevationSource.QueryParameters_destruct(this.cparams);
+                this.cparams = null;
+                this.disposed = true;
+            } finally
+            {
+                rwlock.writeLock().unlock();
+            }
+        }
+
+        private boolean sample(final Sampler sampler, final int count)
+        {
+            if (count == 0)
+                return true;
+
+            rwlock.readLock().lock();
+            try
+            {
+                if (this.disposed)
+                    throw new IllegalStateException("query has been disposed");
+                final long params = (this.cparams != null) ? this.cparams.raw : 0L;
+
+                // batch workers do not split their own work, avoiding
+                // starvation of the shared pool
+                int numChunks = Math.min(BATCH_PARALLELISM, count / MIN_BATCH_CHUNK_SIZE);
+                if (numChunks <= 1 || Thread.currentThread() instanceof BatchWorker)
+                    return sampler.sample(params, 0, count);
+
+                final int chunkSize = (count + numChunks - 1) / numChunks;
+                final ExecutorService executor = getBatchExecutor();
+                final List<Future<Boolean>> chunks = new ArrayList<>(numChunks - 1);
+                for (int first = chunkSize; first < count; first += chunkSize)
+                {
+                    final int chunkFirst = first;
+                    final int chunkCount = Math.min(chunkSize, count - first);
+                    chunks.add(executor.submit(new Callable<Boolean>()
+                    {
+                        @Override
+                        public Boolean call()
+                        {
+                            return Boolean.valueOf(sampler.sample(params, chunkFirst, chunkCount));
+                        }
+                    }));
+                }
+
+                // the calling thread services the first chunk
+                Throwable error = null;
+                boolean done;
+                try
+                {
+                    done = sampler.sample(params, 0, chunkSize);
+                } catch (Throwable t)
+                {
+                    error = t;
+                    done = false;
+                }
+
+                // all workers must complete before the native parameters may
+                // be released
+                boolean interrupted = false;
+                for (Future<Boolean> chunk : chunks)
+                {
+                    while (true)
+                    {
+                        try
+                        {
+                            done &= chunk.get().booleanValue();
+                            break;
+                        } catch (InterruptedException e)
+                        {
+                            interrupted = true;
+                        } catch (ExecutionException e)
+                        {
+                            if (error == null)
+                                error = e.getCause();
+                            done = false;
+                            break;
+                        }
+                    }
+                }
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+                if (error instanceof RuntimeException)
+                    throw (RuntimeException) error;
+                else if (error instanceof Error)
+                    throw (Error) error;
+                else if (error != null)
+                    throw new RuntimeException(error);
+                return done;
+            } finally
+            {
+                rwlock.readLock().unlock();
+            }
+        }
+
+        private static boolean isNativeDirect(DoubleBuffer buffer)
+        {
+            return buffer.isDirect() && buffer.order() == ByteOrder.nativeOrder();
+        }
+
+        private static void checkRange(int length, int offset, int stride, int count)
+        {
+            if (offset < 0 || count < 0)
+                throw new IndexOutOfBoundsException();
+            if (count > 0 && (offset + (long) (count - 1) * stride) >= length)
+                throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private interface Sampler
+    {
+        /**
+         * Samples the locations <code>[first, first+count)</code>
+         */
+        boolean sample(long cparams, int first, int count);
+    }
+
+    private final static class ArraySampler implements Sampler
+    {
+        final double[] lat;
+        final int latOffset;
+        final int latStride;
+        final double[] lng;
+        final int lngOffset;
+        final int lngStride;
+        final double[] hae;
+        final int haeOffset;
+
+        ArraySampler(double[] lat, int latOffset, int latStride, double[] lng, int lngOffset, int lngStride, double[] hae, int haeOffset)
+        {
+            this.lat = lat;
+            this.latOffset = latOffset;
+            this.latStride = latStride;
+            this.lng = lng;
+            this.lngOffset = lngOffset;
+            this.lngStride = lngStride;
+            this.hae = hae;
+            this.haeOffset = haeOffset;
+        }
+
+        @Override
+        public boolean sample(long cparams, int first, int count)
+        {
+            return getElevation(lat, latOffset + first * latStride, latStride,
+                    lng, lngOffset + first * lngStride, lngStride,
+                    hae, haeOffset + first,
+                    count, cparams);
+        }
+    }
+
+    private final static class DirectSampler implements Sampler
+    {
+        final DoubleBuffer lat;
+        final int latOffset;
+        final int latStride;
+        final DoubleBuffer lng;
+        final int lngOffset;
+        final int lngStride;
+        final DoubleBuffer hae;
+        final int haeOffset;
+
+        DirectSampler(DoubleBuffer lat, int latOffset, int latStride, DoubleBuffer lng, int lngOffset, int lngStride, DoubleBuffer hae, int haeOffset)
+        {
+            this.lat = lat;
+            this.latOffset = latOffset;
+            this.latStride = latStride;
+            this.lng = lng;
+            this.lngOffset = lngOffset;
+            this.lngStride = lngStride;
+            this.hae = hae;
+            this.haeOffset = haeOffset;
+        }
+
+        @Override
+        public boolean sample(long cparams, int first, int count)
+        {
+            return getElevationDirect(lat, latOffset + first * latStride, latStride,
+                    lng, lngOffset + first * lngStride, lngStride,
+                    hae, haeOffset + first,
+                    count, cparams);
+        }
+    }
+
+    private final static class BatchWorker extends Thread
+    {
+        BatchWorker(Runnable r, String name)
+        {
+            super(r, name);
+            this.setDaemon(true);
+        }
+    }
+
+    private static synchronized ExecutorService getBatchExecutor()
+    {
+        if (batchExecutor == null)
+        {
+            // the calling thread services one chunk of each request
+            final int numWorkers = Math.max(BATCH_PARALLELISM - 1, 1);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(numWorkers, numWorkers,
+                    30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory()
+                    {
+                        final AtomicInteger count = new AtomicInteger(0);
+
+                        @Override
+                        public Thread newThread(Runnable r)
+                        {
+                            return new BatchWorker(r, "ElevationManager-batch-" + count.incrementAndGet());
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            batchExecutor = executor;
+        }
+        return batchExecutor;
+    }
+
+    /**************************************************************************/
+
     public final static class QueryParameters
     {
         public double minResolution;
@@ -523,6 +946,19 @@ public final class ElevationManager
 
     static native boolean getElevation(double[] lla, int count, long cparams);
 
+    /**
+     * Samples <code>count</code> locations. Elevation values are written
+     * contiguously starting at <code>haeOffset</code>.
+     */
+    static native boolean getElevation(double[] lat, int latOffset, int latStride, double[] lng, int lngOffset, int lngStride, double[] hae, int haeOffset, int count, long cparams);
+
+    /**
+     * Samples <code>count</code> locations from direct buffers in native byte
+     * order. Offsets are absolute, in elements. Elevation values are written
+     * contiguously starting at <code>haeOffset</code>.
+     */
+    static native boolean getElevationDirect(DoubleBuffer lat, int latOffset, int latStride, DoubleBuffer lng, int lngOffset, int lngStride, DoubleBuffer hae, int haeOffset, int count, long cparams);
+
     static native boolean createHeightmapNative(double[] value, ElevationSource source, double gsd, HeightmapParams params, HeightmapStrategy strategy);
 
     @DontObfuscate
@@ -0,0 +1,703 @@
+package com.atakmap.map.elevation;
+
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.Point;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gov.tak.api.util.Disposable;
+
+/**
+ * In-process cache of elevation samples. Elevation is sampled into square
+ * heightmap tiles on a quadtree over WGS84 latitude/longitude. Point and line
+ * queries that fall on cached tiles are computed by bilinear interpolation of
+ * the tile posts, without going through the native source cursor.
+ *
+ * <P>Tiles are keyed by source, level and tile index. Queries that do not
+ * specify a source are sampled from all sources attached to the
+ * {@link ElevationSourceManager}, filtered by the parameters the cache was
+ * created with. The tile level is selected as the coarsest level whose post
+ * spacing does not exceed the requested resolution. Queries may specify their
+ * own resolution, e.g. the resolution of the data at the location as reported
+ * by {@link #getSourceResolution(double, double)}.
+ *
+ * <P>Callers that cannot block on a tile load may use
+ * {@link #getCachedElevation(ElevationSource, double, double, double, double[])}
+ * and load missing tiles in the background with
+ * {@link #prefetch(ElevationSource, double, double, double)}.
+ *
+ * <P>The cache holds tiles up to a memory budget, evicting the least recently
+ * used tiles first. Cached tiles are invalidated when a source is attached or
+ * detached, or when an attached source reports that its content has changed.
+ *
+ * <P>Instances are thread-safe.
+ */
+public final class ElevationSampleCache implements Disposable
+{
+    /** The number of posts along each axis of a tile */
+    public final static int TILE_POSTS = 65;
+
+    /** The maximum tile level */
+    public final static int MAX_LEVEL = 20;
+
+    /** The default memory budget, in bytes */
+    public final static long DEFAULT_MAX_SIZE = 8L * 1024L * 1024L;
+
+    private final static double METERS_PER_DEGREE = 111319.49079327358d;
+    private final static long TILE_OVERHEAD = 64L;
+    private final static long TILE_SIZE = (long) TILE_POSTS * TILE_POSTS * 4L + TILE_OVERHEAD;
+
+    private final int level;
+    private final long maxSize;
+
+    private final LinkedHashMap<TileKey, Tile> tiles;
+    private long size;
+    private int generation;
+    private ElevationManager.CompiledQuery query;
+    private boolean disposed;
+
+    private final Map<ElevationSource, Boolean> observed;
+    private final ElevationSourceManager.OnSourcesChangedListener sourcesListener;
+    private final ElevationSource.OnContentChangedListener contentListener;
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong evictions = new AtomicLong(0L);
+    private final AtomicLong invalidations = new AtomicLong(0L);
+
+    /**
+     * Creates a new cache.
+     *
+     * @param params     The parameters applied to queries that do not specify
+     *                   a source, may be <code>null</code>. If a spatial
+     *                   filter is specified, tiles outside of it are empty.
+     * @param resolution The nominal resolution of the cached samples, in
+     *                   meters
+     * @param maxSize    The memory budget, in bytes
+     */
+    public ElevationSampleCache(ElevationSource.QueryParameters params, double resolution, long maxSize)
+    {
+        this.level = getLevel(resolution);
+        this.maxSize = Math.max(maxSize, TILE_SIZE);
+
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true);
+        this.size = 0L;
+        this.generation = 0;
+        this.query = ElevationManager.compileQuery(params);
+        this.disposed = false;
+
+        this.observed = new IdentityHashMap<>();
+        this.contentListener = new ElevationSource.OnContentChangedListener()
+        {
+            @Override
+            public void onContentChanged(ElevationSource source)
+            {
+                invalidate(source);
+            }
+        };
+        this.sourcesListener = new ElevationSourceManager.OnSourcesChangedListener()
+        {
+            @Override
+            public void onSourceAttached(ElevationSource src)
+            {
+                observe(src);
+                invalidate(src);
+            }
+
+            @Override
+            public void onSourceDetached(ElevationSource src)
+            {
+                unobserve(src);
+                invalidate(src);
+            }
+        };
+
+        ElevationSourceManager.addOnSourcesChangedListener(this.sourcesListener);
+        Collection<ElevationSource> sources = new ArrayList<>();
+        ElevationSourceManager.getSources(sources);
+        for (ElevationSource src : sources)
+            observe(src);
+    }
+
+    /**
+     * Returns the elevation at the specified location, sampled from all
+     * attached sources.
+     *
+     * @param latitude  The latitude
+     * @param longitude The longitude
+     * @return The elevation, as meters HAE, or <code>Double.NaN</code> if no
+     * elevation is available
+     */
+    public double getElevation(double latitude, double longitude)
+    {
+        return getElevation(null, latitude, longitude);
+    }
+
+    /**
+     * Returns the elevation at the specified location.
+     *
+     * @param source    The source, or <code>null</code> to sample from all
+     *                  attached sources
+     * @param latitude  The latitude
+     * @param longitude The longitude
+     * @return The elevation, as meters HAE, or <code>Double.NaN</code> if no
+     * elevation is available
+     */
+    public double getElevation(ElevationSource source, double latitude, double longitude)
+    {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude))
+            return Double.NaN;
+        return getTile(getTileKey(source, this.level, latitude, longitude), true).sample(latitude, longitude);
+    }
+
+    /**
+     * Returns the elevation at the specified location if the tile containing
+     * it is cached. No data is loaded.
+     *
+     * @param source     The source, or <code>null</code> to sample from all
+     *                   attached sources
+     * @param latitude   The latitude
+     * @param longitude  The longitude
+     * @param resolution The resolution of the samples, in meters
+     * @param hae        Returns the elevation, as meters HAE, or
+     *                   <code>Double.NaN</code> if no elevation is available
+     * @return <code>true</code> if the tile was cached, <code>false</code>
+     * otherwise
+     */
+    public boolean getCachedElevation(ElevationSource source, double latitude, double longitude, double resolution, double[] hae)
+    {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude))
+            return false;
+        final Tile tile;
+        synchronized (this)
+        {
+            tile = this.tiles.get(getTileKey(source, getLevel(resolution), latitude, longitude));
+        }
+        if (tile == null)
+        {
+            misses.incrementAndGet();
+            return false;
+        }
+        hits.incrementAndGet();
+        hae[0] = tile.sample(latitude, longitude);
+        return true;
+    }
+
+    /**
+     * Loads the tile containing the specified location, if it is not already
+     * cached. The load is performed on the calling thread and is not counted
+     * as a hit or miss.
+     *
+     * @param source     The source, or <code>null</code> to sample from all
+     *                   attached sources
+     * @param latitude   The latitude
+     * @param longitude  The longitude
+     * @param resolution The resolution of the samples, in meters
+     */
+    public void prefetch(ElevationSource source, double latitude, double longitude, double resolution)
+    {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude))
+            return;
+        getTile(getTileKey(source, getLevel(resolution), latitude, longitude), false);
+    }
+
+    /**
+     * Returns the resolution of the highest resolution attached source that
+     * covers the specified location.
+     *
+     * @param latitude  The latitude
+     * @param longitude The longitude
+     * @return The resolution, in meters, or <code>Double.NaN</code> if no
+     * source covers the location
+     */
+    public static double getSourceResolution(double latitude, double longitude)
+    {
+        ElevationSource.QueryParameters params = new ElevationSource.QueryParameters();
+        params.spatialFilter = new Point(longitude, latitude);
+
+        double retval = Double.NaN;
+        ElevationSource.Cursor result = null;
+        try
+        {
+            result = ElevationManager.queryElevationSources(params);
+            while (result.moveToNext())
+            {
+                final double resolution = result.getResolution();
+                if (resolution > 0d && (Double.isNaN(retval) || resolution < retval))
+                    retval = resolution;
+            }
+        } finally
+        {
+            if (result != null)
+                result.close();
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the elevation at each of the specified locations, sampled from
+     * all attached sources. Consecutive locations that fall on the same tile
+     * are computed without a cache lookup.
+     *
+     * @param latitudes  The latitudes
+     * @param longitudes The longitudes
+     * @param hae        Returns the elevation values, as meters HAE. Values
+     *                   are <code>Double.NaN</code> where no elevation is
+     *                   available.
+     * @param count      The number of locations
+     * @return <code>true</code> if elevation values were found for all
+     * locations, <code>false</code> otherwise
+     */
+    public boolean getElevation(double[] latitudes, double[] longitudes, double[] hae, int count)
+    {
+        return getElevation(null, latitudes, longitudes, hae, count);
+    }
+
+    /**
+     * Returns the elevation at each of the specified locations. Consecutive
+     * locations that fall on the same tile are computed without a cache
+     * lookup.
+     *
+     * @param source     The source, or <code>null</code> to sample from all
+     *                   attached sources
+     * @param latitudes  The latitudes
+     * @param longitudes The longitudes
+     * @param hae        Returns the elevation values, as meters HAE. Values
+     *                   are <code>Double.NaN</code> where no elevation is
+     *                   available.
+     * @param count      The number of locations
+     * @return <code>true</code> if elevation values were found for all
+     * locations, <code>false</code> otherwise
+     */
+    public boolean getElevation(ElevationSource source, double[] latitudes, double[] longitudes, double[] hae, int count)
+    {
+        boolean done = true;
+        Tile tile = null;
+        for (int i = 0; i < count; i++)
+        {
+            final double lat = latitudes[i];
+            final double lng = longitudes[i];
+            if (Double.isNaN(lat) || Double.isNaN(lng))
+            {
+                hae[i] = Double.NaN;
+                done = false;
+                continue;
+            }
+            if (tile == null || !tile.contains(lat, lng))
+                tile = getTile(getTileKey(source, this.level, lat, lng), true);
+            else
+                hits.incrementAndGet();
+            hae[i] = tile.sample(lat, lng);
+            done &= !Double.isNaN(hae[i]);
+        }
+        return done;
+    }
+
+    /**
+     * Evicts all cached tiles.
+     */
+    public void clear()
+    {
+        synchronized (this)
+        {
+            this.tiles.clear();
+            this.size = 0L;
+            this.generation++;
+        }
+    }
+
+    /**
+     * @return The number of queries serviced by a cached tile
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of queries that required a tile to be loaded
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return The fraction of queries serviced by a cached tile, in the range
+     * <code>[0, 1]</code>
+     */
+    public double getHitRate()
+    {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return (total > 0L) ? (double) h / (double) total : 0d;
+    }
+
+    /**
+     * @return The number of tiles evicted to stay within the memory budget
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return The number of times the cache was invalidated by a source
+     * change
+     */
+    public long getInvalidationCount()
+    {
+        return invalidations.get();
+    }
+
+    /**
+     * @return The number of cached tiles
+     */
+    public synchronized int getTileCount()
+    {
+        return this.tiles.size();
+    }
+
+    /**
+     * @return The approximate memory used by the cached tiles, in bytes
+     */
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return The memory budget, in bytes
+     */
+    public long getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * Resets the hit, miss, eviction and invalidation counts.
+     */
+    public void resetMetrics()
+    {
+        hits.set(0L);
+        misses.set(0L);
+        evictions.set(0L);
+        invalidations.set(0L);
+    }
+
+    @Override
+    public void dispose()
+    {
+        ElevationSourceManager.removeOnSourcesChangedListener(this.sourcesListener);
+        final ElevationManager.CompiledQuery q;
+        synchronized (this)
+        {
+            if (this.disposed)
+                return;
+            this.disposed = true;
+            for (ElevationSource src : this.observed.keySet())
+                src.removeOnContentChangedListener(this.contentListener);
+            this.observed.clear();
+            this.tiles.clear();
+            this.size = 0L;
+            this.generation++;
+            q = this.query;
+            this.query = null;
+        }
+        if (q != null)
+            q.dispose();
+    }
+
+    private static TileKey getTileKey(ElevationSource source, int level, double latitude, double longitude)
+    {
+        final double span = getTileSpan(level);
+        final int tileX = clamp((int) Math.floor((longitude + 180d) / span), 0, (2 << level) - 1);
+        final int tileY = clamp((int) Math.floor((90d - latitude) / span), 0, (1 << level) - 1);
+        return new TileKey(source, level, tileX, tileY);
+    }
+
+    private Tile getTile(TileKey key, boolean countMetrics)
+    {
+        final int loadGeneration;
+        ElevationManager.CompiledQuery q = null;
+        synchronized (this)
+        {
+            final Tile tile = this.tiles.get(key);
+            if (tile != null)
+            {
+                if (countMetrics)
+                    hits.incrementAndGet();
+                return tile;
+            }
+            loadGeneration = this.generation;
+            if (key.source == null)
+                q = this.query;
+        }
+
+        if (countMetrics)
+            misses.incrementAndGet();
+
+        // the tile is loaded without holding the lock; concurrent misses on
+        // the same tile may load it more than once
+        final Tile tile = loadTile(key, q);
+
+        synchronized (this)
+        {
+            // tiles loaded across an invalidation are used only for the
+            // current request
+            if (loadGeneration == this.generation && !this.tiles.containsKey(key))
+            {
+                this.tiles.put(key, tile);
+                this.size += tile.getSize();
+                final Iterator<Tile> it = this.tiles.values().iterator();
+                while (this.size > this.maxSize && it.hasNext())
+                {
+                    final Tile evicted = it.next();
+                    if (evicted == tile)
+                        break;
+                    it.remove();
+                    this.size -= evicted.getSize();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        return tile;
+    }
+
+    private Tile loadTile(TileKey key, ElevationManager.CompiledQuery q)
+    {
+        final double span = getTileSpan(key.level);
+        final double west = -180d + key.x * span;
+        final double north = 90d - key.y * span;
+        final double postSpacing = span / (TILE_POSTS - 1);
+
+        final int numPosts = TILE_POSTS * TILE_POSTS;
+        final double[] hae = new double[numPosts];
+        if (key.source != null)
+        {
+            ElevationManager.HeightmapParams hmparams = new ElevationManager.HeightmapParams();
+            hmparams.bounds = new Envelope(west, north - span, 0d, west + span, north, 0d);
+            hmparams.numPostsLat = TILE_POSTS;
+            hmparams.numPostsLng = TILE_POSTS;
+            ElevationManager.createHeightmap(hae, key.source, postSpacing * METERS_PER_DEGREE, hmparams, ElevationManager.HeightmapStrategy.HighestResolution);
+        } else if (q != null)
+        {
+            final double[] lat = new double[numPosts];
+            final double[] lng = new double[numPosts];
+            int idx = 0;
+            for (int row = 0; row < TILE_POSTS; row++)
+            {
+                for (int col = 0; col < TILE_POSTS; col++)
+                {
+                    lat[idx] = north - row * postSpacing;
+                    lng[idx] = west + col * postSpacing;
+                    idx++;
+                }
+            }
+            try
+            {
+                q.getElevation(lat, 0, lng, 0, hae, 0, numPosts);
+            } catch (IllegalStateException e)
+            {
+                // the cache was disposed during the load
+                return new Tile(west, north, span, null);
+            }
+        } else
+        {
+            return new Tile(west, north, span, null);
+        }
+
+        float[] posts = null;
+        for (int i = 0; i < numPosts; i++)
+        {
+            if (!Double.isNaN(hae[i]))
+            {
+                posts = new float[numPosts];
+                break;
+            }
+        }
+        if (posts != null)
+        {
+            for (int i = 0; i < numPosts; i++)
+                posts[i] = (float) hae[i];
+        }
+        return new Tile(west, north, span, posts);
+    }
+
+    private synchronized void observe(ElevationSource src)
+    {
+        if (this.disposed || this.observed.containsKey(src))
+            return;
+        src.addOnContentChangedListener(this.contentListener);
+        this.observed.put(src, Boolean.TRUE);
+    }
+
+    private synchronized void unobserve(ElevationSource src)
+    {
+        if (this.observed.remove(src) != null)
+            src.removeOnContentChangedListener(this.contentListener);
+    }
+
+    private void invalidate(ElevationSource source)
+    {
+        synchronized (this)
+        {
+            // tiles sampled from all sources are affected by any change
+            final Iterator<Map.Entry<TileKey, Tile>> it = this.tiles.entrySet().iterator();
+            while (it.hasNext())
+            {
+                final Map.Entry<TileKey, Tile> entry = it.next();
+                if (entry.getKey().source == null || entry.getKey().source == source)
+                {
+                    it.remove();
+                    this.size -= entry.getValue().getSize();
+                }
+            }
+            this.generation++;
+        }
+        invalidations.incrementAndGet();
+    }
+
+    static int getLevel(double resolution)
+    {
+        if (Double.isNaN(resolution) || resolution <= 0d)
+            return MAX_LEVEL;
+        final double span = resolution * (TILE_POSTS - 1) / METERS_PER_DEGREE;
+        final int level = (int) Math.ceil(Math.log(180d / span) / Math.log(2d));
+        return clamp(level, 0, MAX_LEVEL);
+    }
+
+    static double getTileSpan(int level)
+    {
+        return 180d / (1 << level);
+    }
+
+    private static int clamp(int v, int min, int max)
+    {
+        return Math.max(min, Math.min(v, max));
+    }
+
+    final static class TileKey
+    {
+        final ElevationSource source;
+        final int level;
+        final int x;
+        final int y;
+
+        TileKey(ElevationSource source, int level, int x, int y)
+        {
+            this.source = source;
+            this.level = level;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (!(o instanceof TileKey))
+                return false;
+            final TileKey other = (TileKey) o;
+            return this.source == other.source &&
+                    this.level == other.level &&
+                    this.x == other.x &&
+                    this.y == other.y;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = System.identityHashCode(this.source);
+            result = 31 * result + this.level;
+            result = 31 * result + this.x;
+            result = 31 * result + this.y;
+            return result;
+        }
+    }
+
+    final static class Tile
+    {
+        final double west;
+        final double north;
+        final double span;
+        /** row major posts, first row is north; <code>null</code> if empty */
+        final float[] posts;
+
+        Tile(double west, double north, double span, float[] posts)
+        {
+            this.west = west;
+            this.north = north;
+            this.span = span;
+            this.posts = posts;
+        }
+
+        boolean contains(double latitude, double longitude)
+        {
+            return longitude >= this.west && longitude <= (this.west + this.span) &&
+                    latitude <= this.north && latitude >= (this.north - this.span);
+        }
+
+        long getSize()
+        {
+            return (this.posts != null) ? TILE_SIZE : TILE_OVERHEAD;
+        }
+
+        double sample(double latitude, double longitude)
+        {
+            if (this.posts == null)
+                return Double.NaN;
+
+            final int last = TILE_POSTS - 1;
+            final double x = Math.max(0d, Math.min((longitude - this.west) / this.span * last, last));
+            final double y = Math.max(0d, Math.min((this.north - latitude) / this.span * last, last));
+            final int x0 = Math.min((int) x, last - 1);
+            final int y0 = Math.min((int) y, last - 1);
+            final double wx = x - x0;
+            final double wy = y - y0;
+
+            final int idx = y0 * TILE_POSTS + x0;
+            final double ul = this.posts[idx];
+            final double ur = this.posts[idx + 1];
+            final double ll = this.posts[idx + TILE_POSTS];
+            final double lr = this.posts[idx + TILE_POSTS + 1];
+
+            // voids are excluded from the interpolation
+            double sum = 0d;
+            double weight = 0d;
+            double w;
+            w = (1d - wx) * (1d - wy);
+            if (!Double.isNaN(ul) && w > 0d)
+            {
+                sum += ul * w;
+                weight += w;
+            }
+            w = wx * (1d - wy);
+            if (!Double.isNaN(ur) && w > 0d)
+            {
+                sum += ur * w;
+                weight += w;
+            }
+            w = (1d - wx) * wy;
+            if (!Double.isNaN(ll) && w > 0d)
+            {
+                sum += ll * w;
+                weight += w;
+            }
+            w = wx * wy;
+            if (!Double.isNaN(lr) && w > 0d)
+            {
+                sum += lr * w;
+                weight += w;
+            }
+            return (weight > 0d) ? sum / weight : Double.NaN;
+        }
+    }
+}
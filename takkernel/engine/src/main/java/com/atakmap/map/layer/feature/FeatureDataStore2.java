@@ -301,6 +301,15 @@ public interface FeatureDataStore2 extends Disposable
         public int limit;
         public int offset;
 
+        /**
+         * If non-<code>null</code>, the query resumes immediately after the
+         * feature described by the continuation (keyset pagination). Data
+         * stores that are able to seek to the continuation ignore
+         * {@link #offset}; callers should continue to populate
+         * {@link #offset} for data stores that are not.
+         */
+        public Continuation continuation;
+
         public long timeout;
 
         public FeatureQueryParameters()
@@ -321,6 +330,7 @@ public interface FeatureDataStore2 extends Disposable
             this.order = null;
             this.limit = 0;
             this.offset = 0;
+            this.continuation = null;
             this.timeout = 5000L;
         }
 
@@ -342,6 +352,7 @@ public interface FeatureDataStore2 extends Disposable
             this.order = (other.order == null) ? null : new ArrayList<Order>(other.order);
             this.limit = other.limit;
             this.offset = other.offset;
+            this.continuation = other.continuation;
         }
 
         /**********************************************************************/
@@ -383,6 +394,41 @@ public interface FeatureDataStore2 extends Disposable
             }
         }
 
+        /**
+         * The position of the last feature returned by a query, used to
+         * request the following page of results without re-reading the
+         * features that precede it.
+         *
+         * <P>Seeking is supported when the results are ordered by
+         * {@link Order.ID}, or are unordered, in which case the results are
+         * returned in ID order. It is also supported when the results are
+         * ordered by {@link Order.Name} followed by {@link Order.ID}.
+         */
+        public final static class Continuation
+        {
+            /**
+             * The ID of the last feature returned
+             */
+            public final long fid;
+            /**
+             * The value of the leading sort key for the last feature
+             * returned, e.g. its name when ordering by {@link Order.Name}.
+             * Ignored when ordering by ID.
+             */
+            public final Object sortKey;
+
+            public Continuation(long fid)
+            {
+                this(fid, null);
+            }
+
+            public Continuation(long fid, Object sortKey)
+            {
+                this.fid = fid;
+                this.sortKey = sortKey;
+            }
+        }
+
         @DontObfuscate
         public static abstract class SpatialOp
         {
@@ -0,0 +1,18 @@
+package com.atakmap.map.layer.feature.datastore;
+
+/**
+ * Callback for the progress of a bulk insertion into a feature database.
+ */
+public interface BulkInsertionCallback
+{
+    /**
+     * Invoked periodically as features are inserted and once more when the
+     * insertion, including the rebuild of the indices, has completed.
+     * Throughput may be derived as <code>numFeatures / elapsed</code>.
+     *
+     * @param numFeatures   The number of features inserted so far
+     * @param elapsed       The elapsed time since the insertion started, in
+     *                      milliseconds
+     */
+    void onProgress(long numFeatures, long elapsed);
+}
@@ -7,7 +7,6 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -84,6 +83,17 @@ abstract class FDB2 extends AbstractFeatureDataStore3
 
     private final static int DATABASE_VERSION = 5;
 
+    private final static int FEATURE_INDEX_LOD = 0x01;
+    private final static int FEATURE_INDEX_NAME = 0x02;
+    private final static int FEATURE_INDEX_SPATIAL = 0x04;
+
+    /** number of features inserted between bulk insertion progress reports */
+    private final static int BULK_INSERT_PROGRESS_INTERVAL = 10000;
+
+    private final static int KEYSET_NONE = 0;
+    private final static int KEYSET_FID = 1;
+    private final static int KEYSET_NAME = 2;
+
     final String databaseFile;
 
     final boolean spatialIndexEnabled;
@@ -273,24 +283,88 @@ abstract class FDB2 extends AbstractFeatureDataStore3
 
     private void createIndicesNoSync()
     {
-        this.database
-                .execute(
-                        "CREATE INDEX IF NOT EXISTS IdxFeaturesLevelOfDetail ON features(min_lod, max_lod)",
-                        null);
-        this.database.execute(
-                "CREATE INDEX IF NOT EXISTS IdxFeaturesName ON features(name)",
-                null);
+        this.createFeatureIndicesNoSync(FEATURE_INDEX_LOD | FEATURE_INDEX_NAME | FEATURE_INDEX_SPATIAL);
+    }
+
+    private void createFeatureIndicesNoSync(int indices)
+    {
+        if (MathUtils.hasBits(indices, FEATURE_INDEX_LOD))
+            this.database
+                    .execute(
+                            "CREATE INDEX IF NOT EXISTS IdxFeaturesLevelOfDetail ON features(min_lod, max_lod)",
+                            null);
+        if (MathUtils.hasBits(indices, FEATURE_INDEX_NAME))
+            this.database.execute(
+                    "CREATE INDEX IF NOT EXISTS IdxFeaturesName ON features(name)",
+                    null);
+
+        if (MathUtils.hasBits(indices, FEATURE_INDEX_SPATIAL))
+        {
+            CursorIface result = null;
+            try
+            {
+                result = this.database.query("SELECT CreateSpatialIndex(\'features\', \'geometry\')", null);
+                result.moveToNext();
+            } finally
+            {
+                if (result != null)
+                    result.close();
+            }
+        }
+    }
+
+    /**
+     * Drops the indices on the <code>features</code> table.
+     *
+     * @return The indices that were dropped, as a bitmask of the
+     * <code>FEATURE_INDEX_*</code> flags
+     */
+    private int dropFeatureIndicesNoSync()
+    {
+        int retval = 0;
 
         CursorIface result = null;
         try
         {
-            result = this.database.query("SELECT CreateSpatialIndex(\'features\', \'geometry\')", null);
-            result.moveToNext();
+            result = this.database.query("SELECT name FROM sqlite_master WHERE type = \'index\' AND tbl_name = \'features\'", null);
+            while (result.moveToNext())
+            {
+                final String name = result.getString(0);
+                if ("IdxFeaturesLevelOfDetail".equals(name))
+                    retval |= FEATURE_INDEX_LOD;
+                else if ("IdxFeaturesName".equals(name))
+                    retval |= FEATURE_INDEX_NAME;
+            }
         } finally
         {
             if (result != null)
                 result.close();
         }
+
+        if (MathUtils.hasBits(retval, FEATURE_INDEX_LOD))
+            this.database.execute("DROP INDEX IF EXISTS IdxFeaturesLevelOfDetail", null);
+        if (MathUtils.hasBits(retval, FEATURE_INDEX_NAME))
+            this.database.execute("DROP INDEX IF EXISTS IdxFeaturesName", null);
+
+        if (Databases.getTableNames(this.database).contains("idx_features_geometry"))
+        {
+            result = null;
+            try
+            {
+                result = this.database.query("SELECT DisableSpatialIndex(\'features\', \'geometry\')",
+                        null);
+                result.moveToNext();
+            } finally
+            {
+                if (result != null)
+                    result.close();
+            }
+
+            this.database.execute("DROP TABLE idx_features_geometry", null);
+            retval |= FEATURE_INDEX_SPATIAL;
+        }
+
+        return retval;
     }
 
     private void dropIndicesNoSync()
@@ -940,6 +1014,15 @@ abstract class FDB2 extends AbstractFeatureDataStore3
             }
         }
 
+        // the offset may only be pushed into SQL when a single query is issued
+        final boolean multiplexed = (fsCheck.size() + (fsNoCheck.isEmpty() ? 0 : 1)) > 1;
+        // merged results compare names via compareToIgnoreCase, which does
+        // not match the NOCASE collation used by the name seek for non-ASCII
+        // names
+        int keyset = getKeysetMode(params);
+        if (multiplexed && keyset == KEYSET_NAME)
+            keyset = KEYSET_NONE;
+
         LinkedList<FeatureCursor> retval = new LinkedList<>();
         if (fsCheck != null)
         {
@@ -951,6 +1034,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3
 
                 if (!this.buildParamsWhereClauseCheck(params, fs, where))
                     continue;
+                if (keyset != KEYSET_NONE)
+                    appendKeyset(keyset, params.continuation, where);
 
                 subsql.append(sql);
                 subargs.addAll(args);
@@ -963,7 +1048,10 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                     subargs.addAll(where.getBindArgs());
                 }
 
-                if (params.order != null)
+                if (keyset != KEYSET_NONE)
+                {
+                    appendKeysetOrder(keyset, subsql);
+                } else if (params.order != null)
                 {
                     boolean first = true;
                     StringBuilder orderSql = new StringBuilder();
@@ -977,16 +1065,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                 }
 
                 if (params.limit > 0)
-                {
-                    subsql.append(" LIMIT ?");
-                    subargs.add(new BindArgument(params.limit));
-
-                    if (fsCheck.size() == 1 && fsNoCheck.isEmpty() && params.offset > 0)
-                    {
-                        subsql.append(" OFFSET ?");
-                        subargs.add(new BindArgument(params.offset));
-                    }
-                }
+                    appendLimitOffset(params, keyset, multiplexed, subsql, subargs);
 
                 CursorIface result = null;
                 try
@@ -1023,6 +1102,8 @@ abstract class FDB2 extends AbstractFeatureDataStore3
 
                 if (!this.buildParamsWhereClauseNoCheck(params, (fsNoCheck.size() == this.featureSets.size()) ? null : fsNoCheck, where))
                     continue;
+                if (keyset != KEYSET_NONE)
+                    appendKeyset(keyset, params.continuation, where);
 
                 subsql.append(sql);
                 subargs.addAll(args);
@@ -1035,7 +1116,10 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                     subargs.addAll(where.getBindArgs());
                 }
 
-                if (params.order != null)
+                if (keyset != KEYSET_NONE)
+                {
+                    appendKeysetOrder(keyset, subsql);
+                } else if (params.order != null)
                 {
                     boolean first = true;
                     StringBuilder orderSql = new StringBuilder();
@@ -1049,16 +1133,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                 }
 
                 if (params.limit > 0)
-                {
-                    subsql.append(" LIMIT ?");
-                    subargs.add(new BindArgument(params.limit));
-
-                    if (fsCheck.isEmpty() && params.offset > 0)
-                    {
-                        subsql.append(" OFFSET ?");
-                        subargs.add(new BindArgument(params.offset));
-                    }
-                }
+                    appendLimitOffset(params, keyset, multiplexed, subsql, subargs);
 
                 CursorIface result = null;
                 try
@@ -1097,7 +1172,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3
             }
             FeatureCursor cursor = new MultiplexingFeatureCursor(retval, order);
             if (params.limit > 0)
-                cursor = new BruteForceLimitOffsetFeatureCursor(cursor, params.offset, params.limit);
+                cursor = new BruteForceLimitOffsetFeatureCursor(cursor, (keyset != KEYSET_NONE) ? 0 : params.offset, params.limit);
             return cursor;
         }
     }
@@ -2094,9 +2169,16 @@ abstract class FDB2 extends AbstractFeatureDataStore3
             InsertContext ctx = new InsertContext();
             try
             {
+                boolean inserted = false;
                 final FeatureDefinition2 def = Adapters.adapt(features);
                 while (features.moveToNext())
+                {
                     this.insertFeatureImpl(ctx, features.getFsid(), features.getId(), def, features.getVersion());
+                    inserted = true;
+                }
+                // mark the transaction for commit and notify on release
+                if (inserted)
+                    this.checkBatchSuppressDispatch();
             } finally
             {
                 ctx.dispose();
@@ -2107,6 +2189,74 @@ abstract class FDB2 extends AbstractFeatureDataStore3
         }
     }
 
+    /**
+     * Inserts a large number of features. All features are inserted in a
+     * single transaction using prepared statements that are reused across
+     * features. The spatial index and the secondary indices on the features
+     * table are dropped for the duration of the insert and rebuilt once, in a
+     * single pass, after the last feature has been inserted.
+     *
+     * <P>Because the indices are rebuilt over the full table, this method
+     * should be preferred over {@link #insertFeatures(FeatureCursor)} only
+     * when the number of features being inserted is large relative to the
+     * current content of the database. Queries are blocked until the insert
+     * completes.
+     *
+     * @param features  The features to insert
+     * @param callback  Receives progress as features are inserted; may be
+     *                  <code>null</code>
+     *
+     * @return The number of features inserted
+     *
+     * @throws DataStoreException
+     */
+    public long insertFeaturesBulk(FeatureCursor features, BulkInsertionCallback callback) throws DataStoreException
+    {
+        this.checkModificationFlags(MODIFY_FEATURESET_FEATURE_INSERT);
+
+        internalAcquireModifyLock(this, true, true);
+        try
+        {
+            synchronized (this)
+            {
+                final long start = System.currentTimeMillis();
+                long count = 0L;
+
+                final int droppedIndices = this.dropFeatureIndicesNoSync();
+                InsertContext ctx = new InsertContext();
+                try
+                {
+                    final FeatureDefinition2 def = Adapters.adapt(features);
+                    while (features.moveToNext())
+                    {
+                        this.insertFeatureImpl(ctx, features.getFsid(), features.getId(), def, features.getVersion());
+                        count++;
+                        if (callback != null && (count % BULK_INSERT_PROGRESS_INTERVAL) == 0L)
+                            callback.onProgress(count, System.currentTimeMillis() - start);
+                    }
+                } finally
+                {
+                    ctx.dispose();
+                    this.createFeatureIndicesNoSync(droppedIndices);
+                }
+
+                // mark the transaction for commit and notify on release
+                if (count > 0L)
+                    this.checkBatchSuppressDispatch();
+
+                final long elapsed = System.currentTimeMillis() - start;
+                if (callback != null)
+                    callback.onProgress(count, elapsed);
+                Log.d(ABS_TAG, "Bulk inserted " + count + " features in " + elapsed + "ms (" +
+                        ((elapsed > 0L) ? (count * 1000L / elapsed) : count) + " features/s)");
+                return count;
+            }
+        } finally
+        {
+            this.releaseModifyLock();
+        }
+    }
+
     long insertFeatureImpl(InsertContext ctx, long fsid, long fid, FeatureDefinition def, long version)
     {
         if (version == FEATURE_VERSION_NONE)
@@ -2270,12 +2420,14 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                     }
                     case FeatureDataSource.FeatureDefinition.GEOM_ATAK_GEOMETRY:
                     {
-                        if (ctx.insertFeatureWkbStatement == null)
+                        // encode directly to the SpatiaLite blob, avoiding the
+                        // intermediate WKB and its parse on insert
+                        if (ctx.insertFeatureBlobStatement == null)
                         {
-                            ctx.insertFeatureWkbStatement = this.database
+                            ctx.insertFeatureBlobStatement = this.database
                                     .compileStatement("INSERT INTO features " +
                                             "(fid, " + // 1
-                                            "name, " + // 2
+                                            " name, " + // 2
                                             " geometry, " + // 3
                                             " style_id," + // 4
                                             " attribs_id," + // 5
@@ -2289,19 +2441,15 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                                             " altitude_mode, " + // 13
                                             " extrude, " + // 14
                                             " line_mode)" + // 15
-                                            " VALUES (?, ?, GeomFromWKB(?, 4326), ?, ?, 1, 0, 0, ?, 0, ?, ?, ?, ?, ?)");
+                                            " VALUES (?, ?, ?, ?, ?, 1, 0, 0, ?, 0, ?, ?, ?, ?, ?)");
                             continue;
                         }
-                        stmt = ctx.insertFeatureWkbStatement;
+                        stmt = ctx.insertFeatureBlobStatement;
 
-                        byte[] wkb = null;
+                        byte[] blob = null;
                         if (def.getRawGeometry() != null)
-                        {
-                            Geometry g = (Geometry) def.getRawGeometry();
-                            wkb = new byte[g.computeWkbSize()];
-                            g.toWkb(ByteBuffer.wrap(wkb).order(ByteOrder.nativeOrder()));
-                        }
-                        ctx.insertGeomArg.set(wkb);
+                            blob = GeometryFactory.toSpatiaLiteBlob((Geometry) def.getRawGeometry(), 4326);
+                        ctx.insertGeomArg.set(blob);
                         break;
                     }
                     default:
@@ -2756,7 +2904,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                     whereClause,
                     indexedSpatialFilter &&
                             this.spatialIndexEnabled,
-                    params.limit);
+                    (params.continuation == null) ? params.limit : 0);
         }
 
         return true;
@@ -2878,7 +3026,7 @@ abstract class FDB2 extends AbstractFeatureDataStore3
                     whereClause,
                     indexedSpatialFilter &&
                             this.spatialIndexEnabled,
-                    params.limit);
+                    (params.continuation == null) ? params.limit : 0);
         }
 
         whereClause.beginCondition();
@@ -2890,6 +3038,85 @@ abstract class FDB2 extends AbstractFeatureDataStore3
 
     /**************************************************************************/
 
+    /**
+     * Returns the seek that may be used to resume the query after its
+     * continuation, or {@link #KEYSET_NONE} if the query has no continuation
+     * or its ordering cannot be resumed by key.
+     */
+    private static int getKeysetMode(FeatureQueryParameters params)
+    {
+        if (params.continuation == null)
+            return KEYSET_NONE;
+        if (params.order == null || params.order.isEmpty())
+            return KEYSET_FID;
+
+        Iterator<FeatureQueryParameters.Order> iter = params.order.iterator();
+        final FeatureQueryParameters.Order leading = iter.next();
+        // FID is unique, any ordering that follows it is irrelevant
+        if (leading instanceof FeatureQueryParameters.Order.ID)
+            return KEYSET_FID;
+        if (leading instanceof FeatureQueryParameters.Order.Name &&
+                (!iter.hasNext() || iter.next() instanceof FeatureQueryParameters.Order.ID))
+            return KEYSET_NAME;
+        return KEYSET_NONE;
+    }
+
+    private static void appendKeyset(int keyset, FeatureQueryParameters.Continuation continuation, WhereClauseBuilder whereClause)
+    {
+        whereClause.beginCondition();
+        if (keyset == KEYSET_NAME)
+        {
+            if (continuation.sortKey == null)
+            {
+                // NULL names sort first
+                whereClause.append("((features.name IS NULL AND features.fid > ?) OR features.name IS NOT NULL)");
+                whereClause.addArg(continuation.fid);
+            } else
+            {
+                final String name = continuation.sortKey.toString();
+                whereClause.append("(features.name > ? OR (features.name = ? AND features.fid > ?))");
+                whereClause.addArg(name);
+                whereClause.addArg(name);
+                whereClause.addArg(continuation.fid);
+            }
+        } else
+        {
+            whereClause.append("features.fid > ?");
+            whereClause.addArg(continuation.fid);
+        }
+    }
+
+    private static void appendKeysetOrder(int keyset, StringBuilder sql)
+    {
+        if (keyset == KEYSET_NAME)
+            sql.append(" ORDER BY features.name ASC, features.fid ASC");
+        else
+            sql.append(" ORDER BY features.fid ASC");
+    }
+
+    private static void appendLimitOffset(FeatureQueryParameters params, int keyset, boolean multiplexed, StringBuilder sql, LinkedList<BindArgument> args)
+    {
+        sql.append(" LIMIT ?");
+        if (keyset != KEYSET_NONE)
+        {
+            // the continuation replaces the offset
+            args.add(new BindArgument(params.limit));
+        } else if (multiplexed)
+        {
+            // the offset is applied to the merged results; each query must
+            // supply every row up to the end of the page
+            args.add(new BindArgument(params.offset + params.limit));
+        } else
+        {
+            args.add(new BindArgument(params.limit));
+            if (params.offset > 0)
+            {
+                sql.append(" OFFSET ?");
+                args.add(new BindArgument(params.offset));
+            }
+        }
+    }
+
     private static boolean appendOrder(FeatureQueryParameters.Order order, StringBuilder sql, LinkedList<BindArgument> args, boolean first)
     {
         if (order instanceof FeatureQueryParameters.Order.ID)
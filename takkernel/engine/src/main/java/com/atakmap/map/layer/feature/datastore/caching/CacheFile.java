@@ -78,6 +78,21 @@ public final class CacheFile implements Disposable
 
         public FeatureCursor getFeatures(Object context) throws IOException;
 
+        /**
+         * Returns the features that intersect the specified geometry, in
+         * ascending FID order. Feature content is read in place and only
+         * decoded on access.
+         *
+         * @param filter                    The spatial filter or
+         *                                  <code>null</code> for all
+         *                                  features
+         * @param ignoredFeatureProperties  The feature properties that will
+         *                                  not be accessed
+         * @return The matching features or <code>null</code> if the format
+         * does not support querying the file in place
+         */
+        public FeatureCursor queryFeatures(Object context, Geometry filter, int ignoredFeatureProperties) throws IOException;
+
         public Feature findFeature(Object context, long fid) throws IOException;
 
         public void getFIDs(Object context, Set<Long> fids) throws IOException;
@@ -89,13 +104,14 @@ public final class CacheFile implements Disposable
         public void writeCache(FileChannel channel, ByteOrder endian, int level, int index, long timestamp, FeatureDataStore2 features, FeatureQueryParameters params) throws IOException, DataStoreException;
     }
 
-    private final static int CURRENT_VERSION = 2;
+    private final static int CURRENT_VERSION = 3;
     private final static Map<Integer, Format> FORMATS = new HashMap<Integer, Format>();
 
     static
     {
         FORMATS.put(1, CacheFileV1.INSTANCE);
         FORMATS.put(2, CacheFileV1.INSTANCE);
+        FORMATS.put(3, CacheFileV3.INSTANCE);
     }
 
     private int clientVersion;
@@ -254,6 +270,22 @@ public final class CacheFile implements Disposable
         };
     }
 
+    /**
+     * Queries the features in place, without reading them into memory.
+     *
+     * @param filter                    The spatial filter or
+     *                                  <code>null</code> for all features
+     * @param ignoredFeatureProperties  The feature properties that will not
+     *                                  be accessed
+     * @return The features that intersect the filter, in ascending FID
+     * order, or <code>null</code> if the cache file's format does not
+     * support in place queries
+     */
+    public FeatureCursor queryFeatures(Geometry filter, int ignoredFeatureProperties) throws IOException
+    {
+        return this.format.queryFeatures(this.context, filter, ignoredFeatureProperties);
+    }
+
     public Feature findFeature(long fid) throws IOException
     {
         return this.format.findFeature(this.context, fid);
@@ -0,0 +1,249 @@
+package com.atakmap.map.layer.feature.datastore.caching;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureSetCursor;
+import com.atakmap.map.layer.feature.cursor.FeatureCursorWrapper;
+import com.atakmap.map.layer.feature.datastore.AbstractReadOnlyFeatureDataStore2;
+import com.atakmap.map.layer.feature.datastore.FeatureSetDatabase2;
+
+/**
+ * Read-only data store over a {@link CacheFile} that supports in place
+ * queries. Queries that filter only on FID, FSID and bounds are evaluated
+ * against the cache file's columns and spatial index, without decoding the
+ * features that do not pass. All other queries are serviced by an in-memory
+ * copy of the cache file's content that is created on first use.
+ *
+ * <P>The data store takes ownership of the cache file.
+ */
+final class CacheFileFeatureDataStore extends AbstractReadOnlyFeatureDataStore2
+{
+    private final CacheFile cache;
+    private final String uri;
+    private FeatureSetDatabase2 materialized;
+
+    CacheFileFeatureDataStore(CacheFile cache, String uri)
+    {
+        super(0, 0);
+
+        this.cache = cache;
+        this.uri = uri;
+        this.materialized = null;
+    }
+
+    @Override
+    public FeatureCursor queryFeatures(FeatureQueryParameters params) throws DataStoreException
+    {
+        if (!isInPlaceQuery(params))
+            return this.materialize().queryFeatures(params);
+
+        final FeatureCursor result;
+        try
+        {
+            result = this.cache.queryFeatures((params != null) ? params.spatialFilter : null,
+                    (params != null) ? params.ignoredFeatureProperties : 0);
+        } catch (IOException e)
+        {
+            throw new DataStoreException(e);
+        }
+        if (params == null)
+            return result;
+        return new FilteredCursor(result, params);
+    }
+
+    @Override
+    public FeatureSetCursor queryFeatureSets(FeatureSetQueryParameters params) throws DataStoreException
+    {
+        return this.materialize().queryFeatureSets(params);
+    }
+
+    @Override
+    public boolean hasTimeReference()
+    {
+        return false;
+    }
+
+    @Override
+    public long getMinimumTimestamp()
+    {
+        return TIMESTAMP_NONE;
+    }
+
+    @Override
+    public long getMaximumTimestamp()
+    {
+        return TIMESTAMP_NONE;
+    }
+
+    @Override
+    public String getUri()
+    {
+        return this.uri;
+    }
+
+    @Override
+    public boolean hasCache()
+    {
+        return false;
+    }
+
+    @Override
+    public void clearCache()
+    {
+    }
+
+    @Override
+    public long getCacheSize()
+    {
+        return 0L;
+    }
+
+    @Override
+    public synchronized void dispose()
+    {
+        this.cache.dispose();
+        if (this.materialized != null)
+        {
+            this.materialized.dispose();
+            this.materialized = null;
+        }
+    }
+
+    /**
+     * Returns the in-memory copy of the cache file content, creating it if
+     * necessary.
+     */
+    private synchronized FeatureSetDatabase2 materialize() throws DataStoreException
+    {
+        if (this.materialized != null)
+            return this.materialized;
+
+        FeatureSetDatabase2 retval = new FeatureSetDatabase2(null);
+        try
+        {
+            retval.acquireModifyLock(true);
+            FeatureCursor features = null;
+            try
+            {
+                for (int i = 0; i < this.cache.getNumFeatureSets(); i++)
+                    retval.insertFeatureSet(this.cache.getFeatureSet(i));
+
+                features = this.cache.getFeatures();
+                retval.insertFeatures(features);
+            } finally
+            {
+                if (features != null)
+                    features.close();
+                retval.releaseModifyLock();
+            }
+        } catch (InterruptedException e)
+        {
+            // as 'retval' was created in the local scope, nothing else could
+            // be holding a modify lock on it
+            throw new IllegalStateException(e);
+        } catch (IOException e)
+        {
+            retval.dispose();
+            throw new DataStoreException(e);
+        }
+
+        this.materialized = retval;
+        return retval;
+    }
+
+    /**
+     * @return <code>true</code> if the query may be evaluated against the
+     * cache file's columns and spatial index, <code>false</code> otherwise
+     */
+    private static boolean isInPlaceQuery(FeatureQueryParameters params)
+    {
+        if (params == null)
+            return true;
+        if (params.names != null ||
+                params.geometryTypes != null ||
+                (params.attributeFilters != null && !params.attributeFilters.isEmpty()) ||
+                (params.spatialOps != null && !params.spatialOps.isEmpty()) ||
+                params.minimumTimestamp != TIMESTAMP_NONE ||
+                params.maximumTimestamp != TIMESTAMP_NONE)
+        {
+
+            return false;
+        }
+        // the cache file is ordered by FID
+        if (params.order != null && !params.order.isEmpty() &&
+                !(params.order.iterator().next() instanceof FeatureQueryParameters.Order.ID))
+        {
+
+            return false;
+        }
+        // only FSID filtering is supported for feature sets; all feature sets
+        // are visible
+        final FeatureSetQueryParameters fsFilter = params.featureSetFilter;
+        if (fsFilter != null &&
+                (fsFilter.names != null ||
+                        fsFilter.types != null ||
+                        fsFilter.providers != null ||
+                        !Double.isNaN(fsFilter.minResolution) ||
+                        !Double.isNaN(fsFilter.maxResolution) ||
+                        fsFilter.limit != 0 ||
+                        fsFilter.offset != 0))
+        {
+
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies the FID, FSID, continuation, limit and offset filters to a
+     * cursor over the cache file. Only the fixed width feature properties are
+     * accessed for features that are filtered.
+     */
+    private final static class FilteredCursor extends FeatureCursorWrapper
+    {
+        private final Set<Long> fids;
+        private final Set<Long> fsids;
+        private final boolean seek;
+        private final long seekFid;
+        private int skip;
+        private int remaining;
+
+        FilteredCursor(FeatureCursor impl, FeatureQueryParameters params)
+        {
+            super(impl);
+
+            this.fids = params.ids;
+            this.fsids = (params.featureSetFilter != null) ? params.featureSetFilter.ids : null;
+            this.seek = (params.continuation != null);
+            this.seekFid = this.seek ? params.continuation.fid : FEATURE_ID_NONE;
+            this.skip = params.offset;
+            this.remaining = (params.limit > 0) ? params.limit : -1;
+        }
+
+        @Override
+        public boolean moveToNext()
+        {
+            while (this.remaining != 0 && this.impl.moveToNext())
+            {
+                if (this.seek && this.impl.getId() <= this.seekFid)
+                    continue;
+                if (this.fids != null && !this.fids.contains(this.impl.getId()))
+                    continue;
+                if (this.fsids != null && !this.fsids.contains(this.impl.getFsid()))
+                    continue;
+                if (this.skip > 0)
+                {
+                    this.skip--;
+                    continue;
+                }
+                if (this.remaining > 0)
+                    this.remaining--;
+                return true;
+            }
+            return false;
+        }
+    }
+}
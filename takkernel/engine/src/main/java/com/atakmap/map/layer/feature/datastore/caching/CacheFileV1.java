@@ -353,6 +353,13 @@ class CacheFileV1 implements CacheFile.Format
         };
     }
 
+    @Override
+    public FeatureCursor queryFeatures(Object context, Geometry filter, int ignoredFeatureProperties) throws IOException
+    {
+        // records are read sequentially through the channel
+        return null;
+    }
+
     @Override
     public Feature findFeature(Object context, long fid) throws IOException
     {
@@ -599,61 +606,11 @@ class CacheFileV1 implements CacheFile.Format
                 writeCtx.writes++;
             }
 
-            // capture the feature set table offset
-            featureSetTableOff = channel.position();
-
-            FeatureSetCursor fsResult = null;
-            try
-            {
-                fsResult = features.queryFeatureSets(fsParams);
-                long recordsIndexWritePtr = recordsIndexPtr;
-                writeCtx.buf.clear();
-                while (fsResult.moveToNext())
-                {
-                    FeatureSet fs = fsResult.get();
-
-                    // update the index record
-                    Unsafe.setLongs(recordsIndexWritePtr, fs.getId(), channel.position() + writeCtx.buf.position());
-                    recordsIndexWritePtr += 16;
-
-                    flushIfNecessary(writeCtx, 38);
-                    writeCtx.buf.putLong(fs.getId());
-                    writeCtx.buf.putLong(fs.getVersion());
-                    writeUTF8String(writeCtx, fs.getProvider());
-                    writeUTF8String(writeCtx, fs.getType());
-                    writeUTF8String(writeCtx, fs.getName());
-                    writeCtx.buf.putDouble(fs.getMinResolution());
-                    writeCtx.buf.putDouble(fs.getMaxResolution());
-                }
-            } finally
-            {
-                if (fsResult != null)
-                    fsResult.close();
-            }
-            if (writeCtx.buf.position() > 0)
-            {
-                writeCtx.buf.flip();
-                channel.write(writeCtx.buf);
-                writeCtx.writes++;
-            }
-
-            // capture the feature set index offset
-            featureSetIndexOff = channel.position();
-
-            // write the feature sets records index
-            writeCtx.buf.clear();
-            for (int i = 0; i < fsParams.ids.size(); i++)
-            {
-                flushIfNecessary(writeCtx, 16);
-                writeCtx.buf.putLong(Unsafe.getLong(recordsIndexPtr + (i * 16)));
-                writeCtx.buf.putLong(Unsafe.getLong(recordsIndexPtr + (i * 16) + 8));
-            }
-            if (writeCtx.buf.position() > 0)
-            {
-                writeCtx.buf.flip();
-                channel.write(writeCtx.buf);
-                writeCtx.writes++;
-            }
+            // write the feature sets
+            final long[] featureSetOffsets = new long[2];
+            writeFeatureSets(writeCtx, features, fsParams, featureSetOffsets);
+            featureSetTableOff = featureSetOffsets[0];
+            featureSetIndexOff = featureSetOffsets[1];
 
             // write the header
             channel.position(headerOff);
@@ -684,9 +641,83 @@ class CacheFileV1 implements CacheFile.Format
         }
     }
 
+    /**
+     * Writes the feature set records table, followed by the feature set
+     * records index, at the current position of the channel.
+     *
+     * @param offsets   Returns the offsets of the feature set records table
+     *                  and the feature set records index, respectively
+     * @return The number of feature set records written
+     */
+    static int writeFeatureSets(Context writeCtx, FeatureDataStore2 features, FeatureSetQueryParameters fsParams, long[] offsets) throws IOException, DataStoreException
+    {
+        final FileChannel channel = writeCtx.channel;
+        final long[] index = new long[fsParams.ids.size() * 2];
+        int numFeatureSets = 0;
+
+        // capture the feature set table offset
+        offsets[0] = channel.position();
+
+        FeatureSetCursor fsResult = null;
+        try
+        {
+            fsResult = features.queryFeatureSets(fsParams);
+            writeCtx.buf.clear();
+            while (fsResult.moveToNext() && numFeatureSets < fsParams.ids.size())
+            {
+                FeatureSet fs = fsResult.get();
+
+                // update the index record
+                index[numFeatureSets * 2] = fs.getId();
+                index[numFeatureSets * 2 + 1] = channel.position() + writeCtx.buf.position();
+                numFeatureSets++;
+
+                flushIfNecessary(writeCtx, 38);
+                writeCtx.buf.putLong(fs.getId());
+                writeCtx.buf.putLong(fs.getVersion());
+                writeUTF8String(writeCtx, fs.getProvider());
+                writeUTF8String(writeCtx, fs.getType());
+                writeUTF8String(writeCtx, fs.getName());
+                flushIfNecessary(writeCtx, 16);
+                writeCtx.buf.putDouble(fs.getMinResolution());
+                writeCtx.buf.putDouble(fs.getMaxResolution());
+            }
+        } finally
+        {
+            if (fsResult != null)
+                fsResult.close();
+        }
+        if (writeCtx.buf.position() > 0)
+        {
+            writeCtx.buf.flip();
+            channel.write(writeCtx.buf);
+            writeCtx.writes++;
+        }
+
+        // capture the feature set index offset
+        offsets[1] = channel.position();
+
+        // write the feature sets records index
+        writeCtx.buf.clear();
+        for (int i = 0; i < fsParams.ids.size(); i++)
+        {
+            flushIfNecessary(writeCtx, 16);
+            writeCtx.buf.putLong(index[i * 2]);
+            writeCtx.buf.putLong(index[i * 2 + 1]);
+        }
+        if (writeCtx.buf.position() > 0)
+        {
+            writeCtx.buf.flip();
+            channel.write(writeCtx.buf);
+            writeCtx.writes++;
+        }
+
+        return numFeatureSets;
+    }
+
     /**************************************************************************/
 
-    private static void ensureBuffer(Context ctx, int length)
+    static void ensureBuffer(Context ctx, int length)
     {
         if (ctx.buf == null || ctx.buf.capacity() < length)
         {
@@ -695,9 +726,12 @@ class CacheFileV1 implements CacheFile.Format
         }
     }
 
-    private static void fillIfNecessary(Context ctx, int required) throws IOException
+    static void fillIfNecessary(Context ctx, int required) throws IOException
     {
-        if (required > ctx.buf.capacity())
+        if (ctx.channel == null)
+        {
+            // the buffer holds the entire file, nothing more to read
+        } else if (required > ctx.buf.capacity())
         {
             // allocate a new buffer that can accommodate the required size and
             // copy the current contents to its head
@@ -727,7 +761,7 @@ class CacheFileV1 implements CacheFile.Format
             throw new EOFException();
     }
 
-    private static void flushIfNecessary(Context ctx, int required) throws IOException
+    static void flushIfNecessary(Context ctx, int required) throws IOException
     {
         if (required > ctx.buf.capacity())
         {
@@ -758,7 +792,7 @@ class CacheFileV1 implements CacheFile.Format
             throw new IllegalStateException();
     }
 
-    private static String readUTF8String(Context ctx) throws IOException
+    static String readUTF8String(Context ctx) throws IOException
     {
         fillIfNecessary(ctx, 2);
         final int strLen = ctx.buf.getShort() & 0xFFFF;
@@ -774,7 +808,7 @@ class CacheFileV1 implements CacheFile.Format
         return retval.toString();
     }
 
-    private static void writeUTF8String(Context ctx, String str) throws IOException
+    static void writeUTF8String(Context ctx, String str) throws IOException
     {
         if (str == null)
         {
@@ -791,7 +825,7 @@ class CacheFileV1 implements CacheFile.Format
         }
     }
 
-    private static void decodeAttribute(Context ctx, AttributeSet attr) throws IOException
+    static void decodeAttribute(Context ctx, AttributeSet attr) throws IOException
     {
         final String key = readUTF8String(ctx);
         fillIfNecessary(ctx, 1);
@@ -909,7 +943,7 @@ class CacheFileV1 implements CacheFile.Format
         }
     }
 
-    private static void encodeAttribute(Context ctx, AttributeSet attr, String key) throws IOException
+    static void encodeAttribute(Context ctx, AttributeSet attr, String key) throws IOException
     {
         writeUTF8String(ctx, key);
 
@@ -0,0 +1,1344 @@
+package com.atakmap.map.layer.feature.datastore.caching;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.atakmap.map.layer.feature.Adapters;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.DataStoreException;
+import com.atakmap.map.layer.feature.Feature;
+import com.atakmap.map.layer.feature.FeatureCursor;
+import com.atakmap.map.layer.feature.FeatureDataStore2;
+import com.atakmap.map.layer.feature.FeatureDefinition2;
+import com.atakmap.map.layer.feature.FeatureDataStore2.FeatureSetQueryParameters;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.GeometryCollection;
+import com.atakmap.map.layer.feature.geometry.GeometryFactory;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+import com.atakmap.map.layer.feature.ogr.style.FeatureStyleParser;
+import com.atakmap.map.layer.feature.style.Style;
+import com.atakmap.nio.Buffers;
+
+/**
+ * Columnar cache file format that is memory mapped on read. The fixed width
+ * feature properties, including the feature envelopes, are stored as packed
+ * columns so that queries may be evaluated without decoding the variable
+ * length feature records. Feature columns are ordered by FID.
+ *
+ * <P>The columns, the spatial index and the feature records are each mapped
+ * read-only and accessed in place, so only the pages that are touched are
+ * read. Where a region cannot be mapped, the columns and spatial index are
+ * read into memory and each record is read from the file channel when one of
+ * its name, geometry, style or attributes is accessed. A mapping is released
+ * when it is garbage collected, not when the channel is closed.
+ *
+ * <PRE>
+ * Header
+ * timestamp [8 bytes]
+ * number of features [4 bytes]
+ * number of feature sets [4 bytes]
+ * level [4 bytes]
+ * index [4 bytes]
+ * terminal [1 byte]
+ * reserved [3 bytes]
+ * spatial index node size [4 bytes]
+ * feature columns offset [8 bytes]
+ * feature records table offset [8 bytes]
+ * spatial index offset [8 bytes]
+ * number of spatial index entries [4 bytes]
+ * reserved [4 bytes]
+ * feature set index offset [8 bytes]
+ * feature set records table offset [8 bytes]
+ * <p>
+ * Feature Columns
+ * FID [8 bytes x number of features]
+ * FSID [8 bytes x number of features]
+ * version [8 bytes x number of features]
+ * timestamp [8 bytes x number of features]
+ * record file offset [8 bytes x number of features]
+ * envelope minX, minY, maxX, maxY [32 bytes x number of features]
+ * <p>
+ * Feature Records Table Record
+ * name UTF-8 [varying]
+ * Geometry WKB [varying]
+ * Style OGR [varying]
+ * Attributes [varying]
+ * <p>
+ * Spatial Index
+ * node envelope minX, minY, maxX, maxY [32 bytes x number of nodes]
+ * node child [4 bytes x number of nodes]
+ * <p>
+ * Feature Set Index Record and Feature Set Records Table are per V1
+ * </PRE>
+ *
+ * <P>The spatial index is a packed R-tree. The leaf entries are stored first,
+ * followed by each level of internal nodes, with the root stored last. The
+ * child of a leaf entry is the feature column index; the child of an internal
+ * node is the index of its first child node. Features without geometry are
+ * not indexed. Index candidates are refined with an exact intersection test
+ * against the query geometry.
+ */
+final class CacheFileV3 extends CacheFileV1
+{
+    public final static CacheFile.Format INSTANCE = new CacheFileV3();
+
+    private final static int HEADER_SIZE = 80;
+    private final static int DEFAULT_NODE_SIZE = 16;
+
+    private final static int FEATURE_COLUMNS = 9;
+
+    private final static int COLUMN_FID = 0;
+    private final static int COLUMN_FSID = 1;
+    private final static int COLUMN_VERSION = 2;
+    private final static int COLUMN_TIMESTAMP = 3;
+    private final static int COLUMN_RECORD_OFFSET = 4;
+
+    final static class ColumnsContext extends Context
+    {
+        /** the feature columns */
+        ByteBuffer columns;
+        /** the spatial index nodes */
+        ByteBuffer index;
+        /** the feature records table, <code>null</code> if it is not mapped */
+        ByteBuffer records;
+        /**
+         * the record offsets in file order, bounding the extent of each
+         * record when records are read through the channel
+         */
+        long[] recordStarts;
+        long columnsOffset;
+        int nodeSize;
+        int numIndexed;
+        int[] levelBounds;
+    }
+
+    private CacheFileV3()
+    {
+    }
+
+    @Override
+    public Object openFormatContext(FileChannel channel, ByteOrder endian) throws IOException
+    {
+        ColumnsContext retval = new ColumnsContext();
+        retval.channel = channel;
+        retval.endian = endian;
+        retval.headerOffset = channel.position();
+        retval.metadata = null;
+        retval.recordsIndexOffset = 0xFFFFFFFFFFFFFFFFL;
+        retval.recordsTableOffset = 0xFFFFFFFFFFFFFFFFL;
+        retval.spatialIndexOffset = 0xFFFFFFFFFFFFFFFFL;
+        retval.featureSetIndexOffset = 0xFFFFFFFFFFFFFFFFL;
+        retval.featureSetTableOffset = 0xFFFFFFFFFFFFFFFFL;
+        retval.buf = null;
+
+        return retval;
+    }
+
+    @Override
+    public void closeFormatContext(Object context)
+    {
+        // the channel is owned, and closed, by the cache file
+        final ColumnsContext ctx = (ColumnsContext) context;
+        ctx.columns = null;
+        ctx.index = null;
+        ctx.records = null;
+        ctx.recordStarts = null;
+    }
+
+    @Override
+    public CacheFile.Metadata readCacheMetadata(Object context) throws IOException
+    {
+        final ColumnsContext ctx = (ColumnsContext) context;
+        if (ctx.metadata == null)
+        {
+            final ByteBuffer header = readFully(ctx, ctx.headerOffset, HEADER_SIZE);
+
+            CacheFile.Metadata metadata = new CacheFile.Metadata();
+            metadata.timestamp = header.getLong(0);
+            metadata.numFeatures = header.getInt(8);
+            metadata.numFeatureSets = header.getInt(12);
+            metadata.level = header.getInt(16);
+            metadata.index = header.getInt(20);
+            metadata.terminal = (header.get(24) != 0x00);
+            ctx.nodeSize = header.getInt(28);
+            ctx.columnsOffset = header.getLong(32);
+            ctx.recordsTableOffset = header.getLong(40);
+            ctx.spatialIndexOffset = header.getLong(48);
+            ctx.numIndexed = header.getInt(56);
+            ctx.featureSetIndexOffset = header.getLong(64);
+            ctx.featureSetTableOffset = header.getLong(72);
+
+            if (metadata.numFeatures < 0 || ctx.numIndexed < 0 || ctx.numIndexed > metadata.numFeatures || ctx.nodeSize < 2)
+                return null;
+
+            ctx.levelBounds = computeLevelBounds(ctx.numIndexed, ctx.nodeSize);
+            final int numNodes = (ctx.levelBounds.length > 0) ? ctx.levelBounds[ctx.levelBounds.length - 1] : 0;
+            final long columnsSize = (long) metadata.numFeatures * FEATURE_COLUMNS * 8L;
+            final long indexSize = (long) numNodes * 36L;
+            // records are written contiguously, ahead of the columns
+            final long recordsSize = ctx.columnsOffset - ctx.recordsTableOffset;
+            if (columnsSize > Integer.MAX_VALUE || indexSize > Integer.MAX_VALUE || recordsSize < 0L)
+                return null;
+
+            ctx.columns = map(ctx, ctx.columnsOffset, columnsSize);
+            if (ctx.columns == null)
+                ctx.columns = readFully(ctx, ctx.columnsOffset, (int) columnsSize);
+            ctx.index = map(ctx, ctx.spatialIndexOffset, indexSize);
+            if (ctx.index == null)
+                ctx.index = readFully(ctx, ctx.spatialIndexOffset, (int) indexSize);
+            ctx.records = map(ctx, ctx.recordsTableOffset, recordsSize);
+            if (ctx.records == null)
+            {
+                ctx.recordStarts = new long[metadata.numFeatures];
+                for (int i = 0; i < metadata.numFeatures; i++)
+                    ctx.recordStarts[i] = ctx.columns.getLong((COLUMN_RECORD_OFFSET * metadata.numFeatures * 8) + (i * 8));
+                Arrays.sort(ctx.recordStarts);
+            }
+
+            ctx.metadata = metadata;
+        }
+        return ctx.metadata;
+    }
+
+    @Override
+    public Feature getFeature(Object context, int recordIdx) throws IOException
+    {
+        final ColumnsContext ctx = (ColumnsContext) context;
+        if (recordIdx < 0 || recordIdx >= ctx.metadata.numFeatures)
+            throw new IllegalArgumentException();
+
+        ColumnsFeatureCursor result = new ColumnsFeatureCursor(ctx, new int[] {recordIdx}, 1, 0);
+        result.moveToNext();
+        return result.get();
+    }
+
+    @Override
+    public FeatureCursor getFeatures(Object context) throws IOException
+    {
+        return this.queryFeatures(context, null, 0);
+    }
+
+    @Override
+    public FeatureCursor queryFeatures(Object context, Geometry filter, int ignoredFeatureProperties) throws IOException
+    {
+        final ColumnsContext ctx = (ColumnsContext) context;
+        if (filter == null)
+            return new ColumnsFeatureCursor(ctx, null, ctx.metadata.numFeatures, ignoredFeatureProperties);
+
+        final int[] records = refine(ctx, search(ctx, filter.getEnvelope()), filter);
+        return new ColumnsFeatureCursor(ctx, records, records.length, ignoredFeatureProperties);
+    }
+
+    @Override
+    public Feature findFeature(Object context, long fid) throws IOException
+    {
+        final ColumnsContext ctx = (ColumnsContext) context;
+
+        // FID column is sorted
+        int lo = 0;
+        int hi = ctx.metadata.numFeatures - 1;
+        while (lo <= hi)
+        {
+            final int mid = (lo + hi) >>> 1;
+            final long midFid = getFid(ctx, mid);
+            if (midFid < fid)
+                lo = mid + 1;
+            else if (midFid > fid)
+                hi = mid - 1;
+            else
+                return this.getFeature(ctx, mid);
+        }
+        return null;
+    }
+
+    @Override
+    public void getFIDs(Object context, Set<Long> fids) throws IOException
+    {
+        final ColumnsContext ctx = (ColumnsContext) context;
+        for (int i = 0; i < ctx.metadata.numFeatures; i++)
+            fids.add(getFid(ctx, i));
+    }
+
+    @Override
+    public boolean findIntersectingFeatures(Object context, Set<Long> fids, Geometry filter)
+    {
+        final ColumnsContext ctx = (ColumnsContext) context;
+        final int[] records = refine(ctx, search(ctx, filter.getEnvelope()), filter);
+        for (int i = 0; i < records.length; i++)
+            fids.add(getFid(ctx, records[i]));
+        return true;
+    }
+
+    @Override
+    public void writeCache(FileChannel channel, ByteOrder endian, int level, int index, long timestamp, FeatureDataStore2 features, FeatureDataStore2.FeatureQueryParameters params) throws IOException, DataStoreException
+    {
+        FeatureSetQueryParameters fsParams = new FeatureSetQueryParameters();
+        fsParams.ids = new HashSet<Long>();
+
+        final long headerOff = channel.position();
+        final long recordsTableOff = headerOff + HEADER_SIZE;
+
+        int limit = Integer.MAX_VALUE;
+        if (params != null && params.limit > 0 && params.limit < Integer.MAX_VALUE)
+        {
+            params = new FeatureDataStore2.FeatureQueryParameters(params);
+            params.limit++;
+            limit = params.limit;
+        }
+
+        Context writeCtx = new Context();
+        writeCtx.endian = endian;
+        writeCtx.buf = ByteBuffer.allocate(10240);
+        writeCtx.buf.order(endian);
+        writeCtx.channel = channel;
+
+        // write the records, accumulating the columns
+        channel.position(recordsTableOff);
+        writeCtx.seeks++;
+
+        final Columns columns = new Columns();
+        FeatureCursor results = null;
+        try
+        {
+            results = features.queryFeatures(params);
+            final FeatureDefinition2 defn2 = Adapters.adapt(results);
+            while (results.moveToNext())
+            {
+                final long recordOff = channel.position() + writeCtx.buf.position();
+
+                // name
+                writeUTF8String(writeCtx, results.getName());
+
+                // geometry
+                Geometry geometry = null;
+                if (results.getRawGeometry() == null)
+                {
+                    flushIfNecessary(writeCtx, 4);
+                    writeCtx.buf.putInt(0);
+                } else
+                {
+                    if (results.getGeomCoding() == FeatureCursor.GEOM_ATAK_GEOMETRY)
+                        geometry = (Geometry) results.getRawGeometry();
+                    else
+                        geometry = results.get().getGeometry();
+                    final int wkbSize = geometry.computeWkbSize();
+                    flushIfNecessary(writeCtx, 4 + wkbSize);
+                    writeCtx.buf.putInt(wkbSize);
+                    geometry.toWkb(writeCtx.buf);
+                }
+
+                // style
+                if (results.getRawStyle() == null)
+                {
+                    writeUTF8String(writeCtx, null);
+                } else if (results.getStyleCoding() == FeatureCursor.STYLE_OGR)
+                {
+                    writeUTF8String(writeCtx, (String) results.getRawStyle());
+                } else
+                {
+                    final Style style = results.get().getStyle();
+                    writeUTF8String(writeCtx, FeatureStyleParser.pack(style));
+                }
+
+                // attributes
+                AttributeSet attr = results.getAttributes();
+                if (attr != null)
+                {
+                    Set<String> keys = attr.getAttributeNames();
+                    flushIfNecessary(writeCtx, 4);
+                    writeCtx.buf.putInt(keys.size());
+                    for (String key : keys)
+                    {
+                        encodeAttribute(writeCtx, attr, key);
+                    }
+                } else
+                {
+                    flushIfNecessary(writeCtx, 4);
+                    writeCtx.buf.putInt(0);
+                }
+
+                fsParams.ids.add(results.getFsid());
+                columns.add(results.getId(),
+                        results.getFsid(),
+                        results.getVersion(),
+                        defn2.getTimestamp(),
+                        recordOff,
+                        (geometry != null) ? geometry.getEnvelope() : null);
+            }
+        } finally
+        {
+            if (results != null)
+                results.close();
+        }
+
+        // flush any outstanding records
+        if (writeCtx.buf.position() > 0)
+        {
+            writeCtx.buf.flip();
+            channel.write(writeCtx.buf);
+            writeCtx.writes++;
+        }
+
+        // write the feature columns, ordered by FID
+        final long columnsOff = channel.position();
+        final int[] order = columns.sortByFid();
+        writeCtx.buf.clear();
+        for (int i = 0; i < columns.size; i++)
+        {
+            flushIfNecessary(writeCtx, 8);
+            writeCtx.buf.putLong(columns.fids[order[i]]);
+        }
+        for (int i = 0; i < columns.size; i++)
+        {
+            flushIfNecessary(writeCtx, 8);
+            writeCtx.buf.putLong(columns.fsids[order[i]]);
+        }
+        for (int i = 0; i < columns.size; i++)
+        {
+            flushIfNecessary(writeCtx, 8);
+            writeCtx.buf.putLong(columns.versions[order[i]]);
+        }
+        for (int i = 0; i < columns.size; i++)
+        {
+            flushIfNecessary(writeCtx, 8);
+            writeCtx.buf.putLong(columns.timestamps[order[i]]);
+        }
+        for (int i = 0; i < columns.size; i++)
+        {
+            flushIfNecessary(writeCtx, 8);
+            writeCtx.buf.putLong(columns.offsets[order[i]]);
+        }
+        final double[] envelopes = new double[columns.size * 4];
+        int numIndexed = 0;
+        for (int i = 0; i < columns.size; i++)
+        {
+            System.arraycopy(columns.envelopes, order[i] * 4, envelopes, i * 4, 4);
+            if (!Double.isNaN(envelopes[i * 4]))
+                numIndexed++;
+
+            flushIfNecessary(writeCtx, 32);
+            for (int j = 0; j < 4; j++)
+                writeCtx.buf.putDouble(envelopes[i * 4 + j]);
+        }
+        if (writeCtx.buf.position() > 0)
+        {
+            writeCtx.buf.flip();
+            channel.write(writeCtx.buf);
+            writeCtx.writes++;
+        }
+
+        // build and write the spatial index
+        final long spatialIndexOff = channel.position();
+        final int[] levelBounds = computeLevelBounds(numIndexed, DEFAULT_NODE_SIZE);
+        final int numNodes = (levelBounds.length > 0) ? levelBounds[levelBounds.length - 1] : 0;
+        final double[] nodeBoxes = new double[numNodes * 4];
+        final int[] nodeChildren = new int[numNodes];
+        buildIndex(envelopes, columns.size, numIndexed, DEFAULT_NODE_SIZE, levelBounds, nodeBoxes, nodeChildren);
+
+        writeCtx.buf.clear();
+        for (int i = 0; i < nodeBoxes.length; i++)
+        {
+            flushIfNecessary(writeCtx, 8);
+            writeCtx.buf.putDouble(nodeBoxes[i]);
+        }
+        for (int i = 0; i < nodeChildren.length; i++)
+        {
+            flushIfNecessary(writeCtx, 4);
+            writeCtx.buf.putInt(nodeChildren[i]);
+        }
+        if (writeCtx.buf.position() > 0)
+        {
+            writeCtx.buf.flip();
+            channel.write(writeCtx.buf);
+            writeCtx.writes++;
+        }
+
+        // write the feature sets
+        final long[] featureSetOffsets = new long[2];
+        writeFeatureSets(writeCtx, features, fsParams, featureSetOffsets);
+
+        // write the header
+        channel.position(headerOff);
+        writeCtx.seeks++;
+        writeCtx.buf.clear();
+
+        writeCtx.buf.putLong(timestamp); // 8
+        writeCtx.buf.putInt(columns.size); // 12
+        writeCtx.buf.putInt(fsParams.ids.size()); // 16
+        writeCtx.buf.putInt(level); // 20
+        writeCtx.buf.putInt(index); // 24
+        writeCtx.buf.put((columns.size < limit) ?
+                (byte) 0x01 : (byte) 0x00); // 25
+        Buffers.skip(writeCtx.buf, 3); // 28
+        writeCtx.buf.putInt(DEFAULT_NODE_SIZE); // 32
+        writeCtx.buf.putLong(columnsOff); // 40
+        writeCtx.buf.putLong(recordsTableOff); // 48
+        writeCtx.buf.putLong(spatialIndexOff); // 56
+        writeCtx.buf.putInt(numIndexed); // 60
+        writeCtx.buf.putInt(0); // 64
+        writeCtx.buf.putLong(featureSetOffsets[1]); // 72
+        writeCtx.buf.putLong(featureSetOffsets[0]); // 80
+        writeCtx.buf.flip();
+
+        channel.write(writeCtx.buf);
+        writeCtx.writes++;
+    }
+
+    /**************************************************************************/
+
+    private static long getFid(ColumnsContext ctx, int record)
+    {
+        return ctx.columns.getLong(record * 8);
+    }
+
+    private static long getColumn(ColumnsContext ctx, int column, int record)
+    {
+        return ctx.columns.getLong((column * ctx.metadata.numFeatures * 8) + (record * 8));
+    }
+
+    private static double getEnvelope(ColumnsContext ctx, int record, int ordinate)
+    {
+        return ctx.columns.getDouble((5 * ctx.metadata.numFeatures * 8) + (record * 32) + (ordinate * 8));
+    }
+
+    /**
+     * Maps the specified range of the file read-only.
+     *
+     * @return The mapped range or <code>null</code> if the range cannot be
+     * mapped, in which case it should be read through the channel
+     */
+    private static ByteBuffer map(Context ctx, long position, long length) throws IOException
+    {
+        if (position < 0L || (position + length) > ctx.channel.size())
+            throw new EOFException();
+        if (length > Integer.MAX_VALUE)
+            return null;
+        try
+        {
+            final ByteBuffer retval = ctx.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            retval.order(ctx.endian);
+            return retval;
+        } catch (UnsupportedOperationException e)
+        {
+            return null;
+        } catch (IOException e)
+        {
+            // the mapping failed, typically for lack of address space
+            return null;
+        }
+    }
+
+    /**
+     * Reads the specified range of the file using positional reads, leaving
+     * the channel position unchanged.
+     */
+    private static ByteBuffer readFully(Context ctx, long position, int length) throws IOException
+    {
+        ByteBuffer retval = ByteBuffer.allocate(length);
+        retval.order(ctx.endian);
+        readFully(ctx.channel, position, retval);
+        retval.flip();
+        return retval;
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer dst) throws IOException
+    {
+        while (dst.hasRemaining())
+        {
+            final int n = channel.read(dst, position);
+            if (n < 0)
+                throw new EOFException();
+            position += n;
+        }
+    }
+
+    /**
+     * Returns the subset of the index candidates whose geometry intersects
+     * the filter, in the same order.
+     */
+    private static int[] refine(ColumnsContext ctx, int[] records, Geometry filter)
+    {
+        final Envelope bounds = filter.getEnvelope();
+        final boolean rectangle = isRectangle(filter);
+
+        int[] retval = new int[records.length];
+        int count = 0;
+        ColumnsFeatureCursor geometries = null;
+        for (int i = 0; i < records.length; i++)
+        {
+            final int record = records[i];
+            final double minX = getEnvelope(ctx, record, 0);
+            final double minY = getEnvelope(ctx, record, 1);
+            final double maxX = getEnvelope(ctx, record, 2);
+            final double maxY = getEnvelope(ctx, record, 3);
+
+            final boolean intersects;
+            if (rectangle && minX >= bounds.minX && maxX <= bounds.maxX && minY >= bounds.minY && maxY <= bounds.maxY)
+            {
+                // wholly inside of a rectangular filter
+                intersects = true;
+            } else if (minX == maxX && minY == maxY)
+            {
+                // points are tested without reading the record
+                intersects = intersects(new Point(minX, minY), filter);
+            } else
+            {
+                if (geometries == null)
+                    geometries = new ColumnsFeatureCursor(ctx, records, records.length,
+                            FeatureDataStore2.PROPERTY_FEATURE_NAME |
+                                    FeatureDataStore2.PROPERTY_FEATURE_STYLE |
+                                    FeatureDataStore2.PROPERTY_FEATURE_ATTRIBUTES);
+                geometries.moveTo(i);
+                final Geometry geometry = (Geometry) geometries.getRawGeometry();
+                intersects = (geometry != null) && intersects(geometry, filter);
+            }
+            if (intersects)
+                retval[count++] = record;
+        }
+        return (count == retval.length) ? retval : Arrays.copyOf(retval, count);
+    }
+
+    /**
+     * Tests two geometries for intersection in the plane of their
+     * coordinates. Boundaries are considered, so geometries that only touch
+     * intersect. A collection intersects if any of its members does.
+     */
+    static boolean intersects(Geometry a, Geometry b)
+    {
+        if (a instanceof GeometryCollection)
+        {
+            for (Geometry child : ((GeometryCollection) a).getGeometries())
+                if (intersects(child, b))
+                    return true;
+            return false;
+        }
+        if (b instanceof GeometryCollection)
+            return intersects(b, a);
+
+        final Envelope ea = a.getEnvelope();
+        final Envelope eb = b.getEnvelope();
+        if (ea.minX > eb.maxX || ea.maxX < eb.minX || ea.minY > eb.maxY || ea.maxY < eb.minY)
+            return false;
+
+        final double[][] pa = getPaths(a);
+        final double[][] pb = getPaths(b);
+        if (pa == null || pb == null)
+            return true;
+        if (pa.length == 0 || pb.length == 0)
+            return false;
+
+        // the boundaries intersect
+        for (double[] ia : pa)
+        {
+            final int na = ia.length / 2;
+            for (int i = 0; i < Math.max(na - 1, 1); i++)
+            {
+                final int i2 = Math.min(i + 1, na - 1);
+                for (double[] ib : pb)
+                {
+                    final int nb = ib.length / 2;
+                    for (int j = 0; j < Math.max(nb - 1, 1); j++)
+                    {
+                        final int j2 = Math.min(j + 1, nb - 1);
+                        if (segmentsIntersect(ia[i * 2], ia[i * 2 + 1], ia[i2 * 2], ia[i2 * 2 + 1],
+                                ib[j * 2], ib[j * 2 + 1], ib[j2 * 2], ib[j2 * 2 + 1]))
+                        {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        // otherwise one geometry intersects only if it is inside the other
+        return ((b instanceof Polygon) && contains(pb, pa[0][0], pa[0][1])) ||
+                ((a instanceof Polygon) && contains(pa, pb[0][0], pb[0][1]));
+    }
+
+    /**
+     * Returns the non-empty paths of the geometry, packed as
+     * <code>x,y</code>; polygon rings are closed. Returns <code>null</code>
+     * for unsupported geometry types.
+     */
+    private static double[][] getPaths(Geometry geometry)
+    {
+        if (geometry instanceof Point)
+        {
+            final Point point = (Point) geometry;
+            return new double[][] {{point.getX(), point.getY()}};
+        } else if (geometry instanceof LineString)
+        {
+            final LineString line = (LineString) geometry;
+            return (line.getNumPoints() > 0) ? new double[][] {getPath(line, false)} : new double[0][];
+        } else if (geometry instanceof Polygon)
+        {
+            final Polygon polygon = (Polygon) geometry;
+            final ArrayList<double[]> retval = new ArrayList<>();
+            final LineString exterior = polygon.getExteriorRing();
+            if (exterior != null && exterior.getNumPoints() > 0)
+                retval.add(getPath(exterior, true));
+            for (LineString ring : polygon.getInteriorRings())
+                if (ring.getNumPoints() > 0)
+                    retval.add(getPath(ring, true));
+            return retval.toArray(new double[0][]);
+        }
+        return null;
+    }
+
+    private static double[] getPath(LineString line, boolean ring)
+    {
+        final int numPoints = line.getNumPoints();
+        final boolean close = ring && numPoints > 1 &&
+                (line.getX(0) != line.getX(numPoints - 1) || line.getY(0) != line.getY(numPoints - 1));
+        final double[] retval = new double[(close ? numPoints + 1 : numPoints) * 2];
+        for (int i = 0; i < numPoints; i++)
+        {
+            retval[i * 2] = line.getX(i);
+            retval[i * 2 + 1] = line.getY(i);
+        }
+        if (close)
+        {
+            retval[numPoints * 2] = retval[0];
+            retval[numPoints * 2 + 1] = retval[1];
+        }
+        return retval;
+    }
+
+    /**
+     * Even-odd point in polygon test over all of the rings. Points on the
+     * boundary are not reliably classified.
+     */
+    private static boolean contains(double[][] rings, double x, double y)
+    {
+        boolean inside = false;
+        for (double[] ring : rings)
+        {
+            final int numPoints = ring.length / 2;
+            for (int i = 0, j = numPoints - 1; i < numPoints; j = i++)
+            {
+                final double xi = ring[i * 2];
+                final double yi = ring[i * 2 + 1];
+                final double xj = ring[j * 2];
+                final double yj = ring[j * 2 + 1];
+                if (((yi > y) != (yj > y)) && (x < (xj - xi) * (y - yi) / (yj - yi) + xi))
+                    inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns <code>true</code> if segments <code>a-b</code> and
+     * <code>c-d</code> share any point. Either segment may be degenerate.
+     */
+    private static boolean segmentsIntersect(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy)
+    {
+        final double o1 = orientation(ax, ay, bx, by, cx, cy);
+        final double o2 = orientation(ax, ay, bx, by, dx, dy);
+        final double o3 = orientation(cx, cy, dx, dy, ax, ay);
+        final double o4 = orientation(cx, cy, dx, dy, bx, by);
+        if (((o1 > 0d && o2 < 0d) || (o1 < 0d && o2 > 0d)) &&
+                ((o3 > 0d && o4 < 0d) || (o3 < 0d && o4 > 0d)))
+        {
+            return true;
+        }
+        return (o1 == 0d && onSegment(ax, ay, bx, by, cx, cy)) ||
+                (o2 == 0d && onSegment(ax, ay, bx, by, dx, dy)) ||
+                (o3 == 0d && onSegment(cx, cy, dx, dy, ax, ay)) ||
+                (o4 == 0d && onSegment(cx, cy, dx, dy, bx, by));
+    }
+
+    private static double orientation(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    private static boolean onSegment(double ax, double ay, double bx, double by, double px, double py)
+    {
+        return px >= Math.min(ax, bx) && px <= Math.max(ax, bx) &&
+                py >= Math.min(ay, by) && py <= Math.max(ay, by);
+    }
+
+    /**
+     * @return <code>true</code> if the geometry is a polygon without holes
+     * whose edges are axis aligned and that covers its envelope
+     */
+    static boolean isRectangle(Geometry geometry)
+    {
+        if (!(geometry instanceof Polygon))
+            return false;
+        final Polygon polygon = (Polygon) geometry;
+        final LineString ring = polygon.getExteriorRing();
+        if (ring == null || !polygon.getInteriorRings().isEmpty())
+            return false;
+        int numPoints = ring.getNumPoints();
+        if (numPoints == 5 && ring.getX(0) == ring.getX(4) && ring.getY(0) == ring.getY(4))
+            numPoints--;
+        if (numPoints != 4)
+            return false;
+        final Envelope bounds = polygon.getEnvelope();
+        for (int i = 0; i < numPoints; i++)
+        {
+            final double x = ring.getX(i);
+            final double y = ring.getY(i);
+            if ((x != bounds.minX && x != bounds.maxX) || (y != bounds.minY && y != bounds.maxY))
+                return false;
+            // each edge moves along exactly one axis
+            final int j = (i + 1) % numPoints;
+            if ((x == ring.getX(j)) == (y == ring.getY(j)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the exclusive end index of each level of the packed R-tree,
+     * starting with the leaf level.
+     */
+    static int[] computeLevelBounds(int numItems, int nodeSize)
+    {
+        if (numItems == 0)
+            return new int[0];
+
+        int[] retval = new int[32];
+        int numLevels = 0;
+        int count = numItems;
+        int numNodes = numItems;
+        retval[numLevels++] = numNodes;
+        do
+        {
+            count = (count + nodeSize - 1) / nodeSize;
+            numNodes += count;
+            retval[numLevels++] = numNodes;
+        } while (count != 1);
+        return Arrays.copyOf(retval, numLevels);
+    }
+
+    /**
+     * Builds a packed R-tree over the non-empty envelopes. Leaf entries are
+     * packed using Sort-Tile-Recursive ordering; the internal nodes group
+     * consecutive entries of the level below.
+     */
+    static void buildIndex(final double[] envelopes, int numRecords, int numIndexed, int nodeSize, int[] levelBounds, double[] nodeBoxes, int[] nodeChildren)
+    {
+        if (numIndexed == 0)
+            return;
+
+        Integer[] items = new Integer[numIndexed];
+        int numItems = 0;
+        for (int i = 0; i < numRecords; i++)
+            if (!Double.isNaN(envelopes[i * 4]))
+                items[numItems++] = i;
+
+        // sort into vertical slices by X, then each slice by Y
+        Arrays.sort(items, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                return Double.compare(envelopes[a * 4] + envelopes[a * 4 + 2], envelopes[b * 4] + envelopes[b * 4 + 2]);
+            }
+        });
+        final int numLeaves = (numItems + nodeSize - 1) / nodeSize;
+        final int sliceSize = nodeSize * (int) Math.ceil(Math.sqrt(numLeaves));
+        for (int i = 0; i < numItems; i += sliceSize)
+        {
+            Arrays.sort(items, i, Math.min(i + sliceSize, numItems), new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer a, Integer b)
+                {
+                    return Double.compare(envelopes[a * 4 + 1] + envelopes[a * 4 + 3], envelopes[b * 4 + 1] + envelopes[b * 4 + 3]);
+                }
+            });
+        }
+
+        for (int i = 0; i < numItems; i++)
+        {
+            System.arraycopy(envelopes, items[i] * 4, nodeBoxes, i * 4, 4);
+            nodeChildren[i] = items[i];
+        }
+
+        int pos = 0;
+        int parent = numItems;
+        for (int level = 0; level < levelBounds.length - 1; level++)
+        {
+            final int end = levelBounds[level];
+            while (pos < end)
+            {
+                final int first = pos;
+                double minX = Double.POSITIVE_INFINITY;
+                double minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY;
+                double maxY = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < nodeSize && pos < end; i++, pos++)
+                {
+                    minX = Math.min(minX, nodeBoxes[pos * 4]);
+                    minY = Math.min(minY, nodeBoxes[pos * 4 + 1]);
+                    maxX = Math.max(maxX, nodeBoxes[pos * 4 + 2]);
+                    maxY = Math.max(maxY, nodeBoxes[pos * 4 + 3]);
+                }
+                nodeBoxes[parent * 4] = minX;
+                nodeBoxes[parent * 4 + 1] = minY;
+                nodeBoxes[parent * 4 + 2] = maxX;
+                nodeBoxes[parent * 4 + 3] = maxY;
+                nodeChildren[parent] = first;
+                parent++;
+            }
+        }
+    }
+
+    /**
+     * Returns the column indices of the features whose envelopes intersect
+     * the region, in ascending order.
+     */
+    private static int[] search(ColumnsContext ctx, Envelope region)
+    {
+        final int[] levelBounds = ctx.levelBounds;
+        if (levelBounds.length == 0)
+            return new int[0];
+
+        final ByteBuffer index = ctx.index;
+        final int numNodes = levelBounds[levelBounds.length - 1];
+        final int boxes = 0;
+        final int children = boxes + (numNodes * 32);
+
+        int[] retval = new int[Math.min(ctx.numIndexed, 64)];
+        int count = 0;
+
+        final int[] stack = new int[levelBounds.length * ctx.nodeSize];
+        int stackSize = 0;
+
+        int node = numNodes - 1;
+        while (true)
+        {
+            // find the end of the node's level
+            int levelEnd = 0;
+            for (int i = 0; i < levelBounds.length; i++)
+            {
+                levelEnd = levelBounds[i];
+                if (node < levelEnd)
+                    break;
+            }
+
+            final int end = Math.min(node + ctx.nodeSize, levelEnd);
+            for (int pos = node; pos < end; pos++)
+            {
+                final int box = boxes + (pos * 32);
+                if (index.getDouble(box) > region.maxX ||
+                        index.getDouble(box + 8) > region.maxY ||
+                        index.getDouble(box + 16) < region.minX ||
+                        index.getDouble(box + 24) < region.minY)
+                {
+
+                    continue;
+                }
+
+                final int child = index.getInt(children + (pos * 4));
+                if (node >= ctx.numIndexed)
+                {
+                    stack[stackSize++] = child;
+                } else
+                {
+                    if (count == retval.length)
+                        retval = Arrays.copyOf(retval, count * 2);
+                    retval[count++] = child;
+                }
+            }
+
+            if (stackSize == 0)
+                break;
+            node = stack[--stackSize];
+        }
+
+        // return in column (FID) order
+        Arrays.sort(retval, 0, count);
+        return (count == retval.length) ? retval : Arrays.copyOf(retval, count);
+    }
+
+    /**************************************************************************/
+
+    private final static class Columns
+    {
+        long[] fids = new long[64];
+        long[] fsids = new long[64];
+        long[] versions = new long[64];
+        long[] timestamps = new long[64];
+        long[] offsets = new long[64];
+        double[] envelopes = new double[64 * 4];
+        int size = 0;
+
+        void add(long fid, long fsid, long version, long timestamp, long offset, Envelope envelope)
+        {
+            if (size == fids.length)
+            {
+                final int capacity = size * 2;
+                fids = Arrays.copyOf(fids, capacity);
+                fsids = Arrays.copyOf(fsids, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                envelopes = Arrays.copyOf(envelopes, capacity * 4);
+            }
+
+            fids[size] = fid;
+            fsids[size] = fsid;
+            versions[size] = version;
+            timestamps[size] = timestamp;
+            offsets[size] = offset;
+            if (envelope != null)
+            {
+                envelopes[size * 4] = envelope.minX;
+                envelopes[size * 4 + 1] = envelope.minY;
+                envelopes[size * 4 + 2] = envelope.maxX;
+                envelopes[size * 4 + 3] = envelope.maxY;
+            } else
+            {
+                Arrays.fill(envelopes, size * 4, size * 4 + 4, Double.NaN);
+            }
+            size++;
+        }
+
+        /**
+         * @return The order of the entries, sorted by FID
+         */
+        int[] sortByFid()
+        {
+            int[] retval = new int[size];
+            boolean sorted = true;
+            for (int i = 0; i < size; i++)
+            {
+                retval[i] = i;
+                sorted &= (i == 0 || fids[i - 1] <= fids[i]);
+            }
+            if (sorted)
+                return retval;
+
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer a, Integer b)
+                {
+                    return Long.compare(fids[a], fids[b]);
+                }
+            });
+            for (int i = 0; i < size; i++)
+                retval[i] = order[i];
+            return retval;
+        }
+    }
+
+    /**
+     * Iterates features in place. Fixed width properties are read from the
+     * columns; the record holding the name, geometry, style and attributes
+     * is decoded on first access, in place when the records are mapped or
+     * after reading it from the channel otherwise.
+     */
+    private final static class ColumnsFeatureCursor implements FeatureCursor, FeatureDefinition2
+    {
+        private final ColumnsContext ctx;
+        private final int[] records;
+        private final int count;
+        private final int ignoredFeatureProperties;
+        private final Context record;
+
+        private int idx;
+        private int row;
+        private int loadedRow;
+        private int recordStart;
+        private int recordEnd;
+        private int decoded;
+        private String name;
+        private Geometry geometry;
+        private Style style;
+        private AttributeSet attributes;
+        private boolean closed;
+
+        ColumnsFeatureCursor(ColumnsContext ctx, int[] records, int count, int ignoredFeatureProperties)
+        {
+            this.ctx = ctx;
+            this.records = records;
+            this.count = count;
+            this.ignoredFeatureProperties = ignoredFeatureProperties;
+
+            // the buffer is either the mapped records or holds one whole
+            // record, so decoding never reads through the channel
+            this.record = new Context();
+            this.record.endian = ctx.endian;
+            this.record.channel = null;
+            if (ctx.records != null)
+            {
+                this.record.buf = ctx.records.duplicate();
+                this.record.buf.order(ctx.endian);
+            } else
+            {
+                this.record.buf = null;
+            }
+
+            this.idx = -1;
+            this.row = -1;
+            this.loadedRow = -1;
+            this.closed = false;
+        }
+
+        @Override
+        public boolean moveToNext()
+        {
+            if (this.closed || (this.idx + 1) >= this.count)
+            {
+                this.idx = this.count;
+                return false;
+            }
+            this.moveTo(this.idx + 1);
+            return true;
+        }
+
+        /**
+         * Moves to the specified result index.
+         */
+        void moveTo(int idx)
+        {
+            this.idx = idx;
+            this.row = (this.records != null) ? this.records[this.idx] : this.idx;
+
+            this.decoded = 0;
+            this.name = null;
+            this.geometry = null;
+            this.style = null;
+            this.attributes = null;
+        }
+
+        @Override
+        public void close()
+        {
+            this.closed = true;
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return this.closed;
+        }
+
+        @Override
+        public Object getRawGeometry()
+        {
+            if (this.isDecodeRequired(FeatureDataStore2.PROPERTY_FEATURE_GEOMETRY))
+            {
+                final ByteBuffer buf = this.seek(FeatureDataStore2.PROPERTY_FEATURE_GEOMETRY);
+                final int geomWkbLen = buf.getInt();
+                if (geomWkbLen > 0)
+                {
+                    buf.limit(buf.position() + geomWkbLen);
+                    this.geometry = GeometryFactory.parseWkb(buf);
+                    buf.limit(this.recordEnd);
+                }
+            }
+            return this.geometry;
+        }
+
+        @Override
+        public int getGeomCoding()
+        {
+            return GEOM_ATAK_GEOMETRY;
+        }
+
+        @Override
+        public String getName()
+        {
+            if (this.isDecodeRequired(FeatureDataStore2.PROPERTY_FEATURE_NAME))
+            {
+                this.seek(FeatureDataStore2.PROPERTY_FEATURE_NAME);
+                this.name = this.readString();
+            }
+            return this.name;
+        }
+
+        @Override
+        public int getStyleCoding()
+        {
+            return STYLE_ATAK_STYLE;
+        }
+
+        @Override
+        public Object getRawStyle()
+        {
+            if (this.isDecodeRequired(FeatureDataStore2.PROPERTY_FEATURE_STYLE))
+            {
+                this.seek(FeatureDataStore2.PROPERTY_FEATURE_STYLE);
+                final String ogrStyle = this.readString();
+                if (ogrStyle != null)
+                    this.style = FeatureStyleParser.parse2(ogrStyle);
+            }
+            return this.style;
+        }
+
+        @Override
+        public AttributeSet getAttributes()
+        {
+            if (this.isDecodeRequired(FeatureDataStore2.PROPERTY_FEATURE_ATTRIBUTES))
+            {
+                final ByteBuffer buf = this.seek(FeatureDataStore2.PROPERTY_FEATURE_ATTRIBUTES);
+                final int numAttributes = buf.getInt();
+                if (numAttributes > 0)
+                {
+                    this.attributes = new AttributeSet();
+                    try
+                    {
+                        for (int i = 0; i < numAttributes; i++)
+                            decodeAttribute(this.record, this.attributes);
+                    } catch (IOException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return this.attributes;
+        }
+
+        @Override
+        public Feature get()
+        {
+            return new Feature(this.getFsid(),
+                    this.getId(),
+                    this.getName(),
+                    (Geometry) this.getRawGeometry(),
+                    (Style) this.getRawStyle(),
+                    this.getAttributes(),
+                    this.getTimestamp(),
+                    this.getVersion());
+        }
+
+        @Override
+        public long getId()
+        {
+            return getColumn(this.ctx, COLUMN_FID, this.row);
+        }
+
+        @Override
+        public long getVersion()
+        {
+            return getColumn(this.ctx, COLUMN_VERSION, this.row);
+        }
+
+        @Override
+        public long getFsid()
+        {
+            return getColumn(this.ctx, COLUMN_FSID, this.row);
+        }
+
+        @Override
+        public long getTimestamp()
+        {
+            return getColumn(this.ctx, COLUMN_TIMESTAMP, this.row);
+        }
+
+        private boolean isDecodeRequired(int property)
+        {
+            if ((this.ignoredFeatureProperties & property) != 0 || (this.decoded & property) != 0)
+                return false;
+            this.decoded |= property;
+            return true;
+        }
+
+        /**
+         * Locates the current record in the record buffer. When the records
+         * are not mapped, the record is read into the buffer; a record
+         * extends to the start of the next record in the file, or to the
+         * start of the columns for the last record.
+         */
+        private void load() throws IOException
+        {
+            final long start = getColumn(this.ctx, COLUMN_RECORD_OFFSET, this.row);
+            if (this.ctx.records != null)
+            {
+                final long offset = start - this.ctx.recordsTableOffset;
+                if (offset < 0L || offset >= this.ctx.records.capacity())
+                    throw new IOException("Invalid record offset " + start);
+                this.recordStart = (int) offset;
+                this.recordEnd = this.ctx.records.capacity();
+                this.loadedRow = this.row;
+                return;
+            }
+
+            final int next = Arrays.binarySearch(this.ctx.recordStarts, start) + 1;
+            final long end = (next > 0 && next < this.ctx.recordStarts.length) ?
+                    this.ctx.recordStarts[next] : this.ctx.columnsOffset;
+            if (next <= 0 || end < start || (end - start) > Integer.MAX_VALUE)
+                throw new IOException("Invalid record offset " + start);
+
+            this.recordStart = 0;
+            this.recordEnd = (int) (end - start);
+            ensureBuffer(this.record, this.recordEnd);
+            final ByteBuffer buf = this.record.buf;
+            buf.clear();
+            buf.limit(this.recordEnd);
+            readFully(this.ctx.channel, start, buf);
+            buf.flip();
+            this.loadedRow = this.row;
+        }
+
+        /**
+         * Positions the record buffer at the start of the specified field of
+         * the current record.
+         */
+        private ByteBuffer seek(int property)
+        {
+            if (this.loadedRow != this.row)
+            {
+                try
+                {
+                    this.load();
+                } catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+            final ByteBuffer buf = this.record.buf;
+            int pos = this.recordStart;
+            if (property != FeatureDataStore2.PROPERTY_FEATURE_NAME)
+            {
+                // skip name
+                pos += 2 + (buf.getShort(pos) & 0xFFFF);
+                if (property != FeatureDataStore2.PROPERTY_FEATURE_GEOMETRY)
+                {
+                    // skip geometry
+                    pos += 4 + buf.getInt(pos);
+                    if (property != FeatureDataStore2.PROPERTY_FEATURE_STYLE)
+                    {
+                        // skip style
+                        pos += 2 + (buf.getShort(pos) & 0xFFFF);
+                    }
+                }
+            }
+            buf.limit(this.recordEnd);
+            buf.position(pos);
+            return buf;
+        }
+
+        private String readString()
+        {
+            try
+            {
+                return readUTF8String(this.record);
+            } catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
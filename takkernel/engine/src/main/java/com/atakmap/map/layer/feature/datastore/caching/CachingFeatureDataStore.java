@@ -566,6 +566,13 @@ public class CachingFeatureDataStore extends AbstractReadOnlyFeatureDataStore2 i
             //for(CacheNode ds : queryNodes)
             //    issueCacheQuery &= ds.terminal;
 
+            // results are merged in FID order; the nodes may resume directly
+            // after the continuation when the query is in the same order
+            final boolean seek = (params != null) &&
+                    (params.continuation != null) &&
+                    (params.order == null || params.order.isEmpty() ||
+                            params.order.iterator().next() instanceof FeatureQueryParameters.Order.ID);
+
             Collection<FeatureCursor> cursors = new LinkedList<FeatureCursor>();
             FeatureQueryParameters nodeParams = null;
             do
@@ -573,7 +580,14 @@ public class CachingFeatureDataStore extends AbstractReadOnlyFeatureDataStore2 i
                 if (issueCacheQuery)
                 {
                     nodeParams = new FeatureQueryParameters(params);
-                    nodeParams.limit = nodeParams.offset + nodeParams.limit;
+                    if (seek)
+                    {
+                        nodeParams.offset = 0;
+                    } else
+                    {
+                        nodeParams.limit = nodeParams.offset + nodeParams.limit;
+                        nodeParams.continuation = null;
+                    }
                     for (CacheNode ds : queryNodes)
                         cursors.add(new CacheCursor(ds, nodeParams));
                 } else
@@ -592,7 +606,7 @@ public class CachingFeatureDataStore extends AbstractReadOnlyFeatureDataStore2 i
 
             if (params != null)
             {
-                return new FeatureCursorImpl(new MultiplexingFeatureCursor(cursors), params.limit, params.offset);
+                return new FeatureCursorImpl(new MultiplexingFeatureCursor(cursors), params.limit, (issueCacheQuery && seek) ? 0 : params.offset);
             } else
             {
                 // something really bad has occured to get to this point and 
@@ -726,6 +740,7 @@ public class CachingFeatureDataStore extends AbstractReadOnlyFeatureDataStore2 i
             FeatureDataStore2 swap;
 
             CacheFile cached = null;
+            boolean retained = false;
             final long timestamp;
             final int featureCount;
             final int featureSetCount;
@@ -741,44 +756,67 @@ public class CachingFeatureDataStore extends AbstractReadOnlyFeatureDataStore2 i
                 featureCount = cached.getNumFeatures();
                 featureSetCount = cached.getNumFeatureSets();
 
-                //swap = new RuntimeFeatureDataStore2();
-                swap = new FeatureSetDatabase2(null);
-                swap.acquireModifyLock(true);
-                FeatureCursor cacheResult = null;
-                try
+                // if supported by the format, query the cache file in place
+                FeatureCursor inPlace = cached.queryFeatures(null, PROPERTY_FEATURE_ATTRIBUTES |
+                        PROPERTY_FEATURE_GEOMETRY |
+                        PROPERTY_FEATURE_NAME |
+                        PROPERTY_FEATURE_STYLE);
+                if (inPlace != null)
                 {
-                    for (int i = 0; i < featureSetCount; i++)
+                    try
                     {
-                        FeatureSet fs = cached.getFeatureSet(i);
-                        swap.insertFeatureSet(fs);
+                        while (inPlace.moveToNext())
+                        {
+                            fidBuffer.insert(inPlace.getId(), timestamp, node.level, node.index);
+                        }
+                    } finally
+                    {
+                        inPlace.close();
                     }
 
-                    cacheResult = cached.getFeatures();
-                    swap.insertFeatures(cacheResult);
+                    swap = new CacheFileFeatureDataStore(cached, cacheFile.getAbsolutePath());
+                    retained = true;
+                } else
+                {
+                    //swap = new RuntimeFeatureDataStore2();
+                    swap = new FeatureSetDatabase2(null);
+                    swap.acquireModifyLock(true);
+                    FeatureCursor cacheResult = null;
+                    try
+                    {
+                        for (int i = 0; i < featureSetCount; i++)
+                        {
+                            FeatureSet fs = cached.getFeatureSet(i);
+                            swap.insertFeatureSet(fs);
+                        }
+
+                        cacheResult = cached.getFeatures();
+                        swap.insertFeatures(cacheResult);
 
-                    cacheResult.close();
-                    cacheResult = null;
+                        cacheResult.close();
+                        cacheResult = null;
 
-                    FeatureQueryParameters params = new FeatureQueryParameters();
-                    params.ignoredFeatureProperties = PROPERTY_FEATURE_ATTRIBUTES |
-                            PROPERTY_FEATURE_GEOMETRY |
-                            PROPERTY_FEATURE_NAME |
-                            PROPERTY_FEATURE_STYLE;
-                    cacheResult = swap.queryFeatures(params);
-                    while (cacheResult.moveToNext())
+                        FeatureQueryParameters params = new FeatureQueryParameters();
+                        params.ignoredFeatureProperties = PROPERTY_FEATURE_ATTRIBUTES |
+                                PROPERTY_FEATURE_GEOMETRY |
+                                PROPERTY_FEATURE_NAME |
+                                PROPERTY_FEATURE_STYLE;
+                        cacheResult = swap.queryFeatures(params);
+                        while (cacheResult.moveToNext())
+                        {
+                            fidBuffer.insert(cacheResult.getId(), timestamp, node.level, node.index);
+                        }
+                    } finally
                     {
-                        fidBuffer.insert(cacheResult.getId(), timestamp, node.level, node.index);
-                    }
-                } finally
-                {
-                    swap.releaseModifyLock();
+                        swap.releaseModifyLock();
 
-                    if (cacheResult != null)
-                        cacheResult.close();
+                        if (cacheResult != null)
+                            cacheResult.close();
+                    }
                 }
             } finally
             {
-                if (cached != null)
+                if (cached != null && !retained)
                     cached.dispose();
             }
 
@@ -539,6 +539,18 @@ public final class DefaultGeopackageFeatureCursor extends RowIteratorWrapper imp
             }
         }
 
+        // resume after the continuation when results are in ROWID order
+        final boolean rowidOrder = (params.order == null || params.order.isEmpty() ||
+                params.order.iterator().next() instanceof FeatureDataStore2.FeatureQueryParameters.Order.ID);
+        final boolean seek = (params.continuation != null) && rowidOrder;
+        if (seek)
+        {
+            where.beginCondition();
+            where.append(tableName);
+            where.append(".ROWID > ?");
+            where.addArg(params.continuation.fid);
+        }
+
         if (where.getSelection() != null)
         {
             sql.append(" WHERE ");
@@ -551,13 +563,22 @@ public final class DefaultGeopackageFeatureCursor extends RowIteratorWrapper imp
 
         // ORDER
 
+        // pages are only stable, and a continuation taken from the last row
+        // of a page only valid, if every limited query is in ROWID order
+        if (seek || (params.limit != 0 && rowidOrder))
+        {
+            sql.append(" ORDER BY ");
+            sql.append(tableName);
+            sql.append(".ROWID ASC");
+        }
+
         // LIMIT 
 
         if (params.limit != 0)
         {
             sql.append(" LIMIT ? OFFSET ?");
             args.add(new BindArgument(params.limit));
-            args.add(new BindArgument(params.offset));
+            args.add(new BindArgument(seek ? 0 : params.offset));
         }
 
         // indices will always be first seven args
@@ -150,6 +150,7 @@ public final class GeoPackageFeatureDataStore2 extends AbstractReadOnlyFeatureDa
                 if (fsParams != null)
                 {
                     fsParams.offset = fsParams.limit = 0;
+                    fsParams.continuation = null;
                 }
             }
         }
@@ -544,6 +545,17 @@ public final class GeoPackageFeatureDataStore2 extends AbstractReadOnlyFeatureDa
                 }
                 result = fsParams;
             }
+            if (params.continuation != null)
+            {
+                //
+                // Mask off FSID; the continuation only applies to the layer
+                // that it was obtained from.
+                //
+                final long longID = params.continuation.fid;
+                fsParams.continuation = (longID >>> (64 - fsIdBits) == layer.layerId) ?
+                        new FeatureQueryParameters.Continuation(longID & fIdMask) : null;
+                result = fsParams;
+            }
             if (params.visibleOnly)
             {
                 Set<Long> visibleFSIDs = new HashSet<Long>();
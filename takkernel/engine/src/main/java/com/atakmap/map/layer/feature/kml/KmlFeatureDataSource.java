@@ -0,0 +1,284 @@
+package com.atakmap.map.layer.feature.kml;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.locale.LocaleUtil;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.xml.XMLUtils;
+import com.atakmap.map.layer.feature.AttributeSet;
+import com.atakmap.map.layer.feature.FeatureDataSource;
+import com.atakmap.util.zip.IoUtils;
+import com.atakmap.util.zip.ZipEntry;
+import com.atakmap.util.zip.ZipFile;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Map;
+
+/**
+ * Pure Java, streaming feature data source for KML and KMZ files.
+ *
+ * <P>Unlike the OGR LIBKML driver, which builds the whole document in memory
+ * before the first feature is returned, placemarks are parsed one at a time
+ * as the content is iterated, so very large documents may be ingested with
+ * bounded memory. Geometries are produced as WKB and styles as OGR style
+ * strings.
+ *
+ * <P>Each run of placemarks within a <code>Document</code> or
+ * <code>Folder</code> is returned as a feature set named by the path of its
+ * containers. Overlays, network links, regions and models are not ingested.
+ */
+public final class KmlFeatureDataSource implements FeatureDataSource
+{
+
+    private static final String TAG = "KmlFeatureDataSource";
+
+    public final static String PROVIDER_NAME = "kml-stream";
+
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public Content parse(File file) throws IOException
+    {
+        final String ext = FileSystemUtils.getExtension(file, false, false)
+                .toLowerCase(LocaleUtil.getCurrent());
+        if (!ext.equals("kml") && !ext.equals("kmz"))
+            return null;
+
+        ZipFile zip = null;
+        InputStream stream = null;
+        try
+        {
+            String hrefBase;
+            if (ext.equals("kmz"))
+            {
+                zip = new ZipFile(file);
+                final ZipEntry doc = findDocument(zip);
+                if (doc == null)
+                {
+                    Log.w(TAG, "No KML document found in " + file.getName());
+                    return null;
+                }
+                stream = zip.getInputStream(doc);
+
+                // icons are referenced relative to the document
+                final int idx = doc.getName().lastIndexOf('/');
+                hrefBase = "zip://" + file.getAbsolutePath() + "!/"
+                        + ((idx >= 0) ? doc.getName().substring(0, idx + 1) : "");
+            } else
+            {
+                stream = IOProviderFactory.getInputStream(file);
+                final File parent = file.getAbsoluteFile().getParentFile();
+                hrefBase = (parent != null) ? parent.getAbsolutePath() + File.separator : null;
+            }
+
+            final XmlPullParser parser = XMLUtils.getXmlPullParser();
+            if (parser == null)
+                return null;
+
+            final KmlPullReader reader = new KmlPullReader(parser,
+                    new BufferedInputStream(stream, BUFFER_SIZE), hrefBase,
+                    FileSystemUtils.stripExtension(file.getName()));
+            final Content retval = new KmlContent(reader, stream, zip);
+            stream = null;
+            zip = null;
+            return retval;
+        } catch (XmlPullParserException e)
+        {
+            throw new IOException(e);
+        } finally
+        {
+            IoUtils.close(stream);
+            IoUtils.close(zip);
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return PROVIDER_NAME;
+    }
+
+    @Override
+    public int parseVersion()
+    {
+        return 1;
+    }
+
+    /**
+     * Returns the uncompressed size of the KML document of a KML or KMZ file.
+     *
+     * @param file A KML or KMZ file
+     * @return The size of the document, in bytes, or <code>-1</code> if the
+     * size could not be determined
+     */
+    public static long getDocumentSize(File file)
+    {
+        if (!FileSystemUtils.checkExtension(file, "kmz"))
+            return IOProviderFactory.length(file);
+
+        try (ZipFile zip = new ZipFile(file))
+        {
+            final ZipEntry doc = findDocument(zip);
+            return (doc != null) ? doc.getSize() : -1L;
+        } catch (IOException e)
+        {
+            return -1L;
+        }
+    }
+
+    /**
+     * Returns the document of a KMZ; <code>doc.kml</code> if present,
+     * otherwise the first KML file in the archive.
+     */
+    private static ZipEntry findDocument(ZipFile zip)
+    {
+        ZipEntry retval = zip.getEntry("doc.kml");
+        if (retval != null)
+            return retval;
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements())
+        {
+            final ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && FileSystemUtils.checkExtension(entry.getName(), "kml"))
+                return entry;
+        }
+        return null;
+    }
+
+    /**************************************************************************/
+
+    private final static class KmlContent implements Content
+    {
+        private final KmlPullReader reader;
+        private final InputStream stream;
+        private final ZipFile zip;
+
+        private int featureSet = -1;
+        private String featureSetName;
+        private boolean pending;
+        private FeatureDataSource.FeatureDefinition feature;
+
+        KmlContent(KmlPullReader reader, InputStream stream, ZipFile zip)
+        {
+            this.reader = reader;
+            this.stream = stream;
+            this.zip = zip;
+        }
+
+        @Override
+        public String getType()
+        {
+            return "KML";
+        }
+
+        @Override
+        public String getProvider()
+        {
+            return PROVIDER_NAME;
+        }
+
+        @Override
+        public boolean moveToNext(ContentPointer pointer)
+        {
+            this.feature = null;
+            switch (pointer)
+            {
+                case FEATURE_SET:
+                    // skip any remaining features in the current set
+                    while (true)
+                    {
+                        if (!this.pending && !advance())
+                            return false;
+                        if (this.reader.getFeatureSetSerial() != this.featureSet)
+                        {
+                            this.featureSet = this.reader.getFeatureSetSerial();
+                            this.featureSetName = this.reader.getFeatureSetName();
+                            return true;
+                        }
+                        this.pending = false;
+                    }
+                case FEATURE:
+                    if (this.featureSet < 0)
+                        return false;
+                    if (!this.pending && !advance())
+                        return false;
+                    // the placemark starts the next set
+                    if (this.reader.getFeatureSetSerial() != this.featureSet)
+                        return false;
+                    this.pending = false;
+                    this.feature = createDefinition();
+                    return true;
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+
+        private boolean advance()
+        {
+            try
+            {
+                this.pending = this.reader.next();
+            } catch (IOException e)
+            {
+                Log.w(TAG, "Failed to read KML", e);
+                this.pending = false;
+            }
+            return this.pending;
+        }
+
+        private FeatureDataSource.FeatureDefinition createDefinition()
+        {
+            FeatureDataSource.FeatureDefinition retval = new FeatureDataSource.FeatureDefinition();
+            retval.name = this.reader.getName();
+            retval.rawGeom = this.reader.getGeometry();
+            retval.geomCoding = FeatureDefinition.GEOM_WKB;
+            retval.rawStyle = this.reader.getStyle();
+            retval.styleCoding = FeatureDefinition.STYLE_OGR;
+            retval.altitudeMode = this.reader.getAltitudeMode();
+            retval.extrude = this.reader.getExtrude();
+
+            retval.attributes = new AttributeSet();
+            for (Map.Entry<String, String> attr : this.reader.getAttributes().entrySet())
+                retval.attributes.setAttribute(attr.getKey(), attr.getValue());
+            return retval;
+        }
+
+        @Override
+        public FeatureDataSource.FeatureDefinition get()
+        {
+            return this.feature;
+        }
+
+        @Override
+        public String getFeatureSetName()
+        {
+            return this.featureSetName;
+        }
+
+        @Override
+        public double getMinResolution()
+        {
+            return 0d;
+        }
+
+        @Override
+        public double getMaxResolution()
+        {
+            return 0d;
+        }
+
+        @Override
+        public void close()
+        {
+            IoUtils.close(this.stream);
+            IoUtils.close(this.zip);
+        }
+    }
+}
@@ -0,0 +1,1038 @@
+package com.atakmap.map.layer.feature.kml;
+
+import com.atakmap.coremap.log.Log;
+import com.atakmap.map.layer.feature.Feature;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pull based reader over the placemarks of a KML document. Placemarks are
+ * read one at a time as the document is parsed; only the current placemark,
+ * the open containers and the shared styles are held in memory, so memory
+ * use does not grow with the size of the document.
+ *
+ * <P>Geometries are encoded as WKB and styles as OGR style strings. Shared
+ * styles and style maps are resolved by id as they are encountered; a
+ * placemark that references a style declared later in the document receives
+ * the default style.
+ */
+final class KmlPullReader
+{
+    private static final String TAG = "KmlPullReader";
+
+    /**
+     * The maximum number of shared styles retained for a document
+     */
+    final static int MAX_SHARED_STYLES = 1024;
+
+    private final static int WKB_POINT = 1;
+    private final static int WKB_LINESTRING = 2;
+    private final static int WKB_POLYGON = 3;
+    private final static int WKB_GEOMETRYCOLLECTION = 7;
+
+    private final XmlPullParser parser;
+    private final String hrefBase;
+    private final String defaultName;
+
+    private final Map<String, KmlStyle> styles = new HashMap<>();
+    private final Map<String, String> styleMaps = new HashMap<>();
+    private final KmlStyle defaultStyle = new KmlStyle();
+
+    private final ArrayList<Container> containers = new ArrayList<>();
+    private int containerSerial;
+    private int featureSetSerial = -1;
+    private String featureSetName;
+
+    private boolean done;
+
+    // scratch coordinates, x,y,z triplets
+    private double[] coords = new double[768];
+    private int numCoords;
+    private boolean coordsHaveZ;
+
+    // current placemark
+    private int placemarkSerial;
+    private String name;
+    private String description;
+    private String styleUrl;
+    private KmlStyle inlineStyle;
+    private Geom geometry;
+    private Feature.AltitudeMode altitudeMode;
+    private boolean extrude;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+
+    /**
+     * @param parser      The parser
+     * @param stream      The KML document
+     * @param hrefBase    The prefix applied to relative icon references, may
+     *                    be <code>null</code>
+     * @param defaultName The feature set name for placemarks that are not in
+     *                    a named container
+     */
+    KmlPullReader(XmlPullParser parser, InputStream stream, String hrefBase, String defaultName) throws IOException
+    {
+        this.parser = parser;
+        this.hrefBase = hrefBase;
+        this.defaultName = defaultName;
+        try
+        {
+            this.parser.setInput(stream, null);
+        } catch (XmlPullParserException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Advances to the next placemark with a geometry.
+     *
+     * @return <code>true</code> if positioned on a placemark,
+     * <code>false</code> if the end of the document was reached
+     * @throws IOException If the document could not be read
+     */
+    boolean next() throws IOException
+    {
+        if (this.done)
+            return false;
+        try
+        {
+            int event;
+            while ((event = this.parser.next()) != XmlPullParser.END_DOCUMENT)
+            {
+                if (event == XmlPullParser.START_TAG)
+                {
+                    switch (localName(this.parser.getName()))
+                    {
+                        case "kml":
+                            break;
+                        case "Document":
+                        case "Folder":
+                            this.containers.add(new Container(this.parser.getDepth()));
+                            this.containerSerial++;
+                            break;
+                        case "name":
+                            final Container c = this.containers.isEmpty() ? null : this.containers.get(this.containers.size() - 1);
+                            if (c != null && c.name == null && c.depth + 1 == this.parser.getDepth())
+                                c.name = trimToNull(readText());
+                            else
+                                skip();
+                            break;
+                        case "Style":
+                            putStyle(this.parser.getAttributeValue(null, "id"), readStyle());
+                            break;
+                        case "StyleMap":
+                            readStyleMap();
+                            break;
+                        case "Placemark":
+                            if (readPlacemark())
+                                return true;
+                            break;
+                        default:
+                            // overlays, network links, schemas and container
+                            // properties are not ingested
+                            skip();
+                            break;
+                    }
+                } else if (event == XmlPullParser.END_TAG)
+                {
+                    final String tag = localName(this.parser.getName());
+                    if ((tag.equals("Document") || tag.equals("Folder")) && !this.containers.isEmpty())
+                    {
+                        this.containers.remove(this.containers.size() - 1);
+                        this.containerSerial++;
+                    }
+                }
+            }
+            this.done = true;
+            return false;
+        } catch (XmlPullParserException | RuntimeException e)
+        {
+            this.done = true;
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns an identifier for the run of placemarks the current placemark
+     * belongs to. Consecutive placemarks in the same container share the
+     * identifier.
+     */
+    int getFeatureSetSerial()
+    {
+        return this.placemarkSerial;
+    }
+
+    /**
+     * Returns the feature set name for the current placemark, the path of the
+     * named containers below the root document.
+     */
+    String getFeatureSetName()
+    {
+        if (this.featureSetSerial != this.placemarkSerial)
+        {
+            this.featureSetSerial = this.placemarkSerial;
+            this.featureSetName = computeFeatureSetName();
+        }
+        return this.featureSetName;
+    }
+
+    private String computeFeatureSetName()
+    {
+        StringBuilder path = null;
+        for (int i = 1; i < this.containers.size(); i++)
+        {
+            final String n = this.containers.get(i).name;
+            if (n == null)
+                continue;
+            if (path == null)
+                path = new StringBuilder(n);
+            else
+                path.append('/').append(n);
+        }
+        if (path != null)
+            return path.toString();
+        if (!this.containers.isEmpty() && this.containers.get(0).name != null)
+            return this.containers.get(0).name;
+        return this.defaultName;
+    }
+
+    String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return The geometry of the current placemark, as little endian WKB
+     */
+    byte[] getGeometry()
+    {
+        final int dim = hasZ(this.geometry) ? 3 : 2;
+        ByteBuffer wkb = ByteBuffer.wrap(new byte[wkbSize(this.geometry, dim)]);
+        wkb.order(ByteOrder.LITTLE_ENDIAN);
+        writeWkb(wkb, this.geometry, dim);
+        return wkb.array();
+    }
+
+    /**
+     * @return The style of the current placemark, as an OGR style string
+     */
+    String getStyle()
+    {
+        final KmlStyle shared = resolveStyle(this.styleUrl);
+        KmlStyle style;
+        if (this.inlineStyle == null)
+            style = (shared != null) ? shared : this.defaultStyle;
+        else
+            style = (shared != null) ? shared.merge(this.inlineStyle) : this.inlineStyle;
+        return style.toOgr(kinds(this.geometry));
+    }
+
+    /**
+     * @return The description and extended data of the current placemark.
+     * The map is reused for the next placemark.
+     */
+    Map<String, String> getAttributes()
+    {
+        return this.attributes;
+    }
+
+    Feature.AltitudeMode getAltitudeMode()
+    {
+        return (this.altitudeMode != null) ? this.altitudeMode : Feature.AltitudeMode.ClampToGround;
+    }
+
+    double getExtrude()
+    {
+        // only extrusion of points is supported, from the point down to the
+        // terrain
+        return (this.extrude && this.geometry.type == WKB_POINT) ? -1d : 0d;
+    }
+
+    /**************************************************************************/
+    // placemarks
+
+    private boolean readPlacemark() throws IOException, XmlPullParserException
+    {
+        this.placemarkSerial = this.containerSerial;
+        this.name = null;
+        this.description = null;
+        this.styleUrl = null;
+        this.inlineStyle = null;
+        this.geometry = null;
+        this.altitudeMode = null;
+        this.extrude = false;
+        this.attributes.clear();
+
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            final String tag = localName(this.parser.getName());
+            switch (tag)
+            {
+                case "name":
+                    this.name = readText();
+                    break;
+                case "description":
+                    this.description = readText();
+                    break;
+                case "styleUrl":
+                    this.styleUrl = trimToNull(readText());
+                    break;
+                case "Style":
+                    this.inlineStyle = readStyle();
+                    break;
+                case "ExtendedData":
+                    readExtendedData();
+                    break;
+                default:
+                    final Geom g = readGeometry(tag);
+                    if (this.geometry == null)
+                        this.geometry = g;
+                    break;
+            }
+        }
+        if (this.description != null)
+            this.attributes.put("description", this.description);
+        return (this.geometry != null);
+    }
+
+    private void readExtendedData() throws IOException, XmlPullParserException
+    {
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            switch (localName(this.parser.getName()))
+            {
+                case "Data":
+                {
+                    final String key = this.parser.getAttributeValue(null, "name");
+                    String value = null;
+                    final int dataDepth = this.parser.getDepth();
+                    while (nextChild(dataDepth))
+                    {
+                        if (localName(this.parser.getName()).equals("value"))
+                            value = readText();
+                        else
+                            skip();
+                    }
+                    if (key != null && value != null)
+                        this.attributes.put(key, value);
+                    break;
+                }
+                case "SchemaData":
+                {
+                    final int dataDepth = this.parser.getDepth();
+                    while (nextChild(dataDepth))
+                    {
+                        final String key = this.parser.getAttributeValue(null, "name");
+                        if (localName(this.parser.getName()).equals("SimpleData") && key != null)
+                            this.attributes.put(key, readText());
+                        else
+                            skip();
+                    }
+                    break;
+                }
+                default:
+                    skip();
+                    break;
+            }
+        }
+    }
+
+    /**************************************************************************/
+    // geometry
+
+    /**
+     * Reads the geometry element the parser is positioned on, or skips the
+     * element if it is not a supported geometry.
+     */
+    private Geom readGeometry(String tag) throws IOException, XmlPullParserException
+    {
+        switch (tag)
+        {
+            case "Point":
+                return readCoordinates(WKB_POINT);
+            case "LineString":
+            case "LinearRing":
+                return readCoordinates(WKB_LINESTRING);
+            case "Polygon":
+                return readPolygon();
+            case "MultiGeometry":
+            case "MultiTrack":
+                return readMultiGeometry();
+            case "Track":
+                return readTrack();
+            default:
+                skip();
+                return null;
+        }
+    }
+
+    private Geom readCoordinates(int type) throws IOException, XmlPullParserException
+    {
+        Geom retval = null;
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            switch (localName(this.parser.getName()))
+            {
+                case "coordinates":
+                    parseCoordinates(readText());
+                    if (this.numCoords > 0)
+                        retval = new Geom(type, this.coords, (type == WKB_POINT) ? 1 : this.numCoords, this.coordsHaveZ);
+                    break;
+                case "altitudeMode":
+                    readAltitudeMode();
+                    break;
+                case "extrude":
+                    if (type == WKB_POINT)
+                        this.extrude = parseBoolean(readText(), false);
+                    else
+                        skip();
+                    break;
+                default:
+                    skip();
+                    break;
+            }
+        }
+        return retval;
+    }
+
+    private Geom readPolygon() throws IOException, XmlPullParserException
+    {
+        Geom exterior = null;
+        ArrayList<Geom> interior = null;
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            final String tag = localName(this.parser.getName());
+            switch (tag)
+            {
+                case "outerBoundaryIs":
+                case "innerBoundaryIs":
+                {
+                    final int boundaryDepth = this.parser.getDepth();
+                    while (nextChild(boundaryDepth))
+                    {
+                        if (!localName(this.parser.getName()).equals("LinearRing"))
+                        {
+                            skip();
+                            continue;
+                        }
+                        final Geom ring = readCoordinates(WKB_LINESTRING);
+                        if (ring == null)
+                            continue;
+                        if (tag.equals("outerBoundaryIs"))
+                        {
+                            exterior = ring;
+                        } else
+                        {
+                            if (interior == null)
+                                interior = new ArrayList<>();
+                            interior.add(ring);
+                        }
+                    }
+                    break;
+                }
+                case "altitudeMode":
+                    readAltitudeMode();
+                    break;
+                default:
+                    skip();
+                    break;
+            }
+        }
+        if (exterior == null)
+            return null;
+        Geom retval = new Geom(WKB_POLYGON);
+        retval.children.add(exterior);
+        if (interior != null)
+            retval.children.addAll(interior);
+        return retval;
+    }
+
+    private Geom readMultiGeometry() throws IOException, XmlPullParserException
+    {
+        Geom retval = new Geom(WKB_GEOMETRYCOLLECTION);
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            final String tag = localName(this.parser.getName());
+            if (tag.equals("altitudeMode"))
+            {
+                readAltitudeMode();
+                continue;
+            }
+            final Geom child = readGeometry(tag);
+            if (child != null)
+                retval.children.add(child);
+        }
+        return retval.children.isEmpty() ? null : retval;
+    }
+
+    private Geom readTrack() throws IOException, XmlPullParserException
+    {
+        this.numCoords = 0;
+        this.coordsHaveZ = false;
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            switch (localName(this.parser.getName()))
+            {
+                case "coord":
+                    parseTrackCoord(readText());
+                    break;
+                case "altitudeMode":
+                    readAltitudeMode();
+                    break;
+                default:
+                    skip();
+                    break;
+            }
+        }
+        if (this.numCoords == 0)
+            return null;
+        return new Geom(WKB_LINESTRING, this.coords, this.numCoords, this.coordsHaveZ);
+    }
+
+    private void readAltitudeMode() throws IOException, XmlPullParserException
+    {
+        final String mode = trimToNull(readText());
+        if (this.altitudeMode != null || mode == null)
+            return;
+        switch (mode)
+        {
+            case "absolute":
+                this.altitudeMode = Feature.AltitudeMode.Absolute;
+                break;
+            case "relativeToGround":
+            case "relativeToSeaFloor":
+                this.altitudeMode = Feature.AltitudeMode.Relative;
+                break;
+            default:
+                this.altitudeMode = Feature.AltitudeMode.ClampToGround;
+                break;
+        }
+    }
+
+    /**
+     * Parses a KML coordinate tuple list into the scratch coordinates.
+     * Tuples are separated by whitespace and their components by commas;
+     * whitespace adjacent to a comma is tolerated.
+     */
+    private void parseCoordinates(String text)
+    {
+        this.numCoords = 0;
+        this.coordsHaveZ = false;
+        if (text == null)
+            return;
+
+        final double[] tuple = new double[3];
+        int component = -1;
+        boolean joined = false;
+        final int len = text.length();
+        int i = 0;
+        while (i < len)
+        {
+            char c = text.charAt(i);
+            if (c == ',')
+            {
+                joined = true;
+                i++;
+                continue;
+            } else if (Character.isWhitespace(c))
+            {
+                i++;
+                continue;
+            }
+            final int start = i;
+            while (i < len && (c = text.charAt(i)) != ',' && !Character.isWhitespace(c))
+                i++;
+            final double v;
+            try
+            {
+                v = Double.parseDouble(text.substring(start, i));
+            } catch (NumberFormatException e)
+            {
+                continue;
+            }
+            if (joined && component >= 0)
+            {
+                // components beyond altitude are ignored
+                if (component < 2)
+                    tuple[++component] = v;
+            } else
+            {
+                if (component >= 1)
+                    addCoord(tuple, component + 1);
+                tuple[0] = v;
+                component = 0;
+            }
+            joined = false;
+        }
+        if (component >= 1)
+            addCoord(tuple, component + 1);
+    }
+
+    private void parseTrackCoord(String text)
+    {
+        if (text == null)
+            return;
+        final String[] parts = text.trim().split("\\s+");
+        if (parts.length < 2)
+            return;
+        final double[] tuple = new double[3];
+        try
+        {
+            for (int i = 0; i < Math.min(parts.length, 3); i++)
+                tuple[i] = Double.parseDouble(parts[i]);
+        } catch (NumberFormatException e)
+        {
+            return;
+        }
+        addCoord(tuple, Math.min(parts.length, 3));
+    }
+
+    private void addCoord(double[] tuple, int count)
+    {
+        if ((this.numCoords + 1) * 3 > this.coords.length)
+        {
+            double[] grown = new double[this.coords.length * 2];
+            System.arraycopy(this.coords, 0, grown, 0, this.numCoords * 3);
+            this.coords = grown;
+        }
+        final int idx = this.numCoords * 3;
+        this.coords[idx] = tuple[0];
+        this.coords[idx + 1] = tuple[1];
+        this.coords[idx + 2] = (count > 2) ? tuple[2] : 0d;
+        this.coordsHaveZ |= (count > 2);
+        this.numCoords++;
+    }
+
+    private static int kinds(Geom g)
+    {
+        switch (g.type)
+        {
+            case WKB_POINT:
+                return KmlStyle.KIND_POINT;
+            case WKB_LINESTRING:
+                return KmlStyle.KIND_LINE;
+            case WKB_POLYGON:
+                return KmlStyle.KIND_POLYGON;
+            default:
+                int retval = 0;
+                for (Geom child : g.children)
+                    retval |= kinds(child);
+                return retval;
+        }
+    }
+
+    private static boolean hasZ(Geom g)
+    {
+        if (g.hasZ)
+            return true;
+        if (g.children != null)
+            for (Geom child : g.children)
+                if (hasZ(child))
+                    return true;
+        return false;
+    }
+
+    private static int wkbSize(Geom g, int dim)
+    {
+        // byte order and type
+        int retval = 5;
+        switch (g.type)
+        {
+            case WKB_POINT:
+                return retval + 8 * dim;
+            case WKB_LINESTRING:
+                return retval + 4 + g.numPoints * 8 * dim;
+            case WKB_POLYGON:
+                retval += 4;
+                for (Geom ring : g.children)
+                    retval += 4 + ring.numPoints * 8 * dim;
+                return retval;
+            default:
+                retval += 4;
+                for (Geom child : g.children)
+                    retval += wkbSize(child, dim);
+                return retval;
+        }
+    }
+
+    private static void writeWkb(ByteBuffer wkb, Geom g, int dim)
+    {
+        wkb.put((byte) 0x01);
+        wkb.putInt(g.type + ((dim == 3) ? 1000 : 0));
+        switch (g.type)
+        {
+            case WKB_POINT:
+                writePoints(wkb, g, dim);
+                break;
+            case WKB_LINESTRING:
+                wkb.putInt(g.numPoints);
+                writePoints(wkb, g, dim);
+                break;
+            case WKB_POLYGON:
+                wkb.putInt(g.children.size());
+                for (Geom ring : g.children)
+                {
+                    wkb.putInt(ring.numPoints);
+                    writePoints(wkb, ring, dim);
+                }
+                break;
+            default:
+                wkb.putInt(g.children.size());
+                for (Geom child : g.children)
+                    writeWkb(wkb, child, dim);
+                break;
+        }
+    }
+
+    private static void writePoints(ByteBuffer wkb, Geom g, int dim)
+    {
+        for (int i = 0; i < g.numPoints; i++)
+        {
+            wkb.putDouble(g.coords[i * 3]);
+            wkb.putDouble(g.coords[i * 3 + 1]);
+            if (dim == 3)
+                wkb.putDouble(g.coords[i * 3 + 2]);
+        }
+    }
+
+    /**************************************************************************/
+    // styles
+
+    private KmlStyle readStyle() throws IOException, XmlPullParserException
+    {
+        KmlStyle style = new KmlStyle();
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            final String tag = localName(this.parser.getName());
+            switch (tag)
+            {
+                case "IconStyle":
+                    style.hasIcon = true;
+                    break;
+                case "LabelStyle":
+                    style.hasLabel = true;
+                    break;
+                case "LineStyle":
+                    style.hasLine = true;
+                    break;
+                case "PolyStyle":
+                    style.hasPoly = true;
+                    break;
+                default:
+                    skip();
+                    continue;
+            }
+
+            final int subDepth = this.parser.getDepth();
+            while (nextChild(subDepth))
+            {
+                final String property = localName(this.parser.getName());
+                if (property.equals("Icon"))
+                {
+                    final int iconDepth = this.parser.getDepth();
+                    while (nextChild(iconDepth))
+                    {
+                        if (localName(this.parser.getName()).equals("href"))
+                            style.iconHref = resolveHref(trimToNull(readText()));
+                        else
+                            skip();
+                    }
+                    continue;
+                } else if (property.equals("color"))
+                {
+                    final int color = KmlStyle.parseColor(readText(), 0xFFFFFFFF);
+                    if (tag.equals("IconStyle"))
+                        style.iconColor = color;
+                    else if (tag.equals("LabelStyle"))
+                        style.labelColor = color;
+                    else if (tag.equals("LineStyle"))
+                        style.lineColor = color;
+                    else
+                        style.polyColor = color;
+                    continue;
+                }
+
+                final String value = readText();
+                if (tag.equals("IconStyle") && property.equals("scale"))
+                    style.iconScale = parseFloat(value, 1f);
+                else if (tag.equals("IconStyle") && property.equals("heading"))
+                    style.iconHeading = parseFloat(value, 0f);
+                else if (tag.equals("LabelStyle") && property.equals("scale"))
+                    style.labelScale = parseFloat(value, 1f);
+                else if (tag.equals("LineStyle") && property.equals("width"))
+                    style.lineWidth = parseFloat(value, 1f);
+                else if (tag.equals("PolyStyle") && property.equals("fill"))
+                    style.fill = parseBoolean(value, true);
+                else if (tag.equals("PolyStyle") && property.equals("outline"))
+                    style.outline = parseBoolean(value, true);
+            }
+        }
+        return style;
+    }
+
+    private void readStyleMap() throws IOException, XmlPullParserException
+    {
+        final String id = this.parser.getAttributeValue(null, "id");
+        String normalUrl = null;
+        KmlStyle normalStyle = null;
+        boolean haveNormal = false;
+        final int depth = this.parser.getDepth();
+        while (nextChild(depth))
+        {
+            if (!localName(this.parser.getName()).equals("Pair"))
+            {
+                skip();
+                continue;
+            }
+            String key = null;
+            String url = null;
+            KmlStyle style = null;
+            final int pairDepth = this.parser.getDepth();
+            while (nextChild(pairDepth))
+            {
+                switch (localName(this.parser.getName()))
+                {
+                    case "key":
+                        key = trimToNull(readText());
+                        break;
+                    case "styleUrl":
+                        url = trimToNull(readText());
+                        break;
+                    case "Style":
+                        style = readStyle();
+                        break;
+                    default:
+                        skip();
+                        break;
+                }
+            }
+            // prefer the 'normal' pair, otherwise the first
+            if (!haveNormal && ("normal".equals(key) || (normalUrl == null && normalStyle == null)))
+            {
+                haveNormal = "normal".equals(key);
+                normalUrl = url;
+                normalStyle = style;
+            }
+        }
+        if (id == null)
+            return;
+        if (normalStyle != null)
+            putStyle(id, normalStyle);
+        else if (normalUrl != null && (this.styleMaps.size() < MAX_SHARED_STYLES || this.styleMaps.containsKey(id)))
+            this.styleMaps.put(id, styleId(normalUrl));
+    }
+
+    private void putStyle(String id, KmlStyle style)
+    {
+        if (id == null)
+            return;
+        if (this.styles.size() < MAX_SHARED_STYLES || this.styles.containsKey(id))
+            this.styles.put(id, style);
+        else if (this.styles.size() == MAX_SHARED_STYLES)
+            Log.w(TAG, "Shared style limit reached, style " + id + " ignored");
+    }
+
+    private KmlStyle resolveStyle(String url)
+    {
+        if (url == null)
+            return null;
+        String id = styleId(url);
+        final String mapped = this.styleMaps.get(id);
+        if (mapped != null)
+            id = mapped;
+        return this.styles.get(id);
+    }
+
+    private static String styleId(String url)
+    {
+        final int idx = url.lastIndexOf('#');
+        return (idx >= 0) ? url.substring(idx + 1) : url;
+    }
+
+    private String resolveHref(String href)
+    {
+        if (href == null)
+            return null;
+        href = href.replace('\\', '/');
+        // a reference without a scheme is relative to the document
+        if (this.hrefBase == null || href.indexOf(':') >= 0 || href.startsWith("/"))
+            return href;
+        return this.hrefBase + href;
+    }
+
+    /**************************************************************************/
+    // parsing
+
+    /**
+     * Advances to the next child element of the element at the specified
+     * depth.
+     *
+     * @return <code>true</code> if positioned on the start of a child
+     * element, <code>false</code> if the end of the parent was reached
+     */
+    private boolean nextChild(int depth) throws IOException, XmlPullParserException
+    {
+        while (true)
+        {
+            final int event = this.parser.next();
+            if (event == XmlPullParser.START_TAG)
+                return true;
+            else if (event == XmlPullParser.END_TAG && this.parser.getDepth() <= depth)
+                return false;
+            else if (event == XmlPullParser.END_DOCUMENT)
+                throw new IOException("Unexpected end of document");
+        }
+    }
+
+    /**
+     * Returns the text content of the current element, skipping any nested
+     * elements, and leaves the parser on its end tag.
+     */
+    private String readText() throws IOException, XmlPullParserException
+    {
+        final int depth = this.parser.getDepth();
+        String text = null;
+        StringBuilder sb = null;
+        while (true)
+        {
+            final int event = this.parser.next();
+            if (event == XmlPullParser.TEXT)
+            {
+                if (text == null)
+                {
+                    text = this.parser.getText();
+                } else
+                {
+                    if (sb == null)
+                        sb = new StringBuilder(text);
+                    sb.append(this.parser.getText());
+                }
+            } else if (event == XmlPullParser.START_TAG)
+            {
+                skip();
+            } else if (event == XmlPullParser.END_TAG && this.parser.getDepth() <= depth)
+            {
+                break;
+            } else if (event == XmlPullParser.END_DOCUMENT)
+            {
+                throw new IOException("Unexpected end of document");
+            }
+        }
+        if (sb != null)
+            return sb.toString();
+        return (text != null) ? text : "";
+    }
+
+    /**
+     * Skips the current element and its children, leaving the parser on its
+     * end tag.
+     */
+    private void skip() throws IOException, XmlPullParserException
+    {
+        final int depth = this.parser.getDepth();
+        while (true)
+        {
+            final int event = this.parser.next();
+            if (event == XmlPullParser.END_TAG && this.parser.getDepth() <= depth)
+                return;
+            else if (event == XmlPullParser.END_DOCUMENT)
+                throw new IOException("Unexpected end of document");
+        }
+    }
+
+    /**
+     * Strips the namespace prefix, if any. Namespace processing is disabled
+     * on the parser, so <code>gx:</code> and prefixed KML elements are
+     * reported with their prefix.
+     */
+    private static String localName(String name)
+    {
+        final int idx = name.indexOf(':');
+        return (idx >= 0) ? name.substring(idx + 1) : name;
+    }
+
+    private static String trimToNull(String s)
+    {
+        if (s == null)
+            return null;
+        s = s.trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    private static float parseFloat(String s, float defaultValue)
+    {
+        try
+        {
+            return Float.parseFloat(s.trim());
+        } catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+
+    private static boolean parseBoolean(String s, boolean defaultValue)
+    {
+        s = s.trim();
+        if (s.equals("1") || s.equalsIgnoreCase("true"))
+            return true;
+        else if (s.equals("0") || s.equalsIgnoreCase("false"))
+            return false;
+        return defaultValue;
+    }
+
+    private final static class Container
+    {
+        final int depth;
+        String name;
+
+        Container(int depth)
+        {
+            this.depth = depth;
+        }
+    }
+
+    private final static class Geom
+    {
+        final int type;
+        final double[] coords;
+        final int numPoints;
+        final boolean hasZ;
+        final ArrayList<Geom> children;
+
+        Geom(int type)
+        {
+            this.type = type;
+            this.coords = null;
+            this.numPoints = 0;
+            this.hasZ = false;
+            this.children = new ArrayList<>(1);
+        }
+
+        Geom(int type, double[] coords, int numPoints, boolean hasZ)
+        {
+            this.type = type;
+            this.coords = new double[numPoints * 3];
+            System.arraycopy(coords, 0, this.coords, 0, numPoints * 3);
+            this.numPoints = numPoints;
+            this.hasZ = hasZ;
+            this.children = null;
+        }
+    }
+}
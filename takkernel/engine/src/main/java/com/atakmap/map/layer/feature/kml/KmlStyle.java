@@ -0,0 +1,204 @@
+package com.atakmap.map.layer.feature.kml;
+
+/**
+ * The substyles of a KML <code>Style</code> that are carried over to features,
+ * converted to an OGR style string. The conversion follows the output of the
+ * OGR LIBKML driver, including the defaults applied by the KML driver
+ * definition, so that content looks the same regardless of which provider
+ * ingested it.
+ *
+ * <P>A style shared by many placemarks is converted once per combination of
+ * geometry kinds and the string reused.
+ */
+final class KmlStyle
+{
+    final static int KIND_POINT = 0x1;
+    final static int KIND_LINE = 0x2;
+    final static int KIND_POLYGON = 0x4;
+
+    final static String DEFAULT_ICON = "http://maps.google.com/mapfiles/kml/pushpin/ylw-pushpin.png";
+
+    private final static int WHITE = 0xFFFFFFFF;
+
+    boolean hasIcon;
+    String iconHref;
+    int iconColor = WHITE;
+    float iconScale = 1f;
+    float iconHeading = 0f;
+
+    boolean hasLabel;
+    int labelColor = WHITE;
+    float labelScale = 1f;
+
+    boolean hasLine;
+    int lineColor = WHITE;
+    float lineWidth = 1f;
+
+    boolean hasPoly;
+    int polyColor = WHITE;
+    boolean fill = true;
+    boolean outline = true;
+
+    private final String[] ogr = new String[(KIND_POINT | KIND_LINE | KIND_POLYGON) + 1];
+
+    /**
+     * Returns a new style with the substyles specified by <code>inline</code>
+     * replacing those of this style.
+     */
+    KmlStyle merge(KmlStyle inline)
+    {
+        KmlStyle retval = new KmlStyle();
+        final KmlStyle icon = inline.hasIcon ? inline : this;
+        retval.hasIcon = icon.hasIcon;
+        retval.iconHref = icon.iconHref;
+        retval.iconColor = icon.iconColor;
+        retval.iconScale = icon.iconScale;
+        retval.iconHeading = icon.iconHeading;
+
+        final KmlStyle label = inline.hasLabel ? inline : this;
+        retval.hasLabel = label.hasLabel;
+        retval.labelColor = label.labelColor;
+        retval.labelScale = label.labelScale;
+
+        final KmlStyle line = inline.hasLine ? inline : this;
+        retval.hasLine = line.hasLine;
+        retval.lineColor = line.lineColor;
+        retval.lineWidth = line.lineWidth;
+
+        final KmlStyle poly = inline.hasPoly ? inline : this;
+        retval.hasPoly = poly.hasPoly;
+        retval.polyColor = poly.polyColor;
+        retval.fill = poly.fill;
+        retval.outline = poly.outline;
+        return retval;
+    }
+
+    /**
+     * Returns the OGR style string for a geometry containing the specified
+     * kinds of geometry.
+     *
+     * @param kinds Bitwise OR of the <code>KIND_*</code> constants
+     */
+    String toOgr(int kinds)
+    {
+        String retval = this.ogr[kinds];
+        if (retval == null)
+            this.ogr[kinds] = retval = toOgrImpl(kinds);
+        return retval;
+    }
+
+    private String toOgrImpl(int kinds)
+    {
+        StringBuilder sb = new StringBuilder();
+        final boolean isLine = (kinds & KIND_LINE) != 0;
+        final boolean isPolygon = (kinds & KIND_POLYGON) != 0;
+        final boolean isPoint = (kinds & KIND_POINT) != 0;
+
+        if (isLine || (isPolygon && (!this.hasPoly || this.outline)))
+        {
+            sb.append("PEN(c:");
+            appendColor(sb, this.hasLine ? this.lineColor : WHITE);
+            sb.append(",w:");
+            appendNumber(sb, this.hasLine ? this.lineWidth : 1f);
+            sb.append("px)");
+        }
+        if (isPolygon && (!this.hasPoly || this.fill))
+        {
+            append(sb, "BRUSH(fc:");
+            appendColor(sb, this.hasPoly ? this.polyColor : WHITE);
+            sb.append(')');
+        }
+        if (isPoint)
+        {
+            append(sb, "SYMBOL(id:\"");
+            if (this.hasIcon && this.iconHref != null)
+                sb.append(this.iconHref);
+            else
+                sb.append(DEFAULT_ICON);
+            sb.append("\",c:");
+            appendColor(sb, this.hasIcon ? this.iconColor : WHITE);
+            if (this.hasIcon && this.iconScale != 1f)
+            {
+                sb.append(",s:");
+                appendNumber(sb, this.iconScale);
+            }
+            if (this.hasIcon && this.iconHeading != 0f)
+            {
+                sb.append(",a:");
+                appendNumber(sb, this.iconHeading);
+            }
+            sb.append(')');
+        }
+        if (this.hasLabel)
+        {
+            append(sb, "LABEL(c:");
+            // a label scale of zero hides the label
+            appendColor(sb, (this.labelScale == 0f) ? (this.labelColor & 0x00FFFFFF) : this.labelColor);
+            sb.append(",w:");
+            appendNumber(sb, this.labelScale * 100f);
+            sb.append(')');
+        } else if (isPoint)
+        {
+            append(sb, "LABEL(dy:48px)");
+        }
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String tool)
+    {
+        if (sb.length() > 0)
+            sb.append(';');
+        sb.append(tool);
+    }
+
+    /**
+     * Appends an ARGB color as <code>#RRGGBBAA</code>
+     */
+    private static void appendColor(StringBuilder sb, int argb)
+    {
+        sb.append('#');
+        appendHex(sb, (argb >> 16) & 0xFF);
+        appendHex(sb, (argb >> 8) & 0xFF);
+        appendHex(sb, argb & 0xFF);
+        appendHex(sb, (argb >>> 24));
+    }
+
+    private static void appendHex(StringBuilder sb, int v)
+    {
+        final String digits = "0123456789ABCDEF";
+        sb.append(digits.charAt(v >> 4));
+        sb.append(digits.charAt(v & 0xF));
+    }
+
+    private static void appendNumber(StringBuilder sb, float v)
+    {
+        if (v == (int) v)
+            sb.append((int) v);
+        else
+            sb.append(v);
+    }
+
+    /**
+     * Parses a KML color, <code>aabbggrr</code>, to ARGB.
+     */
+    static int parseColor(String s, int defaultValue)
+    {
+        if (s == null)
+            return defaultValue;
+        s = s.trim();
+        if (s.startsWith("#"))
+            s = s.substring(1);
+        try
+        {
+            final long abgr = Long.parseLong(s, 16);
+            final int a = (s.length() > 6) ? (int) ((abgr >> 24) & 0xFF) : 0xFF;
+            final int b = (int) ((abgr >> 16) & 0xFF);
+            final int g = (int) ((abgr >> 8) & 0xFF);
+            final int r = (int) (abgr & 0xFF);
+            return (a << 24) | (r << 16) | (g << 8) | b;
+        } catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 
-final class AsynchronousIO2 implements Runnable
+final class AsynchronousIO2 implements ReadRequestScheduler, Runnable
 {
     private Collection<TileReader.ReadRequest> tasks;
     private List<RequestQueue> queues;
@@ -65,7 +65,8 @@ final class AsynchronousIO2 implements Runnable
      * currently being serviced, it will complete before the thread exits.
      * The thread may be restarted by queueing a new task.
      */
-    void release()
+    @Override
+    public void release()
     {
         this.abortRequests(null);
 
@@ -89,7 +90,8 @@ final class AsynchronousIO2 implements Runnable
      *
      * @param reader
      */
-    void abortRequests(TileReader reader)
+    @Override
+    public void abortRequests(TileReader reader)
     {
         synchronized (this.tasks)
         {
@@ -115,7 +117,8 @@ final class AsynchronousIO2 implements Runnable
         }
     }
 
-    void setCameraLocation(final GeoPoint location)
+    @Override
+    public void setCameraLocation(final GeoPoint location)
     {
         synchronized (tasks)
         {
@@ -124,7 +127,8 @@ final class AsynchronousIO2 implements Runnable
         }
     }
 
-    void enqueue(TileReader.ReadRequest request, Envelope bounds)
+    @Override
+    public void enqueue(TileReader.ReadRequest request, Envelope bounds)
     {
         synchronized (this.tasks)
         {
@@ -0,0 +1,42 @@
+package com.atakmap.map.layer.raster.tilereader;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+
+/**
+ * Schedules asynchronous {@link TileReader.ReadRequest} instances for
+ * servicing on behalf of a {@link TileReader.AsynchronousIO}.
+ */
+interface ReadRequestScheduler
+{
+    /**
+     * Queues the specified read request for asynchronous execution.
+     *
+     * @param request A request
+     * @param bounds  The minimum-bounding-box for the request (WGS84)
+     */
+    void enqueue(TileReader.ReadRequest request, Envelope bounds);
+
+    /**
+     * Aborts all unserviced tasks made by the specified reader. If
+     * <code>null</code> tasks for all readers are aborted.
+     *
+     * @param reader
+     */
+    void abortRequests(TileReader reader);
+
+    /**
+     * Sets the location of the camera, which is used to prioritize pending
+     * requests.
+     *
+     * @param location
+     */
+    void setCameraLocation(GeoPoint location);
+
+    /**
+     * Aborts all unserviced tasks and stops the service threads. If a task is
+     * currently being serviced, it will complete before the thread exits.
+     * The threads may be restarted by queueing a new task.
+     */
+    void release();
+}
@@ -1212,7 +1212,7 @@ public abstract class TileReader implements Controls
      */
     public final static class AsynchronousIO
     {
-        AsynchronousIO2 impl;
+        ReadRequestScheduler impl;
 
         private final ThreadLocal<byte[][]> readBuffer = new ThreadLocal<byte[][]>()
         {
@@ -1223,9 +1223,44 @@ public abstract class TileReader implements Controls
             }
         };
 
+        /**
+         * Creates a new instance. Requests are serviced by a fixed set of
+         * workers that bound concurrent memory consumption. Use
+         * {@link #AsynchronousIO(boolean)} to opt in to the work-stealing
+         * scheduler.
+         */
         public AsynchronousIO()
         {
-            impl = new AsynchronousIO2();
+            this(false);
+        }
+
+        /**
+         * Creates a new instance.
+         *
+         * @param workStealing  If <code>true</code>, requests are held in
+         *                      per-reader priority queues and are serviced by
+         *                      a pool of workers sized from the available
+         *                      cores and memory; idle workers steal requests
+         *                      queued for other readers. If
+         *                      <code>false</code>, requests are serviced by a
+         *                      fixed set of workers, one per cost tier.
+         */
+        public AsynchronousIO(boolean workStealing)
+        {
+            this(workStealing ?
+                    createWorkStealingScheduler() : new AsynchronousIO2());
+        }
+
+        AsynchronousIO(ReadRequestScheduler impl)
+        {
+            this.impl = impl;
+        }
+
+        private static ReadRequestScheduler createWorkStealingScheduler()
+        {
+            final WorkStealingReadRequestScheduler scheduler = new WorkStealingReadRequestScheduler();
+            Log.i(TAG, "Using work-stealing read request scheduler with " + scheduler.getWorkerCount() + " workers");
+            return scheduler;
         }
 
         private byte[] getReadBuffer(int size)
@@ -0,0 +1,420 @@
+package com.atakmap.map.layer.raster.tilereader;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.atakmap.map.layer.feature.geometry.Envelope;
+import com.atakmap.math.MathUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ReadRequestScheduler} that keeps a priority queue per
+ * {@link TileReader}. Each queue is ordered by cost, resolution and distance
+ * from the camera, and is re-sorted lazily when the camera moves. Every queue
+ * is assigned a home worker; workers service their home queues first and
+ * steal the highest priority request from the remaining queues when idle.
+ *
+ * <P>Canceled requests are dropped as they reach the head of their queue, and
+ * aborting the requests for a reader only touches that reader's queue.
+ */
+final class WorkStealingReadRequestScheduler implements ReadRequestScheduler
+{
+    /** approximate heap required per concurrently serviced request */
+    private final static long MEMORY_PER_WORKER = 64L * 1024L * 1024L;
+
+    private final static int MIN_WORKERS = 2;
+    private final static int MAX_WORKERS = 32;
+
+    private final int numWorkers;
+    private final Map<TileReader, ReaderQueue> readerQueues;
+    private volatile ReaderQueue[] queues;
+    private final AtomicInteger pending;
+    private final AtomicInteger nextHome;
+
+    private volatile Camera camera;
+
+    private volatile Worker[] workers;
+    private final Object signal;
+    private int idle;
+
+    WorkStealingReadRequestScheduler()
+    {
+        this(getDefaultWorkerCount());
+    }
+
+    WorkStealingReadRequestScheduler(int numWorkers)
+    {
+        if (numWorkers < 1)
+            throw new IllegalArgumentException();
+
+        this.numWorkers = numWorkers;
+        this.readerQueues = new ConcurrentHashMap<>();
+        this.queues = new ReaderQueue[0];
+        this.pending = new AtomicInteger(0);
+        this.nextHome = new AtomicInteger(0);
+        this.camera = new Camera(GeoPoint.createMutable());
+        this.workers = null;
+        this.signal = new Object();
+        this.idle = 0;
+    }
+
+    int getWorkerCount()
+    {
+        return this.numWorkers;
+    }
+
+    @Override
+    public void enqueue(TileReader.ReadRequest request, Envelope bounds)
+    {
+        request.bounds = new Envelope(bounds);
+
+        // the queue may be retired by a concurrent abort; retry against a
+        // fresh queue
+        while (!this.getQueue(request.owner).add(request, this.camera))
+            ;
+        this.pending.incrementAndGet();
+
+        if (this.workers == null)
+            this.start();
+
+        synchronized (this.signal)
+        {
+            if (this.idle > 0)
+                this.signal.notify();
+        }
+    }
+
+    @Override
+    public void abortRequests(TileReader reader)
+    {
+        if (reader == null)
+        {
+            for (ReaderQueue queue : this.queues)
+                this.pending.addAndGet(-queue.cancelAll(false));
+        } else
+        {
+            final ReaderQueue queue = this.readerQueues.get(reader);
+            if (queue != null)
+            {
+                this.pending.addAndGet(-queue.cancelAll(true));
+                this.retire(queue);
+            }
+        }
+
+        final Worker[] active = this.workers;
+        if (active != null)
+        {
+            for (Worker worker : active)
+            {
+                final TileReader.ReadRequest servicing = worker.servicing;
+                if (servicing != null && (reader == null || servicing.owner == reader))
+                    servicing.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void setCameraLocation(GeoPoint location)
+    {
+        final Camera current = this.camera;
+        if (current.location.getLatitude() == location.getLatitude() &&
+                current.location.getLongitude() == location.getLongitude())
+        {
+
+            // pending requests only need to be re-sorted if the camera moved
+            return;
+        }
+        this.camera = new Camera(location);
+    }
+
+    @Override
+    public void release()
+    {
+        this.abortRequests(null);
+
+        synchronized (this)
+        {
+            if (this.workers != null)
+            {
+                for (Worker worker : this.workers)
+                    worker.shutdown = true;
+                this.workers = null;
+            }
+        }
+        synchronized (this.signal)
+        {
+            this.signal.notifyAll();
+        }
+    }
+
+    private synchronized void start()
+    {
+        if (this.workers != null)
+            return;
+
+        final Worker[] started = new Worker[this.numWorkers];
+        for (int i = 0; i < started.length; i++)
+        {
+            started[i] = new Worker(i);
+
+            Thread t = new Thread(started[i]);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.setName("async-io-service-worker-" + i + "@" + Integer.toString(this.hashCode(), 16));
+
+            t.start();
+        }
+        this.workers = started;
+    }
+
+    private ReaderQueue getQueue(TileReader reader)
+    {
+        ReaderQueue queue = this.readerQueues.get(reader);
+        if (queue != null)
+            return queue;
+
+        synchronized (this)
+        {
+            queue = this.readerQueues.get(reader);
+            if (queue == null)
+            {
+                queue = new ReaderQueue(reader, this.nextHome.getAndIncrement() % this.numWorkers);
+                this.readerQueues.put(reader, queue);
+
+                final ReaderQueue[] grown = new ReaderQueue[this.queues.length + 1];
+                System.arraycopy(this.queues, 0, grown, 0, this.queues.length);
+                grown[this.queues.length] = queue;
+                this.queues = grown;
+            }
+            return queue;
+        }
+    }
+
+    private synchronized void retire(ReaderQueue queue)
+    {
+        if (!this.readerQueues.remove(queue.reader, queue))
+            return;
+
+        final List<ReaderQueue> remaining = new ArrayList<>(this.queues.length);
+        for (ReaderQueue q : this.queues)
+            if (q != queue)
+                remaining.add(q);
+        this.queues = remaining.toArray(new ReaderQueue[0]);
+    }
+
+    /**
+     * Removes and returns the highest priority request, preferring the
+     * worker's home queues and stealing from the other queues otherwise.
+     *
+     * @return The next request or <code>null</code> if all queues are empty
+     */
+    private TileReader.ReadRequest next(Worker worker)
+    {
+        while (true)
+        {
+            final ReaderQueue[] snapshot = this.queues;
+            final Camera cam = this.camera;
+            final ReadRequestComparator cmp = worker.getComparator(cam);
+
+            ReaderQueue from = null;
+            TileReader.ReadRequest best = null;
+            for (int pass = 0; pass < 2 && best == null; pass++)
+            {
+                final boolean home = (pass == 0);
+                for (ReaderQueue queue : snapshot)
+                {
+                    if ((queue.home == worker.index) != home)
+                        continue;
+                    final TileReader.ReadRequest head = queue.peek(cam);
+                    if (head == null)
+                        continue;
+                    // NOTE: comparator tail corresponds to higher priority
+                    if (best == null || cmp.compare(head, best) > 0)
+                    {
+                        best = head;
+                        from = queue;
+                    }
+                }
+            }
+            if (best == null)
+                return null;
+            if (from.poll(best))
+                return best;
+            // another worker took the request, try again
+        }
+    }
+
+    static int getDefaultWorkerCount()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        final long maxMemory = runtime.maxMemory();
+        final int byMemory = (maxMemory == Long.MAX_VALUE) ?
+                MAX_WORKERS : (int) Math.min(MAX_WORKERS, maxMemory / MEMORY_PER_WORKER);
+        return MathUtils.clamp(Math.min(runtime.availableProcessors(), byMemory), MIN_WORKERS, MAX_WORKERS);
+    }
+
+    /**************************************************************************/
+
+    private final static class Camera
+    {
+        final GeoPoint location;
+
+        Camera(GeoPoint location)
+        {
+            this.location = GeoPoint.createMutable();
+            this.location.set(location);
+        }
+    }
+
+    private final class ReaderQueue
+    {
+        final TileReader reader;
+        final int home;
+
+        private PriorityQueue<TileReader.ReadRequest> requests;
+        private Camera sortedFor;
+        private boolean retired;
+
+        ReaderQueue(TileReader reader, int home)
+        {
+            this.reader = reader;
+            this.home = home;
+            this.requests = null;
+            this.sortedFor = null;
+            this.retired = false;
+        }
+
+        synchronized boolean add(TileReader.ReadRequest request, Camera cam)
+        {
+            if (this.retired)
+                return false;
+            this.sort(cam);
+            this.requests.add(request);
+            return true;
+        }
+
+        synchronized TileReader.ReadRequest peek(Camera cam)
+        {
+            if (this.requests == null)
+                return null;
+            this.sort(cam);
+            TileReader.ReadRequest head;
+            while ((head = this.requests.peek()) != null && head.canceled)
+            {
+                this.requests.poll();
+                pending.decrementAndGet();
+            }
+            return head;
+        }
+
+        synchronized boolean poll(TileReader.ReadRequest request)
+        {
+            if (this.requests == null || this.requests.peek() != request)
+                return false;
+            this.requests.poll();
+            return true;
+        }
+
+        /**
+         * @param retire If <code>true</code>, the queue will not accept any
+         *               further requests
+         * @return The number of requests removed from the queue
+         */
+        synchronized int cancelAll(boolean retire)
+        {
+            this.retired |= retire;
+            if (this.requests == null)
+                return 0;
+            for (TileReader.ReadRequest request : this.requests)
+                request.cancel();
+            final int retval = this.requests.size();
+            this.requests.clear();
+            return retval;
+        }
+
+        private void sort(Camera cam)
+        {
+            if (this.sortedFor == cam)
+                return;
+            final PriorityQueue<TileReader.ReadRequest> sorted = new PriorityQueue<>(
+                    (this.requests != null) ? Math.max(this.requests.size(), 1) : 11,
+                    Collections.reverseOrder(new ReadRequestComparator(cam.location)));
+            if (this.requests != null)
+                sorted.addAll(this.requests);
+            this.requests = sorted;
+            this.sortedFor = cam;
+        }
+    }
+
+    private final class Worker implements Runnable
+    {
+        final int index;
+        volatile boolean shutdown;
+        volatile TileReader.ReadRequest servicing;
+
+        private Camera comparatorCamera;
+        private ReadRequestComparator comparator;
+
+        Worker(int index)
+        {
+            this.index = index;
+            this.shutdown = false;
+            this.servicing = null;
+        }
+
+        ReadRequestComparator getComparator(Camera cam)
+        {
+            if (this.comparatorCamera != cam)
+            {
+                this.comparator = new ReadRequestComparator(cam.location);
+                this.comparatorCamera = cam;
+            }
+            return this.comparator;
+        }
+
+        @Override
+        public void run()
+        {
+            while (!this.shutdown)
+            {
+                final TileReader.ReadRequest request = next(this);
+                if (request == null)
+                {
+                    synchronized (signal)
+                    {
+                        if (this.shutdown || pending.get() > 0)
+                            continue;
+                        idle++;
+                        try
+                        {
+                            signal.wait();
+                        } catch (InterruptedException ignored)
+                        {
+                        } finally
+                        {
+                            idle--;
+                        }
+                    }
+                    continue;
+                }
+
+                pending.decrementAndGet();
+                if (request.canceled)
+                    continue;
+
+                this.servicing = request;
+                try
+                {
+                    request.run();
+                } finally
+                {
+                    this.servicing = null;
+                }
+            }
+        }
+    }
+}
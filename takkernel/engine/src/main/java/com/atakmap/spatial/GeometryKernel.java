@@ -0,0 +1,466 @@
+package com.atakmap.spatial;
+
+import java.util.PriorityQueue;
+
+/**
+ * Pure Java geometry operations on packed <code>x,y</code> coordinate arrays.
+ * The operations are computed in the plane of the coordinates, consistent
+ * with SpatiaLite.
+ *
+ * <P>Predicates are evaluated against envelopes first. Polygons are prepared
+ * on first use with an index of their edges so that repeated point location
+ * and intersection tests against the same polygon only visit nearby edges.
+ *
+ * <P>This class backs {@link SpatialCalculator} when it is built with
+ * {@link SpatialCalculator.Builder#useGeometryKernel()}.
+ */
+public final class GeometryKernel
+{
+    /** Predicate result, the relationship could not be determined */
+    final static int UNKNOWN = -1;
+    /** Predicate result */
+    final static int FALSE = 0;
+    /** Predicate result */
+    final static int TRUE = 1;
+
+    private final static int EDGES_DISJOINT = 0;
+    private final static int EDGES_TOUCH = 1;
+    private final static int EDGES_CROSS = 2;
+
+    private GeometryKernel()
+    {
+    }
+
+    /**
+     * Simplifies a linestring using the Douglas-Peucker algorithm. The first
+     * and last points are always retained.
+     *
+     * @param xy        The points, packed as <code>x,y</code>
+     * @param numPoints The number of points
+     * @param tolerance The distance tolerance; points within this distance
+     *                  of the simplified line are discarded
+     * @param result    Returns the simplified points, packed as
+     *                  <code>x,y</code>. May be the same array as
+     *                  <code>xy</code>. Must have capacity for
+     *                  <code>numPoints</code> points.
+     * @return The number of points in the simplified linestring
+     */
+    public static int simplifyDouglasPeucker(double[] xy, int numPoints, double tolerance, double[] result)
+    {
+        if (numPoints < 3)
+        {
+            System.arraycopy(xy, 0, result, 0, numPoints * 2);
+            return numPoints;
+        }
+
+        final boolean[] keep = new boolean[numPoints];
+        keep[0] = true;
+        keep[numPoints - 1] = true;
+
+        // explicit stack of [first, last] ranges
+        final int[] stack = new int[numPoints * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = numPoints - 1;
+        while (top > 0)
+        {
+            final int last = stack[--top];
+            final int first = stack[--top];
+            if (last - first < 2)
+                continue;
+
+            double maxDist = -1d;
+            int maxIdx = -1;
+            for (int i = first + 1; i < last; i++)
+            {
+                final double d = distanceToSegment(xy[first * 2], xy[first * 2 + 1],
+                        xy[last * 2], xy[last * 2 + 1],
+                        xy[i * 2], xy[i * 2 + 1]);
+                if (d > maxDist)
+                {
+                    maxDist = d;
+                    maxIdx = i;
+                }
+            }
+            if (maxDist > tolerance)
+            {
+                keep[maxIdx] = true;
+                stack[top++] = first;
+                stack[top++] = maxIdx;
+                stack[top++] = maxIdx;
+                stack[top++] = last;
+            }
+        }
+
+        int n = 0;
+        for (int i = 0; i < numPoints; i++)
+        {
+            if (!keep[i])
+                continue;
+            result[n * 2] = xy[i * 2];
+            result[n * 2 + 1] = xy[i * 2 + 1];
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Simplifies a linestring using the Visvalingam-Whyatt algorithm. Points
+     * are removed in order of the area of the triangle they form with their
+     * neighbors, smallest first, until every remaining point forms a
+     * triangle of at least <code>minArea</code>. The first and last points
+     * are always retained.
+     *
+     * @param xy        The points, packed as <code>x,y</code>
+     * @param numPoints The number of points
+     * @param minArea   The minimum effective area of retained points
+     * @param result    Returns the simplified points, packed as
+     *                  <code>x,y</code>. May be the same array as
+     *                  <code>xy</code>. Must have capacity for
+     *                  <code>numPoints</code> points.
+     * @return The number of points in the simplified linestring
+     */
+    public static int simplifyVisvalingam(double[] xy, int numPoints, double minArea, double[] result)
+    {
+        if (numPoints < 3)
+        {
+            System.arraycopy(xy, 0, result, 0, numPoints * 2);
+            return numPoints;
+        }
+
+        final int[] prev = new int[numPoints];
+        final int[] next = new int[numPoints];
+        final double[] area = new double[numPoints];
+        final boolean[] removed = new boolean[numPoints];
+        for (int i = 0; i < numPoints; i++)
+        {
+            prev[i] = i - 1;
+            next[i] = i + 1;
+        }
+
+        // entries are invalidated by area changes rather than removed
+        PriorityQueue<long[]> queue = new PriorityQueue<>(numPoints, (a, b) -> Double.compare(Double.longBitsToDouble(a[0]), Double.longBitsToDouble(b[0])));
+        for (int i = 1; i < numPoints - 1; i++)
+        {
+            area[i] = triangleArea(xy, i - 1, i, i + 1);
+            queue.add(new long[] {Double.doubleToLongBits(area[i]), i});
+        }
+
+        while (!queue.isEmpty())
+        {
+            final long[] entry = queue.poll();
+            final int i = (int) entry[1];
+            final double a = Double.longBitsToDouble(entry[0]);
+            if (removed[i] || a != area[i])
+                continue;
+            if (a >= minArea)
+                break;
+
+            removed[i] = true;
+            final int p = prev[i];
+            final int n = next[i];
+            next[p] = n;
+            prev[n] = p;
+
+            // a neighbor's area never drops below that of the removed point,
+            // preserving the removal order
+            if (p > 0)
+            {
+                area[p] = Math.max(triangleArea(xy, prev[p], p, n), a);
+                queue.add(new long[] {Double.doubleToLongBits(area[p]), p});
+            }
+            if (n < numPoints - 1)
+            {
+                area[n] = Math.max(triangleArea(xy, p, n, next[n]), a);
+                queue.add(new long[] {Double.doubleToLongBits(area[n]), n});
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < numPoints; i++)
+        {
+            if (removed[i])
+                continue;
+            result[count * 2] = xy[i * 2];
+            result[count * 2 + 1] = xy[i * 2 + 1];
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Tests whether a point lies inside of a polygon ring, using the even-odd
+     * rule. Points on the boundary may be reported as either inside or
+     * outside.
+     *
+     * @param ring      The ring, packed as <code>x,y</code>; may or may not
+     *                  be closed
+     * @param numPoints The number of points in the ring
+     * @param x         The point x
+     * @param y         The point y
+     * @return <code>true</code> if the point is inside of the ring
+     */
+    public static boolean pointInRing(double[] ring, int numPoints, double x, double y)
+    {
+        boolean inside = false;
+        for (int i = 0, j = numPoints - 1; i < numPoints; j = i++)
+        {
+            final double xi = ring[i * 2];
+            final double yi = ring[i * 2 + 1];
+            final double xj = ring[j * 2];
+            final double yj = ring[j * 2 + 1];
+            if ((yi > y) != (yj > y) && x < xi + (y - yi) * (xj - xi) / (yj - yi))
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     * Tests two geometries for intersection. Boundaries are considered, so
+     * geometries that only touch intersect.
+     *
+     * @return {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}
+     */
+    static int intersects(KernelGeometry a, KernelGeometry b)
+    {
+        if (a.getNumPoints() == 0 || b.getNumPoints() == 0)
+            return UNKNOWN;
+        if (!a.envelopeIntersects(b))
+            return FALSE;
+        if (a.type > b.type)
+        {
+            final KernelGeometry t = a;
+            a = b;
+            b = t;
+        }
+
+        switch (a.type)
+        {
+            case SpatialCalculator.GEOM_TYPE_POINT:
+            {
+                final double x = a.xy[0];
+                final double y = a.xy[1];
+                if (b.type == SpatialCalculator.GEOM_TYPE_POINT)
+                    return toResult(x == b.xy[0] && y == b.xy[1]);
+                else if (b.type == SpatialCalculator.GEOM_TYPE_POLYGON)
+                    return toResult(b.locate(x, y) != KernelGeometry.LOCATION_EXTERIOR);
+                for (int i = 0; i < b.getNumPoints() - 1; i++)
+                    if (onSegment(b.xy[i * 2], b.xy[i * 2 + 1], b.xy[i * 2 + 2], b.xy[i * 2 + 3], x, y))
+                        return TRUE;
+                return toResult(b.getNumPoints() == 1 && x == b.xy[0] && y == b.xy[1]);
+            }
+            case SpatialCalculator.GEOM_TYPE_LINESTRING:
+            {
+                if (b.type == SpatialCalculator.GEOM_TYPE_POLYGON &&
+                        b.locate(a.xy[0], a.xy[1]) != KernelGeometry.LOCATION_EXTERIOR)
+                {
+                    return TRUE;
+                }
+                return toResult(edgeRelation(a, b, false, true) != EDGES_DISJOINT);
+            }
+            case SpatialCalculator.GEOM_TYPE_POLYGON:
+            {
+                if (edgeRelation(a, b, false, true) != EDGES_DISJOINT)
+                    return TRUE;
+                // no boundary intersection; one contains the other or they
+                // are disjoint
+                return toResult(b.locate(a.xy[0], a.xy[1]) != KernelGeometry.LOCATION_EXTERIOR ||
+                        a.locate(b.xy[0], b.xy[1]) != KernelGeometry.LOCATION_EXTERIOR);
+            }
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * Tests whether <code>a</code> contains <code>b</code>. Containment is
+     * computed for polygons containing points, linestrings and polygons;
+     * configurations where <code>b</code> touches the boundary of
+     * <code>a</code> are reported as {@link #UNKNOWN}.
+     *
+     * @return {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}
+     */
+    static int contains(KernelGeometry a, KernelGeometry b)
+    {
+        if (a.getNumPoints() == 0 || b.getNumPoints() == 0)
+            return UNKNOWN;
+        if (!a.envelopeContains(b))
+            return FALSE;
+        if (a.type == SpatialCalculator.GEOM_TYPE_POINT && b.type == SpatialCalculator.GEOM_TYPE_POINT)
+            return toResult(a.xy[0] == b.xy[0] && a.xy[1] == b.xy[1]);
+        if (a.type != SpatialCalculator.GEOM_TYPE_POLYGON)
+            return UNKNOWN;
+
+        if (b.type == SpatialCalculator.GEOM_TYPE_POINT)
+            return toResult(a.locate(b.xy[0], b.xy[1]) == KernelGeometry.LOCATION_INTERIOR);
+
+        // the exterior ring of a polygon, or all of a linestring
+        final int numPoints = b.parts[1];
+        for (int i = 0; i < numPoints; i++)
+        {
+            switch (a.locate(b.xy[i * 2], b.xy[i * 2 + 1]))
+            {
+                case KernelGeometry.LOCATION_EXTERIOR:
+                    return FALSE;
+                case KernelGeometry.LOCATION_BOUNDARY:
+                    return UNKNOWN;
+                default:
+                    break;
+            }
+        }
+
+        // all vertices are interior; any crossing of the boundary of a exits
+        switch (edgeRelation(b, a, true, false))
+        {
+            case EDGES_CROSS:
+                return FALSE;
+            case EDGES_TOUCH:
+                return UNKNOWN;
+            default:
+                break;
+        }
+
+        // a hole of a that lies inside of b is not contained
+        if (b.type == SpatialCalculator.GEOM_TYPE_POLYGON)
+        {
+            for (int p = 1; p < a.getNumParts(); p++)
+            {
+                final int loc = b.locate(a.xy[a.parts[p] * 2], a.xy[a.parts[p] * 2 + 1]);
+                if (loc == KernelGeometry.LOCATION_INTERIOR)
+                    return FALSE;
+                else if (loc == KernelGeometry.LOCATION_BOUNDARY)
+                    return UNKNOWN;
+            }
+        }
+        return TRUE;
+    }
+
+    /**
+     * Finds the strongest relationship between the segments of
+     * <code>a</code> and the edges of <code>b</code>.
+     *
+     * @param exteriorOnly If <code>true</code>, only the first part of
+     *                     <code>a</code> is tested
+     * @param stopOnTouch  If <code>true</code>, returns on the first
+     *                     intersection of any kind
+     * @return {@link #EDGES_DISJOINT}, {@link #EDGES_TOUCH} or
+     * {@link #EDGES_CROSS}
+     */
+    private static int edgeRelation(KernelGeometry a, KernelGeometry b, boolean exteriorOnly, boolean stopOnTouch)
+    {
+        final KernelGeometry.EdgeIndex idx = b.getIndex();
+        int result = EDGES_DISJOINT;
+        final int numParts = exteriorOnly ? 1 : a.getNumParts();
+        for (int p = 0; p < numParts; p++)
+        {
+            for (int i = a.parts[p]; i < a.parts[p + 1] - 1; i++)
+            {
+                final double ax = a.xy[i * 2];
+                final double ay = a.xy[i * 2 + 1];
+                final double bx = a.xy[i * 2 + 2];
+                final double by = a.xy[i * 2 + 3];
+                if (Math.max(ay, by) < b.minY || Math.min(ay, by) > b.maxY ||
+                        Math.max(ax, bx) < b.minX || Math.min(ax, bx) > b.maxX)
+                {
+                    continue;
+                }
+
+                final int b1 = idx.bandOf(Math.max(ay, by));
+                for (int band = idx.bandOf(Math.min(ay, by)); band <= b1; band++)
+                {
+                    for (int k = idx.bandStart[band]; k < idx.bandStart[band + 1]; k++)
+                    {
+                        final int e = idx.edges[k];
+                        final double cx = b.xy[e * 2];
+                        final double cy = b.xy[e * 2 + 1];
+                        final double dx = b.xy[e * 2 + 2];
+                        final double dy = b.xy[e * 2 + 3];
+                        if (!segmentsIntersect(ax, ay, bx, by, cx, cy, dx, dy))
+                            continue;
+                        if (segmentsCross(ax, ay, bx, by, cx, cy, dx, dy))
+                            return EDGES_CROSS;
+                        if (stopOnTouch)
+                            return EDGES_TOUCH;
+                        result = EDGES_TOUCH;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    static double orientation(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * Returns <code>true</code> if point <code>p</code> lies on the segment
+     * <code>a-b</code>, including the endpoints.
+     */
+    static boolean onSegment(double ax, double ay, double bx, double by, double px, double py)
+    {
+        return px >= Math.min(ax, bx) && px <= Math.max(ax, bx) &&
+                py >= Math.min(ay, by) && py <= Math.max(ay, by) &&
+                orientation(ax, ay, bx, by, px, py) == 0d;
+    }
+
+    /**
+     * Returns <code>true</code> if segments <code>a-b</code> and
+     * <code>c-d</code> share any point.
+     */
+    static boolean segmentsIntersect(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy)
+    {
+        final double o1 = orientation(ax, ay, bx, by, cx, cy);
+        final double o2 = orientation(ax, ay, bx, by, dx, dy);
+        final double o3 = orientation(cx, cy, dx, dy, ax, ay);
+        final double o4 = orientation(cx, cy, dx, dy, bx, by);
+
+        if (((o1 > 0d && o2 < 0d) || (o1 < 0d && o2 > 0d)) &&
+                ((o3 > 0d && o4 < 0d) || (o3 < 0d && o4 > 0d)))
+        {
+            return true;
+        }
+
+        return (o1 == 0d && onSegment(ax, ay, bx, by, cx, cy)) ||
+                (o2 == 0d && onSegment(ax, ay, bx, by, dx, dy)) ||
+                (o3 == 0d && onSegment(cx, cy, dx, dy, ax, ay)) ||
+                (o4 == 0d && onSegment(cx, cy, dx, dy, bx, by));
+    }
+
+    /**
+     * Returns <code>true</code> if segments <code>a-b</code> and
+     * <code>c-d</code> cross at a single point interior to both.
+     */
+    static boolean segmentsCross(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy)
+    {
+        final double o1 = orientation(ax, ay, bx, by, cx, cy);
+        final double o2 = orientation(ax, ay, bx, by, dx, dy);
+        final double o3 = orientation(cx, cy, dx, dy, ax, ay);
+        final double o4 = orientation(cx, cy, dx, dy, bx, by);
+        return ((o1 > 0d && o2 < 0d) || (o1 < 0d && o2 > 0d)) &&
+                ((o3 > 0d && o4 < 0d) || (o3 < 0d && o4 > 0d));
+    }
+
+    static double distanceToSegment(double ax, double ay, double bx, double by, double px, double py)
+    {
+        final double dx = bx - ax;
+        final double dy = by - ay;
+        final double len2 = dx * dx + dy * dy;
+        double t = (len2 > 0d) ? ((px - ax) * dx + (py - ay) * dy) / len2 : 0d;
+        t = Math.max(0d, Math.min(t, 1d));
+        final double ex = px - (ax + t * dx);
+        final double ey = py - (ay + t * dy);
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+
+    private static double triangleArea(double[] xy, int a, int b, int c)
+    {
+        return Math.abs(orientation(xy[a * 2], xy[a * 2 + 1], xy[b * 2], xy[b * 2 + 1], xy[c * 2], xy[c * 2 + 1])) / 2d;
+    }
+
+    private static int toResult(boolean b)
+    {
+        return b ? TRUE : FALSE;
+    }
+}
@@ -0,0 +1,322 @@
+package com.atakmap.spatial;
+
+import com.atakmap.map.layer.feature.geometry.Geometry;
+import com.atakmap.map.layer.feature.geometry.LineString;
+import com.atakmap.map.layer.feature.geometry.Point;
+import com.atakmap.map.layer.feature.geometry.Polygon;
+
+/**
+ * Immutable 2D point, linestring or polygon stored as packed
+ * <code>x,y</code> coordinates, for use with {@link GeometryKernel}. Polygon
+ * rings are always closed.
+ */
+final class KernelGeometry
+{
+    final static int LOCATION_EXTERIOR = 0;
+    final static int LOCATION_BOUNDARY = 1;
+    final static int LOCATION_INTERIOR = 2;
+
+    /** {@link SpatialCalculator#GEOM_TYPE_POINT}, <code>LINESTRING</code> or <code>POLYGON</code> */
+    final int type;
+    /** packed <code>x,y</code> coordinates */
+    final double[] xy;
+    /** index of the first point of each ring, followed by the total number of points */
+    final int[] parts;
+
+    final double minX;
+    final double minY;
+    final double maxX;
+    final double maxY;
+
+    private EdgeIndex index;
+
+    private KernelGeometry(int type, double[] xy, int[] parts)
+    {
+        this.type = type;
+        this.xy = xy;
+        this.parts = parts;
+
+        double mnx = Double.POSITIVE_INFINITY;
+        double mny = Double.POSITIVE_INFINITY;
+        double mxx = Double.NEGATIVE_INFINITY;
+        double mxy = Double.NEGATIVE_INFINITY;
+        final int numPoints = this.getNumPoints();
+        for (int i = 0; i < numPoints; i++)
+        {
+            final double x = xy[i * 2];
+            final double y = xy[i * 2 + 1];
+            if (x < mnx)
+                mnx = x;
+            if (x > mxx)
+                mxx = x;
+            if (y < mny)
+                mny = y;
+            if (y > mxy)
+                mxy = y;
+        }
+        this.minX = mnx;
+        this.minY = mny;
+        this.maxX = mxx;
+        this.maxY = mxy;
+    }
+
+    static KernelGeometry point(double x, double y)
+    {
+        return new KernelGeometry(SpatialCalculator.GEOM_TYPE_POINT, new double[] {x, y}, new int[] {0, 1});
+    }
+
+    /**
+     * @param xy        Packed coordinates, not copied
+     * @param numPoints The number of points
+     */
+    static KernelGeometry lineString(double[] xy, int numPoints)
+    {
+        return new KernelGeometry(SpatialCalculator.GEOM_TYPE_LINESTRING, xy, new int[] {0, numPoints});
+    }
+
+    /**
+     * Creates a polygon. Rings that are not closed are closed.
+     *
+     * @param rings The packed coordinates of each ring, exterior ring first
+     * @param sizes The number of points in each ring
+     * @return The polygon, or <code>null</code> if the exterior ring is empty
+     */
+    static KernelGeometry polygon(double[][] rings, int[] sizes)
+    {
+        if (rings.length == 0 || sizes[0] < 1)
+            return null;
+
+        int total = 0;
+        for (int i = 0; i < rings.length; i++)
+            total += sizes[i] + (isClosed(rings[i], sizes[i]) ? 0 : 1);
+
+        final double[] xy = new double[total * 2];
+        final int[] parts = new int[rings.length + 1];
+        int pos = 0;
+        for (int i = 0; i < rings.length; i++)
+        {
+            parts[i] = pos;
+            System.arraycopy(rings[i], 0, xy, pos * 2, sizes[i] * 2);
+            pos += sizes[i];
+            if (!isClosed(rings[i], sizes[i]))
+            {
+                xy[pos * 2] = rings[i][0];
+                xy[pos * 2 + 1] = rings[i][1];
+                pos++;
+            }
+        }
+        parts[rings.length] = pos;
+        return new KernelGeometry(SpatialCalculator.GEOM_TYPE_POLYGON, xy, parts);
+    }
+
+    /**
+     * Converts a 2D point, linestring or polygon.
+     *
+     * @return The converted geometry, or <code>null</code> if the geometry is
+     * not supported
+     */
+    static KernelGeometry from(Geometry geometry)
+    {
+        if (geometry == null || geometry.getDimension() != 2)
+            return null;
+        if (geometry instanceof Point)
+        {
+            final Point p = (Point) geometry;
+            return point(p.getX(), p.getY());
+        } else if (geometry instanceof LineString)
+        {
+            final LineString ls = (LineString) geometry;
+            return lineString(pack(ls), ls.getNumPoints());
+        } else if (geometry instanceof Polygon)
+        {
+            final Polygon poly = (Polygon) geometry;
+            final LineString ext = poly.getExteriorRing();
+            if (ext == null)
+                return null;
+            final int numRings = 1 + poly.getInteriorRings().size();
+            final double[][] rings = new double[numRings][];
+            final int[] sizes = new int[numRings];
+            rings[0] = pack(ext);
+            sizes[0] = ext.getNumPoints();
+            int i = 1;
+            for (LineString inner : poly.getInteriorRings())
+            {
+                rings[i] = pack(inner);
+                sizes[i] = inner.getNumPoints();
+                i++;
+            }
+            return polygon(rings, sizes);
+        }
+        return null;
+    }
+
+    Geometry toGeometry()
+    {
+        switch (this.type)
+        {
+            case SpatialCalculator.GEOM_TYPE_POINT:
+                return new Point(this.xy[0], this.xy[1]);
+            case SpatialCalculator.GEOM_TYPE_LINESTRING:
+            {
+                LineString ls = new LineString(2);
+                ls.addPoints(this.xy, 0, this.getNumPoints(), 2);
+                return ls;
+            }
+            case SpatialCalculator.GEOM_TYPE_POLYGON:
+            {
+                Polygon poly = new Polygon(2);
+                for (int i = 0; i < this.getNumParts(); i++)
+                {
+                    LineString ring = new LineString(2);
+                    ring.addPoints(this.xy, this.parts[i] * 2, this.parts[i + 1] - this.parts[i], 2);
+                    poly.addRing(ring);
+                }
+                return poly;
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    int getNumPoints()
+    {
+        return this.parts[this.parts.length - 1];
+    }
+
+    int getNumParts()
+    {
+        return this.parts.length - 1;
+    }
+
+    boolean envelopeIntersects(KernelGeometry other)
+    {
+        return this.minX <= other.maxX && this.maxX >= other.minX &&
+                this.minY <= other.maxY && this.maxY >= other.minY;
+    }
+
+    boolean envelopeContains(KernelGeometry other)
+    {
+        return this.minX <= other.minX && this.maxX >= other.maxX &&
+                this.minY <= other.minY && this.maxY >= other.maxY;
+    }
+
+    /**
+     * Returns the location of the specified point relative to this polygon.
+     * Holes are handled by even-odd crossing over all rings.
+     */
+    int locate(double x, double y)
+    {
+        if (x < this.minX || x > this.maxX || y < this.minY || y > this.maxY)
+            return LOCATION_EXTERIOR;
+
+        final EdgeIndex idx = this.getIndex();
+        final int band = idx.bandOf(y);
+        boolean inside = false;
+        for (int i = idx.bandStart[band]; i < idx.bandStart[band + 1]; i++)
+        {
+            final int e = idx.edges[i];
+            final double x1 = this.xy[e * 2];
+            final double y1 = this.xy[e * 2 + 1];
+            final double x2 = this.xy[e * 2 + 2];
+            final double y2 = this.xy[e * 2 + 3];
+
+            if (GeometryKernel.onSegment(x1, y1, x2, y2, x, y))
+                return LOCATION_BOUNDARY;
+            if ((y1 > y) != (y2 > y) && x < x1 + (y - y1) * (x2 - x1) / (y2 - y1))
+                inside = !inside;
+        }
+        return inside ? LOCATION_INTERIOR : LOCATION_EXTERIOR;
+    }
+
+    /**
+     * Returns the prepared edge index, building it on first use.
+     */
+    EdgeIndex getIndex()
+    {
+        if (this.index == null)
+            this.index = new EdgeIndex(this);
+        return this.index;
+    }
+
+    private static boolean isClosed(double[] ring, int size)
+    {
+        return size > 1 &&
+                ring[0] == ring[(size - 1) * 2] &&
+                ring[1] == ring[(size - 1) * 2 + 1];
+    }
+
+    private static double[] pack(LineString ls)
+    {
+        final int n = ls.getNumPoints();
+        final double[] xy = new double[n * 2];
+        for (int i = 0; i < n; i++)
+        {
+            xy[i * 2] = ls.getX(i);
+            xy[i * 2 + 1] = ls.getY(i);
+        }
+        return xy;
+    }
+
+    /**
+     * Index of the edges of a geometry into horizontal bands. Each band lists
+     * the edges whose latitude range overlaps it, so that point location and
+     * segment tests only visit the edges near the query.
+     */
+    final static class EdgeIndex
+    {
+        final double minY;
+        final double bandHeight;
+        final int numBands;
+        /** offsets into {@link #edges} for each band, followed by the total */
+        final int[] bandStart;
+        /** the index of the first point of each edge */
+        final int[] edges;
+
+        EdgeIndex(KernelGeometry g)
+        {
+            int numEdges = 0;
+            for (int p = 0; p < g.getNumParts(); p++)
+                numEdges += Math.max(g.parts[p + 1] - g.parts[p] - 1, 0);
+
+            this.minY = g.minY;
+            final double height = g.maxY - g.minY;
+            this.numBands = (height > 0d) ? Math.max(1, Math.min(numEdges / 2, 4096)) : 1;
+            this.bandHeight = (height > 0d) ? height / this.numBands : 1d;
+
+            // count the edges in each band, then fill
+            final int[] start = new int[this.numBands + 1];
+            for (int p = 0; p < g.getNumParts(); p++)
+            {
+                for (int e = g.parts[p]; e < g.parts[p + 1] - 1; e++)
+                {
+                    final int b1 = this.bandOf(Math.max(g.xy[e * 2 + 1], g.xy[e * 2 + 3]));
+                    for (int b = this.bandOf(Math.min(g.xy[e * 2 + 1], g.xy[e * 2 + 3])); b <= b1; b++)
+                        start[b + 1]++;
+                }
+            }
+            for (int b = 0; b < this.numBands; b++)
+                start[b + 1] += start[b];
+
+            final int[] cursor = new int[this.numBands];
+            System.arraycopy(start, 0, cursor, 0, this.numBands);
+            final int[] fill = new int[start[this.numBands]];
+            for (int p = 0; p < g.getNumParts(); p++)
+            {
+                for (int e = g.parts[p]; e < g.parts[p + 1] - 1; e++)
+                {
+                    final int b1 = this.bandOf(Math.max(g.xy[e * 2 + 1], g.xy[e * 2 + 3]));
+                    for (int b = this.bandOf(Math.min(g.xy[e * 2 + 1], g.xy[e * 2 + 3])); b <= b1; b++)
+                        fill[cursor[b]++] = e;
+                }
+            }
+            this.bandStart = start;
+            this.edges = fill;
+        }
+
+        int bandOf(double y)
+        {
+            final int b = (int) ((y - this.minY) / this.bandHeight);
+            return Math.max(0, Math.min(b, this.numBands - 1));
+        }
+    }
+}
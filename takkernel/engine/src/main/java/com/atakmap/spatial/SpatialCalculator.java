@@ -9,7 +9,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteException;
@@ -160,6 +162,19 @@ public final class SpatialCalculator
     private StatementIface updateGeomBlob;
     private StatementIface updateGeomWkt;
 
+    /**
+     * Handles at or above this value are geometries held by the
+     * {@link GeometryKernel}, rather than rows in the database.
+     */
+    private final static long KERNEL_HANDLE_BASE = 1L << 48L;
+
+    /**
+     * Geometries held by the {@link GeometryKernel}; <code>null</code> if the
+     * kernel is not in use.
+     */
+    private final Map<Long, KernelEntry> kernelGeometries;
+    private long nextKernelHandle = KERNEL_HANDLE_BASE;
+
     /**
      * A new private constructor that takes Builder instance.
      *
@@ -168,6 +183,7 @@ public final class SpatialCalculator
     private SpatialCalculator(Builder builder)
     {
         this.dimension = builder.dimension;
+        this.kernelGeometries = (builder.geometryKernel && this.dimension == 2) ? new HashMap<>() : null;
         File tempDir = getRuntimeTempDir();
         boolean memory = builder.inMemory | (tempDir == null);
         try
@@ -392,6 +408,8 @@ public final class SpatialCalculator
                     FileSystemUtils.delete(this.spatialdbFile);
             }
 
+            if (this.kernelGeometries != null)
+                this.kernelGeometries.clear();
             this.disposed = true;
         }
     }
@@ -428,6 +446,8 @@ public final class SpatialCalculator
         if (this.clear == null)
             this.clear = this.database.compileStatement("DELETE FROM Calculator");
         this.clear.execute();
+        if (this.kernelGeometries != null)
+            this.kernelGeometries.clear();
     }
 
     /**
@@ -442,6 +462,11 @@ public final class SpatialCalculator
      *
      * <P>Once a batch is started, instructions may only be issued to the
      * calculator on the thread that the batch was started on.
+     *
+     * <P>If the calculator was built with
+     * {@link Builder#useGeometryKernel()}, points, linestrings and polygons
+     * created or updated through the kernel are not part of the batch and are
+     * not undone if the batch is not committed.
      */
     public void beginBatch()
     {
@@ -509,6 +534,9 @@ public final class SpatialCalculator
      */
     public long createPoint(Point point)
     {
+        if (this.kernelGeometries != null && point.getDimension() == 2)
+            return this.createKernelGeometry(KernelGeometry.point(point.getX(), point.getY()));
+
         final double[] bindArgs = new double[this.dimension];
 
         bindArgs[0] = point.getX();
@@ -607,6 +635,22 @@ public final class SpatialCalculator
 
     private <T> long createLineString(Iterator<T> points, GeoPointInterop<T> fn)
     {
+        if (this.kernelGeometries != null)
+        {
+            double[] xy = new double[32];
+            int numPoints = 0;
+            while (points.hasNext())
+            {
+                if (numPoints * 2 == xy.length)
+                    xy = Arrays.copyOf(xy, xy.length * 2);
+                final T geo = points.next();
+                xy[numPoints * 2] = fn.getLongitude(geo);
+                xy[numPoints * 2 + 1] = fn.getLatitude(geo);
+                numPoints++;
+            }
+            return this.createKernelGeometry(KernelGeometry.lineString(xy, numPoints));
+        }
+
         LineString line = new LineString(2);
         T geo;
         while (points.hasNext())
@@ -741,6 +785,13 @@ public final class SpatialCalculator
 
     private <T> long createPolygon(Collection<T> points, Collection<Collection<T>> innerRings, GeoPointInterop<T> fn)
     {
+        if (this.kernelGeometries != null)
+        {
+            final KernelGeometry kernelPolygon = createKernelPolygon(points, innerRings, fn);
+            if (kernelPolygon != null)
+                return this.createKernelGeometry(kernelPolygon);
+        }
+
         Polygon polygon = new Polygon(2);
         LineString ring;
 
@@ -778,6 +829,12 @@ public final class SpatialCalculator
 
     public long createGeometry(Geometry geometry)
     {
+        if (this.kernelGeometries != null)
+        {
+            final KernelGeometry kernelGeometry = KernelGeometry.from(geometry);
+            if (kernelGeometry != null)
+                return this.createKernelGeometry(kernelGeometry);
+        }
         return this.createGeometry(createGeometryBlob(geometry));
     }
 
@@ -830,6 +887,13 @@ public final class SpatialCalculator
      */
     public long createPolygon(GeoPoint a, GeoPoint b, GeoPoint c, GeoPoint d)
     {
+        if (this.kernelGeometries != null)
+            return this.createKernelGeometry(createKernelQuad(
+                    a.getLatitude(), a.getLongitude(),
+                    b.getLatitude(), b.getLongitude(),
+                    c.getLatitude(), c.getLongitude(),
+                    d.getLatitude(), d.getLongitude()));
+
         return this.createGeometry(
                 this.createQuadBlob(
                         a.getLatitude(), a.getLongitude(),
@@ -851,6 +915,13 @@ public final class SpatialCalculator
      */
     public long createPolygon(IGeoPoint a, IGeoPoint b, IGeoPoint c, IGeoPoint d)
     {
+        if (this.kernelGeometries != null)
+            return this.createKernelGeometry(createKernelQuad(
+                    a.getLatitude(), a.getLongitude(),
+                    b.getLatitude(), b.getLongitude(),
+                    c.getLatitude(), c.getLongitude(),
+                    d.getLatitude(), d.getLongitude()));
+
         return this.createGeometry(
                 this.createQuadBlob(
                         a.getLatitude(), a.getLongitude(),
@@ -866,6 +937,14 @@ public final class SpatialCalculator
      */
     public void deleteGeometry(long handle)
     {
+        if (isKernelHandle(handle))
+        {
+            final KernelEntry entry = (this.kernelGeometries != null) ? this.kernelGeometries.remove(handle) : null;
+            if (entry == null || entry.sqlHandle == 0L)
+                return;
+            handle = entry.sqlHandle;
+        }
+
         try
         {
             if (this.deleteGeom == null)
@@ -895,12 +974,16 @@ public final class SpatialCalculator
      */
     public int getGeometryType(long handle)
     {
+        final KernelGeometry kernelGeometry = this.getKernelGeometry(handle);
+        if (kernelGeometry != null)
+            return kernelGeometry.type;
+
         CursorIface result = null;
         try
         {
             if (this.arr1 == null)
                 this.arr1 = new String[1];
-            this.arr1[0] = String.valueOf(handle);
+            this.arr1[0] = String.valueOf(this.sqlHandle(handle));
             result = this.database.query("SELECT GeometryType((SELECT geom FROM Calculator WHERE id = ?))", this.arr1);
             if (!result.moveToNext())
                 return 0;
@@ -923,12 +1006,16 @@ public final class SpatialCalculator
      */
     public byte[] getGeometryAsBlob(long handle)
     {
+        final KernelGeometry kernelGeometry = this.getKernelGeometry(handle);
+        if (kernelGeometry != null)
+            return createGeometryBlob(kernelGeometry.toGeometry());
+
         CursorIface result = null;
         try
         {
             if (this.arr1 == null)
                 this.arr1 = new String[1];
-            this.arr1[0] = String.valueOf(handle);
+            this.arr1[0] = String.valueOf(this.sqlHandle(handle));
             result = this.database.query("SELECT geom FROM Calculator WHERE id = ?", this.arr1);
             if (!result.moveToNext())
                 return null;
@@ -956,7 +1043,7 @@ public final class SpatialCalculator
         {
             if (this.arr1 == null)
                 this.arr1 = new String[1];
-            this.arr1[0] = String.valueOf(handle);
+            this.arr1[0] = String.valueOf(this.sqlHandle(handle));
             result = this.database.query("SELECT AsText(geom) FROM Calculator WHERE id = ?", this.arr1);
             if (!result.moveToNext())
                 return null;
@@ -976,12 +1063,16 @@ public final class SpatialCalculator
      */
     public Geometry getGeometry(long handle)
     {
+        final KernelGeometry kernelGeometry = this.getKernelGeometry(handle);
+        if (kernelGeometry != null)
+            return kernelGeometry.toGeometry();
+
         CursorIface result = null;
         try
         {
             if (this.arr1 == null)
                 this.arr1 = new String[1];
-            this.arr1[0] = String.valueOf(handle);
+            this.arr1[0] = String.valueOf(this.sqlHandle(handle));
             result = this.database.query("SELECT geom FROM Calculator WHERE id = ?", this.arr1);
             if (!result.moveToNext())
                 return null;
@@ -1003,13 +1094,22 @@ public final class SpatialCalculator
      */
     public boolean intersects(long geom1, long geom2)
     {
+        final KernelGeometry kernelGeom1 = this.getKernelGeometry(geom1);
+        final KernelGeometry kernelGeom2 = (kernelGeom1 != null) ? this.getKernelGeometry(geom2) : null;
+        if (kernelGeom2 != null)
+        {
+            final int kernelResult = GeometryKernel.intersects(kernelGeom1, kernelGeom2);
+            if (kernelResult != GeometryKernel.UNKNOWN)
+                return (kernelResult == GeometryKernel.TRUE);
+        }
+
         CursorIface result = null;
         try
         {
             if (this.arr2 == null)
                 this.arr2 = new String[2];
-            this.arr2[0] = String.valueOf(geom1);
-            this.arr2[1] = String.valueOf(geom2);
+            this.arr2[0] = String.valueOf(this.sqlHandle(geom1));
+            this.arr2[1] = String.valueOf(this.sqlHandle(geom2));
             result = this.database.query("SELECT Intersects((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?))", this.arr2);
             if (!result.moveToNext())
                 return false;
@@ -1032,13 +1132,22 @@ public final class SpatialCalculator
      */
     public boolean contains(long geom1, long geom2)
     {
+        final KernelGeometry kernelGeom1 = this.getKernelGeometry(geom1);
+        final KernelGeometry kernelGeom2 = (kernelGeom1 != null) ? this.getKernelGeometry(geom2) : null;
+        if (kernelGeom2 != null)
+        {
+            final int kernelResult = GeometryKernel.contains(kernelGeom1, kernelGeom2);
+            if (kernelResult != GeometryKernel.UNKNOWN)
+                return (kernelResult == GeometryKernel.TRUE);
+        }
+
         CursorIface result = null;
         try
         {
             if (this.arr2 == null)
                 this.arr2 = new String[2];
-            this.arr2[0] = String.valueOf(geom1);
-            this.arr2[1] = String.valueOf(geom2);
+            this.arr2[0] = String.valueOf(this.sqlHandle(geom1));
+            this.arr2[1] = String.valueOf(this.sqlHandle(geom2));
             result = this.database.query("SELECT Contains((SELECT geom FROM Calculator WHERE id = ?), (SELECT geom FROM Calculator WHERE id = ?))", this.arr2);
             if (!result.moveToNext())
                 return false;
@@ -1061,6 +1170,9 @@ public final class SpatialCalculator
      */
     public long intersection(long geom1, long geom2)
     {
+        geom1 = this.sqlHandle(geom1);
+        geom2 = this.sqlHandle(geom2);
+
         try
         {
             if (this.intersectionInsert == null)
@@ -1093,6 +1205,10 @@ public final class SpatialCalculator
      */
     public void intersection(long geom1, long geom2, long result)
     {
+        geom1 = this.sqlHandle(geom1);
+        geom2 = this.sqlHandle(geom2);
+        result = this.sqlResultHandle(result);
+
         try
         {
             if (this.intersectionUpdate == null)
@@ -1120,6 +1236,9 @@ public final class SpatialCalculator
      */
     public long union(long geom1, long geom2)
     {
+        geom1 = this.sqlHandle(geom1);
+        geom2 = this.sqlHandle(geom2);
+
         try
         {
             if (this.unionInsert == null)
@@ -1152,6 +1271,10 @@ public final class SpatialCalculator
      */
     public void union(long geom1, long geom2, long result)
     {
+        geom1 = this.sqlHandle(geom1);
+        geom2 = this.sqlHandle(geom2);
+        result = this.sqlResultHandle(result);
+
         try
         {
             if (this.unionUpdate == null)
@@ -1184,6 +1307,10 @@ public final class SpatialCalculator
      */
     public void unionWithBuffer(long geom1, long geom2, double dist, long result)
     {
+        geom1 = this.sqlHandle(geom1);
+        geom2 = this.sqlHandle(geom2);
+        result = this.sqlResultHandle(result);
+
         try
         {
             if (this.unionUpdate == null)
@@ -1209,6 +1336,8 @@ public final class SpatialCalculator
      */
     public long unaryUnion(long geom)
     {
+        geom = this.sqlHandle(geom);
+
         try
         {
             if (this.unaryUnionInsert == null)
@@ -1233,6 +1362,9 @@ public final class SpatialCalculator
      */
     public void unaryUnion(long geom, long result)
     {
+        geom = this.sqlHandle(geom);
+        result = this.sqlResultHandle(result);
+
         try
         {
             if (this.unaryUnionUpdate == null)
@@ -1258,6 +1390,9 @@ public final class SpatialCalculator
      */
     public long difference(long geom1, long geom2)
     {
+        geom1 = this.sqlHandle(geom1);
+        geom2 = this.sqlHandle(geom2);
+
         try
         {
             if (this.differenceInsert == null)
@@ -1290,6 +1425,10 @@ public final class SpatialCalculator
      */
     public void difference(long geom1, long geom2, long result)
     {
+        geom1 = this.sqlHandle(geom1);
+        geom2 = this.sqlHandle(geom2);
+        result = this.sqlResultHandle(result);
+
         try
         {
             if (this.differenceUpdate == null)
@@ -1319,6 +1458,12 @@ public final class SpatialCalculator
      */
     public long simplify(long handle, double tolerance, boolean preserveTopology)
     {
+        final KernelGeometry kernelGeometry = this.getKernelGeometry(handle);
+        if (!preserveTopology && kernelGeometry != null && kernelGeometry.type == GEOM_TYPE_LINESTRING)
+            return this.createKernelGeometry(simplifyKernelLineString(kernelGeometry, tolerance));
+
+        handle = this.sqlHandle(handle);
+
         StatementIface stmt = null;
         try
         {
@@ -1366,6 +1511,16 @@ public final class SpatialCalculator
      */
     public void simplify(long handle, double tolerance, boolean preserveTopology, long result)
     {
+        final KernelGeometry kernelGeometry = this.getKernelGeometry(handle);
+        if (!preserveTopology && kernelGeometry != null && kernelGeometry.type == GEOM_TYPE_LINESTRING &&
+                this.updateKernelGeometry(result, simplifyKernelLineString(kernelGeometry, tolerance)))
+        {
+            return;
+        }
+
+        handle = this.sqlHandle(handle);
+        result = this.sqlResultHandle(result);
+
         StatementIface stmt = null;
         try
         {
@@ -1469,6 +1624,22 @@ public final class SpatialCalculator
 
     private <T> Collection<T> simplify(int numPoints, Iterator<T> points, double tolerance, boolean preserveTopology, GeoPointInterop<T> fn)
     {
+        if (this.kernelGeometries != null && !preserveTopology)
+        {
+            final double[] xy = new double[numPoints * 2];
+            for (int i = 0; i < numPoints; i++)
+            {
+                final T geo = points.next();
+                xy[i * 2] = fn.getLongitude(geo);
+                xy[i * 2 + 1] = fn.getLatitude(geo);
+            }
+            final int count = GeometryKernel.simplifyDouglasPeucker(xy, numPoints, tolerance, xy);
+            Collection<T> retval = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                retval.add(fn.create(xy[i * 2 + 1], xy[i * 2]));
+            return retval;
+        }
+
         long handle = 0L;
         try
         {
@@ -1497,6 +1668,8 @@ public final class SpatialCalculator
      */
     public long buffer(long handle, double dist)
     {
+        handle = this.sqlHandle(handle);
+
         try
         {
             if (this.bufferInsert == null)
@@ -1530,6 +1703,9 @@ public final class SpatialCalculator
      */
     public void buffer(long handle, double dist, long result)
     {
+        handle = this.sqlHandle(handle);
+        result = this.sqlResultHandle(result);
+
         try
         {
             if (this.bufferUpdate == null)
@@ -1708,6 +1884,9 @@ public final class SpatialCalculator
 
     <T> void updatePolygon(long handle, Collection<T> points, Collection<Collection<T>> innerRings, GeoPointInterop<T> fn)
     {
+        if (isKernelHandle(handle) && this.updateKernelGeometry(handle, createKernelPolygon(points, innerRings, fn)))
+            return;
+
         Polygon polygon = new Polygon(2);
         LineString ring;
 
@@ -1750,6 +1929,15 @@ public final class SpatialCalculator
 
     private <T> void updatePolygon(long handle, T a, T b, T c, T d, GeoPointInterop<T> fn)
     {
+        if (isKernelHandle(handle) && this.updateKernelGeometry(handle, createKernelQuad(
+                fn.getLatitude(a), fn.getLongitude(a),
+                fn.getLatitude(b), fn.getLongitude(b),
+                fn.getLatitude(c), fn.getLongitude(c),
+                fn.getLatitude(d), fn.getLongitude(d))))
+        {
+            return;
+        }
+
         this.updateGeometry(
                 handle,
                 this.createQuadBlob(
@@ -1762,6 +1950,8 @@ public final class SpatialCalculator
 
     private void updateGeometry(long handle, byte[] blob)
     {
+        handle = this.sqlResultHandle(handle);
+
         try
         {
             if (this.updateGeomBlob == null)
@@ -1790,6 +1980,10 @@ public final class SpatialCalculator
 
     private void updatePoint(long handle, double latitude, double longitude)
     {
+        if (isKernelHandle(handle) && this.updateKernelGeometry(handle, KernelGeometry.point(longitude, latitude)))
+            return;
+        handle = this.sqlResultHandle(handle);
+
         try
         {
             if (this.updatePoint == null)
@@ -1807,6 +2001,127 @@ public final class SpatialCalculator
         }
     }
 
+    private long createKernelGeometry(KernelGeometry geometry)
+    {
+        final long handle = this.nextKernelHandle++;
+        this.kernelGeometries.put(handle, new KernelEntry(geometry));
+        return handle;
+    }
+
+    /**
+     * Replaces the geometry for the specified kernel handle.
+     *
+     * @return <code>true</code> if the handle is a kernel handle and was
+     * updated
+     */
+    private boolean updateKernelGeometry(long handle, KernelGeometry geometry)
+    {
+        if (geometry == null || this.kernelGeometries == null)
+            return false;
+        final KernelEntry entry = this.kernelGeometries.get(handle);
+        if (entry == null)
+            return false;
+        entry.geometry = geometry;
+        entry.sqlDirty = true;
+        return true;
+    }
+
+    /**
+     * Returns the kernel geometry for the specified handle, or
+     * <code>null</code> if the geometry is only available in the database.
+     */
+    private KernelGeometry getKernelGeometry(long handle)
+    {
+        if (this.kernelGeometries == null)
+            return null;
+        final KernelEntry entry = this.kernelGeometries.get(handle);
+        return (entry != null) ? entry.geometry : null;
+    }
+
+    /**
+     * Resolves the specified handle to a row in the database, inserting or
+     * updating the row for a kernel geometry as necessary.
+     */
+    private long sqlHandle(long handle)
+    {
+        if (!isKernelHandle(handle) || this.kernelGeometries == null)
+            return handle;
+        final KernelEntry entry = this.kernelGeometries.get(handle);
+        if (entry == null)
+            return handle;
+        if (entry.sqlHandle == 0L)
+        {
+            entry.sqlHandle = this.createGeometry(createGeometryBlob(entry.geometry.toGeometry()));
+            entry.sqlDirty = false;
+        } else if (entry.sqlDirty)
+        {
+            entry.sqlDirty = false;
+            this.updateGeometry(entry.sqlHandle, createGeometryBlob(entry.geometry.toGeometry()));
+        }
+        return entry.sqlHandle;
+    }
+
+    /**
+     * Resolves the specified handle to a row in the database that is about to
+     * be written by SpatiaLite. The database becomes authoritative for a
+     * kernel handle.
+     */
+    private long sqlResultHandle(long handle)
+    {
+        final long sqlHandle = this.sqlHandle(handle);
+        if (sqlHandle != handle)
+            this.kernelGeometries.get(handle).geometry = null;
+        return sqlHandle;
+    }
+
+    private static boolean isKernelHandle(long handle)
+    {
+        return handle >= KERNEL_HANDLE_BASE;
+    }
+
+    private static <T> KernelGeometry createKernelPolygon(Collection<T> points, Collection<Collection<T>> innerRings, GeoPointInterop<T> fn)
+    {
+        final double[][] rings = new double[1 + innerRings.size()][];
+        final int[] sizes = new int[rings.length];
+        rings[0] = packRing(points, fn);
+        sizes[0] = points.size();
+        int i = 1;
+        for (Collection<T> inner : innerRings)
+        {
+            rings[i] = packRing(inner, fn);
+            sizes[i] = inner.size();
+            i++;
+        }
+        return KernelGeometry.polygon(rings, sizes);
+    }
+
+    private static <T> double[] packRing(Collection<T> ring, GeoPointInterop<T> fn)
+    {
+        final double[] xy = new double[ring.size() * 2];
+        int i = 0;
+        for (T geo : ring)
+        {
+            xy[i++] = fn.getLongitude(geo);
+            xy[i++] = fn.getLatitude(geo);
+        }
+        return xy;
+    }
+
+    private static KernelGeometry createKernelQuad(double alat, double alng, double blat, double blng, double clat, double clng, double dlat, double dlng)
+    {
+        return KernelGeometry.polygon(
+                new double[][] {{alng, alat, blng, blat, clng, clat, dlng, dlat, alng, alat}},
+                new int[] {5});
+    }
+
+    private static KernelGeometry simplifyKernelLineString(KernelGeometry linestring, double tolerance)
+    {
+        final int numPoints = linestring.getNumPoints();
+        final double[] xy = new double[numPoints * 2];
+        final int count = GeometryKernel.simplifyDouglasPeucker(linestring.xy, numPoints, tolerance, xy);
+        return KernelGeometry.lineString(xy, count);
+    }
+
     static <T> T parsePointClass(ByteBuffer blob, GeoPointInterop<T> fn)
     {
         final double lng = blob.getDouble();
@@ -2396,6 +2711,21 @@ public final class SpatialCalculator
         T create(double latitude, double longitude);
     }
 
+    private final static class KernelEntry
+    {
+        /** the geometry; <code>null</code> if the database row is authoritative */
+        KernelGeometry geometry;
+        /** the database row, <code>0L</code> if not yet inserted */
+        long sqlHandle;
+        /** if <code>true</code>, the database row is out of date */
+        boolean sqlDirty;
+
+        KernelEntry(KernelGeometry geometry)
+        {
+            this.geometry = geometry;
+        }
+    }
+
     /**
      * A small Builder class for configuring a SpatialCalculator instance.
      */
@@ -2409,6 +2739,10 @@ public final class SpatialCalculator
          * Indicator of 2D vs 3D points
          */
         private int dimension = 2;
+        /**
+         * Evaluate supported operations in Java
+         */
+        private boolean geometryKernel = false;
 
         public Builder inMemory()
         {
@@ -2422,6 +2756,21 @@ public final class SpatialCalculator
             return this;
         }
 
+        /**
+         * Points, linestrings and polygons are held in Java and the
+         * {@link GeometryKernel} is used for <code>intersects</code>,
+         * <code>contains</code> and non topology preserving linestring
+         * simplification. Other operations, and predicates that the kernel
+         * cannot decide, are evaluated by SpatiaLite, with kernel geometries
+         * copied to the database on demand. Has no effect if
+         * {@link #includePointZDimension()} is specified.
+         */
+        public Builder useGeometryKernel()
+        {
+            this.geometryKernel = true;
+            return this;
+        }
+
         public SpatialCalculator build()
         {
             return new SpatialCalculator(this);
@@ -26,6 +26,7 @@
 package com.atakmap.util.zip;
 
 import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.coremap.log.Log;
 
 import java.io.BufferedInputStream;
 import java.io.Closeable;
@@ -34,11 +35,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipException;
@@ -54,6 +61,13 @@ import java.util.zip.ZipException;
  *
  * <p>If you want to create a zip file, use {@link ZipOutputStream}. There is no API for updating
  * an existing zip file.
+ *
+ * <p>Entry data is read with positional reads on a {@link FileChannel}, so streams on different
+ * entries may be read concurrently without contending for a lock. If the active IO provider
+ * does not support channels, reads fall back to a shared {@link RandomAccessFile}. The parsed
+ * central directory of recently opened archives is cached, so opening the same archive again is
+ * cheap while its length, modification time and End Of Central Directory record are unchanged.
+ * Entries handed out by {@link #getEntry} and {@link #entries()} are copies of the cached ones.
  */
 public class ZipFile implements Closeable, ZipConstants
 {
@@ -99,13 +113,63 @@ public class ZipFile implements Closeable, ZipConstants
      * Delete zip file when closed.
      */
     public static final int OPEN_DELETE = 4;
+    /**
+     * Maximum number of archives whose central directory is cached.
+     */
+    private static final int MAX_CACHED_DIRECTORIES = 16;
+    /**
+     * Central directories of recently opened archives, keyed on absolute path.
+     */
+    private static final Map<String, CentralDirectory> centralDirCache = new LinkedHashMap<String, CentralDirectory>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CentralDirectory> eldest)
+        {
+            return size() > MAX_CACHED_DIRECTORIES;
+        }
+    };
     private final String filename;
     private File fileToDeleteOnClose;
+    /**
+     * Shared file, only used when channels are not supported by the IO provider.
+     */
     private RandomAccessFile raf;
-    private final LinkedHashMap<String, ZipEntry> entries = new LinkedHashMap<String, ZipEntry>();
-    private String comment;
+    /**
+     * Channel used for positional reads, reopened if closed by an interrupted reader.
+     */
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+    private final long length;
+    /**
+     * Entries, shared with other instances on the same archive. Must not be modified.
+     */
+    private final LinkedHashMap<String, ZipEntry> entries;
+    private final String comment;
     private final CloseGuard guard = CloseGuard.get();
 
+    /**
+     * The parsed central directory of an archive.
+     */
+    static final class CentralDirectory
+    {
+        final LinkedHashMap<String, ZipEntry> entries = new LinkedHashMap<String, ZipEntry>();
+        String comment;
+        final long length;
+        final long lastModified;
+        /**
+         * Offset and content of the End Of Central Directory record, compared on reuse to
+         * detect an archive rewritten without a change to its length or modification time.
+         */
+        long eocdOffset;
+        byte[] eocd;
+
+        CentralDirectory(long length, long lastModified)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
     static class EocdRecord
     {
         final long numEntries;
@@ -172,24 +236,120 @@ public class ZipFile implements Closeable, ZipConstants
         {
             fileToDeleteOnClose = null;
         }
-        raf = IOProviderFactory.getRandomAccessFile(new File(filename), "r");
-        // Make sure to close the RandomAccessFile if reading the central directory fails.
+        final File f = new File(filename);
+        final String key = f.getAbsolutePath();
+        final long fileLength = IOProviderFactory.length(f);
+        final long lastModified = IOProviderFactory.lastModified(f);
+        CentralDirectory dir = null;
+        if (fileToDeleteOnClose == null)
+        {
+            synchronized (centralDirCache)
+            {
+                dir = centralDirCache.get(key);
+                if (dir != null && (dir.length != fileLength || dir.lastModified != lastModified))
+                {
+                    centralDirCache.remove(key);
+                    dir = null;
+                }
+            }
+        }
+        FileChannel localChannel = null;
+        RandomAccessFile localRaf = null;
+        // Make sure to close the file if reading the central directory fails.
         boolean mustCloseFile = true;
         try
         {
-            readCentralDir();
-            // Read succeeded so do not close the underlying RandomAccessFile.
+            localChannel = openChannel(f);
+            if (localChannel == null)
+                localRaf = IOProviderFactory.getRandomAccessFile(f, "r");
+            if (dir != null && !isCurrent(dir, localChannel, localRaf))
+            {
+                synchronized (centralDirCache)
+                {
+                    if (centralDirCache.get(key) == dir)
+                        centralDirCache.remove(key);
+                }
+                dir = null;
+            }
+            if (dir == null)
+            {
+                dir = new CentralDirectory(fileLength, lastModified);
+                if (localRaf != null)
+                {
+                    readCentralDir(localRaf, dir);
+                } else
+                {
+                    // No need to keep this open, entry data is read through the channel
+                    RandomAccessFile dirRaf = IOProviderFactory.getRandomAccessFile(f, "r");
+                    try
+                    {
+                        readCentralDir(dirRaf, dir);
+                    } finally
+                    {
+                        IoUtils.close(dirRaf);
+                    }
+                }
+                if (fileToDeleteOnClose == null)
+                {
+                    synchronized (centralDirCache)
+                    {
+                        centralDirCache.put(key, dir);
+                    }
+                }
+            }
+            // Read succeeded so do not close the underlying file.
             mustCloseFile = false;
         } finally
         {
             if (mustCloseFile)
             {
-                IoUtils.close(raf);
+                IoUtils.close(localChannel);
+                IoUtils.close(localRaf);
             }
         }
+        channel = localChannel;
+        raf = localRaf;
+        length = fileLength;
+        entries = dir.entries;
+        comment = dir.comment;
         guard.open("close");
     }
 
+    /**
+     * Returns {@code true} if the End Of Central Directory record of the archive is unchanged
+     * since the directory was parsed. Exactly one of {@code channel} and {@code raf} is non-null.
+     */
+    private static boolean isCurrent(CentralDirectory dir, FileChannel channel, RandomAccessFile raf)
+            throws IOException
+    {
+        final byte[] eocd = new byte[dir.eocd.length];
+        if (channel != null)
+        {
+            final ByteBuffer buf = ByteBuffer.wrap(eocd);
+            while (buf.hasRemaining())
+            {
+                if (channel.read(buf, dir.eocdOffset + buf.position()) < 0)
+                    return false;
+            }
+        } else
+        {
+            raf.seek(dir.eocdOffset);
+            raf.readFully(eocd);
+        }
+        return Arrays.equals(eocd, dir.eocd);
+    }
+
+    private static FileChannel openChannel(File file) throws IOException
+    {
+        try
+        {
+            return IOProviderFactory.getChannel(file, "r");
+        } catch (UnsupportedOperationException e)
+        {
+            return null;
+        }
+    }
+
     @Override
     protected void finalize() throws IOException
     {
@@ -221,14 +381,35 @@ public class ZipFile implements Closeable, ZipConstants
     public void close() throws IOException
     {
         guard.close();
-        RandomAccessFile localRaf = raf;
-        if (localRaf != null)
-        { // Only close initialized instances
-            synchronized (localRaf)
+        synchronized (this)
+        {
+            if (closed)
+                return;
+            closed = true;
+        }
+        try
+        {
+            FileChannel localChannel;
+            synchronized (this)
+            {
+                localChannel = channel;
+                channel = null;
+            }
+            if (localChannel != null)
+            {
+                localChannel.close();
+            }
+            RandomAccessFile localRaf = raf;
+            if (localRaf != null)
             {
-                raf = null;
-                localRaf.close();
+                synchronized (localRaf)
+                {
+                    raf = null;
+                    localRaf.close();
+                }
             }
+        } finally
+        {
             if (fileToDeleteOnClose != null)
             {
                 fileToDeleteOnClose.delete();
@@ -237,9 +418,68 @@ public class ZipFile implements Closeable, ZipConstants
         }
     }
 
+    /**
+     * Clears the cached central directories of all archives.
+     */
+    public static void clearCache()
+    {
+        synchronized (centralDirCache)
+        {
+            centralDirCache.clear();
+        }
+    }
+
+    /**
+     * Reads from the channel at the specified position. If the channel was closed by the
+     * interrupt of another reader, it is reopened and the read retried.
+     */
+    int read(ByteBuffer dst, long position) throws IOException
+    {
+        while (true)
+        {
+            final FileChannel localChannel = channel;
+            if (localChannel == null)
+            {
+                throw new IOException("Zip file closed");
+            }
+            try
+            {
+                return localChannel.read(dst, position);
+            } catch (ClosedByInterruptException e)
+            {
+                // This reader was interrupted; other readers can continue.
+                reopenChannel(localChannel);
+                throw e;
+            } catch (ClosedChannelException e)
+            {
+                if (!reopenChannel(localChannel))
+                {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private synchronized boolean reopenChannel(FileChannel stale)
+    {
+        if (closed)
+            return false;
+        if (channel != stale)
+            return true;
+        try
+        {
+            channel = IOProviderFactory.getChannel(new File(filename), "r");
+            return true;
+        } catch (IOException e)
+        {
+            Log.w(TAG, "Failed to reopen " + filename, e);
+            return false;
+        }
+    }
+
     private void checkNotClosed()
     {
-        if (raf == null)
+        if (closed)
         {
             throw new IllegalStateException("Zip file closed");
         }
@@ -253,6 +493,9 @@ public class ZipFile implements Closeable, ZipConstants
      * need random-access entry lookup by name, you should probably use {@link java.util.zip.ZipInputStream}
      * instead, to avoid paying to construct the in-memory index.
      *
+     * <p>Each entry returned is a copy; modifying it does not affect this file or other
+     * {@code ZipFile} instances on the same archive.
+     *
      * @throws IllegalStateException if this zip file has been closed.
      */
     public Enumeration<? extends ZipEntry> entries()
@@ -270,7 +513,7 @@ public class ZipFile implements Closeable, ZipConstants
             public ZipEntry nextElement()
             {
                 checkNotClosed();
-                return iterator.next();
+                return (ZipEntry) iterator.next().clone();
             }
         };
     }
@@ -289,11 +532,22 @@ public class ZipFile implements Closeable, ZipConstants
     }
 
     /**
-     * Returns the zip entry with the given name, or null if there is no such entry.
+     * Returns the zip entry with the given name, or null if there is no such entry. The entry
+     * returned is a copy; modifying it does not affect this file or other {@code ZipFile}
+     * instances on the same archive.
      *
      * @throws IllegalStateException if this zip file has been closed.
      */
     public ZipEntry getEntry(String entryName)
+    {
+        final ZipEntry ze = findEntry(entryName);
+        return (ze != null) ? (ZipEntry) ze.clone() : null;
+    }
+
+    /**
+     * Returns the shared entry with the given name, which must not be modified.
+     */
+    private ZipEntry findEntry(String entryName)
     {
         checkNotClosed();
         if (entryName == null)
@@ -321,54 +575,65 @@ public class ZipFile implements Closeable, ZipConstants
     public InputStream getInputStream(ZipEntry entry) throws IOException
     {
         // Make sure this ZipEntry is in this Zip file.  We run it through the name lookup.
-        entry = getEntry(entry.getName());
+        entry = findEntry(entry.getName());
         if (entry == null)
         {
             return null;
         }
         // Create an InputStream at the right part of the file.
         RandomAccessFile localRaf = raf;
+        if (localRaf == null)
+        {
+            checkNotClosed();
+            return getInputStream(new RAFStream(this,
+                    entry.localHeaderRelOffset, length), entry);
+        }
         synchronized (localRaf)
         {
-            // We don't know the entry data's start position. All we have is the
-            // position of the entry's local header.
-            // http://www.pkware.com/documents/casestudies/APPNOTE.TXT
-            RAFStream rafStream = new RAFStream(localRaf,
-                    entry.localHeaderRelOffset);
-            DataInputStream is = new DataInputStream(rafStream);
-            final int localMagic = Integer.reverseBytes(is.readInt());
-            if (localMagic != LOCSIG)
-            {
-                throwZipException("Local File Header", localMagic);
-            }
-            is.skipBytes(2);
-            // At position 6 we find the General Purpose Bit Flag.
-            int gpbf = Short.reverseBytes(is.readShort()) & 0xffff;
-            if ((gpbf & ZipFile.GPBF_UNSUPPORTED_MASK) != 0)
-            {
-                throw new ZipException(
-                        "Invalid General Purpose Bit Flag: " + gpbf);
-            }
-            // Offset 26 has the file name length, and offset 28 has the extra field length.
-            // These lengths can differ from the ones in the central header.
-            is.skipBytes(18);
-            int fileNameLength = Short.reverseBytes(is.readShort()) & 0xffff;
-            int extraFieldLength = Short.reverseBytes(is.readShort()) & 0xffff;
-            is.close();
-            // Skip the variable-size file name and extra field data.
-            rafStream.skip(fileNameLength + extraFieldLength);
-            if (entry.compressionMethod == ZipEntry.STORED)
-            {
-                rafStream.endOffset = rafStream.offset + entry.size;
-                return rafStream;
-            } else
-            {
-                rafStream.endOffset = rafStream.offset + entry.compressedSize;
-                int bufSize = Math.max(1024,
-                        (int) Math.min(entry.getSize(), 65535L));
-                return new ZipInflaterInputStream(rafStream, new Inflater(true),
-                        bufSize, entry);
-            }
+            return getInputStream(new RAFStream(localRaf,
+                    entry.localHeaderRelOffset), entry);
+        }
+    }
+
+    private static InputStream getInputStream(RAFStream rafStream, ZipEntry entry)
+            throws IOException
+    {
+        // We don't know the entry data's start position. All we have is the
+        // position of the entry's local header.
+        // http://www.pkware.com/documents/casestudies/APPNOTE.TXT
+        DataInputStream is = new DataInputStream(rafStream);
+        final int localMagic = Integer.reverseBytes(is.readInt());
+        if (localMagic != LOCSIG)
+        {
+            throwZipException("Local File Header", localMagic);
+        }
+        is.skipBytes(2);
+        // At position 6 we find the General Purpose Bit Flag.
+        int gpbf = Short.reverseBytes(is.readShort()) & 0xffff;
+        if ((gpbf & ZipFile.GPBF_UNSUPPORTED_MASK) != 0)
+        {
+            throw new ZipException(
+                    "Invalid General Purpose Bit Flag: " + gpbf);
+        }
+        // Offset 26 has the file name length, and offset 28 has the extra field length.
+        // These lengths can differ from the ones in the central header.
+        is.skipBytes(18);
+        int fileNameLength = Short.reverseBytes(is.readShort()) & 0xffff;
+        int extraFieldLength = Short.reverseBytes(is.readShort()) & 0xffff;
+        is.close();
+        // Skip the variable-size file name and extra field data.
+        rafStream.skip(fileNameLength + extraFieldLength);
+        if (entry.compressionMethod == ZipEntry.STORED)
+        {
+            rafStream.endOffset = rafStream.offset + entry.size;
+            return rafStream;
+        } else
+        {
+            rafStream.endOffset = rafStream.offset + entry.compressedSize;
+            int bufSize = Math.max(1024,
+                    (int) Math.min(entry.getSize(), 65535L));
+            return new ZipInflaterInputStream(rafStream, new Inflater(true),
+                    bufSize, entry);
         }
     }
 
@@ -407,7 +672,8 @@ public class ZipFile implements Closeable, ZipConstants
      * area, we're hosed. This appears to be the way that everybody handles
      * it though, so we're in good company if this fails.
      */
-    private void readCentralDir() throws IOException
+    private static void readCentralDir(RandomAccessFile raf, CentralDirectory dir)
+            throws IOException
     {
         // Scan back, looking for the End Of Central Directory field. If the zip file doesn't
         // have an overall comment (unrelated to any per-entry comments), we'll hit the EOCD
@@ -450,6 +716,10 @@ public class ZipFile implements Closeable, ZipConstants
                         "End Of Central Directory signature not found");
             }
         }
+        dir.eocdOffset = eocdOffset;
+        dir.eocd = new byte[ENDHDR];
+        raf.seek(eocdOffset);
+        raf.readFully(dir.eocd);
         final long zip64EocdRecordOffset = Zip64
                 .parseZip64EocdRecordLocator(raf, eocdOffset);
         // Seek back past the eocd signature so that we can continue with our search.
@@ -462,7 +732,7 @@ public class ZipFile implements Closeable, ZipConstants
         {
             byte[] commentBytes = new byte[record.commentLength];
             raf.readFully(commentBytes);
-            comment = new String(commentBytes, 0, commentBytes.length,
+            dir.comment = new String(commentBytes, 0, commentBytes.length,
                     StandardCharsets.UTF_8);
         }
         // We have a zip64 eocd record : use that for getting the information we need.
@@ -490,7 +760,7 @@ public class ZipFile implements Closeable, ZipConstants
                         "Local file header offset is after central directory");
             }
             String entryName = newEntry.getName();
-            if (entries.put(entryName, newEntry) != null)
+            if (dir.entries.put(entryName, newEntry) != null)
             {
                 throw new ZipException("Duplicate entry name: " + entryName);
             }
@@ -551,6 +821,9 @@ public class ZipFile implements Closeable, ZipConstants
      * access to it.  (We can optimize this by adding buffering here to reduce
      * collisions.)
      *
+     * <p>When constructed on a {@code ZipFile}, the stream instead uses positional
+     * reads on the channel of the zip file, which need no synchronization.
+     *
      * <p>We could support mark/reset, but we don't currently need them.
      *
      * @hide
@@ -558,6 +831,7 @@ public class ZipFile implements Closeable, ZipConstants
     final static class RAFStream extends InputStream
     {
         private final RandomAccessFile sharedRaf;
+        private final ZipFile zipFile;
         private long endOffset;
         private long offset;
 
@@ -565,6 +839,15 @@ public class ZipFile implements Closeable, ZipConstants
                          long endOffset)
         {
             sharedRaf = raf;
+            zipFile = null;
+            offset = initialOffset;
+            this.endOffset = endOffset;
+        }
+
+        RAFStream(ZipFile zipFile, long initialOffset, long endOffset)
+        {
+            sharedRaf = null;
+            this.zipFile = zipFile;
             offset = initialOffset;
             this.endOffset = endOffset;
         }
@@ -591,6 +874,28 @@ public class ZipFile implements Closeable, ZipConstants
         public int read(byte[] buffer, int byteOffset, int byteCount)
                 throws IOException
         {
+            if (zipFile != null)
+            {
+                final long length = endOffset - offset;
+                if (byteCount > length)
+                {
+                    byteCount = (int) length;
+                }
+                if (byteCount <= 0)
+                {
+                    return -1;
+                }
+                int count = zipFile.read(
+                        ByteBuffer.wrap(buffer, byteOffset, byteCount), offset);
+                if (count > 0)
+                {
+                    offset += count;
+                    return count;
+                } else
+                {
+                    return -1;
+                }
+            }
             synchronized (sharedRaf)
             {
                 final long length = endOffset - offset;
@@ -625,6 +930,16 @@ public class ZipFile implements Closeable, ZipConstants
         public int fill(Inflater inflater, int nativeEndBufSize)
                 throws IOException
         {
+            if (zipFile != null)
+            {
+                int len = Math.min((int) (endOffset - offset),
+                        nativeEndBufSize);
+                byte[] buf = new byte[len];
+                int cnt = zipFile.read(ByteBuffer.wrap(buf), offset);
+                if (cnt > 0)
+                    inflater.setInput(buf, 0, cnt);
+                return len;
+            }
             synchronized (sharedRaf)
             {
                 int len = Math.min((int) (endOffset - offset),
@@ -624,6 +624,129 @@ public final class GeoCalculations
         return crossesIDL(points, 0, points.length);
     }
 
+    /**
+     * Computes the length of a path, crossing into the native library once
+     * for the whole path.
+     *
+     * <P>Points are packed into <code>points</code> as <code>size</code>
+     * consecutive values per point: latitude, longitude and, when
+     * <code>size</code> is <code>3</code>, altitude HAE. An altitude of
+     * <code>NaN</code> is treated as zero.
+     *
+     * @param points     the packed points
+     * @param size       the number of values per point, <code>2</code> or <code>3</code>
+     * @param offset     the index of the first point of the path
+     * @param count      the number of points in the path
+     * @param slant      <code>true</code> to sum slant distances, which
+     *                   requires altitudes, <code>false</code> to sum
+     *                   surface distances
+     * @param cumulative if non-<code>null</code>, receives the length of
+     *                   the path up to each of the <code>count</code> points
+     * @return the length of the path in meters. Like
+     *         {@link #slantDistance(IGeoPoint, IGeoPoint)}, a slant
+     *         distance that cannot be computed is <code>NaN</code> rather
+     *         than an exception, so the length and the cumulative lengths
+     *         from that point on are <code>NaN</code>.
+     */
+    public static double pathLength(double[] points, int size, int offset,
+                                    int count, boolean slant, double[] cumulative)
+    {
+        checkBatch(points, size, offset, count, slant);
+        if (cumulative != null && cumulative.length < count)
+            throw new IndexOutOfBoundsException();
+        if (count < 2)
+        {
+            if (count == 1 && cumulative != null)
+                cumulative[0] = 0d;
+            return 0d;
+        }
+        return batchPathLength(points, size, offset, count, cumulative,
+                slant ? CALC_SLANT : 0);
+    }
+
+    /**
+     * Computes the distance and bearing between pairs of points, crossing
+     * into the native library once for all pairs. The <i>i</i>th pair is
+     * formed by point <code>srcOffset+i</code> of <code>src</code> and point
+     * <code>dstOffset+i</code> of <code>dst</code>; the distances and
+     * bearings of consecutive path segments may be computed by passing the
+     * same array with offsets differing by one. Points are packed as
+     * described by {@link #pathLength(double[], int, int, int, boolean, double[])}.
+     *
+     * @param src       the packed source points
+     * @param srcOffset the index of the first source point
+     * @param dst       the packed destination points
+     * @param dstOffset the index of the first destination point
+     * @param size      the number of values per point, <code>2</code> or <code>3</code>
+     * @param count     the number of pairs
+     * @param slant     <code>true</code> for slant distances, which requires
+     *                  altitudes, <code>false</code> for surface distances
+     * @param distances if non-<code>null</code>, receives the distance in
+     *                  meters of each pair; a slant distance that cannot be
+     *                  computed is <code>NaN</code>, as for
+     *                  {@link #pathLength(double[], int, int, int, boolean, double[])}
+     * @param bearings  if non-<code>null</code>, receives the bearing in
+     *                  degrees, <code>[0, 360)</code>, of each pair
+     */
+    public static void distanceAndBearing(double[] src, int srcOffset,
+                                          double[] dst, int dstOffset,
+                                          int size, int count, boolean slant,
+                                          double[] distances, double[] bearings)
+    {
+        checkBatch(src, size, srcOffset, count, slant);
+        checkBatch(dst, size, dstOffset, count, slant);
+        if ((distances != null && distances.length < count)
+                || (bearings != null && bearings.length < count))
+            throw new IndexOutOfBoundsException();
+        if (count == 0 || (distances == null && bearings == null))
+            return;
+        batchDistanceAndBearing(src, srcOffset, dst, dstOffset, size, count,
+                distances, bearings, slant ? CALC_SLANT : 0);
+    }
+
+    /**
+     * Computes the points at the given azimuths and distances from a single
+     * source point, crossing into the native library once for all points.
+     *
+     * @param latitude  the latitude of the source point
+     * @param longitude the longitude of the source point
+     * @param azimuths  the azimuths in degrees (True North)
+     * @param distances the surface distances in meters; an array of length
+     *                  <code>1</code> applies the same distance to every
+     *                  azimuth
+     * @param count     the number of points to compute
+     * @param result    receives the packed latitude and longitude of each
+     *                  point, requires <code>2*count</code> values
+     */
+    public static void pointsAtDistance(double latitude, double longitude,
+                                        double[] azimuths, double[] distances,
+                                        int count, double[] result)
+    {
+        checkFanOut(azimuths, distances, count, result);
+        if (count == 0)
+            return;
+        batchPointsAtDistance(latitude, longitude, azimuths, distances, count,
+                result, 0);
+    }
+
+    static void checkBatch(double[] points, int size, int offset, int count, boolean slant)
+    {
+        if (size != 2 && size != 3)
+            throw new IllegalArgumentException("Invalid point size " + size);
+        if (slant && size != 3)
+            throw new IllegalArgumentException("Slant distance requires altitude");
+        if (offset < 0 || count < 0 || ((long) offset + count) * size > points.length)
+            throw new IndexOutOfBoundsException();
+    }
+
+    static void checkFanOut(double[] azimuths, double[] distances, int count, double[] result)
+    {
+        if (count < 0 || azimuths.length < count
+                || (distances.length != 1 && distances.length < count)
+                || result.length < 2 * count)
+            throw new IndexOutOfBoundsException();
+    }
+
     static native double distance(double lat1, double lng1, double alt1,
                                   double lat2, double lng2, double alt2, int flags);
 
@@ -645,6 +768,15 @@ public final class GeoCalculations
     static native GeoPoint lineOfBearingIntersect(double lat1, double lng1, double brg1,
                                                   double lat2, double lng2, double brg2);
 
+    static native double batchPathLength(double[] points, int size, int offset, int count,
+                                         double[] cumulative, int flags);
+
+    static native void batchDistanceAndBearing(double[] src, int srcOffset, double[] dst, int dstOffset,
+                                               int size, int count, double[] distances, double[] bearings, int flags);
+
+    static native void batchPointsAtDistance(double lat, double lng, double[] azimuths, double[] distances,
+                                             int count, double[] result, int flags);
+
     /**
      * Retrieve the offset between the HAE and MSL values
      *
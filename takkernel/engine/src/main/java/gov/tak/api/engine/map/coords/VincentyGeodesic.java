@@ -0,0 +1,330 @@
+package gov.tak.api.engine.map.coords;
+
+/**
+ * Pure Java batch geodesic computations on the WGS84 ellipsoid.
+ *
+ * <P>Provides the same batch operations as {@link GeoCalculations} without
+ * crossing into the native library. Surface distances and destination points
+ * use Vincenty's inverse and direct formulae with the same constants and
+ * convergence criteria as the native implementation, so results agree to
+ * well under a millimeter. As with the native implementation, the inverse
+ * solution may not converge for nearly antipodal points.
+ *
+ * <P>Points are packed as described by
+ * {@link GeoCalculations#pathLength(double[], int, int, int, boolean, double[])}.
+ */
+public final class VincentyGeodesic
+{
+    // constants as used by the native implementation
+    private final static double WGS84_A = 6378137.0;
+    private final static double WGS84_B = 6356752.3142;
+    private final static double WGS84_F = 1.0 - WGS84_B / WGS84_A;
+    private final static double WGS84_A2_B2_1 = (WGS84_A * WGS84_A) / (WGS84_B * WGS84_B) - 1.0;
+
+    // ellipsoid for slant distances, matching EPSG:4978
+    private final static double ECEF_A = 6378137.0;
+    private final static double ECEF_E2 = (2.0 - 1.0 / 298.257223563) / 298.257223563;
+
+    private final static int MAX_INVERSE_ITERATIONS = 20;
+    private final static int MAX_DIRECT_ITERATIONS = 100;
+
+    private VincentyGeodesic()
+    {
+    }
+
+    /**
+     * Computes the surface distance between two points.
+     *
+     * @return the distance in meters
+     */
+    public static double distance(double lat1, double lng1, double lat2, double lng2)
+    {
+        return inverse(lat1, lng1, lat2, lng2, null);
+    }
+
+    /**
+     * Computes the bearing from one point to another.
+     *
+     * @return the bearing in degrees, <code>[0, 360)</code>
+     */
+    public static double bearing(double lat1, double lng1, double lat2, double lng2)
+    {
+        final double[] bearing = new double[1];
+        inverse(lat1, lng1, lat2, lng2, bearing);
+        return bearing[0];
+    }
+
+    /**
+     * Computes the point at an azimuth and surface distance from a source
+     * point.
+     *
+     * @param result receives the latitude and longitude of the point
+     */
+    public static void pointAtDistance(double latitude, double longitude,
+                                       double azimuth, double distance, double[] result)
+    {
+        direct(latitude, longitude, azimuth, distance, result, 0);
+    }
+
+    /**
+     * Pure Java equivalent of
+     * {@link GeoCalculations#pathLength(double[], int, int, int, boolean, double[])}.
+     */
+    public static double pathLength(double[] points, int size, int offset,
+                                    int count, boolean slant, double[] cumulative)
+    {
+        GeoCalculations.checkBatch(points, size, offset, count, slant);
+        if (cumulative != null && cumulative.length < count)
+            throw new IndexOutOfBoundsException();
+
+        final double[] ecef = slant ? new double[6] : null;
+        double length = 0d;
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0)
+                length += distance(points, (offset + i - 1) * size, points, (offset + i) * size, ecef);
+            if (cumulative != null)
+                cumulative[i] = length;
+        }
+        return length;
+    }
+
+    /**
+     * Pure Java equivalent of
+     * {@link GeoCalculations#distanceAndBearing(double[], int, double[], int, int, int, boolean, double[], double[])}.
+     */
+    public static void distanceAndBearing(double[] src, int srcOffset,
+                                          double[] dst, int dstOffset,
+                                          int size, int count, boolean slant,
+                                          double[] distances, double[] bearings)
+    {
+        GeoCalculations.checkBatch(src, size, srcOffset, count, slant);
+        GeoCalculations.checkBatch(dst, size, dstOffset, count, slant);
+        if ((distances != null && distances.length < count)
+                || (bearings != null && bearings.length < count))
+            throw new IndexOutOfBoundsException();
+
+        final double[] bearing = (bearings != null) ? new double[1] : null;
+        final double[] ecef = slant ? new double[6] : null;
+        for (int i = 0; i < count; i++)
+        {
+            final int a = (srcOffset + i) * size;
+            final int b = (dstOffset + i) * size;
+            if (slant)
+            {
+                if (distances != null)
+                    distances[i] = distance(src, a, dst, b, ecef);
+                if (bearings != null)
+                    inverse(src[a], src[a + 1], dst[b], dst[b + 1], bearing);
+            } else
+            {
+                final double d = inverse(src[a], src[a + 1], dst[b], dst[b + 1], bearing);
+                if (distances != null)
+                    distances[i] = d;
+            }
+            if (bearings != null)
+                bearings[i] = bearing[0];
+        }
+    }
+
+    /**
+     * Pure Java equivalent of
+     * {@link GeoCalculations#pointsAtDistance(double, double, double[], double[], int, double[])}.
+     */
+    public static void pointsAtDistance(double latitude, double longitude,
+                                        double[] azimuths, double[] distances,
+                                        int count, double[] result)
+    {
+        GeoCalculations.checkFanOut(azimuths, distances, count, result);
+        final boolean sharedDistance = (distances.length == 1);
+        for (int i = 0; i < count; i++)
+            direct(latitude, longitude, azimuths[i], distances[sharedDistance ? 0 : i], result, i * 2);
+    }
+
+    /**
+     * @param ecef scratch space for slant distances, 6 values
+     */
+    private static double distance(double[] src, int a, double[] dst, int b, double[] ecef)
+    {
+        if (ecef == null)
+            return inverse(src[a], src[a + 1], dst[b], dst[b + 1], null);
+
+        // straight line between the ECEF coordinates of the points
+        toEcef(src[a], src[a + 1], src[a + 2], ecef, 0);
+        toEcef(dst[b], dst[b + 1], dst[b + 2], ecef, 3);
+        final double dx = ecef[3] - ecef[0];
+        final double dy = ecef[4] - ecef[1];
+        final double dz = ecef[5] - ecef[2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static void toEcef(double lat, double lng, double alt, double[] xyz, int off)
+    {
+        if (Double.isNaN(alt))
+            alt = 0d;
+        final double rlat = Math.toRadians(lat);
+        final double rlng = Math.toRadians(lng);
+        final double sinLat = Math.sin(rlat);
+        final double cosLat = Math.cos(rlat);
+        final double n = ECEF_A / Math.sqrt(1.0 - ECEF_E2 * sinLat * sinLat);
+        xyz[off] = (n + alt) * cosLat * Math.cos(rlng);
+        xyz[off + 1] = (n + alt) * cosLat * Math.sin(rlng);
+        xyz[off + 2] = (n * (1.0 - ECEF_E2) + alt) * sinLat;
+    }
+
+    /**
+     * Vincenty's inverse formula, http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf
+     *
+     * @param bearing if non-<code>null</code>, receives the initial bearing
+     * @return the distance in meters
+     */
+    private static double inverse(double lat1, double lng1, double lat2, double lng2, double[] bearing)
+    {
+        if (lat1 == lat2 && lng1 == lng2)
+        {
+            if (bearing != null)
+                bearing[0] = 0d;
+            return 0d;
+        }
+
+        final double L = Math.toRadians(lng2 - lng1);
+        final double U1 = Math.atan((1.0 - WGS84_F) * Math.tan(Math.toRadians(lat1)));
+        final double U2 = Math.atan((1.0 - WGS84_F) * Math.tan(Math.toRadians(lat2)));
+        final double cosU1 = Math.cos(U1);
+        final double cosU2 = Math.cos(U2);
+        final double sinU1 = Math.sin(U1);
+        final double sinU2 = Math.sin(U2);
+        final double cosU1cosU2 = cosU1 * cosU2;
+        final double sinU1sinU2 = sinU1 * sinU2;
+
+        double sigma = 0d;
+        double cosSqAlpha = 0d;
+        double cos2SM = 0d;
+        double cosSigma = 0d;
+        double sinSigma = 0d;
+        double cosLambda = 0d;
+        double sinLambda = 0d;
+
+        double lambda = L;
+        boolean converged = false;
+        for (int iter = 0; iter < MAX_INVERSE_ITERATIONS; iter++)
+        {
+            cosLambda = Math.cos(lambda);
+            sinLambda = Math.sin(lambda);
+
+            final double t1 = cosU2 * sinLambda;
+            final double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+            cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+
+            final double sinAlpha = (sinSigma == 0) ? 0.0 : cosU1cosU2 * sinLambda / sinSigma;
+            cosSqAlpha = 1.0 - sinAlpha * sinAlpha;
+            cos2SM = (cosSqAlpha == 0) ? 0.0 : cosSigma - 2.0 * sinU1sinU2 / cosSqAlpha;
+
+            final double C = (WGS84_F / 16.0) * cosSqAlpha * (4.0 + WGS84_F * (4.0 - 3.0 * cosSqAlpha));
+            final double lambdaOrig = lambda;
+            lambda = L + (1.0 - C) * WGS84_F * sinAlpha
+                    * (sigma + C * sinSigma * (cos2SM + C * cosSigma * (-1.0 + 2.0 * cos2SM * cos2SM)));
+
+            if (Math.abs((lambda - lambdaOrig) / lambda) < 1.0e-12)
+            {
+                converged = true;
+                break;
+            }
+        }
+
+        if (bearing != null)
+        {
+            double brng;
+            if (converged)
+            {
+                brng = Math.toDegrees(Math.atan2(cosU2 * sinLambda, cosU1 * sinU2 - sinU1 * cosU2 * cosLambda));
+            } else
+            {
+                // nearly antipodal, fall back on the great circle bearing
+                final double rlat1 = Math.toRadians(lat1);
+                final double rlat2 = Math.toRadians(lat2);
+                final double dlng = Math.toRadians(lng2 - lng1);
+                brng = Math.toDegrees(Math.atan2(Math.sin(dlng) * Math.cos(rlat2),
+                        Math.cos(rlat1) * Math.sin(rlat2) - Math.sin(rlat1) * Math.cos(rlat2) * Math.cos(dlng)));
+            }
+            bearing[0] = (brng < 0d) ? brng + 360d : brng;
+        }
+
+        final double uSquared = cosSqAlpha * WGS84_A2_B2_1;
+        final double A = 1 + (uSquared / 16384.0) * (4096.0 + uSquared * (-768.0 + uSquared * (320.0 - 175.0 * uSquared)));
+        final double B = (uSquared / 1024.0) * (256.0 + uSquared * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)));
+        final double cos2SMSq = cos2SM * cos2SM;
+        final double deltaSigma = B * sinSigma
+                * (cos2SM + (B / 4.0)
+                * (cosSigma * (-1.0 + 2.0 * cos2SMSq)
+                - (B / 6.0) * cos2SM * (-3.0 + 4.0 * sinSigma * sinSigma) * (-3.0 + 4.0 * cos2SMSq)));
+
+        return WGS84_B * A * (sigma - deltaSigma);
+    }
+
+    /**
+     * Vincenty's direct formula, http://en.wikipedia.org/wiki/Vincenty's_formulae
+     */
+    private static void direct(double latitude, double longitude, double azimuth, double distance,
+                               double[] result, int off)
+    {
+        final double tanU1 = (1.0 - WGS84_F) * Math.tan(Math.toRadians(latitude));
+        final double U1 = Math.atan(tanU1);
+        final double alpha1 = Math.toRadians(azimuth);
+
+        final double cosU1 = Math.cos(U1);
+        final double sinU1 = Math.sin(U1);
+        final double cosAlpha1 = Math.cos(alpha1);
+        final double sinAlpha1 = Math.sin(alpha1);
+
+        final double sigma1 = Math.atan2(tanU1, cosAlpha1);
+        final double sinAlpha = cosU1 * sinAlpha1;
+        final double sin2Alpha = sinAlpha * sinAlpha;
+        final double cos2Alpha = 1.0 - sin2Alpha;
+        final double u2 = cos2Alpha * WGS84_A2_B2_1;
+        final double A = 1.0 + u2 / 16384.0 * (4096.0 + u2 * (-768.0 + u2 * (320.0 - 175.0 * u2)));
+        final double B = u2 / 1024.0 * (256.0 + u2 * (-128.0 + u2 * (74.0 - 47.0 * u2)));
+
+        double sigma = distance / (WGS84_B * A);
+        double deltaSigma = 0d;
+        double lastDeltaSigma;
+        double sinSigma;
+        double cosSigma;
+        double cos2sigmaM;
+        double cos2sigmaMSquared;
+        int iter = 0;
+        do
+        {
+            lastDeltaSigma = deltaSigma;
+
+            sinSigma = Math.sin(sigma);
+            cosSigma = Math.cos(sigma);
+            cos2sigmaM = Math.cos(2 * sigma1 + sigma);
+            cos2sigmaMSquared = cos2sigmaM * cos2sigmaM;
+
+            deltaSigma = B * sinSigma
+                    * (cos2sigmaM + B / 4.0
+                    * (cosSigma * (-1.0 + 2.0 * cos2sigmaMSquared)
+                    - (B / 6.0 * cos2sigmaM * (-3.0 + 4.0 * sinSigma * sinSigma) * (-3.0 + 4.0 * cos2sigmaMSquared))));
+            sigma = distance / (WGS84_B * A) + deltaSigma;
+        } while (Math.abs(deltaSigma - lastDeltaSigma) > 1e-12 && ++iter < MAX_DIRECT_ITERATIONS);
+
+        final double t = sinU1 * sinSigma - cosU1 * cosSigma * cosAlpha1;
+        final double phi2 = Math.atan2(sinU1 * cosSigma + cosU1 * sinSigma * cosAlpha1,
+                (1.0 - WGS84_F) * Math.sqrt(sin2Alpha + t * t));
+        final double lambda = Math.atan2(sinSigma * sinAlpha1, cosU1 * cosSigma - sinU1 * sinSigma * cosAlpha1);
+        final double C = WGS84_F / 16.0 * cos2Alpha * (4.0 + WGS84_F * (4.0 - 3.0 * cos2Alpha));
+        final double L = lambda - (1.0 - C) * WGS84_F * sinAlpha
+                * (sigma + C * sinSigma * (cos2sigmaM + C * cosSigma * (-1.0 + 2.0 * cos2sigmaMSquared)));
+
+        double lng = longitude + Math.toDegrees(L);
+        if (lng > 180d)
+            lng -= 360d;
+        else if (lng < -180d)
+            lng += 360d;
+        result[off] = Math.toDegrees(phi2);
+        result[off + 1] = lng;
+    }
+}
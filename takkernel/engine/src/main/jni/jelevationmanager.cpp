@@ -83,6 +83,59 @@ JNIEXPORT jboolean JNICALL Java_com_atakmap_map_elevation_ElevationManager_getEl
         return false;
     return done;
 }
+JNIEXPORT jboolean JNICALL Java_com_atakmap_map_elevation_ElevationManager_getElevation___3DII_3DII_3DIIJ
+  (JNIEnv *env, jclass clazz, jdoubleArray mlatArr, jint latOff, jint latStride, jdoubleArray mlngArr, jint lngOff, jint lngStride, jdoubleArray mhaeArr, jint haeOff, jint count, jlong cparamsPtr)
+{
+    TAKErr code(TE_Ok);
+    if(count <= 0)
+        return true;
+    // regions are copied rather than pinned; concurrent requests may write
+    // disjoint ranges of the same output array
+    const std::size_t latLen = (std::size_t)(count-1)*latStride + 1u;
+    const std::size_t lngLen = (std::size_t)(count-1)*lngStride + 1u;
+    std::vector<double> clat(latLen);
+    std::vector<double> clng(lngLen);
+    std::vector<double> chae(count);
+    env->GetDoubleArrayRegion(mlatArr, latOff, (jsize)latLen, &clat.at(0));
+    env->GetDoubleArrayRegion(mlngArr, lngOff, (jsize)lngLen, &clng.at(0));
+    if(env->ExceptionCheck())
+        return false;
+    if(cparamsPtr)
+        code = ElevationManager_getElevation(&chae.at(0), count, &clat.at(0), &clng.at(0), latStride, lngStride, 1u, *JLONG_TO_INTPTR(ElevationSource::QueryParameters, cparamsPtr));
+    else
+        code = ElevationManager_getElevation(&chae.at(0), count, &clat.at(0), &clng.at(0), latStride, lngStride, 1u, ElevationSource::QueryParameters());
+    const bool done = (code == TE_Ok);
+    if(code == TE_Done)
+        code = TE_Ok;
+    if(ATAKMapEngineJNI_checkOrThrow(env, code))
+        return false;
+    env->SetDoubleArrayRegion(mhaeArr, haeOff, count, &chae.at(0));
+    return done;
+}
+JNIEXPORT jboolean JNICALL Java_com_atakmap_map_elevation_ElevationManager_getElevationDirect
+  (JNIEnv *env, jclass clazz, jobject mlatBuf, jint latOff, jint latStride, jobject mlngBuf, jint lngOff, jint lngStride, jobject mhaeBuf, jint haeOff, jint count, jlong cparamsPtr)
+{
+    TAKErr code(TE_Ok);
+    if(count <= 0)
+        return true;
+    const double *clat = static_cast<const double *>(env->GetDirectBufferAddress(mlatBuf));
+    const double *clng = static_cast<const double *>(env->GetDirectBufferAddress(mlngBuf));
+    double *chae = static_cast<double *>(env->GetDirectBufferAddress(mhaeBuf));
+    if(!clat || !clng || !chae) {
+        ATAKMapEngineJNI_checkOrThrow(env, TE_InvalidArg);
+        return false;
+    }
+    if(cparamsPtr)
+        code = ElevationManager_getElevation(chae+haeOff, count, clat+latOff, clng+lngOff, latStride, lngStride, 1u, *JLONG_TO_INTPTR(ElevationSource::QueryParameters, cparamsPtr));
+    else
+        code = ElevationManager_getElevation(chae+haeOff, count, clat+latOff, clng+lngOff, latStride, lngStride, 1u, ElevationSource::QueryParameters());
+    const bool done = (code == TE_Ok);
+    if(code == TE_Done)
+        code = TE_Ok;
+    if(ATAKMapEngineJNI_checkOrThrow(env, code))
+        return false;
+    return done;
+}
 JNIEXPORT jdouble JNICALL Java_com_atakmap_map_elevation_ElevationManager_getGeoidHeight
   (JNIEnv *env, jclass clazz, jdouble lat, jdouble lng)
 {
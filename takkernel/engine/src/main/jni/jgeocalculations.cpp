@@ -3,13 +3,19 @@
 #include <cmath>
 
 #include <core/GeoPoint2.h>
+#include <core/ProjectionFactory3.h>
+#include <math/Point2.h>
 #include <util/GeomagneticField.h>
 
 #include "common.h"
+#include "interop/JNIDoubleArray.h"
 
 using namespace TAK::Engine::Core;
+using namespace TAK::Engine::Math;
 using namespace TAK::Engine::Util;
 
+using namespace TAKEngineJNI::Interop;
+
 namespace
 {
     struct {
@@ -21,6 +27,10 @@ namespace
     bool init(JNIEnv &env) NOTHROWS;
     jobject NewGeoPoint(JNIEnv &env, double lat, double lng) NOTHROWS;
     jobject NewGeoPoint(JNIEnv &env, double lat, double lng, double alt) NOTHROWS;
+
+    GeoPoint2 batchPoint(const jdouble *points, const int index, const int size) NOTHROWS;
+    double batchDistance(const GeoPoint2 &a, const GeoPoint2 &b, const bool slant, const Projection2 *ecef) NOTHROWS;
+    double batchBearing(const GeoPoint2 &a, const GeoPoint2 &b) NOTHROWS;
 }
 
 #define TEJNI_GC_HAS_FLAG(b, f) \
@@ -94,10 +104,98 @@ JNIEXPORT jobject JNICALL Java_gov_tak_api_engine_map_coords_GeoCalculations_lin
         return NULL;
     return NewGeoPoint(*env, isect.latitude, isect.longitude);
 }
+JNIEXPORT jdouble JNICALL Java_gov_tak_api_engine_map_coords_GeoCalculations_batchPathLength
+  (JNIEnv *env, jclass clazz, jdoubleArray mpoints, jint size, jint offset, jint count, jdoubleArray mcumulative, jint flags)
+{
+    // slant distances share a single ECEF projection for the batch. If the
+    // projection is unavailable every slant distance is NaN, matching
+    // GeoPoint2_slantDistance
+    const bool slant = TEJNI_GC_HAS_FLAG(flags, CALC_SLANT);
+    Projection2Ptr ecef(nullptr, nullptr);
+    if(slant && ProjectionFactory3_create(ecef, 4978) != TE_Ok)
+        ecef.reset();
 
+    JNIDoubleArray points(*env, mpoints, JNI_ABORT);
+    JNIDoubleArray cumulative(*env, mcumulative, 0);
+    double length = 0.0;
+    GeoPoint2 last;
+    for(int i = 0; i < count; i++) {
+        const GeoPoint2 p = batchPoint(points, offset+i, size);
+        if(i)
+            length += batchDistance(last, p, slant, ecef.get());
+        if(mcumulative)
+            cumulative[i] = length;
+        last = p;
+    }
+    return length;
+}
+JNIEXPORT void JNICALL Java_gov_tak_api_engine_map_coords_GeoCalculations_batchDistanceAndBearing
+  (JNIEnv *env, jclass clazz, jdoubleArray msrc, jint srcOffset, jdoubleArray mdst, jint dstOffset, jint size, jint count, jdoubleArray mdistances, jdoubleArray mbearings, jint flags)
+{
+    const bool slant = TEJNI_GC_HAS_FLAG(flags, CALC_SLANT);
+    Projection2Ptr ecef(nullptr, nullptr);
+    if(slant && ProjectionFactory3_create(ecef, 4978) != TE_Ok)
+        ecef.reset();
+
+    JNIDoubleArray src(*env, msrc, JNI_ABORT);
+    JNIDoubleArray dst(*env, mdst, JNI_ABORT);
+    JNIDoubleArray distances(*env, mdistances, 0);
+    JNIDoubleArray bearings(*env, mbearings, 0);
+    for(int i = 0; i < count; i++) {
+        const GeoPoint2 a = batchPoint(src, srcOffset+i, size);
+        const GeoPoint2 b = batchPoint(dst, dstOffset+i, size);
+        if(mdistances)
+            distances[i] = batchDistance(a, b, slant, ecef.get());
+        if(mbearings)
+            bearings[i] = batchBearing(a, b);
+    }
+}
+JNIEXPORT void JNICALL Java_gov_tak_api_engine_map_coords_GeoCalculations_batchPointsAtDistance
+  (JNIEnv *env, jclass clazz, jdouble lat, jdouble lng, jdoubleArray mazimuths, jdoubleArray mdistances, jint count, jdoubleArray mresult, jint flags)
+{
+    const GeoPoint2 src(lat, lng);
+    const bool quick = TEJNI_GC_HAS_FLAG(flags, CALC_QUICK);
+    JNIDoubleArray azimuths(*env, mazimuths, JNI_ABORT);
+    JNIDoubleArray distances(*env, mdistances, JNI_ABORT);
+    const bool sharedDistance = (env->GetArrayLength(mdistances) == 1);
+    JNIDoubleArray result(*env, mresult, 0);
+    for(int i = 0; i < count; i++) {
+        const GeoPoint2 p = GeoPoint2_pointAtDistance(src, azimuths[i], distances[sharedDistance ? 0 : i], quick);
+        result[i*2] = p.latitude;
+        result[i*2+1] = (p.longitude > 180.0) ? p.longitude-360.0 : (p.longitude < -180.0) ? p.longitude+360.0 : p.longitude;
+    }
+}
 
 namespace
 {
+    GeoPoint2 batchPoint(const jdouble *points, const int index, const int size) NOTHROWS
+    {
+        const jdouble *p = points + (index*size);
+        // altitudes are HAE, an unknown altitude is treated as zero
+        const double alt = (size > 2 && !TE_ISNAN(p[2])) ? p[2] : 0.0;
+        return GeoPoint2(p[0], p[1], alt, AltitudeReference::HAE);
+    }
+    double batchDistance(const GeoPoint2 &a, const GeoPoint2 &b, const bool slant, const Projection2 *ecef) NOTHROWS
+    {
+        if(!slant)
+            return GeoPoint2_distance(a, b, false);
+        if(!ecef)
+            return NAN;
+
+        Point2<double> ptA, ptB;
+        if(ecef->forward(&ptA, a) != TE_Ok || ecef->forward(&ptB, b) != TE_Ok)
+            return NAN;
+        const double dx = ptB.x - ptA.x;
+        const double dy = ptB.y - ptA.y;
+        const double dz = ptB.z - ptA.z;
+        return std::sqrt(dx*dx + dy*dy + dz*dz);
+    }
+    double batchBearing(const GeoPoint2 &a, const GeoPoint2 &b) NOTHROWS
+    {
+        const double bearing = GeoPoint2_bearing(a, b, false);
+        return (bearing < 0.0) ? bearing + 360.0 : bearing;
+    }
+
     bool init(JNIEnv &env) NOTHROWS
     {
         GeoPoint_class.id = ATAKMapEngineJNI_findClass(&env, "gov/tak/api/engine/map/coords/GeoPoint");
@@ -0,0 +1,84 @@
+package com.atakmap.map.elevation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ElevationSampleCacheTest {
+    private static ElevationSampleCache.Tile createTile(float[] posts) {
+        return new ElevationSampleCache.Tile(-78d, 35d, 1d, posts);
+    }
+
+    private static float[] createRamp() {
+        final int n = ElevationSampleCache.TILE_POSTS;
+        final float[] posts = new float[n * n];
+        // elevation increases by 1m per column
+        for (int row = 0; row < n; row++)
+            for (int col = 0; col < n; col++)
+                posts[row * n + col] = col;
+        return posts;
+    }
+
+    @Test
+    public void tile_sample_interpolates_between_posts() {
+        final ElevationSampleCache.Tile tile = createTile(createRamp());
+        final double spacing = 1d / (ElevationSampleCache.TILE_POSTS - 1);
+
+        assertEquals(0d, tile.sample(34.5, -78d), 1e-6);
+        assertEquals(10.5d, tile.sample(34.5, -78d + 10.5d * spacing), 1e-6);
+        assertEquals(ElevationSampleCache.TILE_POSTS - 1,
+                tile.sample(34d, -77d), 1e-6);
+    }
+
+    @Test
+    public void tile_sample_excludes_voids() {
+        final float[] posts = createRamp();
+        posts[1] = Float.NaN;
+        final ElevationSampleCache.Tile tile = createTile(posts);
+        final double spacing = 1d / (ElevationSampleCache.TILE_POSTS - 1);
+
+        // halfway between post 0 (0m) and the void at post 1
+        assertEquals(0d, tile.sample(35d, -78d + 0.5d * spacing), 1e-6);
+        assertTrue(Double.isNaN(tile.sample(35d, -78d + spacing)));
+    }
+
+    @Test
+    public void empty_tile_returns_nan() {
+        final ElevationSampleCache.Tile tile = createTile(null);
+        assertTrue(Double.isNaN(tile.sample(34.5, -77.5)));
+    }
+
+    @Test
+    public void tile_contains_inclusive_edges() {
+        final float[] posts = new float[ElevationSampleCache.TILE_POSTS
+                * ElevationSampleCache.TILE_POSTS];
+        Arrays.fill(posts, 1f);
+        final ElevationSampleCache.Tile tile = createTile(posts);
+
+        assertTrue(tile.contains(35d, -78d));
+        assertTrue(tile.contains(34d, -77d));
+        assertFalse(tile.contains(35.1d, -77.5d));
+        assertFalse(tile.contains(34.5d, -76.9d));
+    }
+
+    @Test
+    public void level_post_spacing_does_not_exceed_resolution() {
+        for (double resolution : new double[] {
+                1d, 10d, 30d, 90d, 1000d
+        }) {
+            final int level = ElevationSampleCache.getLevel(resolution);
+            final double postSpacing = ElevationSampleCache.getTileSpan(level)
+                    / (ElevationSampleCache.TILE_POSTS - 1) * 111319.49d;
+            assertTrue(postSpacing <= resolution);
+            // the next coarser level would exceed the resolution
+            final double coarser = ElevationSampleCache
+                    .getTileSpan(level - 1)
+                    / (ElevationSampleCache.TILE_POSTS - 1) * 111319.49d;
+            assertTrue(coarser > resolution);
+        }
+    }
+}
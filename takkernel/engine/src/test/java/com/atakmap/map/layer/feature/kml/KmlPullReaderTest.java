@@ -0,0 +1,192 @@
+package com.atakmap.map.layer.feature.kml;
+
+import com.atakmap.coremap.xml.XMLUtils;
+import com.atakmap.map.layer.feature.Feature;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KmlPullReaderTest {
+    private static final String KML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<kml xmlns=\"http://www.opengis.net/kml/2.2\" xmlns:gx=\"http://www.google.com/kml/ext/2.2\">\n" +
+            "<Document>\n" +
+            "  <name>Export</name>\n" +
+            "  <Style id=\"red\">\n" +
+            "    <IconStyle><color>ff0000ff</color><scale>2</scale><Icon><href>files/red.png</href></Icon></IconStyle>\n" +
+            "    <LineStyle><color>7f00ff00</color><width>3</width></LineStyle>\n" +
+            "    <PolyStyle><fill>0</fill></PolyStyle>\n" +
+            "  </Style>\n" +
+            "  <StyleMap id=\"redMap\">\n" +
+            "    <Pair><key>highlight</key><styleUrl>#other</styleUrl></Pair>\n" +
+            "    <Pair><key>normal</key><styleUrl>#red</styleUrl></Pair>\n" +
+            "  </StyleMap>\n" +
+            "  <Placemark>\n" +
+            "    <name>root point</name>\n" +
+            "    <description>a point</description>\n" +
+            "    <styleUrl>#redMap</styleUrl>\n" +
+            "    <ExtendedData>\n" +
+            "      <Data name=\"kind\"><value>marker</value></Data>\n" +
+            "      <SchemaData schemaUrl=\"#s\"><SimpleData name=\"id\">7</SimpleData></SchemaData>\n" +
+            "    </ExtendedData>\n" +
+            "    <Point><extrude>1</extrude><altitudeMode>absolute</altitudeMode><coordinates>-122.08,37.42,15</coordinates></Point>\n" +
+            "  </Placemark>\n" +
+            "  <Folder>\n" +
+            "    <name>Roads</name>\n" +
+            "    <Placemark>\n" +
+            "      <name>road</name>\n" +
+            "      <styleUrl>#red</styleUrl>\n" +
+            "      <LineString><coordinates>\n" +
+            "        1,2 3,4\n" +
+            "        5, 6\n" +
+            "      </coordinates></LineString>\n" +
+            "    </Placemark>\n" +
+            "    <Placemark><name>no geometry</name></Placemark>\n" +
+            "    <Folder>\n" +
+            "      <name>Areas</name>\n" +
+            "      <Placemark>\n" +
+            "        <name>area</name>\n" +
+            "        <Polygon>\n" +
+            "          <outerBoundaryIs><LinearRing><coordinates>0,0 10,0 10,10 0,10 0,0</coordinates></LinearRing></outerBoundaryIs>\n" +
+            "          <innerBoundaryIs><LinearRing><coordinates>4,4 6,4 6,6 4,4</coordinates></LinearRing></innerBoundaryIs>\n" +
+            "        </Polygon>\n" +
+            "      </Placemark>\n" +
+            "    </Folder>\n" +
+            "    <Placemark>\n" +
+            "      <name>after</name>\n" +
+            "      <Style><LineStyle><width>5</width></LineStyle></Style>\n" +
+            "      <styleUrl>#red</styleUrl>\n" +
+            "      <MultiGeometry>\n" +
+            "        <Point><coordinates>1,1</coordinates></Point>\n" +
+            "        <gx:Track><gx:coord>1 2 3</gx:coord><gx:coord>4 5 6</gx:coord></gx:Track>\n" +
+            "      </MultiGeometry>\n" +
+            "    </Placemark>\n" +
+            "  </Folder>\n" +
+            "  <GroundOverlay><name>ignored</name></GroundOverlay>\n" +
+            "</Document>\n" +
+            "</kml>";
+
+    private static KmlPullReader open(String kml) throws Exception {
+        return new KmlPullReader(XMLUtils.getXmlPullParser(),
+                new ByteArrayInputStream(kml.getBytes(StandardCharsets.UTF_8)),
+                "zip:///data/test.kmz!/", "test");
+    }
+
+    private static ByteBuffer wkb(KmlPullReader reader) {
+        final ByteBuffer wkb = ByteBuffer.wrap(reader.getGeometry());
+        assertEquals(1, wkb.get());
+        wkb.order(ByteOrder.LITTLE_ENDIAN);
+        return wkb;
+    }
+
+    @Test
+    public void reads_point_with_shared_style_map() throws Exception {
+        final KmlPullReader reader = open(KML);
+        assertTrue(reader.next());
+        assertEquals("root point", reader.getName());
+        assertEquals("Export", reader.getFeatureSetName());
+        assertEquals("a point", reader.getAttributes().get("description"));
+        assertEquals("marker", reader.getAttributes().get("kind"));
+        assertEquals("7", reader.getAttributes().get("id"));
+        assertEquals(Feature.AltitudeMode.Absolute, reader.getAltitudeMode());
+        assertEquals(-1d, reader.getExtrude(), 0d);
+        assertEquals("SYMBOL(id:\"zip:///data/test.kmz!/files/red.png\",c:#FF0000FF,s:2);LABEL(dy:48px)",
+                reader.getStyle());
+
+        final ByteBuffer wkb = wkb(reader);
+        assertEquals(1001, wkb.getInt());
+        assertEquals(-122.08, wkb.getDouble(), 0d);
+        assertEquals(37.42, wkb.getDouble(), 0d);
+        assertEquals(15d, wkb.getDouble(), 0d);
+    }
+
+    @Test
+    public void containers_split_feature_sets() throws Exception {
+        final KmlPullReader reader = open(KML);
+        assertTrue(reader.next());
+        final int root = reader.getFeatureSetSerial();
+
+        assertTrue(reader.next());
+        assertEquals("road", reader.getName());
+        assertEquals("Roads", reader.getFeatureSetName());
+        final int roads = reader.getFeatureSetSerial();
+        assertTrue(roads != root);
+        assertEquals("PEN(c:#00FF007F,w:3px)", reader.getStyle());
+        ByteBuffer wkb = wkb(reader);
+        assertEquals(2, wkb.getInt());
+        assertEquals(3, wkb.getInt());
+        final double[] xy = new double[6];
+        for (int i = 0; i < xy.length; i++)
+            xy[i] = wkb.getDouble();
+        assertEquals(6d, xy[5], 0d);
+
+        // the placemark without a geometry is skipped
+        assertTrue(reader.next());
+        assertEquals("area", reader.getName());
+        assertEquals("Roads/Areas", reader.getFeatureSetName());
+        assertEquals(Feature.AltitudeMode.ClampToGround, reader.getAltitudeMode());
+        assertEquals("PEN(c:#FFFFFFFF,w:1px);BRUSH(fc:#FFFFFFFF)", reader.getStyle());
+        wkb = wkb(reader);
+        assertEquals(3, wkb.getInt());
+        assertEquals(2, wkb.getInt());
+        assertEquals(5, wkb.getInt());
+
+        // same container after the nested folder closes, but a new run
+        assertTrue(reader.next());
+        assertEquals("after", reader.getName());
+        assertEquals("Roads", reader.getFeatureSetName());
+        assertTrue(reader.getFeatureSetSerial() != roads);
+
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void inline_style_overrides_shared_substyles() throws Exception {
+        final KmlPullReader reader = open(KML);
+        for (int i = 0; i < 4; i++)
+            assertTrue(reader.next());
+        assertEquals("after", reader.getName());
+        assertEquals("PEN(c:#FFFFFFFF,w:5px);SYMBOL(id:\"zip:///data/test.kmz!/files/red.png\",c:#FF0000FF,s:2);LABEL(dy:48px)",
+                reader.getStyle());
+
+        // the track has altitudes, so the whole collection is 3D
+        final ByteBuffer wkb = wkb(reader);
+        assertEquals(1007, wkb.getInt());
+        assertEquals(2, wkb.getInt());
+        wkb.get();
+        assertEquals(1001, wkb.getInt());
+        wkb.position(wkb.position() + 24);
+        wkb.get();
+        assertEquals(1002, wkb.getInt());
+        assertEquals(2, wkb.getInt());
+    }
+
+    @Test
+    public void unknown_style_reference_uses_default() throws Exception {
+        final KmlPullReader reader = open("<kml><Placemark><styleUrl>#missing</styleUrl>"
+                + "<Point><coordinates>1,2</coordinates></Point></Placemark></kml>");
+        assertTrue(reader.next());
+        assertNull(reader.getName());
+        assertEquals("test", reader.getFeatureSetName());
+        assertEquals("SYMBOL(id:\"" + KmlStyle.DEFAULT_ICON + "\",c:#FFFFFFFF);LABEL(dy:48px)",
+                reader.getStyle());
+        assertEquals(1, wkb(reader).getInt());
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncated_document_fails() throws Exception {
+        final KmlPullReader reader = open("<kml><Document><Placemark><Point><coordinates>1,2");
+        reader.next();
+    }
+}
@@ -0,0 +1,129 @@
+package com.atakmap.spatial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GeometryKernelTest {
+    private static KernelGeometry square(double minX, double minY, double maxX, double maxY) {
+        return KernelGeometry.polygon(new double[][] {
+                {minX, minY, maxX, minY, maxX, maxY, minX, maxY}
+        }, new int[] {4});
+    }
+
+    private static KernelGeometry squareWithHole() {
+        return KernelGeometry.polygon(new double[][] {
+                {0, 0, 10, 0, 10, 10, 0, 10},
+                {4, 4, 6, 4, 6, 6, 4, 6},
+        }, new int[] {4, 4});
+    }
+
+    @Test
+    public void polygon_locate_handles_holes_and_boundary() {
+        final KernelGeometry poly = squareWithHole();
+        assertEquals(KernelGeometry.LOCATION_INTERIOR, poly.locate(2, 2));
+        assertEquals(KernelGeometry.LOCATION_EXTERIOR, poly.locate(5, 5));
+        assertEquals(KernelGeometry.LOCATION_EXTERIOR, poly.locate(11, 5));
+        assertEquals(KernelGeometry.LOCATION_BOUNDARY, poly.locate(0, 5));
+        assertEquals(KernelGeometry.LOCATION_BOUNDARY, poly.locate(4, 5));
+    }
+
+    @Test
+    public void polygon_locate_many_edges() {
+        // a circle with enough edges to produce many index bands
+        final int n = 1000;
+        final double[] ring = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            final double theta = 2d * Math.PI * i / n;
+            ring[i * 2] = Math.cos(theta);
+            ring[i * 2 + 1] = Math.sin(theta);
+        }
+        final KernelGeometry circle = KernelGeometry.polygon(new double[][] {
+                ring
+        }, new int[] {n});
+        for (int i = 0; i < 100; i++) {
+            final double theta = 2d * Math.PI * i / 100;
+            assertEquals(KernelGeometry.LOCATION_INTERIOR,
+                    circle.locate(0.9 * Math.cos(theta), 0.9 * Math.sin(theta)));
+            assertEquals(KernelGeometry.LOCATION_EXTERIOR,
+                    circle.locate(1.1 * Math.cos(theta), 1.1 * Math.sin(theta)));
+        }
+    }
+
+    @Test
+    public void intersects_polygons() {
+        final KernelGeometry a = square(0, 0, 10, 10);
+        assertEquals(GeometryKernel.TRUE,
+                GeometryKernel.intersects(a, square(5, 5, 15, 15)));
+        // touching edges intersect
+        assertEquals(GeometryKernel.TRUE,
+                GeometryKernel.intersects(a, square(10, 0, 20, 10)));
+        // fully contained
+        assertEquals(GeometryKernel.TRUE,
+                GeometryKernel.intersects(a, square(2, 2, 3, 3)));
+        assertEquals(GeometryKernel.FALSE,
+                GeometryKernel.intersects(a, square(11, 11, 12, 12)));
+        // inside of the hole
+        assertEquals(GeometryKernel.FALSE, GeometryKernel
+                .intersects(squareWithHole(), square(4.5, 4.5, 5.5, 5.5)));
+    }
+
+    @Test
+    public void intersects_linestring() {
+        final KernelGeometry line = KernelGeometry
+                .lineString(new double[] {-5, 5, 5, 5}, 2);
+        assertEquals(GeometryKernel.TRUE,
+                GeometryKernel.intersects(line, square(0, 0, 10, 10)));
+        assertEquals(GeometryKernel.TRUE, GeometryKernel
+                .intersects(KernelGeometry.point(0, 5), line));
+        assertEquals(GeometryKernel.FALSE, GeometryKernel
+                .intersects(KernelGeometry.point(0, 6), line));
+    }
+
+    @Test
+    public void contains_polygon() {
+        final KernelGeometry poly = squareWithHole();
+        assertEquals(GeometryKernel.TRUE, GeometryKernel.contains(poly,
+                KernelGeometry.point(1, 1)));
+        assertEquals(GeometryKernel.FALSE, GeometryKernel.contains(poly,
+                KernelGeometry.point(5, 5)));
+        assertEquals(GeometryKernel.TRUE,
+                GeometryKernel.contains(poly, square(1, 1, 3, 3)));
+        // overlaps the hole
+        assertEquals(GeometryKernel.FALSE,
+                GeometryKernel.contains(poly, square(1, 1, 9, 9)));
+        // crosses the exterior ring
+        assertEquals(GeometryKernel.FALSE,
+                GeometryKernel.contains(poly, square(1, 1, 11, 3)));
+        // shares the exterior ring boundary
+        assertEquals(GeometryKernel.UNKNOWN,
+                GeometryKernel.contains(poly, square(0, 0, 3, 3)));
+    }
+
+    @Test
+    public void douglas_peucker_removes_collinear_points() {
+        final double[] xy = new double[] {
+                0, 0, 1, 0.01, 2, 0, 3, 5, 4, 0
+        };
+        final double[] result = new double[xy.length];
+        final int count = GeometryKernel.simplifyDouglasPeucker(xy, 5, 0.1,
+                result);
+        assertEquals(4, count);
+        assertArrayEquals(new double[] {
+                0, 0, 2, 0, 3, 5, 4, 0
+        }, java.util.Arrays.copyOf(result, count * 2), 0d);
+    }
+
+    @Test
+    public void visvalingam_removes_smallest_areas() {
+        final double[] xy = new double[] {
+                0, 0, 1, 0.01, 2, 0, 3, 5, 4, 0
+        };
+        final int count = GeometryKernel.simplifyVisvalingam(xy, 5, 0.5, xy);
+        assertEquals(4, count);
+        assertArrayEquals(new double[] {
+                0, 0, 2, 0, 3, 5, 4, 0
+        }, java.util.Arrays.copyOf(xy, count * 2), 0d);
+    }
+}
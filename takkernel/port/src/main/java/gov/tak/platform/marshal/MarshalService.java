@@ -1,6 +1,7 @@
 package gov.tak.platform.marshal;
 
 import java.lang.reflect.Array;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -9,10 +10,24 @@ import java.util.Set;
 import gov.tak.api.marshal.IMarshal;
 import gov.tak.api.marshal.IMarshalService;
 
+/**
+ * Registry of marshals by input and output type.
+ *
+ * <P>Marshals are resolved on every conversion, often from several threads
+ * in tight loops, while registration is rare. Registration updates a master
+ * registry under the service lock and then publishes an immutable snapshot
+ * of the resolved marshals for each <code>(inType, outType)</code> pair;
+ * <code>marshal</code> reads the current snapshot without locking.
+ */
 public class MarshalService implements IMarshalService
 {
+    private final static IMarshal[] NO_MARSHALS = new IMarshal[0];
+
     final Map<Class<?>, Map<Class<?>, Set<IMarshal>>> registry = new HashMap<>();
 
+    /** immutable snapshot of <code>registry</code>, replaced on every change */
+    private volatile Map<Class<?>, Map<Class<?>, IMarshal[]>> resolved = Collections.emptyMap();
+
     @Override
     public synchronized void registerMarshal(IMarshal marshal, Class<?> inType, Class<?> outType)
     {
@@ -28,30 +43,62 @@ public class MarshalService implements IMarshalService
             marshals = new LinkedHashSet<>();
             registered.put(outType, marshals);
         }
-        marshals.add(marshal);
+        if (marshals.add(marshal))
+            publish();
     }
 
     @Override
     public synchronized void unregisterMarshal(IMarshal marshal)
     {
+        boolean changed = false;
         for (Map<Class<?>, Set<IMarshal>> registered : registry.values())
         {
             for (Set<IMarshal> marshals : registered.values())
             {
-                marshals.remove(marshal);
+                changed |= marshals.remove(marshal);
             }
         }
+        if (changed)
+            publish();
     }
 
     @Override
-    public synchronized <T, V> T marshal(V in, Class<V> inType, Class<T> outType)
+    public <T, V> T marshal(V in, Class<V> inType, Class<T> outType)
     {
-        final Map<Class<?>, Set<IMarshal>> registered = registry.get(inType);
-        if (registered == null)
+        return marshal(resolve(inType, outType), in, outType);
+    }
+
+    /**
+     * Marshals each element of the array with the marshals registered for the
+     * type pair. Elements that cannot be converted are <code>null</code> in
+     * the returned array.
+     *
+     * @return The marshaled array, or <code>null</code> if no marshal is
+     * registered for the type pair
+     */
+    public <T, V> T[] marshal(V[] in, Class<V> inType, Class<T> outType)
+    {
+        if(in == null)
+            return (T[])null;
+        final IMarshal[] marshals = resolve(inType, outType);
+        if (marshals.length == 0)
             return null;
-        final Set<IMarshal> marshals = registered.get(outType);
-        if (marshals == null)
+
+        T[] out;
+        try {
+            out = (T[]) Array.newInstance(outType, in.length);
+        } catch(Throwable t) {
             return null;
+        }
+        for(int i = 0; i < in.length; i++)
+            out[i] = marshal(marshals, in[i], outType);
+        return out;
+    }
+
+    private static <T, V> T marshal(IMarshal[] marshals, V in, Class<T> outType)
+    {
+        if (marshals.length == 0)
+            return identity(in, outType);
         for (IMarshal marshal : marshals)
         {
             T obj = marshal.marshal(in);
@@ -61,32 +108,44 @@ public class MarshalService implements IMarshalService
         return null;
     }
 
-    public synchronized <T, V> T[] marshal(V[] in, Class<V> inType, Class<T> outType)
+    /**
+     * Returns the marshals registered for the type pair, in registration
+     * order. Does not lock; the returned array must not be modified.
+     */
+    private IMarshal[] resolve(Class<?> inType, Class<?> outType)
     {
-        if(in == null)
-            return (T[])null;
-        final Map<Class<?>, Set<IMarshal>> registered = registry.get(inType);
+        final Map<Class<?>, IMarshal[]> registered = resolved.get(inType);
         if (registered == null)
-            return null;
-        final Set<IMarshal> marshals = registered.get(outType);
-        if (marshals == null)
-            return null;
+            return NO_MARSHALS;
+        final IMarshal[] marshals = registered.get(outType);
+        return (marshals != null) ? marshals : NO_MARSHALS;
+    }
 
-        T[] out;
-        try {
-            out = (T[]) Array.newInstance(outType, in.length);
-        } catch(Throwable t) {
-            return null;
-        }
-        for(int i = 0; i < in.length; i++) {
-            for (IMarshal marshal : marshals) {
-                T obj = marshal.marshal(in[i]);
-                if (obj != null) {
-                    out[i] = obj;
-                    break;
-                }
+    /**
+     * Conversion when no marshal is registered for the type pair. An input
+     * that is already an instance of the output type, e.g. a
+     * <code>GeoPoint</code> requested as an <code>IGeoPoint</code>, is
+     * returned as is.
+     */
+    private static <T, V> T identity(V in, Class<T> outType)
+    {
+        return outType.isInstance(in) ? outType.cast(in) : null;
+    }
+
+    private void publish()
+    {
+        final Map<Class<?>, Map<Class<?>, IMarshal[]>> snapshot = new HashMap<>();
+        for (Map.Entry<Class<?>, Map<Class<?>, Set<IMarshal>>> registered : registry.entrySet())
+        {
+            final Map<Class<?>, IMarshal[]> outTypes = new HashMap<>();
+            for (Map.Entry<Class<?>, Set<IMarshal>> marshals : registered.getValue().entrySet())
+            {
+                if (!marshals.getValue().isEmpty())
+                    outTypes.put(marshals.getKey(), marshals.getValue().toArray(NO_MARSHALS));
             }
+            if (!outTypes.isEmpty())
+                snapshot.put(registered.getKey(), outTypes);
         }
-        return out;
+        resolved = snapshot;
     }
 }
@@ -97,4 +97,50 @@ public class MarshalServiceTest
 
         Mockito.verify(m, Mockito.atLeastOnce()).marshal(input);
     }
+
+    @Test
+    public void unregisteredInstanceOfOutTypeIsIdentity()
+    {
+        MarshalService service = new MarshalService();
+
+        final Integer input = 1;
+
+        Assert.assertSame(input, service.marshal(input, Integer.class, Number.class));
+        Assert.assertNull(service.marshal(null, Integer.class, Number.class));
+    }
+
+    @Test
+    public void registeredMarshalPreferredOverIdentity()
+    {
+        MarshalService service = new MarshalService();
+
+        final Integer input = 1;
+        final Long output = 1L;
+
+        IMarshal m = Mockito.mock(IMarshal.class);
+        Mockito.when(m.marshal(input)).thenReturn(output);
+        service.registerMarshal(m, Integer.class, Number.class);
+
+        Assert.assertSame(output, service.marshal(input, Integer.class, Number.class));
+    }
+
+    @Test
+    public void marshalsInvokedInRegistrationOrder()
+    {
+        MarshalService service = new MarshalService();
+
+        final Integer input = 1;
+
+        IMarshal first = Mockito.mock(IMarshal.class);
+        Mockito.when(first.marshal(input)).thenReturn("first");
+        IMarshal second = Mockito.mock(IMarshal.class);
+        Mockito.lenient().when(second.marshal(input)).thenReturn("second");
+
+        service.registerMarshal(first, Integer.class, String.class);
+        service.registerMarshal(second, Integer.class, String.class);
+        Assert.assertEquals("first", service.marshal(input, Integer.class, String.class));
+
+        service.unregisterMarshal(first);
+        Assert.assertEquals("second", service.marshal(input, Integer.class, String.class));
+    }
 }
@@ -1,16 +1,21 @@
 
 package com.atakmap.coremap.cot.event;
 
+import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.time.CoordinatedTime;
 import com.atakmap.util.ResourcePool;
 
 import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
+import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 final class CotContentHandler {
 
@@ -18,8 +23,17 @@ final class CotContentHandler {
 
     private static XmlPullParserFactory parserFactory;
 
+    /**
+     * Canonical instances of element and attribute names. Names are drawn
+     * from a small vocabulary, so sharing a single instance per name avoids
+     * retaining duplicate strings in every parsed detail tree.
+     */
+    private static final int MAX_INTERNED_NAMES = 1024;
+    private static final ConcurrentHashMap<String, String> _names = new ConcurrentHashMap<>();
+
     final static class ParseContext {
         private final ArrayList<CotDetail> detailStack = new ArrayList<>();
+        private final BytesInputStream bytes = new BytesInputStream();
         private boolean finishedDetail;
         private String innerTextBuilder;
         private CotEvent editor;
@@ -35,49 +49,9 @@ final class CotContentHandler {
         try {
             if (context == null)
                 context = new ParseContext();
-            context.detailStack.clear();
-            context.finishedDetail = false;
-            context.innerTextBuilder = null;
-
-            context.editor = editor;
-            if (parserFactory == null) {
-                parserFactory = XmlPullParserFactory.newInstance();
-                try {
-                    parserFactory
-                            .setFeature(
-                                    "http://xml.org/sax/features/external-parameter-entities",
-                                    false);
-                } catch (Exception ignored) {
-                }
-
-                try {
-                    parserFactory
-                            .setFeature(
-                                    "http://xml.org/sax/features/external-general-entities",
-                                    false);
-                } catch (Exception ignored) {
-                }
-            }
-            if (context.parser == null)
-                context.parser = parserFactory.newPullParser();
-
+            _reset(context, editor);
             context.parser.setInput(new StringReader(xml));
-            do {
-                switch (context.parser.next()) {
-                    case XmlPullParser.START_TAG:
-                        startElement(context, context.parser.getName());
-                        break;
-                    case XmlPullParser.END_TAG:
-                        endElement(context);
-                        break;
-                    case XmlPullParser.TEXT:
-                        context.innerTextBuilder = context.parser.getText();
-                        break;
-                    case XmlPullParser.END_DOCUMENT:
-                        break;
-                }
-            } while (context.parser
-                    .getEventType() != XmlPullParser.END_DOCUMENT);
+            _parse(context);
         } catch (Throwable e) {
             Log.v(TAG, "Bad message encountered: " + xml);
             Log.e(TAG, "error: ", e);
@@ -88,6 +62,125 @@ final class CotContentHandler {
         return editor;
     }
 
+    /**
+     * Parses an event directly from UTF-8 encoded bytes. The message is
+     * decoded by the parser as it is consumed; no intermediate
+     * <code>String</code> is created for the message.
+     *
+     * @param buf    The buffer containing the message
+     * @param off    The offset of the message in the buffer
+     * @param len    The length of the message, in bytes
+     * @return The parsed event
+     */
+    CotEvent parseXML(final byte[] buf, final int off, final int len) {
+        ParseContext context = _parsePool.get();
+
+        CotEvent editor = new CotEvent();
+        try {
+            if (context == null)
+                context = new ParseContext();
+            _reset(context, editor);
+            context.bytes.reset(buf, off, len);
+            context.parser.setInput(context.bytes, "UTF-8");
+            _parse(context);
+        } catch (Throwable e) {
+            Log.v(TAG, "Bad message encountered: "
+                    + new String(buf, off, len, FileSystemUtils.UTF8_CHARSET));
+            Log.e(TAG, "error: ", e);
+        } finally {
+            if (context != null) {
+                context.bytes.reset(null, 0, 0);
+                _parsePool.put(context);
+            }
+        }
+        return editor;
+    }
+
+    /**
+     * Parses an event directly from the remaining UTF-8 encoded bytes in the
+     * specified buffer. The position of the buffer is not modified.
+     *
+     * @param buf    The buffer containing the message
+     * @return The parsed event
+     */
+    CotEvent parseXML(final ByteBuffer buf) {
+        if (buf.hasArray())
+            return parseXML(buf.array(), buf.arrayOffset() + buf.position(),
+                    buf.remaining());
+
+        ParseContext context = _parsePool.get();
+
+        CotEvent editor = new CotEvent();
+        try {
+            if (context == null)
+                context = new ParseContext();
+            _reset(context, editor);
+            context.bytes.reset(buf);
+            context.parser.setInput(context.bytes, "UTF-8");
+            _parse(context);
+        } catch (Throwable e) {
+            byte[] copy = new byte[buf.remaining()];
+            buf.duplicate().get(copy);
+            Log.v(TAG, "Bad message encountered: "
+                    + new String(copy, FileSystemUtils.UTF8_CHARSET));
+            Log.e(TAG, "error: ", e);
+        } finally {
+            if (context != null) {
+                context.bytes.reset(null, 0, 0);
+                _parsePool.put(context);
+            }
+        }
+        return editor;
+    }
+
+    private static void _reset(ParseContext context, CotEvent editor)
+            throws XmlPullParserException {
+        context.detailStack.clear();
+        context.finishedDetail = false;
+        context.innerTextBuilder = null;
+
+        context.editor = editor;
+        if (parserFactory == null) {
+            parserFactory = XmlPullParserFactory.newInstance();
+            try {
+                parserFactory
+                        .setFeature(
+                                "http://xml.org/sax/features/external-parameter-entities",
+                                false);
+            } catch (Exception ignored) {
+            }
+
+            try {
+                parserFactory
+                        .setFeature(
+                                "http://xml.org/sax/features/external-general-entities",
+                                false);
+            } catch (Exception ignored) {
+            }
+        }
+        if (context.parser == null)
+            context.parser = parserFactory.newPullParser();
+    }
+
+    private void _parse(ParseContext context) throws Exception {
+        do {
+            switch (context.parser.next()) {
+                case XmlPullParser.START_TAG:
+                    startElement(context, context.parser.getName());
+                    break;
+                case XmlPullParser.END_TAG:
+                    endElement(context);
+                    break;
+                case XmlPullParser.TEXT:
+                    context.innerTextBuilder = context.parser.getText();
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    break;
+            }
+        } while (context.parser
+                .getEventType() != XmlPullParser.END_DOCUMENT);
+    }
+
     void endElement(final ParseContext context) {
         final int detailDepth = context.detailStack.size();
         if (detailDepth > 0) {
@@ -248,10 +341,10 @@ final class CotContentHandler {
         CotDetail detail = new CotDetail();
 
         // set name and attributes
-        detail.setElementName(name);
+        detail.setElementName(_intern(name));
         final int nattr = attrs.getAttributeCount();
         for (int i = 0; i < nattr; ++i) {
-            String attrName = attrs.getAttributeName(i);
+            String attrName = _intern(attrs.getAttributeName(i));
             String attrValue = attrs.getAttributeValue(i);
             detail.setAttribute(attrName, attrValue);
         }
@@ -270,6 +363,18 @@ final class CotContentHandler {
         return detail;
     }
 
+    private static String _intern(final String name) {
+        if (name == null)
+            return null;
+        final String interned = _names.get(name);
+        if (interned != null)
+            return interned;
+        if (_names.size() >= MAX_INTERNED_NAMES)
+            return name;
+        final String existing = _names.putIfAbsent(name, name);
+        return (existing != null) ? existing : name;
+    }
+
     private static CoordinatedTime _timeOrDefault(final XmlPullParser attrs,
             final int name, final String msg) {
         try {
@@ -321,4 +426,64 @@ final class CotContentHandler {
             return fallback;
         }
     }
+
+    /**
+     * Reusable stream over a region of a byte array or a buffer, avoiding a
+     * new stream allocation for every parsed message.
+     */
+    final static class BytesInputStream extends InputStream {
+        private byte[] array;
+        private int pos;
+        private int limit;
+        private ByteBuffer buffer;
+
+        void reset(byte[] array, int off, int len) {
+            this.array = array;
+            this.pos = off;
+            this.limit = off + len;
+            this.buffer = null;
+        }
+
+        void reset(ByteBuffer buffer) {
+            this.array = null;
+            this.pos = 0;
+            this.limit = 0;
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            if (this.buffer != null)
+                return this.buffer.hasRemaining() ? (this.buffer.get() & 0xFF)
+                        : -1;
+            return (this.pos < this.limit) ? (this.array[this.pos++] & 0xFF)
+                    : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (this.buffer != null) {
+                final int n = Math.min(len, this.buffer.remaining());
+                if (n == 0)
+                    return -1;
+                this.buffer.get(b, off, n);
+                return n;
+            }
+            final int n = Math.min(len, this.limit - this.pos);
+            if (n <= 0)
+                return -1;
+            System.arraycopy(this.array, this.pos, b, off, n);
+            this.pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            if (this.buffer != null)
+                return this.buffer.remaining();
+            return Math.max(this.limit - this.pos, 0);
+        }
+    }
 }
@@ -16,6 +16,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 
@@ -556,6 +557,57 @@ public class CotEvent implements Parcelable {
         return e;
     }
 
+    /**
+     * Parse an event from UTF-8 encoded XML bytes, such as a message read
+     * directly from a socket. The message is decoded as it is parsed, without
+     * first being converted to a <code>String</code>.
+     *
+     * @param xml    The buffer containing the message
+     * @param off    The offset of the message in the buffer
+     * @param len    The length of the message, in bytes
+     * @return a CoT Event that can either be valid or invalid.
+     */
+    public static CotEvent parse(final byte[] xml, final int off,
+            final int len) {
+        CotEvent e = cotHandler.parseXML(xml, off, len);
+        _logInvalid(e, xml, off, len);
+        return e;
+    }
+
+    /**
+     * Parse an event from the remaining UTF-8 encoded XML bytes in the
+     * specified buffer. The position of the buffer is not modified.
+     *
+     * @param xml    The buffer containing the message
+     * @return a CoT Event that can either be valid or invalid.
+     */
+    public static CotEvent parse(final ByteBuffer xml) {
+        CotEvent e = cotHandler.parseXML(xml);
+        if (fileWriter != null && !e.isValid()) {
+            byte[] copy = new byte[xml.remaining()];
+            xml.duplicate().get(copy);
+            _logInvalid(e, copy, 0, copy.length);
+        }
+        return e;
+    }
+
+    private static void _logInvalid(CotEvent e, byte[] xml, int off,
+            int len) {
+        synchronized (CotEvent.class) {
+            if (fileWriter != null) {
+                if (!e.isValid()) {
+                    try {
+                        fileWriter.println(new String(xml, off, len,
+                                FileSystemUtils.UTF8_CHARSET));
+                    } catch (Exception ex) {
+                        // instead of synchronizing this to death, just catch the
+                        // potential npe.
+                    }
+                }
+            }
+        }
+    }
+
     @NonNull
     @Override
     public String toString() {
@@ -0,0 +1,210 @@
+
+package com.atakmap.coremap.cot.event;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes {@link CotEvent} instances directly to UTF-8 encoded bytes.
+ * Characters produced by {@link CotEvent#buildXml(Appendable)} are encoded
+ * as they are appended, so no intermediate <code>String</code> is built for
+ * the message.
+ */
+public final class CotEventSerializer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<Utf8Appender> _scratch = new ThreadLocal<Utf8Appender>() {
+        @Override
+        protected Utf8Appender initialValue() {
+            return new Utf8Appender(ByteBuffer.allocate(DEFAULT_BUFFER_SIZE),
+                    true);
+        }
+    };
+
+    private CotEventSerializer() {
+    }
+
+    /**
+     * Serializes the event into the specified buffer, starting at its
+     * current position. On return, the position of the buffer is advanced
+     * past the serialized message.
+     *
+     * @param event The event
+     * @param dst   The destination buffer
+     * @return The number of bytes written
+     * @throws BufferOverflowException if the buffer does not have enough
+     *             space remaining for the message. The position of the buffer
+     *             is undefined in this case.
+     */
+    public static int serialize(CotEvent event, ByteBuffer dst) {
+        final int start = dst.position();
+        Utf8Appender appender = new Utf8Appender(dst, false);
+        try {
+            event.buildXml(appender);
+            appender.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return dst.position() - start;
+    }
+
+    /**
+     * Serializes the event to a new buffer that is sized to the message. The
+     * message is encoded into the calling thread's scratch buffer and copied
+     * once.
+     *
+     * @param event The event
+     * @return A buffer containing the UTF-8 encoded message, positioned at
+     *         zero with its limit at the end of the message
+     */
+    public static ByteBuffer serialize(CotEvent event) {
+        final ByteBuffer scratch = serializeToScratch(event);
+        final ByteBuffer result = ByteBuffer.allocate(scratch.remaining());
+        result.put(scratch);
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Serializes the event into the calling thread's scratch buffer. The
+     * scratch buffer is reused for every event serialized on the thread, so
+     * no buffer is allocated unless the message is larger than the buffer.
+     * Callers that hand the message off to another thread or hold on to it
+     * must copy it.
+     *
+     * @param event The event
+     * @return A read-only view of the scratch buffer, positioned at zero
+     *         with its limit at the end of the message. The view is only
+     *         valid until the next event is serialized on the calling
+     *         thread.
+     */
+    public static ByteBuffer serializeToScratch(CotEvent event) {
+        final Utf8Appender appender = _scratch.get();
+        // don't hold on to the buffer grown for an unusually large message
+        if (appender.buffer.capacity() > MAX_RETAINED_BUFFER_SIZE)
+            appender.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+        appender.buffer.clear();
+        appender.pendingHighSurrogate = 0;
+        try {
+            event.buildXml(appender);
+            appender.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        appender.buffer.flip();
+        return appender.buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * {@link Appendable} that encodes characters to UTF-8 into a
+     * {@link ByteBuffer}.
+     */
+    final static class Utf8Appender implements Appendable {
+        ByteBuffer buffer;
+        final boolean growable;
+        char pendingHighSurrogate;
+
+        Utf8Appender(ByteBuffer buffer, boolean growable) {
+            this.buffer = buffer;
+            this.growable = growable;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            if (csq == null)
+                csq = "null";
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            if (csq == null)
+                csq = "null";
+            ensureCapacity(end - start);
+            for (int i = start; i < end; i++)
+                encode(csq.charAt(i));
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            ensureCapacity(1);
+            encode(c);
+            return this;
+        }
+
+        /**
+         * Writes out any dangling high surrogate at the end of the message.
+         */
+        void flush() {
+            if (pendingHighSurrogate != 0) {
+                pendingHighSurrogate = 0;
+                put((byte) '?');
+            }
+        }
+
+        private void encode(char c) {
+            if (pendingHighSurrogate != 0) {
+                final char high = pendingHighSurrogate;
+                pendingHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    final int cp = Character.toCodePoint(high, c);
+                    put((byte) (0xF0 | (cp >> 18)));
+                    put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    put((byte) (0x80 | (cp & 0x3F)));
+                    return;
+                }
+                // unpaired surrogate
+                put((byte) '?');
+            }
+
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c)) {
+                pendingHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                // unpaired surrogate
+                put((byte) '?');
+            } else {
+                put((byte) (0xE0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+
+        private void put(byte b) {
+            if (!buffer.hasRemaining())
+                grow(1);
+            buffer.put(b);
+        }
+
+        /**
+         * Grows the buffer up front for the worst case encoding of the
+         * specified number of characters.
+         */
+        private void ensureCapacity(int chars) {
+            if (growable && buffer.remaining() < chars * 3)
+                grow(chars * 3);
+        }
+
+        private void grow(int required) {
+            if (!growable)
+                throw new BufferOverflowException();
+            int capacity = buffer.capacity() * 2;
+            while (capacity - buffer.position() < required)
+                capacity *= 2;
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.filesystem.FileSystemUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CotEvent} paired with its serialized form. The serialized form is
+ * produced at most once, on first request, and may be handed to any number
+ * of outputs without re-serializing the event.
+ *
+ * <P>The event must not be modified once it has been wrapped.
+ */
+public final class EncodedCotEvent {
+
+    private final CotEvent _event;
+    private String _xml;
+    private ByteBuffer _bytes;
+
+    public EncodedCotEvent(CotEvent event) {
+        if (event == null)
+            throw new IllegalArgumentException();
+        _event = event;
+    }
+
+    /**
+     * @return the wrapped event
+     */
+    public CotEvent getEvent() {
+        return _event;
+    }
+
+    /**
+     * Returns the UTF-8 encoded message. The returned buffer is a read-only
+     * view positioned at the start of the message; callers may freely modify
+     * its position and limit.
+     *
+     * @return the UTF-8 encoded message
+     */
+    public synchronized ByteBuffer getBytes() {
+        if (_bytes == null) {
+            if (_xml != null)
+                _bytes = ByteBuffer
+                        .wrap(_xml.getBytes(FileSystemUtils.UTF8_CHARSET));
+            else
+                _bytes = CotEventSerializer.serialize(_event);
+        }
+        return _bytes.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the length of the UTF-8 encoded message, in bytes
+     */
+    public int getLength() {
+        return getBytes().remaining();
+    }
+
+    /**
+     * @return the message as XML text
+     */
+    public synchronized String getXml() {
+        if (_xml == null) {
+            if (_bytes != null)
+                _xml = new String(_bytes.array(), _bytes.arrayOffset(),
+                        _bytes.limit(), FileSystemUtils.UTF8_CHARSET);
+            else
+                _xml = _event.toString();
+        }
+        return _xml;
+    }
+
+    @Override
+    public String toString() {
+        return getXml();
+    }
+}
@@ -0,0 +1,171 @@
+package gov.tak.api.importfiles;
+
+import com.atakmap.coremap.io.IOProviderFactory;
+import com.atakmap.util.zip.IoUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import gov.tak.api.annotation.NonNull;
+import gov.tak.api.annotation.Nullable;
+
+/**
+ * Reusable buffer holding the first bytes of a file, so that the content of a
+ * file can be sniffed by several {@link ImportResolver}s while only being
+ * read once.
+ *
+ * <P>
+ * A header is bound to a thread with {@link #bind(FileHeader)}. While bound,
+ * {@link #readText(File, int)} is answered from the header for the file it
+ * holds, and read from the file otherwise.
+ */
+public final class FileHeader {
+
+    /**
+     * Default size of the header buffer, in bytes
+     */
+    public static final int DEFAULT_SIZE = 8192;
+
+    private static final ThreadLocal<FileHeader> _bound = new ThreadLocal<>();
+
+    private final byte[] _buffer;
+    private File _file;
+    private int _length;
+    private String _text;
+
+    public FileHeader() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param size Size of the header buffer, in bytes
+     */
+    public FileHeader(int size) {
+        _buffer = new byte[size];
+    }
+
+    /**
+     * Read the header of a file into this buffer, replacing the previous
+     * contents
+     *
+     * @param file the file to read
+     * @return the number of bytes read
+     * @throws IOException if the file could not be read
+     */
+    public int read(@NonNull File file) throws IOException {
+        clear();
+        try (InputStream is = IOProviderFactory.getInputStream(file)) {
+            int numRead;
+            while (_length < _buffer.length && (numRead = is.read(_buffer,
+                    _length, _buffer.length - _length)) > 0)
+                _length += numRead;
+        }
+        _file = file;
+        return _length;
+    }
+
+    /**
+     * Release the file held by this header. The buffer is kept for reuse.
+     */
+    public void clear() {
+        _file = null;
+        _length = 0;
+        _text = null;
+    }
+
+    /**
+     * @return the file held by this header, or {@code null} if none
+     */
+    @Nullable
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * @return the header buffer. Only the first {@link #getLength()} bytes
+     * are valid.
+     */
+    @NonNull
+    public byte[] getBuffer() {
+        return _buffer;
+    }
+
+    /**
+     * @return the number of valid bytes in the header buffer
+     */
+    public int getLength() {
+        return _length;
+    }
+
+    /**
+     * @return {@code true} if the whole file fit in the header buffer
+     */
+    public boolean isComplete() {
+        return _length < _buffer.length;
+    }
+
+    /**
+     * Returns the header decoded with the platform default charset, as a
+     * reader over the file would. The header is only decoded once.
+     *
+     * @param maxChars the maximum number of characters to return
+     * @return the decoded header, or {@code null} if the header holds fewer
+     * than {@code maxChars} characters of a larger file
+     */
+    @Nullable
+    public String getText(int maxChars) {
+        if (_text == null)
+            _text = new String(_buffer, 0, _length);
+        if (_text.length() >= maxChars)
+            return _text.substring(0, maxChars);
+        return isComplete() ? _text : null;
+    }
+
+    /**
+     * Bind a header to the calling thread for use by
+     * {@link #readText(File, int)}
+     *
+     * @param header the header or {@code null} to unbind
+     */
+    public static void bind(@Nullable FileHeader header) {
+        if (header != null)
+            _bound.set(header);
+        else
+            _bound.remove();
+    }
+
+    /**
+     * Read the first characters of a file. When a header for the file is
+     * bound to the calling thread the characters are taken from it rather
+     * than from the file.
+     *
+     * @param file the file to read
+     * @param maxChars the maximum number of characters to read
+     * @return the characters read, empty if the file is empty
+     * @throws IOException if the file could not be read
+     */
+    @NonNull
+    public static String readText(@NonNull File file, int maxChars)
+            throws IOException {
+        final FileHeader header = _bound.get();
+        if (header != null && file.equals(header._file)) {
+            final String text = header.getText(maxChars);
+            if (text != null)
+                return text;
+        }
+
+        char[] buffer = new char[maxChars];
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                IOProviderFactory.getInputStream(file)));
+        int numRead;
+        try {
+            numRead = reader.read(buffer);
+        } finally {
+            IoUtils.close(reader);
+        }
+        return numRead > 0 ? String.valueOf(buffer, 0, numRead) : "";
+    }
+}
@@ -3,14 +3,10 @@ package gov.tak.api.importfiles;
 import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
-import com.atakmap.util.zip.IoUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
@@ -47,8 +43,8 @@ public class ImportCotResolver extends ImportResolver {
             return false;
 
         // it is a .cot, now lets see if it contains reasonable CoT
-        try (FileInputStream fis = IOProviderFactory.getInputStream(file)) {
-            return isCoT(fis, _charBuffer.get());
+        try {
+            return isCoT(FileHeader.readText(file, PROBE_SIZE));
         } catch (IOException e) {
             Log.e(TAG, "Error checking if CoT: " + file.getAbsolutePath(), e);
         }
@@ -56,30 +52,11 @@ public class ImportCotResolver extends ImportResolver {
         return false;
     }
 
-    private static boolean isCoT(final InputStream stream,
-                                 final char[] buffer) {
-        try {
-            // read first few hundred bytes and search for known CoT strings
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    stream));
-            int numRead = -1;
-            try {
-                numRead = reader.read(buffer);
-            } finally {
-                IoUtils.close(reader);
-            }
-
-            if (numRead < 1) {
-                Log.d(TAG, "Failed to read .cot stream");
-                return false;
-            }
-
-            String content = String.valueOf(buffer, 0, numRead);
-            return isCoT(content);
-        } catch (Exception e) {
-            Log.d(TAG, "Failed to match .cot", e);
-            return false;
-        }
+    @Override
+    public boolean isThreadSafe() {
+        // the match only inspects the file header and the read buffer is
+        // per thread
+        return true;
     }
 
     public static boolean isCoT(String content) {
@@ -57,8 +57,10 @@ public class ImportDTEDResolver extends ImportResolver {
             return true;
 
         File parent = dest.getParentFile();
+        // another import may create the directory concurrently
         if (!IOProviderFactory.exists(parent)
-                && !IOProviderFactory.mkdirs(parent)) {
+                && !IOProviderFactory.mkdirs(parent)
+                && !IOProviderFactory.exists(parent)) {
             Log.e(TAG, "could not create: " + parent);
             return false;
         }
@@ -1,15 +1,10 @@
 package gov.tak.api.importfiles;
 
 import com.atakmap.coremap.filesystem.FileSystemUtils;
-import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
-import com.atakmap.util.zip.IoUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import gov.tak.api.commons.graphics.Drawable;
 
@@ -35,8 +30,8 @@ public class ImportGMLResolver extends ImportResolver {
             return false;
         }
 
-        try (InputStream fis = IOProviderFactory.getInputStream(file)) {
-            return isGML(fis);
+        try {
+            return isGML(FileHeader.readText(file, 2048));
         } catch (IOException e) {
             Log.e(TAG, "Error checking if GPX: " + file.getAbsolutePath(), e);
         }
@@ -44,25 +39,13 @@ public class ImportGMLResolver extends ImportResolver {
         return false;
     }
 
-    private static boolean isGML(InputStream stream) {
+    private static boolean isGML(String content) {
         try {
-            // read first few hundred bytes and search for known GML strings
-            char[] buffer = new char[2048];
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    stream));
-            int numRead;
-            try {
-                numRead = reader.read(buffer);
-            } finally {
-                IoUtils.close(reader);
-            }
-
-            if (numRead < 1) {
+            if (content.isEmpty()) {
                 Log.d(TAG, "Failed to read .gml stream");
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
             boolean match = content.contains(GMLMATCH);
             if (!match) {
                 Log.d(TAG, "Failed to match gml content");
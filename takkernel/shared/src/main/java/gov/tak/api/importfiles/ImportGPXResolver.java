@@ -1,15 +1,10 @@
 package gov.tak.api.importfiles;
 
 import com.atakmap.coremap.filesystem.FileSystemUtils;
-import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
-import com.atakmap.util.zip.IoUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import gov.tak.api.commons.graphics.Drawable;
 
@@ -34,8 +29,8 @@ public class ImportGPXResolver extends ImportResolver {
             return false;
 
         // it is a .gpx, now lets see if it contains reasonable xml
-        try (InputStream fis = IOProviderFactory.getInputStream(file)) {
-            return isGpx(fis);
+        try {
+            return isGpx(FileHeader.readText(file, 1024));
         } catch (IOException e) {
             Log.e(TAG, "Error checking if GPX: " + file.getAbsolutePath(), e);
         }
@@ -43,26 +38,19 @@ public class ImportGPXResolver extends ImportResolver {
         return false;
     }
 
-    private static boolean isGpx(InputStream stream) {
-        try {
-            // read first few hundred bytes and search for known GPX strings
-            char[] buffer = new char[1024];
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    stream));
-            int numRead;
-
-            try {
-                numRead = reader.read(buffer);
-            } finally {
-                IoUtils.close(reader);
-            }
+    @Override
+    public boolean isThreadSafe() {
+        // the match only inspects the file header
+        return true;
+    }
 
-            if (numRead < 1) {
+    private static boolean isGpx(String content) {
+        try {
+            if (content.isEmpty()) {
                 Log.d(TAG, "Failed to read .gpx stream");
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
             boolean match = content.contains(GPXMATCH);
             if (!match) {
                 Log.d(TAG, "Failed to match gpx content");
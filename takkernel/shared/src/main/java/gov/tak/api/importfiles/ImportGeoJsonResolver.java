@@ -1,15 +1,10 @@
 package gov.tak.api.importfiles;
 
 import com.atakmap.coremap.filesystem.FileSystemUtils;
-import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
-import com.atakmap.util.zip.IoUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import gov.tak.api.commons.graphics.Drawable;
 
@@ -35,8 +30,8 @@ public class ImportGeoJsonResolver extends ImportResolver {
             return false;
         }
 
-        try (InputStream fis = IOProviderFactory.getInputStream(file)) {
-            return isGeoJSON(fis);
+        try {
+            return isGeoJSON(FileHeader.readText(file, 2048));
         } catch (IOException e) {
             Log.e(TAG, "Error checking if geojson: " + file.getAbsolutePath(),
                     e);
@@ -45,26 +40,13 @@ public class ImportGeoJsonResolver extends ImportResolver {
         return false;
     }
 
-    private static boolean isGeoJSON(InputStream stream) {
+    private static boolean isGeoJSON(String content) {
         try {
-            // read first few hundred bytes and search for known GeoJSON strings
-            char[] buffer = new char[2048];
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    stream));
-
-            int numRead;
-            try {
-                numRead = reader.read(buffer);
-            } finally {
-                IoUtils.close(reader);
-            }
-
-            if (numRead < 1) {
+            if (content.isEmpty()) {
                 Log.d(TAG, "Failed to read .geojson stream");
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
             boolean match = content.contains(GEOJSONMATCH);
             if (!match) {
                 Log.d(TAG, "Failed to match geojson content");
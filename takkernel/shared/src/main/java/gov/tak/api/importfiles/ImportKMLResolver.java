@@ -3,16 +3,15 @@ package gov.tak.api.importfiles;
 import android.util.Pair;
 
 import com.atakmap.coremap.filesystem.FileSystemUtils;
-import com.atakmap.coremap.io.IOProviderFactory;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.util.zip.IoUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 import gov.tak.api.commons.graphics.Drawable;
 
@@ -24,7 +23,8 @@ public class ImportKMLResolver extends ImportResolver {
     private static final String TAG = "ImportKMLSort";
 
     private final static String KMLMATCH = "<kml";
-    private final static String KMLMATCH_REGEX_WITHNS = "(?s).*<[^>]+:kml.*";
+    private final static Pattern KMLMATCH_WITHNS = Pattern
+            .compile("<[^>]+:kml");
 
     public ImportKMLResolver(String displayName, File destinationDir, Drawable icon) {
         super(".kml", destinationDir, displayName, icon);
@@ -38,8 +38,8 @@ public class ImportKMLResolver extends ImportResolver {
             return false;
 
         // it is a .kml, now lets see if it contains reasonable xml
-        try (FileInputStream fis = IOProviderFactory.getInputStream(file)) {
-            return isKml(fis);
+        try {
+            return isKml(FileHeader.readText(file, 2048));
         } catch (IOException e) {
             Log.e(TAG, "Error checking if KML: " + file.getAbsolutePath(), e);
         }
@@ -47,6 +47,12 @@ public class ImportKMLResolver extends ImportResolver {
         return false;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        // the match only inspects the file header
+        return true;
+    }
+
     static boolean isKml(InputStream stream) {
         try {
             // read first few hundred bytes and search for known KML strings
@@ -66,17 +72,25 @@ public class ImportKMLResolver extends ImportResolver {
                 return false;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
-            boolean match = content.contains(KMLMATCH)
-                    || content.matches(KMLMATCH_REGEX_WITHNS);
-            if (!match) {
-                Log.d(TAG, "Failed to match kml content");
-            }
-
-            return match;
+            return isKml(String.valueOf(buffer, 0, numRead));
         } catch (Exception e) {
             Log.d(TAG, "Failed to match .kml", e);
             return false;
         }
     }
+
+    private static boolean isKml(String content) {
+        if (content.isEmpty()) {
+            Log.d(TAG, "Failed to read .kml stream");
+            return false;
+        }
+
+        boolean match = content.contains(KMLMATCH)
+                || KMLMATCH_WITHNS.matcher(content).find();
+        if (!match) {
+            Log.d(TAG, "Failed to match kml content");
+        }
+
+        return match;
+    }
 }
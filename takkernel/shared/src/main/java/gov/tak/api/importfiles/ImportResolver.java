@@ -211,7 +211,9 @@ public abstract class ImportResolver {
         }
 
         if (!IOProviderFactory.exists(destParent)) {
-            if (!IOProviderFactory.mkdirs(destParent)) {
+            // another import may create the directory concurrently
+            if (!IOProviderFactory.mkdirs(destParent)
+                    && !IOProviderFactory.exists(destParent)) {
                 Log.w(TAG,
                         "failed to create directory: "
                                 + destParent.getAbsolutePath());
@@ -388,6 +390,20 @@ public abstract class ImportResolver {
         return false;
     }
 
+    /**
+     * May {@link #match(File)}, {@link #getDestinationPath(File)} and
+     * {@link #beginImport(File, EnumSet)} be called concurrently from several
+     * threads? Callers sorting files in parallel serialize the calls on
+     * resolvers that return false. Resolvers that keep no per-import state,
+     * and whose import listeners tolerate concurrent notification, may
+     * override this to opt in.
+     * @return True if this resolver may be used by several threads at once,
+     * false otherwise.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Get a human readable string that can be displayed to the user so that
      * they can differentiate between different sorter implementations.
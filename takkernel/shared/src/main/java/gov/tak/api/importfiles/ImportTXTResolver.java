@@ -12,9 +12,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import gov.tak.api.annotation.NonNull;
 import gov.tak.api.commons.graphics.Drawable;
@@ -54,7 +54,7 @@ final public class ImportTXTResolver extends ImportResolver {
     /**
      * Enumeration of TXT & XML files including matching string and storage location
      */
-    private static final List<TxtType> types = new ArrayList<>();
+    private static final List<TxtType> types = new CopyOnWriteArrayList<>();
 
     /**
      * Adds a signature to the TXT and XML importer that comprises a signature, directory and an
@@ -80,8 +80,8 @@ final public class ImportTXTResolver extends ImportResolver {
 
         // it is a .xml or .txt, now lets see if content inspection passes
         TxtType t = null;
-        try (InputStream fis = IOProviderFactory.getInputStream(file)) {
-            t = getType(fis);
+        try {
+            t = getType(FileHeader.readText(file, 1024));
         } catch (IOException e) {
             Log.e(TAG, "Failed to match TXT file: " + file.getAbsolutePath(),
                     e);
@@ -90,6 +90,12 @@ final public class ImportTXTResolver extends ImportResolver {
         return t != null;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        // the match only inspects the file header against the signatures
+        return true;
+    }
+
     public static TxtType getType(InputStream stream) {
         try {
             // read first few hundred bytes and search for known strings
@@ -108,22 +114,30 @@ final public class ImportTXTResolver extends ImportResolver {
                 return null;
             }
 
-            String content = String.valueOf(buffer, 0, numRead);
-            for (TxtType t : types) {
-                if (content.contains(t.signature)) {
-                    Log.d(TAG, "Match TXT content: " + t);
-                    return t;
-                }
-            }
-
-            Log.d(TAG, "Failed to match TXT content");
-            return null;
+            return getType(String.valueOf(buffer, 0, numRead));
         } catch (Exception e) {
             Log.d(TAG, "Failed to match txt", e);
             return null;
         }
     }
 
+    private static TxtType getType(String content) {
+        if (content.isEmpty()) {
+            Log.d(TAG, "Failed to read txt stream");
+            return null;
+        }
+
+        for (TxtType t : types) {
+            if (content.contains(t.signature)) {
+                Log.d(TAG, "Match TXT content: " + t);
+                return t;
+            }
+        }
+
+        Log.d(TAG, "Failed to match TXT content");
+        return null;
+    }
+
     /**
      * Defers to TxtType for the relative path. Returned file will have this Resolver's extension
      */
@@ -131,8 +145,8 @@ final public class ImportTXTResolver extends ImportResolver {
     public File getDestinationPath(File file) {
 
         TxtType t = null;
-        try (InputStream is = IOProviderFactory.getInputStream(file)) {
-            t = getType(is);
+        try {
+            t = getType(FileHeader.readText(file, 1024));
         } catch (IOException e) {
             Log.e(TAG, "Failed to match TXT file: " + file.getAbsolutePath(),
                     e);
@@ -0,0 +1,178 @@
+package gov.tak.api.importfiles;
+
+import gov.tak.test.util.FileUtils.AutoDeleteFile;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the {@link FileHeader} class.
+ */
+public class FileHeaderTest
+{
+    @After
+    public void afterTest()
+    {
+        FileHeader.bind(null);
+    }
+
+    @Test
+    public void read_small_file_is_complete() throws IOException
+    {
+        try (AutoDeleteFile f = createFile("<kml></kml>"))
+        {
+            FileHeader header = new FileHeader(64);
+            assertEquals(11, header.read(f.file));
+            assertSame(f.file, header.getFile());
+            assertEquals(11, header.getLength());
+            assertTrue(header.isComplete());
+            assertEquals("<kml></kml>", header.getText(64));
+            assertEquals("<kml>", header.getText(5));
+        }
+    }
+
+    @Test
+    public void read_large_file_is_truncated() throws IOException
+    {
+        try (AutoDeleteFile f = createFile("0123456789abcdef"))
+        {
+            FileHeader header = new FileHeader(8);
+            assertEquals(8, header.read(f.file));
+            assertFalse(header.isComplete());
+            assertArrayEquals("01234567".getBytes(), header.getBuffer());
+            assertEquals("0123", header.getText(4));
+            assertEquals("01234567", header.getText(8));
+            // more than the header holds of a larger file
+            assertNull(header.getText(9));
+        }
+    }
+
+    @Test
+    public void clear_releases_file() throws IOException
+    {
+        try (AutoDeleteFile f = createFile("<gpx>"))
+        {
+            FileHeader header = new FileHeader(64);
+            header.read(f.file);
+            header.clear();
+            assertNull(header.getFile());
+            assertEquals(0, header.getLength());
+            assertEquals("", header.getText(64));
+        }
+    }
+
+    @Test
+    public void readText_is_served_from_bound_header() throws IOException
+    {
+        try (AutoDeleteFile f = createFile("<event>"))
+        {
+            FileHeader header = new FileHeader(64);
+            header.read(f.file);
+            FileHeader.bind(header);
+
+            // the header is not re-read when the file changes
+            write(f.file, "<point>");
+            assertEquals("<event>", FileHeader.readText(f.file, 64));
+
+            FileHeader.bind(null);
+            assertEquals("<point>", FileHeader.readText(f.file, 64));
+        }
+    }
+
+    @Test
+    public void readText_reads_file_beyond_bound_header() throws IOException
+    {
+        try (AutoDeleteFile f = createFile("0123456789abcdef"))
+        {
+            FileHeader header = new FileHeader(8);
+            header.read(f.file);
+            FileHeader.bind(header);
+
+            assertEquals("0123", FileHeader.readText(f.file, 4));
+            assertEquals("0123456789", FileHeader.readText(f.file, 10));
+        }
+    }
+
+    @Test
+    public void readText_reads_other_files() throws IOException
+    {
+        try (AutoDeleteFile a = createFile("<kml>");
+             AutoDeleteFile b = createFile("<gml>"))
+        {
+            FileHeader header = new FileHeader(64);
+            header.read(a.file);
+            FileHeader.bind(header);
+
+            assertEquals("<gml>", FileHeader.readText(b.file, 64));
+        }
+    }
+
+    @Test
+    public void readText_empty_file() throws IOException
+    {
+        try (AutoDeleteFile f = createFile(""))
+        {
+            assertEquals("", FileHeader.readText(f.file, 64));
+
+            FileHeader header = new FileHeader(64);
+            assertEquals(0, header.read(f.file));
+            FileHeader.bind(header);
+            assertEquals("", FileHeader.readText(f.file, 64));
+        }
+    }
+
+    @Test
+    public void bound_header_is_per_thread() throws Exception
+    {
+        try (AutoDeleteFile f = createFile("<event>"))
+        {
+            FileHeader header = new FileHeader(64);
+            header.read(f.file);
+            FileHeader.bind(header);
+            write(f.file, "<point>");
+
+            final String[] text = new String[1];
+            Thread t = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        text[0] = FileHeader.readText(f.file, 64);
+                    } catch (IOException ignored)
+                    {
+                    }
+                }
+            });
+            t.start();
+            t.join();
+            assertEquals("<point>", text[0]);
+        }
+    }
+
+    private static AutoDeleteFile createFile(String content) throws IOException
+    {
+        AutoDeleteFile f = AutoDeleteFile.createTempFile((File) null);
+        write(f.file, content);
+        return f;
+    }
+
+    private static void write(File file, String content) throws IOException
+    {
+        try (FileOutputStream fos = new FileOutputStream(file))
+        {
+            fos.write(content.getBytes());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package gov.tak.api.importfiles;
+
+import gov.tak.test.util.FileUtils.AutoDeleteFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the resolvers that match on the file header alone.
+ */
+public class HeaderImportResolverTest
+{
+    @Test
+    public void header_resolvers_are_thread_safe()
+    {
+        assertTrue(new ImportKMLResolver(null, null, null).isThreadSafe());
+        assertTrue(new ImportGPXResolver(null, null, null).isThreadSafe());
+        assertTrue(new ImportGPXRouteResolver(null, null, null).isThreadSafe());
+        assertTrue(new ImportCotResolver(null, null, null).isThreadSafe());
+        assertTrue(new ImportTXTResolver(".txt", null, null, null).isThreadSafe());
+    }
+
+    @Test
+    public void concurrent_matches_use_each_threads_header() throws Exception
+    {
+        final ImportResolver kml = new ImportKMLResolver(null, null, null);
+        final ImportResolver cot = new ImportCotResolver(null, null, null);
+        try (AutoDeleteFile kmlFile = createFile(".kml", "<kml></kml>");
+             AutoDeleteFile notKmlFile = createFile(".kml", "<gpx></gpx>");
+             AutoDeleteFile cotFile = createFile(".cot", "<event><point/></event>");
+             AutoDeleteFile notCotFile = createFile(".cot", "<event/>"))
+        {
+            final File[] files = new File[] {
+                    kmlFile.file, notKmlFile.file, cotFile.file, notCotFile.file
+            };
+            final ImportResolver[] resolvers = new ImportResolver[] {
+                    kml, kml, cot, cot
+            };
+            final boolean[] expected = new boolean[] {
+                    true, false, true, false
+            };
+
+            ExecutorService executor = Executors.newFixedThreadPool(files.length);
+            try
+            {
+                List<Future<Integer>> results = new ArrayList<>();
+                for (int i = 0; i < files.length; i++)
+                {
+                    final File file = files[i];
+                    final ImportResolver resolver = resolvers[i];
+                    final boolean match = expected[i];
+                    results.add(executor.submit(new Callable<Integer>()
+                    {
+                        @Override
+                        public Integer call() throws IOException
+                        {
+                            FileHeader header = new FileHeader();
+                            header.read(file);
+                            FileHeader.bind(header);
+                            try
+                            {
+                                int mismatches = 0;
+                                for (int j = 0; j < 200; j++)
+                                {
+                                    if (resolver.match(file) != match)
+                                        mismatches++;
+                                }
+                                return mismatches;
+                            } finally
+                            {
+                                FileHeader.bind(null);
+                            }
+                        }
+                    }));
+                }
+                for (Future<Integer> result : results)
+                    assertEquals(0, (int) result.get());
+            } finally
+            {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static AutoDeleteFile createFile(String extension, String content)
+            throws IOException
+    {
+        AutoDeleteFile f = AutoDeleteFile.createTempFile((File) null, extension);
+        try (FileOutputStream fos = new FileOutputStream(f.file))
+        {
+            fos.write(content.getBytes());
+        }
+        return f;
+    }
+}
@@ -0,0 +1,85 @@
+package gov.tak.platform.marshal;
+
+import com.atakmap.coremap.log.Log;
+
+import gov.tak.api.marshal.IMarshal;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures marshal throughput while many threads marshal concurrently
+ * through a single service, as the deprecated coordinate APIs and the
+ * renderers do.
+ */
+public class MarshalServiceBenchmarkTest
+{
+    private static final String TAG = "MarshalServiceBenchmarkTest";
+
+    private static final boolean ENABLED = false;
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 1000000;
+
+    @Test
+    public void benchmark_concurrent_marshal() throws InterruptedException
+    {
+        if (ENABLED)
+        {
+            final MarshalService service = new MarshalService();
+            service.registerMarshal(new IMarshal()
+            {
+                @Override
+                public <T, V> T marshal(V in)
+                {
+                    return (T) Long.valueOf(((Integer) in).longValue());
+                }
+            }, Integer.class, Long.class);
+
+            // warm up
+            run(service, 1, ITERATIONS / 10);
+
+            for (int threads = 1; threads <= THREADS; threads *= 2)
+            {
+                final long elapsed = run(service, threads, ITERATIONS);
+                Log.i(TAG, "threads= " + threads + " duration= "
+                        + (elapsed / ITERATIONS) + "ns/marshal");
+            }
+        }
+    }
+
+    private static long run(final MarshalService service, int threads, final int iterations) throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong sink = new AtomicLong();
+        for (int i = 0; i < threads; i++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    long sum = 0L;
+                    try
+                    {
+                        start.await();
+                        for (int j = 0; j < iterations; j++)
+                            sum += service.marshal(j, Integer.class, Long.class);
+                    } catch (InterruptedException ignored)
+                    {
+                    } finally
+                    {
+                        sink.addAndGet(sum);
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        final long timeStart = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - timeStart;
+    }
+}